@@ -66,6 +66,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.api.*;
 import org.jetbrains.jps.client.CompileServerClient;
+import org.jetbrains.jps.incremental.FSJournal;
 import org.jetbrains.jps.server.ClasspathBootstrap;
 import org.jetbrains.jps.server.Server;
 
@@ -89,6 +90,8 @@ public class CompileServerManager implements ApplicationComponent{
   private static final String COMPILE_SERVER_SYSTEM_ROOT = "compile-server";
   private static final String LOGGER_CONFIG = "log.xml";
   private static final String DEFAULT_LOGGER_CONFIG = "defaultLogConfig.xml";
+  // exists while the IDE is running; found on startup, it means file changes might not have been reported to the server
+  private static final String SESSION_MARKER = "ide.session";
   private volatile OSProcessHandler myProcessHandler;
   private final File mySystemDirectory;
   private volatile CompileServerClient myClient = new CompileServerClient();
@@ -101,6 +104,13 @@ public class CompileServerManager implements ApplicationComponent{
   private static final int MAKE_TRIGGER_DELAY = 5 * 1000 /*5 seconds*/;
   private final Map<RequestFuture, Project> myAutomakeFutures = new HashMap<RequestFuture, Project>();
   private final CompileServerClasspathManager myClasspathManager = new CompileServerClasspathManager();
+  // The server restores file system state of projects from journals saved by the previous server session.
+  // File changes made while no server is running are kept here and reported to the next server, so that the journals stay valid.
+  private final Object myPendingEventsLock = new Object();
+  private FSJournal myPendingEvents = new FSJournal();
+  // projects whose saved journals missed some file changes
+  private final Set<String> myProjectsToForget = new HashSet<String>();
+  private boolean myServerStarted;
 
   public CompileServerManager(final ProjectManager projectManager) {
     myProjectManager = projectManager;
@@ -114,6 +124,13 @@ public class CompileServerManager implements ApplicationComponent{
     }
     mySystemDirectory = system;
 
+    final File sessionMarker = new File(getWorkDirectory(), SESSION_MARKER);
+    if (sessionMarker.exists()) {
+      // the previous IDE session was not shut down properly
+      FSJournal.discardAllSaved(getWorkDirectory());
+    }
+    FileUtil.createIfDoesntExist(sessionMarker);
+
     projectManager.addProjectManagerListener(new ProjectWatcher());
     final MessageBusConnection conn = ApplicationManager.getApplication().getMessageBus().connect();
     conn.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
@@ -206,6 +223,36 @@ public class CompileServerManager implements ApplicationComponent{
     }
   }
 
+  /**
+   * Makes the server drop the project's state including the file system journal, which would miss changes
+   * made while the project is closed.
+   */
+  private void sendProjectClosedRequest(final Project project) {
+    if (project.isDefault()) {
+      return;
+    }
+    final String projectPath = project.getLocation();
+    myTaskExecutor.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          final CompileServerClient client;
+          synchronized (myPendingEventsLock) {
+            client = ensureServerRunningAndClientConnected(false);
+            if (client == null) {
+              myProjectsToForget.add(projectPath);
+              return;
+            }
+          }
+          client.sendProjectClosedRequest(Collections.singletonList(projectPath));
+        }
+        catch (Throwable e) {
+          LOG.info(e);
+        }
+      }
+    });
+  }
+
   public void sendCancelBuildRequest(final UUID sessionId) {
     myTaskExecutor.submit(new Runnable() {
       @Override
@@ -228,33 +275,45 @@ public class CompileServerManager implements ApplicationComponent{
       return;
     }
     try {
-      final CompileServerClient client = ensureServerRunningAndClientConnected(false);
-      if (client != null) {
-        myTaskExecutor.submit(new Runnable() {
-          public void run() {
-            final Project[] openProjects = myProjectManager.getOpenProjects();
-            if (openProjects.length > 0) {
-              final Collection<String> changed, deleted;
-              if (isDeleted) {
-                changed = Collections.emptyList();
-                deleted = paths;
-              }
-              else {
-                changed = paths;
-                deleted = Collections.emptyList();
+      final CompileServerClient client;
+      synchronized (myPendingEventsLock) {
+        client = ensureServerRunningAndClientConnected(false);
+        if (client == null) {
+          for (String path : paths) {
+            if (isDeleted) {
+              myPendingEvents.fileDeleted(path);
+            }
+            else {
+              myPendingEvents.fileChanged(path);
+            }
+          }
+          return;
+        }
+      }
+      myTaskExecutor.submit(new Runnable() {
+        public void run() {
+          final Project[] openProjects = myProjectManager.getOpenProjects();
+          if (openProjects.length > 0) {
+            final Collection<String> changed, deleted;
+            if (isDeleted) {
+              changed = Collections.emptyList();
+              deleted = paths;
+            }
+            else {
+              changed = paths;
+              deleted = Collections.emptyList();
+            }
+            for (Project project : openProjects) {
+              try {
+                client.sendFSEvent(project.getLocation(), changed, deleted);
               }
-              for (Project project : openProjects) {
-                try {
-                  client.sendFSEvent(project.getLocation(), changed, deleted);
-                }
-                catch (Exception e) {
-                  LOG.info(e);
-                }
+              catch (Exception e) {
+                LOG.info(e);
               }
             }
           }
-        });
-      }
+        }
+      });
     }
     catch (Throwable th) {
       LOG.error(th); // should not happen
@@ -351,6 +410,13 @@ public class CompileServerManager implements ApplicationComponent{
   @Override
   public void disposeComponent() {
     shutdownServer(myClient, myProcessHandler);
+    synchronized (myPendingEventsLock) {
+      if (!myPendingEvents.isEmpty() || !myProjectsToForget.isEmpty()) {
+        // these changes will never reach a server
+        FSJournal.discardAllSaved(getWorkDirectory());
+      }
+    }
+    FileUtil.delete(new File(getWorkDirectory(), SESSION_MARKER));
   }
 
   @NotNull
@@ -442,8 +508,18 @@ public class CompileServerManager implements ApplicationComponent{
         if (connected) {
           final RequestFuture setupFuture = sendSetupRequest(client);
           setupFuture.waitFor();
-          myProcessHandler = processHandler;
-          myClient = client;
+          final FSJournal pendingEvents;
+          final Set<String> projectsToForget;
+          synchronized (myPendingEventsLock) {
+            myProcessHandler = processHandler;
+            myClient = client;
+            myServerStarted = true;
+            pendingEvents = myPendingEvents;
+            myPendingEvents = new FSJournal();
+            projectsToForget = new HashSet<String>(myProjectsToForget);
+            myProjectsToForget.clear();
+          }
+          sendPendingEvents(client, pendingEvents, projectsToForget);
         }
       }
       finally {
@@ -455,6 +531,28 @@ public class CompileServerManager implements ApplicationComponent{
     return myClient;
   }
 
+  private void sendPendingEvents(CompileServerClient client, FSJournal pendingEvents, Set<String> projectsToForget) throws Exception {
+    final List<String> openProjects = new ArrayList<String>();
+    for (Project project : myProjectManager.getOpenProjects()) {
+      openProjects.add(project.getLocation());
+    }
+    if (pendingEvents.isOverflow()) {
+      projectsToForget.addAll(openProjects);
+    }
+    if (!projectsToForget.isEmpty()) {
+      client.sendProjectClosedRequest(projectsToForget);
+    }
+    final Collection<String> changed = pendingEvents.getChangedPaths();
+    final Collection<String> deleted = pendingEvents.getDeletedPaths();
+    if (!changed.isEmpty() || !deleted.isEmpty()) {
+      for (String projectPath : openProjects) {
+        if (!projectsToForget.contains(projectPath)) {
+          client.sendFSEvent(projectPath, changed, deleted);
+        }
+      }
+    }
+  }
+
   private static RequestFuture sendSetupRequest(final @NotNull CompileServerClient client) throws Exception {
     final Map<String, String> data = new HashMap<String, String>();
 
@@ -598,7 +696,7 @@ public class CompileServerManager implements ApplicationComponent{
     cmdLine.addParameter(org.jetbrains.jps.server.Server.class.getName());
     cmdLine.addParameter(Integer.toString(port));
 
-    final File workDirectory = new File(mySystemDirectory, COMPILE_SERVER_SYSTEM_ROOT);
+    final File workDirectory = getWorkDirectory();
     workDirectory.mkdirs();
     ensureLogConfigExists(workDirectory);
 
@@ -610,6 +708,10 @@ public class CompileServerManager implements ApplicationComponent{
     return cmdLine.createProcess();
   }
 
+  private File getWorkDirectory() {
+    return new File(mySystemDirectory, COMPILE_SERVER_SYSTEM_ROOT);
+  }
+
   private static void ensureLogConfigExists(File workDirectory) {
     final File logConfig = new File(workDirectory, LOGGER_CONFIG);
     if (!logConfig.exists()) {
@@ -771,6 +873,12 @@ public class CompileServerManager implements ApplicationComponent{
     private final Map<Project, MessageBusConnection> myConnections = new HashMap<Project, MessageBusConnection>();
 
     public void projectOpened(final Project project) {
+      synchronized (myPendingEventsLock) {
+        if (myServerStarted) {
+          // changes made before the project was opened were not reported for it
+          sendProjectClosedRequest(project);
+        }
+      }
       final MessageBusConnection conn = project.getMessageBus().connect();
       myConnections.put(project, conn);
       conn.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
@@ -798,7 +906,13 @@ public class CompileServerManager implements ApplicationComponent{
     }
 
     public void projectClosing(Project project) {
-      sendReloadRequest(project);
+      if (ApplicationManager.getApplication().isDisposeInProgress()) {
+        // the journal is saved when the server shuts down along with the IDE
+        sendReloadRequest(project);
+      }
+      else {
+        sendProjectClosedRequest(project);
+      }
     }
 
     public void projectClosed(Project project) {
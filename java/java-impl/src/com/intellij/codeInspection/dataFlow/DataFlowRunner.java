@@ -114,9 +114,9 @@ public class DataFlowRunner {
 
       if (branchCount > 80) return RunnerResult.TOO_COMPLEX; // Do not even try. Definitely will out of time.
 
-      final ArrayList<DfaInstructionState> queue = new ArrayList<DfaInstructionState>();
+      final StateQueue queue = new StateQueue();
       for (final DfaMemoryState initialState : initialStates) {
-        queue.add(new DfaInstructionState(myInstructions[0], initialState));
+        queue.offer(new DfaInstructionState(myInstructions[0], initialState));
       }
 
       long timeLimit = ourTimeLimit;
@@ -127,7 +127,7 @@ public class DataFlowRunner {
         if (count % 50 == 0 && !unitTestMode && System.currentTimeMillis() - before > timeLimit) return RunnerResult.TOO_COMPLEX;
         ProgressManager.checkCanceled();
 
-        DfaInstructionState instructionState = queue.remove(0);
+        DfaInstructionState instructionState = queue.poll();
         if (LOG.isDebugEnabled()) {
           LOG.debug(instructionState.toString());
         }
@@ -147,7 +147,7 @@ public class DataFlowRunner {
             Instruction nextInstruction = state.getInstruction();
             if ((!(nextInstruction instanceof BranchingInstruction) || !nextInstruction.isMemoryStateProcessed(state.getMemoryState())) && instruction.getIndex() < endOffset) {
               state.setDistanceFromStart(distance + 1);
-              queue.add(state);
+              queue.offer(state);
             }
           }
         }
@@ -53,6 +53,11 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
   private TLongHashSet myDistinctClasses;
   private Map<DfaVariableValue,DfaVariableState> myVariableStates;
 
+  // Copies share equivalence classes, which are never modified in place, the distinct classes set and variable states.
+  // The shared set and states are copied on their first modification.
+  private boolean myDistinctClassesShared;
+  private Set<DfaVariableValue> myOwnVariableStates;
+
   public DfaMemoryStateImpl(final DfaValueFactory factory) {
     myFactory = factory;
     myEqClasses = new ArrayList<SortedIntSet>();
@@ -60,6 +65,7 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
     myStack = new Stack<DfaValue>();
     myDistinctClasses = new TLongHashSet();
     myVariableStates = new THashMap<DfaVariableValue, DfaVariableState>();
+    myOwnVariableStates = new THashSet<DfaVariableValue>();
     myOffsetStack = new TIntStack(1);
   }
 
@@ -75,27 +81,16 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
     DfaMemoryStateImpl newState = createNew();
 
     newState.myStack = (Stack<DfaValue>)myStack.clone();
-    newState.myDistinctClasses = new TLongHashSet(myDistinctClasses.toArray());
-    newState.myEqClasses = new ArrayList<SortedIntSet>();
+    newState.myEqClasses = new ArrayList<SortedIntSet>(myEqClasses);
     newState.myStateSize = myStateSize;
-    newState.myVariableStates = new THashMap<DfaVariableValue, DfaVariableState>();
     newState.myOffsetStack = new TIntStack(myOffsetStack);
 
-    for (int i = 0; i < myEqClasses.size(); i++) {
-      SortedIntSet aClass = myEqClasses.get(i);
-      newState.myEqClasses.add(aClass != null ? new SortedIntSet(aClass.toNativeArray()) : null);
-    }
+    newState.myDistinctClasses = myDistinctClasses;
+    newState.myDistinctClassesShared = true;
+    myDistinctClassesShared = true;
 
-    try {
-      for (Object o : myVariableStates.keySet()) {
-        DfaVariableValue dfaVariableValue = (DfaVariableValue)o;
-        DfaVariableState clone = (DfaVariableState)myVariableStates.get(dfaVariableValue).clone();
-        newState.myVariableStates.put(dfaVariableValue, clone);
-      }
-    }
-    catch (CloneNotSupportedException e) {
-      LOG.error(e);
-    }
+    newState.myVariableStates = new THashMap<DfaVariableValue, DfaVariableState>(myVariableStates);
+    myOwnVariableStates.clear();
     return newState;
   }
 
@@ -186,8 +181,17 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
   }
 
   public int hashCode() {
-    return 0;
-    //return myEqClasses.hashCode() + myStack.hashCode() + myVariableStates.hashCode();
+    // equivalence classes are compared regardless of their order, so is the hash
+    int classesHash = 0;
+    for (SortedIntSet aClass : myEqClasses) {
+      if (aClass != null) classesHash += aClass.hashCode();
+    }
+    int result = myStateSize;
+    result = 31 * result + myDistinctClasses.size();
+    result = 31 * result + classesHash;
+    result = 31 * result + myStack.hashCode();
+    result = 31 * result + myVariableStates.hashCode();
+    return result;
   }
 
   private void appendClass(StringBuffer buf, int aClassIndex) {
@@ -282,6 +286,7 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
         try {
           DfaVariableState newState = (DfaVariableState)getVariableState((DfaVariableValue)value).clone();
           myVariableStates.put(var, newState);
+          myOwnVariableStates.add(var);
         }
         catch (CloneNotSupportedException e) {
           LOG.error(e);
@@ -418,15 +423,18 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
       }
     }
 
+    SortedIntSet united = new SortedIntSet(c1.toNativeArray());
     for (int i = 0; i < c2.size(); i++) {
       int c = c2.get(i);
-      c1.add(c);
+      united.add(c);
     }
+    myEqClasses.set(c1Index, united);
 
+    TLongHashSet distinctClasses = getDistinctClassesForUpdate();
     for (int i = 0; i < c2Pairs.size(); i++) {
       long c = c2Pairs.get(i);
-      myDistinctClasses.remove(c);
-      myDistinctClasses.add(createPair(c1Index, low(c) == c2Index ? high(c) : low(c)));
+      distinctClasses.remove(c);
+      distinctClasses.add(createPair(c1Index, low(c) == c2Index ? high(c) : low(c)));
     }
     myEqClasses.set(c2Index, null);
     myStateSize--;
@@ -458,7 +466,15 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
   }
 
   private void makeClassesDistinct(int c1Index, int c2Index) {
-    myDistinctClasses.add(createPair(c1Index, c2Index));
+    getDistinctClassesForUpdate().add(createPair(c1Index, c2Index));
+  }
+
+  private TLongHashSet getDistinctClassesForUpdate() {
+    if (myDistinctClassesShared) {
+      myDistinctClasses = new TLongHashSet(myDistinctClasses.toArray());
+      myDistinctClassesShared = false;
+    }
+    return myDistinctClasses;
   }
 
   public boolean isNull(DfaValue dfaValue) {
@@ -657,10 +673,22 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
       final PsiVariable psiVariable = dfaVar.getPsiVariable();
       state = createVariableState(psiVariable);
       myVariableStates.put(dfaVar, state);
+      myOwnVariableStates.add(dfaVar);
       if (psiVariable != null) {
         state.setInstanceofValue(myFactory.getTypeFactory().create(psiVariable.getType()));
       }
     }
+    else if (!myOwnVariableStates.contains(dfaVar)) {
+      // the state may be shared with a copy and the caller is free to modify it
+      try {
+        state = (DfaVariableState)state.clone();
+        myVariableStates.put(dfaVar, state);
+        myOwnVariableStates.add(dfaVar);
+      }
+      catch (CloneNotSupportedException e) {
+        LOG.error(e);
+      }
+    }
 
     return state;
   }
@@ -704,7 +732,7 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
     int size = myEqClasses.size();
     int interruptCount = 0;
     for (int varClassIndex = 0; varClassIndex < size; varClassIndex++) {
-      final SortedIntSet varClass = myEqClasses.get(varClassIndex);
+      SortedIntSet varClass = myEqClasses.get(varClassIndex);
       if (varClass == null) continue;
 
       for (int i = 0; i < varClass.size(); i++) {
@@ -716,7 +744,9 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
         if (value != null && id == value.getID() ||
             value instanceof DfaBoxedValue && ((DfaBoxedValue)value).getWrappedValue().getID() == id ||
             value instanceof DfaUnboxedValue && ((DfaUnboxedValue)value).getVariable().getID() == id) {
+          varClass = new SortedIntSet(varClass.toNativeArray());
           varClass.remove(i);
+          myEqClasses.set(varClassIndex, varClass);
           break;
         }
       }
@@ -727,12 +757,13 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
         long[] pairs = myDistinctClasses.toArray();
         for (long pair : pairs) {
           if (low(pair) == varClassIndex || high(pair) == varClassIndex) {
-            myDistinctClasses.remove(pair);
+            getDistinctClassesForUpdate().remove(pair);
           }
         }
       }
     }
 
     myVariableStates.remove(variable);
+    myOwnVariableStates.remove(variable);
   }
 }
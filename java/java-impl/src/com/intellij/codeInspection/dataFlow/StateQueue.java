@@ -0,0 +1,84 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection.dataFlow;
+
+import gnu.trove.THashSet;
+import gnu.trove.TIntObjectHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Work list of {@link DataFlowRunner}. States are processed in the order of their instructions, so all the states coming
+ * to a join point along different branches are queued before any of them is processed, and equal ones are merged into one.
+ */
+class StateQueue {
+  private final PriorityQueue<QueuedState> myQueue = new PriorityQueue<QueuedState>();
+  private final TIntObjectHashMap<Set<DfaMemoryState>> myPendingStates = new TIntObjectHashMap<Set<DfaMemoryState>>();
+  private long myCount;
+
+  /**
+   * @return false if an equal state is already waiting for the same instruction
+   */
+  public boolean offer(@NotNull DfaInstructionState state) {
+    final int index = state.getInstruction().getIndex();
+    Set<DfaMemoryState> pending = myPendingStates.get(index);
+    if (pending == null) {
+      pending = new THashSet<DfaMemoryState>();
+      myPendingStates.put(index, pending);
+    }
+    if (!pending.add(state.getMemoryState())) return false;
+
+    myQueue.offer(new QueuedState(state, myCount++));
+    return true;
+  }
+
+  public boolean isEmpty() {
+    return myQueue.isEmpty();
+  }
+
+  @NotNull
+  public DfaInstructionState poll() {
+    final DfaInstructionState state = myQueue.poll().myState;
+    final int index = state.getInstruction().getIndex();
+    final Set<DfaMemoryState> pending = myPendingStates.get(index);
+    // the state is going to be modified by its instruction
+    pending.remove(state.getMemoryState());
+    if (pending.isEmpty()) {
+      myPendingStates.remove(index);
+    }
+    return state;
+  }
+
+  private static class QueuedState implements Comparable<QueuedState> {
+    private final DfaInstructionState myState;
+    private final long myOrder;
+
+    private QueuedState(@NotNull DfaInstructionState state, long order) {
+      myState = state;
+      myOrder = order;
+    }
+
+    @Override
+    public int compareTo(QueuedState o) {
+      final int index = myState.getInstruction().getIndex();
+      final int otherIndex = o.myState.getInstruction().getIndex();
+      if (index != otherIndex) return index < otherIndex ? -1 : 1;
+      return myOrder < o.myOrder ? -1 : myOrder > o.myOrder ? 1 : 0;
+    }
+  }
+}
@@ -29,16 +29,15 @@ import com.intellij.codeInspection.dataFlow.DfaInstructionState;
 import com.intellij.codeInspection.dataFlow.DfaMemoryState;
 import com.intellij.codeInspection.dataFlow.InstructionVisitor;
 import com.intellij.openapi.progress.ProgressManager;
+import gnu.trove.THashSet;
 import org.jetbrains.annotations.NonNls;
 
-import java.util.ArrayList;
-
 public abstract class Instruction {
   private int myIndex;
-  private final ArrayList<DfaMemoryState> myProcessedStates;
+  private final THashSet<DfaMemoryState> myProcessedStates;
 
   protected Instruction() {
-    myProcessedStates = new ArrayList<DfaMemoryState>();
+    myProcessedStates = new THashSet<DfaMemoryState>();
   }
 
   protected final DfaInstructionState[] nextInstruction(DataFlowRunner runner, DfaMemoryState stateBefore) {
@@ -48,14 +47,8 @@ public abstract class Instruction {
   public abstract DfaInstructionState[] accept(DataFlowRunner runner, DfaMemoryState stateBefore, InstructionVisitor visitor);
 
   public boolean isMemoryStateProcessed(DfaMemoryState dfaMemState) {
-    for (DfaMemoryState state : myProcessedStates) {
-      ProgressManager.checkCanceled();
-      if (dfaMemState.equals(state)) {
-        return true;
-      }
-    }
-
-    return false;
+    ProgressManager.checkCanceled();
+    return myProcessedStates.contains(dfaMemState);
   }
 
   public boolean setMemoryStateProcessed(DfaMemoryState dfaMemState) {
@@ -22,6 +22,7 @@ import com.intellij.codeInspection.ex.EntryPointsManagerImpl;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.psi.*;
 import com.intellij.psi.javadoc.PsiDocComment;
@@ -33,6 +34,8 @@ import gnu.trove.THashMap;
 import org.jdom.Element;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
+
 /**
  * @author anna
  * Date: 20-Dec-2007
@@ -67,7 +70,7 @@ public class RefJavaManagerImpl extends RefJavaManager {
 
   }
 
-  public RefPackage getPackage(String packageName) {
+  public synchronized RefPackage getPackage(String packageName) {
     if (myPackages == null) {
       myPackages = new THashMap<String, RefPackage>();
     }
@@ -112,14 +115,16 @@ public class RefJavaManagerImpl extends RefJavaManager {
     return myServlet;
   }
 
-  public RefParameter getParameterReference(PsiParameter param, int index) {
+  public RefParameter getParameterReference(final PsiParameter param, final int index) {
     LOG.assertTrue(myRefManager.isValidPointForReference(), "References may become invalid after process is finished");
     RefElement ref = myRefManager.getFromRefTable(param);
 
     if (ref == null) {
-      ref = new RefParameterImpl(param, index, myRefManager);
-      ((RefParameterImpl)ref).initialize();
-      myRefManager.putToRefTable(param, ref);
+      ref = myRefManager.createReference(param, new Computable<RefElementImpl>() {
+        public RefElementImpl compute() {
+          return new RefParameterImpl(param, index, myRefManager);
+        }
+      });
     }
 
     return (RefParameter)ref;
@@ -133,7 +138,7 @@ public class RefJavaManagerImpl extends RefJavaManager {
         refPackage.accept(visitor);
       }
     }
-    final THashMap<PsiAnchor, RefElement> refTable = myRefManager.getRefTable();
+    final Map<PsiAnchor, RefElement> refTable = myRefManager.getRefTable();
     for (RefElement refElement : refTable.values()) {
       if (refElement instanceof RefClass) {
         RefClass refClass = (RefClass)refElement;
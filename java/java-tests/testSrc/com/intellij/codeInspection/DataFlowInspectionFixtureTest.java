@@ -2,8 +2,10 @@ package com.intellij.codeInspection;
 
 import com.intellij.JavaTestUtil;
 import com.intellij.codeInspection.dataFlow.DataFlowInspection;
+import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.builders.JavaModuleFixtureBuilder;
 import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import com.intellij.util.ThrowableRunnable;
 
 /**
  * @author peter
@@ -34,4 +36,22 @@ public class DataFlowInspectionFixtureTest extends JavaCodeInsightFixtureTestCas
 
   public void testFieldInAnonymous() throws Throwable { doTest(); }
 
+  public void testLongMethodPerformance() throws Throwable {
+    StringBuilder text = new StringBuilder("class Foo {\n  void foo(Object o, String s, int[] a) {\n");
+    // every condition is two branching instructions, stay below the limit of the runner
+    for (int i = 0; i < 38; i++) {
+      text.append("    if (s.hashCode() == ").append(i).append(") { a[").append(i).append("] = o.hashCode(); }\n");
+      text.append("    a[").append(i + 1).append("] = s.length();\n");
+    }
+    text.append("    System.out.println(o.hashCode());\n  }\n}\n");
+    myFixture.configureByText("Foo.java", text.toString());
+    myFixture.enableInspections(new DataFlowInspection());
+
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 2000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        myFixture.doHighlighting();
+      }
+    }).cpuBound().assertTiming();
+  }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.codeInspection.ex.GlobalInspectionContextImpl;
+import com.intellij.codeInspection.ex.InspectionManagerEx;
+import com.intellij.codeInspection.deadCode.UnusedDeclarationInspection;
+import com.intellij.codeInspection.ex.LocalInspectionToolWrapper;
+import com.intellij.codeInspection.reference.RefClass;
+import com.intellij.codeInspection.reference.RefElement;
+import com.intellij.codeInspection.reference.RefManagerImpl;
+import com.intellij.codeInspection.sillyAssignment.SillyAssignmentInspection;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.InspectionTestUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import com.intellij.util.ThrowableRunnable;
+
+import java.io.File;
+import java.io.IOException;
+
+public class GlobalInspectionContextPerformanceTest extends JavaCodeInsightFixtureTestCase {
+  private static final int FILES_COUNT = 10000;
+
+  public void testInspectGeneratedProject() throws Exception {
+    generateProject();
+
+    final LocalInspectionToolWrapper tool = new LocalInspectionToolWrapper(new SillyAssignmentInspection());
+    final AnalysisScope scope = new AnalysisScope(getProject());
+    final InspectionManagerEx inspectionManager = (InspectionManagerEx)InspectionManager.getInstance(getProject());
+
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 60000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        GlobalInspectionContextImpl globalContext =
+          CodeInsightTestFixtureImpl.createGlobalContextForTool(scope, getProject(), inspectionManager, tool);
+        try {
+          InspectionTestUtil.runTool(tool, scope, globalContext, inspectionManager);
+          assertEquals(FILES_COUNT, tool.getProblemElements().size());
+        }
+        finally {
+          globalContext.cleanup(inspectionManager);
+        }
+      }
+    }).usesAllCPUCores().assertTiming();
+  }
+
+  // a global tool builds the reference graph of the whole scope before it runs; the declarations are walked on one thread
+  public void testBuildReferenceGraphOfGeneratedProject() throws Exception {
+    generateProject();
+
+    final UnusedDeclarationInspection tool = new UnusedDeclarationInspection();
+    final AnalysisScope scope = new AnalysisScope(getProject());
+    final InspectionManagerEx inspectionManager = (InspectionManagerEx)InspectionManager.getInstance(getProject());
+
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 120000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Exception {
+        GlobalInspectionContextImpl globalContext =
+          CodeInsightTestFixtureImpl.createGlobalContextForTool(scope, getProject(), inspectionManager, tool);
+        try {
+          InspectionTestUtil.runTool(tool, scope, globalContext, inspectionManager);
+          int classes = 0;
+          for (RefElement refElement : ((RefManagerImpl)globalContext.getRefManager()).getRefTable().values()) {
+            if (refElement instanceof RefClass) classes++;
+          }
+          assertEquals(FILES_COUNT, classes);
+        }
+        finally {
+          globalContext.cleanup(inspectionManager);
+        }
+      }
+    }).assertTiming();
+  }
+
+  private void generateProject() throws IOException {
+    for (int i = 0; i < FILES_COUNT; i++) {
+      String packageName = "p" + i / 100;
+      // every class uses the next one, so the graph has references between files and packages
+      int next = (i + 1) % FILES_COUNT;
+      FileUtil.writeToFile(new File(myFixture.getTempDirPath(), packageName + "/C" + i + ".java"),
+                           "package " + packageName + ";\n" +
+                           "public class C" + i + " {\n" +
+                           "  private int myField;\n" +
+                           "  public void foo(int i) {\n" +
+                           "    int j = i * 2;\n" +
+                           "    j = j;\n" +
+                           "    myField = j;\n" +
+                           "    new p" + next / 100 + ".C" + next + "().foo(j);\n" +
+                           "  }\n" +
+                           "}\n");
+    }
+    VirtualFile root = LocalFileSystem.getInstance().refreshAndFindFileByPath(myFixture.getTempDirPath());
+    assertNotNull(root);
+    root.refresh(false, true);
+    CodeInsightTestFixtureImpl.ensureIndexesUpToDate(getProject());
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.codeInspection.ex.GlobalInspectionContextImpl;
+import com.intellij.codeInspection.ex.InspectionManagerEx;
+import com.intellij.codeInspection.ex.LocalInspectionToolWrapper;
+import com.intellij.codeInspection.reference.*;
+import com.intellij.codeInspection.sillyAssignment.SillyAssignmentInspection;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.InspectionTestUtil;
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import gnu.trove.THashSet;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class GlobalInspectionContextTest extends JavaCodeInsightFixtureTestCase {
+  private static final int FILES_COUNT = 500;
+
+  public void testFilesOfOnePackageInspectedConcurrently() throws Exception {
+    for (int i = 0; i < FILES_COUNT; i++) {
+      // every class refers to the next one, so the same references are requested by different files
+      FileUtil.writeToFile(new File(myFixture.getTempDirPath(), "p/C" + i + ".java"),
+                           "package p;\n" +
+                           "public class C" + i + " {\n" +
+                           "  public void foo(C" + (i + 1) % FILES_COUNT + " c) {\n" +
+                           "    c = c;\n" +
+                           "  }\n" +
+                           "}\n");
+    }
+    VirtualFile root = LocalFileSystem.getInstance().refreshAndFindFileByPath(myFixture.getTempDirPath());
+    assertNotNull(root);
+    root.refresh(false, true);
+    CodeInsightTestFixtureImpl.ensureIndexesUpToDate(getProject());
+
+    LocalInspectionToolWrapper tool = new LocalInspectionToolWrapper(new SillyAssignmentInspection());
+    AnalysisScope scope = new AnalysisScope(getProject());
+    InspectionManagerEx inspectionManager = (InspectionManagerEx)InspectionManager.getInstance(getProject());
+    GlobalInspectionContextImpl globalContext =
+      CodeInsightTestFixtureImpl.createGlobalContextForTool(scope, getProject(), inspectionManager, tool);
+    try {
+      InspectionTestUtil.runTool(tool, scope, globalContext, inspectionManager);
+      assertEquals(FILES_COUNT, tool.getProblemElements().size());
+
+      RefManager refManager = globalContext.getRefManager();
+      RefPackage refPackage = refManager.getExtension(RefJavaManager.MANAGER).getPackage("p");
+      Set<RefEntity> packageChildren = new THashSet<RefEntity>();
+      for (RefEntity child : refPackage.getChildren()) {
+        if (child instanceof RefClass) {
+          assertTrue("Added twice: " + child, packageChildren.add(child));
+        }
+      }
+      assertEquals(FILES_COUNT, packageChildren.size());
+
+      GlobalSearchScope projectScope = GlobalSearchScope.projectScope(getProject());
+      for (int i = 0; i < FILES_COUNT; i++) {
+        PsiClass psiClass = JavaPsiFacade.getInstance(getProject()).findClass("p.C" + i, projectScope);
+        assertNotNull(psiClass);
+        RefClass refClass = (RefClass)refManager.getReference(psiClass);
+        assertTrue(packageChildren.contains(refClass));
+        assertSame(refPackage, refClass.getOwner());
+
+        List<RefEntity> classChildren = refClass.getChildren();
+        assertNotNull(classChildren);
+        assertEquals(classChildren.size(), new THashSet<RefEntity>(classChildren).size());
+        assertEquals(1, Collections.frequency(classChildren, refManager.getReference(psiClass.getMethods()[0])));
+      }
+    }
+    finally {
+      globalContext.cleanup(inspectionManager);
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.codeInsight.daemon.HighlightDisplayKey;
+import com.intellij.codeInspection.ex.GlobalInspectionContextImpl;
+import com.intellij.codeInspection.ex.InspectionManagerEx;
+import com.intellij.codeInspection.ex.InspectionResultsCache;
+import com.intellij.codeInspection.ex.LocalInspectionToolWrapper;
+import com.intellij.codeInspection.sillyAssignment.SillyAssignmentInspection;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.impl.ProgressManagerImpl;
+import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.OrderRootType;
+import com.intellij.openapi.roots.libraries.Library;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class InspectionResultsCacheTest extends JavaCodeInsightFixtureTestCase {
+  private File myCacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDir = FileUtil.createTempDirectory("inspectionResults", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myCacheDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testReuseResultsOfUnchangedFiles() throws Exception {
+    addClasses();
+
+    final String output = run(myCacheDir, 0, 2);
+    assertEquals(output, run(myCacheDir, 2, 0));
+    assertEquals(output, run(null, 0, 0));
+  }
+
+  public void testCodeBlockChangeKeepsResultsOfDependents() throws Exception {
+    addClasses();
+    run(myCacheDir, 0, 2);
+
+    setText("p/B.java", createB("int", "int k = i + 1;\n    k = k;"));
+    final String output = run(myCacheDir, 1, 1);
+    assertEquals(run(null, 0, 0), output);
+  }
+
+  public void testDeclarationChangeInvalidatesDependents() throws Exception {
+    addClasses();
+    run(myCacheDir, 0, 2);
+
+    setText("p/B.java", createB("long", "long k = i;\n    k = k;"));
+    final String output = run(myCacheDir, 0, 2);
+    assertEquals(run(null, 0, 0), output);
+  }
+
+  public void testClassesDirectoryChangeInvalidatesResults() throws Exception {
+    addClasses();
+    final File classesDir = FileUtil.createTempDirectory("classes", null);
+    try {
+      final File file = new File(classesDir, "q/data.txt");
+      FileUtil.writeToFile(file, "a");
+      final VirtualFile dir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(classesDir);
+      assertNotNull(dir);
+      addClassesDirectory(dir);
+      run(myCacheDir, 0, 2);
+      run(myCacheDir, 2, 0);
+
+      // the timestamp of the directory itself stays the same
+      FileUtil.writeToFile(file, "ab");
+      dir.refresh(false, true);
+      run(myCacheDir, 0, 2);
+    }
+    finally {
+      FileUtil.delete(classesDir);
+    }
+  }
+
+  private void addClassesDirectory(final VirtualFile dir) {
+    new WriteCommandAction.Simple(getProject()) {
+      @Override
+      protected void run() throws Throwable {
+        final ModifiableRootModel model = ModuleRootManager.getInstance(myModule).getModifiableModel();
+        final Library.ModifiableModel library = model.getModuleLibraryTable().createLibrary("classes").getModifiableModel();
+        library.addRoot(dir, OrderRootType.CLASSES);
+        library.commit();
+        model.commit();
+      }
+    }.execute().throwException();
+  }
+
+  private void addClasses() throws IOException {
+    myFixture.addFileToProject("p/A.java", "package p;\n" +
+                                           "public class A {\n" +
+                                           "  public void foo(int i) {\n" +
+                                           "    int j = i;\n" +
+                                           "    j = j;\n" +
+                                           "    new B().bar(j);\n" +
+                                           "  }\n" +
+                                           "}\n");
+    myFixture.addFileToProject("p/B.java", createB("int", "int k = i;\n    k = k;"));
+  }
+
+  private static String createB(String parameterType, String body) {
+    return "package p;\n" +
+           "public class B {\n" +
+           "  public void bar(" + parameterType + " i) {\n" +
+           "    " + body + "\n" +
+           "  }\n" +
+           "}\n";
+  }
+
+  private void setText(final String path, final String text) throws Exception {
+    final VirtualFile file = myFixture.getTempDirFixture().getFile(path);
+    assertNotNull(path, file);
+    new WriteCommandAction.Simple(getProject()) {
+      @Override
+      protected void run() throws Throwable {
+        VfsUtil.saveText(file, text);
+      }
+    }.execute().throwException();
+    PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+    CodeInsightTestFixtureImpl.ensureIndexesUpToDate(getProject());
+  }
+
+  /**
+   * Runs the inspection offline, like the command line inspector does, and checks how many files reused their results.
+   *
+   * @return lines of the offline output of the inspection, sorted
+   */
+  private String run(@Nullable File cacheDir, int hits, int misses) throws IOException {
+    final LocalInspectionToolWrapper tool = new LocalInspectionToolWrapper(new SillyAssignmentInspection());
+    if (HighlightDisplayKey.find(tool.getShortName()) == null) {
+      HighlightDisplayKey.register(tool.getShortName());
+    }
+    final AnalysisScope scope = new AnalysisScope(getProject());
+    final InspectionManagerEx inspectionManager = (InspectionManagerEx)InspectionManager.getInstance(getProject());
+    final GlobalInspectionContextImpl globalContext =
+      CodeInsightTestFixtureImpl.createGlobalContextForTool(scope, getProject(), inspectionManager, tool);
+    final File outputDir = FileUtil.createTempDirectory("inspectionOutput", null);
+
+    final InspectionApplication application = new InspectionApplication();
+    application.myResultsCachePath = cacheDir != null ? cacheDir.getPath() : null;
+    final InspectionResultsCache[] cache = new InspectionResultsCache[1];
+    try {
+      ((ProgressManagerImpl)ProgressManager.getInstance()).executeProcessUnderProgress(new Runnable() {
+        @Override
+        public void run() {
+          cache[0] = application.launchInspectionsOffline(globalContext, scope, outputDir.getPath(), inspectionManager,
+                                                          new ArrayList<File>());
+        }
+      }, new EmptyProgressIndicator());
+
+      if (cacheDir != null) {
+        assertNotNull(cache[0]);
+        assertEquals(hits, cache[0].getHits());
+        assertEquals(misses, cache[0].getMisses());
+      }
+      else {
+        assertNull(cache[0]);
+      }
+
+      final File output = new File(outputDir, tool.getShortName() + ".xml");
+      assertTrue(output.exists());
+      // files are inspected concurrently, so the problems may come in any order
+      final List<String> lines = Arrays.asList(FileUtil.loadFile(output).split("\n"));
+      Collections.sort(lines);
+      return lines.toString();
+    }
+    finally {
+      globalContext.cleanup(inspectionManager);
+      FileUtil.delete(outputDir);
+    }
+  }
+}
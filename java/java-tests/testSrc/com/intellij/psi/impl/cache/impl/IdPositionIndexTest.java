@@ -0,0 +1,160 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.cache.impl;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.cache.impl.id.IdIndexEntry;
+import com.intellij.psi.impl.cache.impl.id.IdPositionIndex;
+import com.intellij.psi.impl.search.LowLevelSearchUtil;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.psi.search.TextOccurenceProcessor;
+import com.intellij.psi.search.UsageSearchContext;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContentImpl;
+import com.intellij.util.text.StringSearcher;
+
+import java.util.*;
+
+/**
+ * Checks that the occurrences found at the offsets provided by {@link IdPositionIndex} are the same as the ones
+ * found by scanning the whole text. The index is disabled in tests unless a test enables it for the files it creates.
+ */
+public class IdPositionIndexTest extends LightCodeInsightFixtureTestCase {
+  public void testOccurrencesAtIndexedOffsetsMatchTextScan() {
+    PsiFile file = myFixture.addFileToProject("A.java",
+                                              "class A {\n" +
+                                              "  // foo, foofoo, _foo, foo1, a$foo, foo$b\n" +
+                                              "  String s1 = \"\\nfoo\\tfoo\\\\foo\";\n" +
+                                              "  /* words sharing the hash: AaAa BBBB AaBB BBAa */\n" +
+                                              "  int AaAa = 0, BBBB = 1;\n" +
+                                              "  void foo(int Aa, int BB) { foo(AaAa, BBBB); }\n" +
+                                              "}\n");
+
+    assertEquals(StringUtil.stringHashCode("AaAa"), StringUtil.stringHashCode("BBBB"));
+    assertEquals(StringUtil.stringHashCode("Aa"), StringUtil.stringHashCode("BB"));
+
+    for (String word : new String[]{"foo", "n", "t", "b", "AaAa", "BBBB", "AaBB", "Aa", "BB", "A", "class"}) {
+      List<String> expected = findWithSearchHelper(file, word);
+      assertEquals(word, expected, findAtIndexedOffsets(file, word));
+    }
+    assertFalse(findWithSearchHelper(file, "foo").isEmpty());
+    assertFalse(findWithSearchHelper(file, "AaAa").isEmpty());
+  }
+
+  public void testSearchWithEnabledIndex() {
+    IdPositionIndex.setEnabled(true);
+    try {
+      PsiFile file = myFixture.addFileToProject("B.java", "class B {\n" +
+                                                          "  int foo, foofoo;\n" +
+                                                          "  void bar() { foo = 1; /* foo */ }\n" +
+                                                          "}\n");
+      // the offsets really come from the index
+      List<int[]> indexed = FileBasedIndex.getInstance().getValues(IdPositionIndex.NAME, new IdIndexEntry("foo", true),
+                                                                   GlobalSearchScope.fileScope(file));
+      assertEquals(1, indexed.size());
+      assertEquals(3, indexed.get(0).length);
+
+      for (String word : new String[]{"foo", "foofoo", "bar", "B"}) {
+        assertEquals(word, scanText(file, word), findWithSearchHelper(file, word));
+      }
+      assertEquals(3, countOffsets(scanText(file, "foo")));
+    }
+    finally {
+      IdPositionIndex.setEnabled(false);
+    }
+  }
+
+  public void testUnsavedDocumentIsScanned() {
+    IdPositionIndex.setEnabled(true);
+    try {
+      final PsiFile file = myFixture.addFileToProject("C.java", "class C { int foo; }\n");
+      assertEquals(1, countOffsets(findWithSearchHelper(file, "foo")));
+
+      final Document document = PsiDocumentManager.getInstance(getProject()).getDocument(file);
+      assertNotNull(document);
+      new WriteCommandAction.Simple(getProject()) {
+        @Override
+        protected void run() throws Throwable {
+          document.insertString(0, "// foo\n");
+        }
+      }.execute().throwException();
+
+      // neither the uncommitted document nor the committed one are saved, the offsets of the saved content don't fit them
+      assertEquals(scanText(file, "foo"), findWithSearchHelper(file, "foo"));
+      PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+      assertTrue(FileDocumentManager.getInstance().isDocumentUnsaved(document));
+      assertEquals(scanText(file, "foo"), findWithSearchHelper(file, "foo"));
+      assertEquals(2, countOffsets(findWithSearchHelper(file, "foo")));
+    }
+    finally {
+      IdPositionIndex.setEnabled(false);
+    }
+  }
+
+  private static List<String> scanText(PsiFile file, String word) {
+    List<String> result = new ArrayList<String>();
+    LowLevelSearchUtil.processElementsContainingWordInElement(collector(result), file, new StringSearcher(word, true, true), true, null);
+    Collections.sort(result);
+    return result;
+  }
+
+  private static int countOffsets(List<String> occurrences) {
+    Set<String> offsets = new HashSet<String>();
+    for (String occurrence : occurrences) {
+      offsets.add(occurrence.substring(occurrence.lastIndexOf('@') + 1));
+    }
+    return offsets.size();
+  }
+
+  private List<String> findWithSearchHelper(PsiFile file, String word) {
+    List<String> result = new ArrayList<String>();
+    PsiSearchHelper.SERVICE.getInstance(getProject())
+      .processElementsWithWord(collector(result), GlobalSearchScope.fileScope(file), word, UsageSearchContext.ANY, true);
+    Collections.sort(result);
+    return result;
+  }
+
+  private static List<String> findAtIndexedOffsets(PsiFile file, String word) {
+    Map<IdIndexEntry, int[]> map = new IdPositionIndex().getIndexer()
+      .map(new FileContentImpl(file.getVirtualFile(), file.getText(), file.getVirtualFile().getCharset()));
+    int[] offsets = map.get(new IdIndexEntry(word, true));
+
+    List<String> result = new ArrayList<String>();
+    LowLevelSearchUtil.processElementsContainingWordAtOffsets(collector(result), file, new StringSearcher(word, true, true),
+                                                              offsets == null ? ArrayUtil.EMPTY_INT_ARRAY : offsets, true, null);
+    Collections.sort(result);
+    return result;
+  }
+
+  private static TextOccurenceProcessor collector(final List<String> result) {
+    return new TextOccurenceProcessor() {
+      @Override
+      public boolean execute(PsiElement element, int offsetInElement) {
+        result.add(element + "@" + (element.getTextRange().getStartOffset() + offsetInElement));
+        return true;
+      }
+    };
+  }
+}
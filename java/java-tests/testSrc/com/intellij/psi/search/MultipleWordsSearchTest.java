@@ -0,0 +1,123 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.search;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.impl.search.LowLevelSearchUtil;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.intellij.util.Processor;
+import com.intellij.util.text.MultiStringSearcher;
+import com.intellij.util.text.StringSearcher;
+
+import java.util.*;
+
+/**
+ * Checks that the words scanned for in one pass over a file are found at the same places as when each of them is searched for alone.
+ */
+public class MultipleWordsSearchTest extends LightCodeInsightFixtureTestCase {
+  public void testOverlappingWordsInElement() {
+    PsiFile file = myFixture.addFileToProject("a.txt", "a---b -- foo foofoo foo1 \\nfoo FOO $foo\n--");
+
+    List<StringSearcher> searchers = Arrays.asList(new StringSearcher("--", true, true),
+                                                   new StringSearcher("-", true, true),
+                                                   new StringSearcher("foo", true, true),
+                                                   new StringSearcher("Foo", false, true),
+                                                   new StringSearcher("oof", true, true));
+    List<String> expected = new ArrayList<String>();
+    for (StringSearcher searcher : searchers) {
+      LowLevelSearchUtil.processElementsContainingWordInElement(collector(searcher.getPattern(), expected), file, searcher, true, null);
+    }
+
+    List<String> found = new ArrayList<String>();
+    Map<StringSearcher, TextOccurenceProcessor> processors = new HashMap<StringSearcher, TextOccurenceProcessor>();
+    for (StringSearcher searcher : searchers) {
+      processors.put(searcher, collector(searcher.getPattern(), found));
+    }
+    assertTrue(LowLevelSearchUtil.processElementsContainingWordsInElement(processors, file, new MultiStringSearcher(searchers), true, null));
+
+    Collections.sort(expected);
+    Collections.sort(found);
+    assertEquals(expected, found);
+    // "--" occurs twice in "---"
+    assertTrue(expected.contains("--:a.txt@1"));
+    assertTrue(expected.contains("--:a.txt@2"));
+  }
+
+  public void testProcessRequestsForSeveralWords() {
+    myFixture.addFileToProject("a/A.java", "package a;\n" +
+                                           "class A {\n" +
+                                           "  // foo and bar\n" +
+                                           "  String s = \"baz foo\";\n" +
+                                           "  int foo, bar, foo1;\n" +
+                                           "}\n");
+    myFixture.addFileToProject("b/B.java", "package b;\n" +
+                                           "class B {\n" +
+                                           "  void baz(int bar) { baz(bar); }\n" +
+                                           "}\n");
+    GlobalSearchScope scope = GlobalSearchScope.projectScope(getProject());
+    PsiSearchHelper helper = PsiSearchHelper.SERVICE.getInstance(getProject());
+    String[] words = {"foo", "bar", "baz", "foo1"};
+
+    List<String> expected = new ArrayList<String>();
+    for (String word : words) {
+      helper.processElementsWithWord(collector(word, expected), scope, word, UsageSearchContext.ANY, true);
+    }
+
+    final List<String> found = new ArrayList<String>();
+    SearchRequestCollector collector = new SearchRequestCollector(new SearchSession());
+    for (final String word : words) {
+      collector.searchWord(word, scope, UsageSearchContext.ANY, true, new RequestResultProcessor(word) {
+        @Override
+        public boolean processTextOccurrence(PsiElement element, int offsetInElement, Processor<PsiReference> consumer) {
+          return collector(word, found).execute(element, offsetInElement);
+        }
+      });
+    }
+    assertTrue(helper.processRequests(collector, new Processor<PsiReference>() {
+      @Override
+      public boolean process(PsiReference reference) {
+        return true;
+      }
+    }));
+
+    Collections.sort(expected);
+    Collections.sort(found);
+    assertEquals(expected, found);
+    assertEquals(words.length, countWords(found));
+  }
+
+  private static int countWords(List<String> occurrences) {
+    Set<String> words = new HashSet<String>();
+    for (String occurrence : occurrences) {
+      words.add(occurrence.substring(0, occurrence.indexOf(':')));
+    }
+    return words.size();
+  }
+
+  private static TextOccurenceProcessor collector(final String word, final List<String> result) {
+    return new TextOccurenceProcessor() {
+      @Override
+      public boolean execute(PsiElement element, int offsetInElement) {
+        synchronized (result) {
+          result.add(word + ":" + element.getContainingFile().getName() + "@" + (element.getTextRange().getStartOffset() + offsetInElement));
+        }
+        return true;
+      }
+    };
+  }
+}
@@ -2860,6 +2860,13 @@ public final class JpsRemoteProto {
           return projectId_.get(index);
         }
         
+        // optional bool project_closed = 2;
+        public static final int PROJECT_CLOSED_FIELD_NUMBER = 2;
+        private boolean hasProjectClosed;
+        private boolean projectClosed_ = false;
+        public boolean hasProjectClosed() { return hasProjectClosed; }
+        public boolean getProjectClosed() { return projectClosed_; }
+        
         private void initFields() {
         }
         public final boolean isInitialized() {
@@ -2872,6 +2879,9 @@ public final class JpsRemoteProto {
           for (java.lang.String element : getProjectIdList()) {
             output.writeString(1, element);
           }
+          if (hasProjectClosed()) {
+            output.writeBool(2, getProjectClosed());
+          }
         }
         
         private int memoizedSerializedSize = -1;
@@ -2889,6 +2899,10 @@ public final class JpsRemoteProto {
             size += dataSize;
             size += 1 * getProjectIdList().size();
           }
+          if (hasProjectClosed()) {
+            size += com.google.protobuf.CodedOutputStream
+              .computeBoolSize(2, getProjectClosed());
+          }
           memoizedSerializedSize = size;
           return size;
         }
@@ -3043,6 +3057,9 @@ public final class JpsRemoteProto {
               }
               result.projectId_.addAll(other.projectId_);
             }
+            if (other.hasProjectClosed()) {
+              setProjectClosed(other.getProjectClosed());
+            }
             return this;
           }
           
@@ -3065,6 +3082,10 @@ public final class JpsRemoteProto {
                   addProjectId(input.readString());
                   break;
                 }
+                case 16: {
+                  setProjectClosed(input.readBool());
+                  break;
+                }
               }
             }
           }
@@ -3110,6 +3131,24 @@ public final class JpsRemoteProto {
             return this;
           }
           
+          // optional bool project_closed = 2;
+          public boolean hasProjectClosed() {
+            return result.hasProjectClosed();
+          }
+          public boolean getProjectClosed() {
+            return result.getProjectClosed();
+          }
+          public Builder setProjectClosed(boolean value) {
+            result.hasProjectClosed = true;
+            result.projectClosed_ = value;
+            return this;
+          }
+          public Builder clearProjectClosed() {
+            result.hasProjectClosed = false;
+            result.projectClosed_ = false;
+            return this;
+          }
+          
           // @@protoc_insertion_point(builder_scope:org.jetbrains.jpsservice.Message.Request.ReloadProjectCommand)
         }
         
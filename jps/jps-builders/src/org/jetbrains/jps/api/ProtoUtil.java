@@ -80,8 +80,19 @@ public class ProtoUtil {
   }
 
   public static JpsRemoteProto.Message.Request createReloadProjectRequest(Collection<String> projects) {
+    return createReloadProjectRequest(projects, false);
+  }
+
+  public static JpsRemoteProto.Message.Request createProjectClosedRequest(Collection<String> projects) {
+    return createReloadProjectRequest(projects, true);
+  }
+
+  private static JpsRemoteProto.Message.Request createReloadProjectRequest(Collection<String> projects, boolean closed) {
     final JpsRemoteProto.Message.Request.ReloadProjectCommand.Builder builder = JpsRemoteProto.Message.Request.ReloadProjectCommand.newBuilder();
     builder.addAllProjectId(projects);
+    if (closed) {
+      builder.setProjectClosed(true);
+    }
     return JpsRemoteProto.Message.Request.newBuilder().setRequestType(JpsRemoteProto.Message.Request.Type.RELOAD_PROJECT_COMMAND).setReloadProjectCommand(builder.build()).build();
   }
 
@@ -60,6 +60,12 @@ public class CompileServerClient extends SimpleProtobufClient<JpsServerResponseH
     return sendRequest(ProtoUtil.createReloadProjectRequest(projectPaths), null);
   }
 
+  @NotNull
+  public RequestFuture sendProjectClosedRequest(Collection<String> projectPaths) throws Exception {
+    checkConnected();
+    return sendRequest(ProtoUtil.createProjectClosedRequest(projectPaths), null);
+  }
+
   @NotNull
   public RequestFuture sendCancelBuildRequest(UUID sessionId) throws Exception {
     checkConnected();
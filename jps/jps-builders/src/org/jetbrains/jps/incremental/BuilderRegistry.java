@@ -69,6 +69,10 @@ public class BuilderRegistry {
     return myProjectLevelBuilders;
   }
 
+  public ExecutorService getTasksExecutor() {
+    return myTasksExecutor;
+  }
+
   public void shutdown() {
     myTasksExecutor.shutdownNow();
   }
@@ -0,0 +1,191 @@
+package org.jetbrains.jps.incremental;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.IOUtil;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.Module;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * File changes reported for a project while there is no loaded project descriptor for it, together with
+ * the pending state of the dropped {@link FSState}. When the project is loaded again the journal is replayed
+ * into the new FSState, so modules whose roots did not change need no initial file system scan.
+ * An overflowed journal is useless and the modules are scanned as usual.
+ * <p/>
+ * A journal saved to the project's data storage lets the next server session skip the scan as well. It can be trusted
+ * only if all file changes made since it was saved get reported to that session; whoever may have lost them must
+ * discard the saved journals.
+ */
+public class FSJournal {
+  private static final int MAX_SIZE = 50000;
+  private static final int VERSION = 0;
+  private static final String FILE_NAME = "fs_journal.dat";
+
+  // module name -> roots and excludes the initial scan was performed for
+  private final Map<String, Set<String>> myScannedProduction = new HashMap<String, Set<String>>();
+  private final Map<String, Set<String>> myScannedTests = new HashMap<String, Set<String>>();
+  private final Set<String> myChanged = new LinkedHashSet<String>();
+  private final Set<String> myDeleted = new LinkedHashSet<String>();
+  private boolean myOverflow;
+
+  synchronized void addScannedModule(Module module, boolean forTests, Set<String> layout) {
+    (forTests ? myScannedTests : myScannedProduction).put(module.getName(), layout);
+  }
+
+  /**
+   * @return the layout of module roots the initial scan was performed for, or null if the module was not scanned
+   */
+  synchronized Set<String> getScannedLayout(Module module, boolean forTests) {
+    return (forTests ? myScannedTests : myScannedProduction).get(module.getName());
+  }
+
+  public synchronized void fileChanged(String path) {
+    if (myOverflow) {
+      return;
+    }
+    myDeleted.remove(path);
+    myChanged.add(path);
+    checkSize();
+  }
+
+  public synchronized void fileDeleted(String path) {
+    if (myOverflow) {
+      return;
+    }
+    myChanged.remove(path);
+    myDeleted.add(path);
+    checkSize();
+  }
+
+  private void checkSize() {
+    if (myChanged.size() + myDeleted.size() > MAX_SIZE) {
+      myOverflow = true;
+      myChanged.clear();
+      myDeleted.clear();
+    }
+  }
+
+  public synchronized boolean isOverflow() {
+    return myOverflow;
+  }
+
+  public synchronized boolean isEmpty() {
+    return !myOverflow && myChanged.isEmpty() && myDeleted.isEmpty();
+  }
+
+  public synchronized Collection<String> getChangedPaths() {
+    return new ArrayList<String>(myChanged);
+  }
+
+  public synchronized Collection<String> getDeletedPaths() {
+    return new ArrayList<String>(myDeleted);
+  }
+
+  public synchronized void save(File dataStorageRoot, String projectPath) throws IOException {
+    final File file = new File(dataStorageRoot, FILE_NAME);
+    final File temp = new File(dataStorageRoot, FILE_NAME + ".tmp");
+    FileUtil.createParentDirs(temp);
+    final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+    try {
+      output.writeInt(VERSION);
+      IOUtil.writeString(projectPath, output);
+      writeScannedModules(output, myScannedProduction);
+      writeScannedModules(output, myScannedTests);
+      writePaths(output, myChanged);
+      writePaths(output, myDeleted);
+    }
+    finally {
+      output.close();
+    }
+    // a journal the server was killed while writing must not be found
+    FileUtil.delete(file);
+    if (!temp.renameTo(file)) {
+      FileUtil.delete(temp);
+      throw new IOException("Failed to save file system journal to " + file.getPath());
+    }
+  }
+
+  /**
+   * Reads the journal saved for the project and deletes it, so that a journal is never restored twice.
+   * @return null if there is no saved journal or it was saved for another project with the same name
+   */
+  @Nullable
+  public static FSJournal load(File dataStorageRoot, String projectPath) throws IOException {
+    final File file = new File(dataStorageRoot, FILE_NAME);
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (input.readInt() != VERSION || !projectPath.equals(IOUtil.readString(input))) {
+          return null;
+        }
+        final FSJournal journal = new FSJournal();
+        readScannedModules(input, journal.myScannedProduction);
+        readScannedModules(input, journal.myScannedTests);
+        readPaths(input, journal.myChanged);
+        readPaths(input, journal.myDeleted);
+        return journal;
+      }
+      finally {
+        input.close();
+      }
+    }
+    finally {
+      FileUtil.delete(file);
+    }
+  }
+
+  public static void discardSaved(File dataStorageRoot) {
+    FileUtil.delete(new File(dataStorageRoot, FILE_NAME));
+  }
+
+  /**
+   * Discards the journals saved for all projects whose data is stored under the system root
+   */
+  public static void discardAllSaved(File systemRoot) {
+    final File[] dataStorageRoots = systemRoot.listFiles();
+    if (dataStorageRoots != null) {
+      for (File dataStorageRoot : dataStorageRoots) {
+        if (dataStorageRoot.isDirectory()) {
+          discardSaved(dataStorageRoot);
+        }
+      }
+    }
+  }
+
+  private static void writeScannedModules(DataOutput output, Map<String, Set<String>> scanned) throws IOException {
+    output.writeInt(scanned.size());
+    for (Map.Entry<String, Set<String>> entry : scanned.entrySet()) {
+      IOUtil.writeString(entry.getKey(), output);
+      writePaths(output, entry.getValue());
+    }
+  }
+
+  private static void readScannedModules(DataInput input, Map<String, Set<String>> scanned) throws IOException {
+    int size = input.readInt();
+    while (size-- > 0) {
+      final String moduleName = IOUtil.readString(input);
+      final Set<String> layout = new HashSet<String>();
+      readPaths(input, layout);
+      scanned.put(moduleName, layout);
+    }
+  }
+
+  private static void writePaths(DataOutput output, Set<String> paths) throws IOException {
+    output.writeInt(paths.size());
+    for (String path : paths) {
+      IOUtil.writeString(path, output);
+    }
+  }
+
+  private static void readPaths(DataInput input, Set<String> paths) throws IOException {
+    int size = input.readInt();
+    while (size-- > 0) {
+      paths.add(IOUtil.readString(input));
+    }
+  }
+}
@@ -166,6 +166,58 @@ public class FSState {
     }
   }
 
+  /**
+   * Saves the state which is not reflected in timestamps: modules already scanned and files pending recompilation or deletion.
+   */
+  public void saveTo(FSJournal journal, ModuleRootsIndex rootsIndex) {
+    saveScannedModules(journal, rootsIndex, myInitialProductionScanPerformed, false);
+    saveScannedModules(journal, rootsIndex, myInitialTestsScanPerformed, true);
+    synchronized (myDeltas) {
+      for (FilesDelta delta : myDeltas.values()) {
+        delta.saveTo(journal);
+      }
+    }
+  }
+
+  /**
+   * Marks initial scan performed for modules scanned before the journal was saved if their roots are still the same.
+   * Files from the journal should be marked dirty or deleted afterwards.
+   */
+  public void restoreFrom(FSJournal journal, ModuleRootsIndex rootsIndex, Collection<Module> modules) {
+    if (myAlwaysScanFS || journal.isOverflow()) {
+      return;
+    }
+    for (Module module : modules) {
+      for (boolean forTests : new boolean[] {false, true}) {
+        final Set<String> layout = journal.getScannedLayout(module, forTests);
+        if (layout != null && layout.equals(getRootsLayout(rootsIndex, module, forTests))) {
+          markInitialScanPerformed(module, forTests);
+        }
+      }
+    }
+  }
+
+  private static void saveScannedModules(FSJournal journal, ModuleRootsIndex rootsIndex, Set<Module> scanned, boolean forTests) {
+    synchronized (scanned) {
+      for (Module module : scanned) {
+        journal.addScannedModule(module, forTests, getRootsLayout(rootsIndex, module, forTests));
+      }
+    }
+  }
+
+  private static Set<String> getRootsLayout(ModuleRootsIndex rootsIndex, Module module, boolean forTests) {
+    final Set<String> layout = new HashSet<String>();
+    for (RootDescriptor rd : rootsIndex.getModuleRoots(module)) {
+      if (rd.isTestRoot == forTests) {
+        layout.add(FileUtil.toSystemIndependentName(rd.root.getPath()));
+      }
+    }
+    for (String exclude : module.getExcludes()) {
+      layout.add("-" + FileUtil.toSystemIndependentName(exclude));
+    }
+    return layout;
+  }
+
   @NotNull
   private FilesDelta getDelta(Module module) {
     synchronized (myDeltas) {
@@ -231,6 +283,25 @@ public class FSState {
       }
     }
 
+    public void saveTo(FSJournal journal) {
+      for (Map<File, Set<File>> toRecompile : Arrays.asList(mySourcesToRecompile, myTestsToRecompile)) {
+        synchronized (toRecompile) {
+          for (Set<File> files : toRecompile.values()) {
+            for (File file : files) {
+              journal.fileChanged(file.getPath());
+            }
+          }
+        }
+      }
+      for (Set<String> deleted : Arrays.asList(myDeletedProduction, myDeletedTests)) {
+        synchronized (deleted) {
+          for (String path : deleted) {
+            journal.fileDeleted(path);
+          }
+        }
+      }
+    }
+
     @Nullable
     public Set<File> clearRecompile(File root, boolean isTestRoot) {
       return isTestRoot? myTestsToRecompile.remove(root) : mySourcesToRecompile.remove(root);
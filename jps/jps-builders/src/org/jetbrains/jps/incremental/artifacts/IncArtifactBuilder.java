@@ -7,6 +7,7 @@ import com.intellij.util.SmartList;
 import com.intellij.util.containers.ContainerUtil;
 import gnu.trove.THashSet;
 import org.jetbrains.jps.artifacts.Artifact;
+import org.jetbrains.jps.incremental.BuilderRegistry;
 import org.jetbrains.jps.incremental.CompileContext;
 import org.jetbrains.jps.incremental.ProjectBuildException;
 import org.jetbrains.jps.incremental.ProjectLevelBuilder;
@@ -108,7 +109,7 @@ public class IncArtifactBuilder extends ProjectLevelBuilder {
         updatedMappings.put(filePath, ArrayUtil.toStringArray(outputs));
       }
 
-      JarsBuilder builder = new JarsBuilder(changedJars, null, context);
+      JarsBuilder builder = new JarsBuilder(changedJars, null, context, BuilderRegistry.getInstance().getTasksExecutor());
       final boolean processed = builder.buildJars(new THashSet<String>());
       if (!processed) {
         return;
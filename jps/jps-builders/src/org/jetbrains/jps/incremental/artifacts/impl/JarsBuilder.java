@@ -21,6 +21,7 @@ import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.SmartList;
 import com.intellij.util.graph.CachingSemiGraph;
 import com.intellij.util.graph.DFSTBuilder;
 import com.intellij.util.graph.GraphGenerator;
@@ -30,7 +31,8 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.PathUtil;
-import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.BuilderRegistry;
+import org.jetbrains.jps.incremental.MessageHandler;
 import org.jetbrains.jps.incremental.artifacts.IncArtifactBuilder;
 import org.jetbrains.jps.incremental.artifacts.instructions.*;
 import org.jetbrains.jps.incremental.messages.BuildMessage;
@@ -39,6 +41,7 @@ import org.jetbrains.jps.incremental.messages.ProgressMessage;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.jar.JarOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -50,34 +53,44 @@ public class JarsBuilder {
   private static final Logger LOG = Logger.getInstance("#com.intellij.compiler.impl.packagingCompiler.JarsBuilder");
   private final Set<JarInfo> myJarsToBuild;
   private final FileFilter myFileFilter;
-  private final CompileContext myContext;
+  private final MessageHandler myMessageHandler;
+  private final ExecutorService myExecutor;
   private Map<JarInfo, File> myBuiltJars;
 
-  public JarsBuilder(Set<JarInfo> jarsToBuild, FileFilter fileFilter, CompileContext context) {
+  /**
+   * @param executor executor to build independent jars concurrently, e.g. the one shared by the builders of {@link BuilderRegistry}
+   */
+  public JarsBuilder(Set<JarInfo> jarsToBuild, FileFilter fileFilter, MessageHandler messageHandler, ExecutorService executor) {
     DependentJarsEvaluator evaluator = new DependentJarsEvaluator();
     for (JarInfo jarInfo : jarsToBuild) {
       evaluator.addJarWithDependencies(jarInfo);
     }
     myJarsToBuild = evaluator.getJars();
     myFileFilter = fileFilter;
-    myContext = context;
+    myMessageHandler = messageHandler;
+    myExecutor = executor;
   }
 
   public boolean buildJars(Set<String> writtenPaths) throws IOException {
-    myContext.processMessage(new ProgressMessage("Building archives..."));
+    processMessage(new ProgressMessage("Building archives..."));
 
     final JarInfo[] sortedJars = sortJars();
     if (sortedJars == null) {
       return false;
     }
 
-    myBuiltJars = new HashMap<JarInfo, File>();
+    myBuiltJars = new ConcurrentHashMap<JarInfo, File>();
     try {
-      for (JarInfo jar : sortedJars) {
-        buildJar(jar);
+      if (sortedJars.length > 1) {
+        buildJarsInParallel(sortedJars);
+      }
+      else {
+        for (JarInfo jar : sortedJars) {
+          buildJar(jar);
+        }
       }
 
-      myContext.processMessage(new ProgressMessage("Copying archives..."));
+      processMessage(new ProgressMessage("Copying archives..."));
       copyJars(writtenPaths);
     }
     finally {
@@ -88,6 +101,103 @@ public class JarsBuilder {
     return true;
   }
 
+  /**
+   * A jar is submitted when all the jars packed into it are built, so tasks never wait for each other and don't hold threads
+   * of the shared executor.
+   */
+  private void buildJarsInParallel(JarInfo[] sortedJars) throws IOException {
+    final Map<JarInfo, List<JarInfo>> containingJars = new HashMap<JarInfo, List<JarInfo>>();
+    final Map<JarInfo, Integer> nestedJarsToBuild = new HashMap<JarInfo, Integer>();
+    final CompletionService<JarInfo> completionService = new ExecutorCompletionService<JarInfo>(myExecutor);
+    int running = 0;
+    try {
+      for (JarInfo jar : sortedJars) {
+        int nestedJars = 0;
+        for (Pair<String, JarInfo> nestedJar : jar.getPackedJars()) {
+          List<JarInfo> jars = containingJars.get(nestedJar.getSecond());
+          if (jars == null) {
+            jars = new SmartList<JarInfo>();
+            containingJars.put(nestedJar.getSecond(), jars);
+          }
+          jars.add(jar);
+          nestedJars++;
+        }
+        if (nestedJars > 0) {
+          nestedJarsToBuild.put(jar, nestedJars);
+        }
+        else {
+          submitJar(completionService, jar);
+          running++;
+        }
+      }
+
+      while (running > 0) {
+        final JarInfo built = waitFor(completionService.take());
+        running--;
+        final List<JarInfo> jars = containingJars.get(built);
+        if (jars == null) continue;
+        for (JarInfo jar : jars) {
+          final int nestedJars = nestedJarsToBuild.get(jar) - 1;
+          if (nestedJars > 0) {
+            nestedJarsToBuild.put(jar, nestedJars);
+          }
+          else {
+            nestedJarsToBuild.remove(jar);
+            submitJar(completionService, jar);
+            running++;
+          }
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      throw new IOException("Building archives was interrupted");
+    }
+    finally {
+      // temporary jars are deleted after return, so the tasks must not write them any more
+      for (; running > 0; running--) {
+        try {
+          completionService.take();
+        }
+        catch (InterruptedException e) {
+          LOG.info(e);
+          break;
+        }
+      }
+    }
+  }
+
+  private void submitJar(CompletionService<JarInfo> completionService, final JarInfo jar) {
+    completionService.submit(new Callable<JarInfo>() {
+      @Override
+      public JarInfo call() throws Exception {
+        buildJar(jar);
+        return jar;
+      }
+    });
+  }
+
+  private static JarInfo waitFor(Future<JarInfo> task) throws IOException, InterruptedException {
+    try {
+      return task.get();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException)cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      if (cause instanceof Error) throw (Error)cause;
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Jars are built on several threads, so messages are passed to the handler one at a time.
+   */
+  private void processMessage(BuildMessage message) {
+    synchronized (myMessageHandler) {
+      myMessageHandler.processMessage(message);
+    }
+  }
+
   private void deleteTemporaryJars() {
     for (File file : myBuiltJars.values()) {
       FileUtil.delete(file);
@@ -128,7 +238,7 @@ public class JarsBuilder {
       final Pair<JarInfo, JarInfo> dependency = builder.getCircularDependency();
       String message = "Cannot build: circular dependency found between '" + dependency.getFirst().getPresentableDestination() +
                        "' and '" + dependency.getSecond().getPresentableDestination() + "'";
-      myContext.processMessage(new CompilerMessage(IncArtifactBuilder.BUILDER_NAME, BuildMessage.Kind.ERROR, message));
+      processMessage(new CompilerMessage(IncArtifactBuilder.BUILDER_NAME, BuildMessage.Kind.ERROR, message));
       return null;
     }
 
@@ -145,11 +255,11 @@ public class JarsBuilder {
   private void buildJar(final JarInfo jar) throws IOException {
     if (jar.getPackedJars().isEmpty() && jar.getPackedRoots().isEmpty()) {
       final String message = "Archive '" + jar.getPresentableDestination() + "' has no files so it won't be created";
-      myContext.processMessage(new CompilerMessage(IncArtifactBuilder.BUILDER_NAME, BuildMessage.Kind.WARNING, message));
+      processMessage(new CompilerMessage(IncArtifactBuilder.BUILDER_NAME, BuildMessage.Kind.WARNING, message));
       return;
     }
 
-    myContext.processMessage(new ProgressMessage("Building " + jar.getPresentableDestination() + "..."));
+    processMessage(new ProgressMessage("Building " + jar.getPresentableDestination() + "..."));
     File jarFile = FileUtil.createTempFile("artifactCompiler", "tmp");
     myBuiltJars.put(jar, jarFile);
 
@@ -99,10 +99,8 @@ public class JavaBuilder extends ModuleLevelBuilder {
               }
             }
             final ClassReader reader = new ClassReader(content.getBuffer(), content.getOffset(), content.getLength());
-            //noinspection SynchronizationOnLocalVariableOrMethodParameter
-            synchronized (dataManager.getMappings()) {
-              callback.associate(outputPath, Callbacks.getDefaultLookup(sourcePath), reader);
-            }
+            // the callback parses the class in this thread and synchronizes on the mappings only to store the result
+            callback.associate(outputPath, Callbacks.getDefaultLookup(sourcePath), reader);
           }
         }
       }
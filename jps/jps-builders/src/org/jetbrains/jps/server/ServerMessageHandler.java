@@ -11,7 +11,6 @@ import org.jetbrains.jps.incremental.MessageHandler;
 import org.jetbrains.jps.incremental.messages.*;
 
 import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.PrintStream;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
@@ -57,7 +56,12 @@ class ServerMessageHandler extends SimpleChannelHandler {
           break;
         case RELOAD_PROJECT_COMMAND:
           final JpsRemoteProto.Message.Request.ReloadProjectCommand reloadProjectCommand = request.getReloadProjectCommand();
-          facade.clearProjectCache(reloadProjectCommand.getProjectIdList());
+          if (reloadProjectCommand.getProjectClosed()) {
+            facade.forgetProjects(reloadProjectCommand.getProjectIdList());
+          }
+          else {
+            facade.clearProjectCache(reloadProjectCommand.getProjectIdList());
+          }
           reply = ProtoUtil.toMessage(sessionId, ProtoUtil.createCommandCompletedEvent(null));
           break;
         case CANCEL_BUILD_COMMAND:
@@ -103,6 +107,7 @@ class ServerMessageHandler extends SimpleChannelHandler {
               }
 
               facade.clearCahedState();
+              facade.saveJournals();
 
               // wait until really stopped
               for (RunnableFuture future : futures) {
@@ -121,21 +126,7 @@ class ServerMessageHandler extends SimpleChannelHandler {
           break;
         case FS_EVENT:
           final JpsRemoteProto.Message.Request.FSEvent fsEvent = request.getFsEvent();
-          final String projectId = fsEvent.getProjectId();
-          final ProjectDescriptor pd = facade.getProjectDescriptor(projectId);
-          if (pd != null) {
-            try {
-              for (String path : fsEvent.getChangedPathsList()) {
-                facade.notifyFileChanged(pd, new File(path));
-              }
-              for (String path : fsEvent.getDeletedPathsList()) {
-                facade.notifyFileDeleted(pd, new File(path));
-              }
-            }
-            finally {
-              pd.release();
-            }
-          }
+          facade.notifyFilesChanged(fsEvent.getProjectId(), fsEvent.getChangedPathsList(), fsEvent.getDeletedPathsList());
           reply = ProtoUtil.toMessage(sessionId, ProtoUtil.createCommandCompletedEvent(null));
           break;
         default:
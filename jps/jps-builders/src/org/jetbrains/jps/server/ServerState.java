@@ -26,6 +26,7 @@ import org.jetbrains.jps.incremental.storage.ProjectTimestamps;
 import org.jetbrains.jps.incremental.storage.TimestampStorage;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.*;
 
@@ -39,8 +40,15 @@ class ServerState {
   public static final String IDEA_PROJECT_DIRNAME = ".idea";
 
   private final Map<String, ProjectDescriptor> myProjects = new HashMap<String, ProjectDescriptor>();
+  // file changes for projects which were loaded before and whose descriptors were dropped since then
+  private final Map<String, FSJournal> myJournals = new HashMap<String, FSJournal>();
+  // projects whose journal saved by the previous server session was already looked up; a saved journal is consumed by the first lookup
+  private final Set<String> mySavedJournalsChecked = new HashSet<String>();
+  private boolean myJournalsSaved;
 
   private final Object myConfigurationLock = new Object();
+  // guards myProjects, myJournals and the saved journals; FS events take only this lock, so they don't wait while a project is being loaded
+  private final Object myProjectsLock = new Object();
   private final Map<String, String> myPathVariables = new HashMap<String, String>();
   private final List<GlobalLibrary> myGlobalLibraries = new ArrayList<GlobalLibrary>();
   private volatile String myGlobalEncoding = null;
@@ -57,12 +65,15 @@ class ServerState {
 
   public final void clearCahedState() {
     synchronized (myConfigurationLock) {
-      for (Map.Entry<String, ProjectDescriptor> entry : myProjects.entrySet()) {
-        final String projectPath = entry.getKey();
-        final ProjectDescriptor descriptor = entry.getValue();
-        descriptor.release();
+      synchronized (myProjectsLock) {
+        for (Map.Entry<String, ProjectDescriptor> entry : myProjects.entrySet()) {
+          final String projectPath = entry.getKey();
+          final ProjectDescriptor descriptor = entry.getValue();
+          startJournal(projectPath, descriptor);
+          descriptor.release();
+        }
+        myProjects.clear(); // projects should be reloaded against the latest data
       }
-      myProjects.clear(); // projects should be reloaded against the latest data
       myGlobalLibraries.clear();
       myPathVariables.clear();
     }
@@ -76,6 +87,113 @@ class ServerState {
     myKeepTempCachesInMemory = keepTempCachesInMemory;
   }
 
+  public void notifyFilesChanged(String projectPath, Collection<String> changedPaths, Collection<String> deletedPaths) {
+    // under the lock, so that no event gets lost while the descriptor is being replaced with a journal or vice versa
+    synchronized (myProjectsLock) {
+      final ProjectDescriptor pd = myProjects.get(projectPath);
+      if (pd != null) {
+        for (String path : changedPaths) {
+          notifyFileChanged(pd, new File(path));
+        }
+        for (String path : deletedPaths) {
+          notifyFileDeleted(pd, new File(path));
+        }
+        return;
+      }
+      if (myJournalsSaved) {
+        // the server is shutting down and this change would be missing from the saved journal
+        FSJournal.discardSaved(Paths.getDataStorageRoot(getProjectName(projectPath)));
+        return;
+      }
+      FSJournal journal = myJournals.get(projectPath);
+      if (journal == null) {
+        journal = loadSavedJournal(projectPath);
+        if (journal != null) {
+          myJournals.put(projectPath, journal);
+        }
+      }
+      if (journal != null) {
+        for (String path : changedPaths) {
+          journal.fileChanged(path);
+        }
+        for (String path : deletedPaths) {
+          journal.fileDeleted(path);
+        }
+      }
+    }
+  }
+
+  private void startJournal(String projectPath, ProjectDescriptor pd) {
+    final FSJournal journal = new FSJournal();
+    pd.fsState.saveTo(journal, pd.rootsIndex);
+    myJournals.put(projectPath, journal);
+  }
+
+  /**
+   * Makes the loaded project available for builds and FS events. Changes journaled since the project was dropped
+   * are applied to it, unless the journal is to be discarded, e.g. because the project is going to be rebuilt.
+   */
+  void registerProject(String projectPath, ProjectDescriptor pd, boolean replayJournal) {
+    synchronized (myProjectsLock) {
+      FSJournal journal = myJournals.remove(projectPath);
+      if (journal == null) {
+        journal = loadSavedJournal(projectPath);
+      }
+      if (replayJournal && journal != null && !journal.isOverflow()) {
+        replayJournal(projectPath, journal, pd);
+      }
+      myProjects.put(projectPath, pd);
+    }
+  }
+
+  @Nullable
+  private FSJournal loadSavedJournal(String projectPath) {
+    if (!mySavedJournalsChecked.add(projectPath)) {
+      return null;
+    }
+    try {
+      return FSJournal.load(Paths.getDataStorageRoot(getProjectName(projectPath)), projectPath);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return null;
+    }
+  }
+
+  /**
+   * Saves journals of all projects, so that the next server session can restore their file system state.
+   * Journals saved by earlier sessions are discarded: changes of projects which were not tracked in this session are unknown.
+   */
+  public void saveJournals() {
+    synchronized (myProjectsLock) {
+      FSJournal.discardAllSaved(Paths.getSystemRoot());
+      for (Map.Entry<String, FSJournal> entry : myJournals.entrySet()) {
+        final String projectPath = entry.getKey();
+        final FSJournal journal = entry.getValue();
+        if (!journal.isOverflow()) {
+          try {
+            journal.save(Paths.getDataStorageRoot(getProjectName(projectPath)), projectPath);
+          }
+          catch (IOException e) {
+            LOG.info(e);
+          }
+        }
+      }
+      myJournalsSaved = true;
+    }
+  }
+
+  private void replayJournal(String projectPath, FSJournal journal, ProjectDescriptor pd) {
+    pd.fsState.restoreFrom(journal, pd.rootsIndex, pd.project.getModules().values());
+    for (String path : journal.getChangedPaths()) {
+      notifyFileChanged(pd, new File(path));
+    }
+    for (String path : journal.getDeletedPaths()) {
+      notifyFileDeleted(pd, new File(path));
+    }
+    LOG.info("Restored file system state of " + projectPath + " from journal");
+  }
+
   public void notifyFileChanged(ProjectDescriptor pd, File file) {
     try {
       final RootDescriptor rd = pd.rootsIndex.getModuleAndRoot(file);
@@ -103,7 +221,7 @@ class ServerState {
   @Nullable
   public ProjectDescriptor getProjectDescriptor(String projectPath) {
     final ProjectDescriptor pd;
-    synchronized (myConfigurationLock) {
+    synchronized (myProjectsLock) {
       pd = myProjects.get(projectPath);
       if (pd != null) {
         pd.incUsageCounter();
@@ -114,10 +232,33 @@ class ServerState {
 
   public void clearProjectCache(Collection<String> projectPaths) {
     synchronized (myConfigurationLock) {
-      for (String projectPath : projectPaths) {
-        final ProjectDescriptor descriptor = myProjects.remove(projectPath);
-        if (descriptor != null) {
-          descriptor.release();
+      synchronized (myProjectsLock) {
+        for (String projectPath : projectPaths) {
+          final ProjectDescriptor descriptor = myProjects.remove(projectPath);
+          if (descriptor != null) {
+            startJournal(projectPath, descriptor);
+            descriptor.release();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops everything known about projects closed in the IDE. File changes are not reported for closed projects,
+   * so their journals would be incomplete.
+   */
+  public void forgetProjects(Collection<String> projectPaths) {
+    synchronized (myConfigurationLock) {
+      synchronized (myProjectsLock) {
+        for (String projectPath : projectPaths) {
+          final ProjectDescriptor descriptor = myProjects.remove(projectPath);
+          if (descriptor != null) {
+            descriptor.release();
+          }
+          myJournals.remove(projectPath);
+          mySavedJournalsChecked.add(projectPath);
+          FSJournal.discardSaved(Paths.getDataStorageRoot(getProjectName(projectPath)));
         }
       }
     }
@@ -130,7 +271,9 @@ class ServerState {
 
     ProjectDescriptor pd;
     synchronized (myConfigurationLock) {
-      pd = myProjects.get(projectPath);
+      synchronized (myProjectsLock) {
+        pd = myProjects.get(projectPath);
+      }
       if (pd == null) {
         final Project project = loadProject(projectPath);
         final FSState fsState = new FSState(false);
@@ -158,7 +301,7 @@ class ServerState {
         }
 
         pd = new ProjectDescriptor(projectName, project, fsState, timestamps, dataManager);
-        myProjects.put(projectPath, pd);
+        registerProject(projectPath, pd, buildType != BuildType.PROJECT_REBUILD);
       }
       pd.incUsageCounter();
     }
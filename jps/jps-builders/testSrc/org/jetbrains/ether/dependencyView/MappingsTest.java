@@ -0,0 +1,76 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.ether.dependencyView;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class MappingsTest extends TestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("mappings", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testReopen() throws Exception {
+    new Mappings(myDir, false).close();
+    new Mappings(myDir, false).close();
+  }
+
+  public void testReopenAfterClean() throws Exception {
+    final Mappings mappings = new Mappings(myDir, false);
+    mappings.clean();
+    mappings.close();
+
+    // the tables left by clean() must be readable in the next session without another rebuild
+    new Mappings(myDir, false).close();
+  }
+
+  public void testTablesOfOtherVersionRejected() throws Exception {
+    new Mappings(myDir, false).close();
+    final DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(myDir, "version")));
+    try {
+      out.writeInt(-2);
+    }
+    finally {
+      out.close();
+    }
+
+    try {
+      new Mappings(myDir, false).close();
+      fail("tables of another version should not be opened");
+    }
+    catch (IOException ignored) {
+    }
+  }
+}
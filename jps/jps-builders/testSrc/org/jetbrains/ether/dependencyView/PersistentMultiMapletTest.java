@@ -0,0 +1,108 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.ether.dependencyView;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class PersistentMultiMapletTest extends TestCase {
+  private static final TransientMultiMaplet.CollectionConstructor<String> SET_CONSTRUCTOR =
+    new TransientMultiMaplet.CollectionConstructor<String>() {
+      public Collection<String> create() {
+        return new HashSet<String>();
+      }
+    };
+
+  private File myDir;
+  private PersistentMultiMaplet<String, String> myMaplet;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("maplet", null);
+    myMaplet = open();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myMaplet.close();
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testAppendAndRemove() throws Exception {
+    myMaplet.put("k", Arrays.asList("a", "b"));
+    myMaplet.put("k", "c");
+    myMaplet.removeFrom("k", "b");
+    assertEquals(set("a", "c"), new HashSet<String>(myMaplet.get("k")));
+
+    reopen();
+    assertEquals(set("a", "c"), new HashSet<String>(myMaplet.get("k")));
+  }
+
+  public void testRemovingAllValuesRemovesKey() throws Exception {
+    myMaplet.put("k", Arrays.asList("a", "b"));
+    myMaplet.removeAll("k", Arrays.asList("a", "b"));
+    assertNull(myMaplet.get("k"));
+    assertFalse(myMaplet.keyCollection().contains("k"));
+  }
+
+  public void testContainsKeyDoesNotModifyStorage() throws Exception {
+    myMaplet.put("k", "a");
+    myMaplet.removeFrom("k", "a");
+    assertFalse(myMaplet.containsKey("k"));
+    assertTrue(myMaplet.keyCollection().contains("k"));
+
+    assertNull(myMaplet.get("k"));
+    assertFalse(myMaplet.keyCollection().contains("k"));
+  }
+
+  public void testCompactedCollectionKeepsValues() throws Exception {
+    myMaplet.put("k", Arrays.asList("a", "b", "c", "d"));
+    myMaplet.removeAll("k", Arrays.asList("a", "b", "c"));
+    // more removal records than values, the collection is stored compacted
+    assertEquals(set("d"), new HashSet<String>(myMaplet.get("k")));
+
+    myMaplet.put("k", "a");
+    myMaplet.removeFrom("k", "d");
+    reopen();
+    assertTrue(myMaplet.containsKey("k"));
+    assertEquals(set("a"), new HashSet<String>(myMaplet.get("k")));
+  }
+
+  private PersistentMultiMaplet<String, String> open() throws IOException {
+    return new PersistentMultiMaplet<String, String>(new File(myDir, "maplet"), new EnumeratorStringDescriptor(),
+                                                     new EnumeratorStringDescriptor(), SET_CONSTRUCTOR);
+  }
+
+  private void reopen() throws IOException {
+    myMaplet.close();
+    myMaplet = open();
+  }
+
+  private static Set<String> set(String... values) {
+    return new HashSet<String>(Arrays.asList(values));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.codehaus.groovy.runtime.MethodClosure;
+import org.jetbrains.jps.Module;
+import org.jetbrains.jps.Project;
+
+import java.io.File;
+import java.util.Collections;
+
+public class FSStateTest extends TestCase {
+  private File myRoot;
+  private Project myProject;
+  private Module myModule;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("fsState", null).getCanonicalFile();
+    myProject = new Project();
+    myModule = myProject.createModule("m", new MethodClosure(new Object(), "hashCode"));
+    myModule.getSourceRoots().add(FileUtil.toCanonicalPath(new File(myRoot, "src").getPath()));
+    myModule.getTestRoots().add(FileUtil.toCanonicalPath(new File(myRoot, "test").getPath()));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myRoot);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testRestoreScannedModulesAndPendingFiles() throws Exception {
+    final ModuleRootsIndex rootsIndex = new ModuleRootsIndex(myProject);
+    final FSState state = new FSState(false);
+    state.markInitialScanPerformed(myModule, false);
+    final File changed = new File(myRoot, "src/A.java");
+    final File deleted = new File(myRoot, "src/B.java");
+    state.markDirty(changed, rootsIndex.getModuleAndRoot(changed), null);
+    state.registerDeleted(myModule, deleted, false, null);
+
+    final FSJournal journal = new FSJournal();
+    state.saveTo(journal, rootsIndex);
+    assertEquals(Collections.singletonList(changed.getPath()), journal.getChangedPaths());
+    assertEquals(Collections.singletonList(FileUtil.toCanonicalPath(deleted.getPath())), journal.getDeletedPaths());
+
+    final FSState restored = new FSState(false);
+    restored.restoreFrom(journal, new ModuleRootsIndex(myProject), myProject.getModules().values());
+    assertFalse(restored.markInitialScanPerformed(myModule, false));
+    assertTrue(restored.markInitialScanPerformed(myModule, true));
+  }
+
+  public void testScanAgainIfRootsChanged() throws Exception {
+    final FSState state = new FSState(false);
+    state.markInitialScanPerformed(myModule, false);
+    final FSJournal journal = new FSJournal();
+    state.saveTo(journal, new ModuleRootsIndex(myProject));
+
+    myModule.getSourceRoots().add(FileUtil.toCanonicalPath(new File(myRoot, "gen").getPath()));
+    final FSState restored = new FSState(false);
+    restored.restoreFrom(journal, new ModuleRootsIndex(myProject), myProject.getModules().values());
+    assertTrue(restored.markInitialScanPerformed(myModule, false));
+  }
+
+  public void testScanAgainIfJournalOverflowed() throws Exception {
+    final FSState state = new FSState(false);
+    state.markInitialScanPerformed(myModule, false);
+    final FSJournal journal = new FSJournal();
+    state.saveTo(journal, new ModuleRootsIndex(myProject));
+    for (int i = 0; !journal.isOverflow(); i++) {
+      journal.fileChanged(new File(myRoot, "src/C" + i + ".java").getPath());
+    }
+    assertTrue(journal.getChangedPaths().isEmpty());
+
+    final FSState restored = new FSState(false);
+    restored.restoreFrom(journal, new ModuleRootsIndex(myProject), myProject.getModules().values());
+    assertTrue(restored.markInitialScanPerformed(myModule, false));
+  }
+
+  public void testDeletionCancelsChange() throws Exception {
+    final FSJournal journal = new FSJournal();
+    journal.fileChanged("a");
+    journal.fileDeleted("a");
+    journal.fileDeleted("b");
+    journal.fileChanged("b");
+    assertEquals(Collections.singletonList("b"), journal.getChangedPaths());
+    assertEquals(Collections.singletonList("a"), journal.getDeletedPaths());
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.artifacts.impl;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.jps.incremental.MessageHandler;
+import org.jetbrains.jps.incremental.artifacts.instructions.*;
+import org.jetbrains.jps.incremental.messages.BuildMessage;
+import org.jetbrains.jps.incremental.messages.ProgressMessage;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+public class JarsBuilderTest extends TestCase {
+  private File myDir;
+  private ExecutorService myExecutor;
+  private final List<BuildMessage> myMessages = new ArrayList<BuildMessage>();
+  // not thread safe, the builder is supposed to pass messages one at a time
+  private final MessageHandler myMessageHandler = new MessageHandler() {
+    public void processMessage(BuildMessage msg) {
+      myMessages.add(msg);
+    }
+  };
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("jarsBuilder", null);
+    myExecutor = Executors.newFixedThreadPool(4);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myExecutor.shutdownNow();
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testNestedJarsBuiltInParallel() throws Exception {
+    final JarInfo outer = createJar("out/outer.jar");
+    final JarInfo inner1 = createNestedJar("lib/inner1.jar", outer, "a.txt");
+    final JarInfo inner2 = createNestedJar("lib/inner2.jar", outer, "b.txt");
+
+    // both nested jars must be being built at the same time to get through the filter
+    final CountDownLatch nestedJarsStarted = new CountDownLatch(2);
+    final AtomicBoolean builtSequentially = new AtomicBoolean();
+    final FileFilter filter = new FileFilter() {
+      public boolean accept(File file) {
+        if (file.getName().endsWith(".txt")) {
+          nestedJarsStarted.countDown();
+          try {
+            if (!nestedJarsStarted.await(10, TimeUnit.SECONDS)) {
+              builtSequentially.set(true);
+            }
+          }
+          catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        return true;
+      }
+    };
+
+    final Set<String> writtenPaths = new HashSet<String>();
+    assertTrue(new JarsBuilder(new HashSet<JarInfo>(Arrays.asList(outer, inner1, inner2)), filter, myMessageHandler, myExecutor)
+                 .buildJars(writtenPaths));
+    assertFalse(builtSequentially.get());
+
+    final File outerFile = new File(myDir, "out/outer.jar");
+    assertEquals(Collections.singleton(outerFile.getPath()), writtenPaths);
+    assertEquals(Collections.singletonList("a.txt"), getNestedJarEntries(outerFile, "lib/inner1.jar"));
+    assertEquals(Collections.singletonList("b.txt"), getNestedJarEntries(outerFile, "lib/inner2.jar"));
+    assertEquals(3, countBuildingMessages());
+  }
+
+  public void testJarsPackedIntoEachOther() throws Exception {
+    final JarInfo outer = createJar("out/outer.jar");
+    final JarInfo middle = createNestedJar("lib/middle.jar", outer, "a.txt");
+    createNestedJar("lib/inner.jar", middle, "b.txt");
+    final JarInfo other = createJar("out/other.jar");
+    other.addContent("c.txt", createSourceRoot("c.txt"));
+
+    final Set<String> writtenPaths = new HashSet<String>();
+    assertTrue(new JarsBuilder(new HashSet<JarInfo>(Arrays.asList(outer, other)), null, myMessageHandler, myExecutor)
+                 .buildJars(writtenPaths));
+
+    final File outerFile = new File(myDir, "out/outer.jar");
+    assertEquals(new HashSet<String>(Arrays.asList(outerFile.getPath(), new File(myDir, "out/other.jar").getPath())), writtenPaths);
+    assertEquals(Arrays.asList("a.txt", "lib/", "lib/inner.jar"), getNestedJarEntries(outerFile, "lib/middle.jar"));
+    assertEquals(4, countBuildingMessages());
+  }
+
+  private JarInfo createJar(String path) {
+    final JarInfo jar = new JarInfo();
+    jar.addDestination(new ExplodedDestinationInfo(FileUtil.toSystemIndependentName(new File(myDir, path).getPath())));
+    return jar;
+  }
+
+  private JarInfo createNestedJar(String pathInJar, JarInfo containingJar, String fileName) throws IOException {
+    final JarInfo jar = new JarInfo();
+    jar.addDestination(new JarDestinationInfo(pathInJar, containingJar, containingJar.getAllDestinations().get(0)));
+    jar.addContent(fileName, createSourceRoot(fileName));
+    return jar;
+  }
+
+  private ArtifactSourceRoot createSourceRoot(String fileName) throws IOException {
+    final File file = new File(myDir, "src/" + fileName);
+    FileUtil.writeToFile(file, fileName);
+    return new FileBasedArtifactSourceRoot(file, SourceFileFilter.ALL);
+  }
+
+  private int countBuildingMessages() {
+    int count = 0;
+    for (BuildMessage message : myMessages) {
+      if (message instanceof ProgressMessage && message.getMessageText().startsWith("Building ") &&
+          !message.getMessageText().equals("Building archives...")) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static List<String> getNestedJarEntries(File jarFile, String pathInJar) throws IOException {
+    final ZipFile zipFile = new ZipFile(jarFile);
+    try {
+      final ZipEntry entry = zipFile.getEntry(pathInJar);
+      assertNotNull(pathInJar, entry);
+      final ZipInputStream input = new ZipInputStream(zipFile.getInputStream(entry));
+      try {
+        final List<String> result = new ArrayList<String>();
+        ZipEntry nested;
+        while ((nested = input.getNextEntry()) != null) {
+          result.add(nested.getName());
+        }
+        Collections.sort(result);
+        return result;
+      }
+      finally {
+        input.close();
+      }
+    }
+    finally {
+      zipFile.close();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.server;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.codehaus.groovy.runtime.MethodClosure;
+import org.jetbrains.jps.Module;
+import org.jetbrains.jps.Project;
+import org.jetbrains.jps.incremental.FSJournal;
+import org.jetbrains.jps.incremental.FSState;
+import org.jetbrains.jps.incremental.Paths;
+import org.jetbrains.jps.incremental.storage.BuildDataManager;
+import org.jetbrains.jps.incremental.storage.ProjectTimestamps;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ServerStateTest extends TestCase {
+  private static final String PROJECT_NAME = "journaled";
+
+  private File myRoot;
+  private String myProjectPath;
+  private ServerState myState;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("serverState", null).getCanonicalFile();
+    Paths.getInstance().setSystemRoot(new File(myRoot, "system"));
+    myProjectPath = new File(myRoot, PROJECT_NAME).getPath();
+    myState = new ServerState();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myState.clearCahedState();
+      FileUtil.delete(myRoot);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testEventsForLoadedProject() throws Exception {
+    final ProjectDescriptor pd = createDescriptor();
+    myState.registerProject(myProjectPath, pd, true);
+
+    myState.notifyFilesChanged(myProjectPath, Arrays.asList(source("A")), Collections.<String>emptyList());
+    assertEquals(Collections.singleton(source("A")), savePendingChanges(pd));
+  }
+
+  public void testEventsJournaledWhileProjectIsDropped() throws Exception {
+    final ProjectDescriptor pd = createDescriptor();
+    myState.registerProject(myProjectPath, pd, true);
+    final Module module = getModule(pd);
+    pd.fsState.markInitialScanPerformed(module, false);
+    myState.notifyFilesChanged(myProjectPath, Arrays.asList(source("A")), Collections.<String>emptyList());
+
+    myState.clearProjectCache(Collections.singletonList(myProjectPath));
+    myState.notifyFilesChanged(myProjectPath, Arrays.asList(source("B")), Arrays.asList(source("C")));
+
+    final ProjectDescriptor reloaded = createDescriptor();
+    myState.registerProject(myProjectPath, reloaded, true);
+    assertFalse(reloaded.fsState.markInitialScanPerformed(getModule(reloaded), false));
+    assertEquals(new HashSet<String>(Arrays.asList(source("A"), source("B"))), savePendingChanges(reloaded));
+    assertEquals(Collections.singleton(source("C")), new HashSet<String>(reloaded.fsState.getDeletedPaths(getModule(reloaded), false)));
+  }
+
+  public void testJournalDiscardedOnRebuild() throws Exception {
+    final ProjectDescriptor pd = createDescriptor();
+    myState.registerProject(myProjectPath, pd, true);
+    pd.fsState.markInitialScanPerformed(getModule(pd), false);
+
+    myState.clearProjectCache(Collections.singletonList(myProjectPath));
+    myState.notifyFilesChanged(myProjectPath, Arrays.asList(source("B")), Collections.<String>emptyList());
+
+    final ProjectDescriptor reloaded = createDescriptor();
+    myState.registerProject(myProjectPath, reloaded, false);
+    assertTrue(reloaded.fsState.markInitialScanPerformed(getModule(reloaded), false));
+    assertTrue(savePendingChanges(reloaded).isEmpty());
+  }
+
+  public void testEventsForUnknownProjectIgnored() throws Exception {
+    myState.notifyFilesChanged(myProjectPath, Arrays.asList(source("A")), Collections.<String>emptyList());
+
+    final ProjectDescriptor pd = createDescriptor();
+    myState.registerProject(myProjectPath, pd, true);
+    assertTrue(savePendingChanges(pd).isEmpty());
+  }
+
+  public void testJournalRestoredInNextSession() throws Exception {
+    final ProjectDescriptor pd = createDescriptor();
+    myState.registerProject(myProjectPath, pd, true);
+    pd.fsState.markInitialScanPerformed(getModule(pd), false);
+    myState.notifyFilesChanged(myProjectPath, Arrays.asList(source("A")), Collections.<String>emptyList());
+    shutdown();
+
+    final ProjectDescriptor reloaded = createDescriptor();
+    myState.registerProject(myProjectPath, reloaded, true);
+    assertFalse(reloaded.fsState.markInitialScanPerformed(getModule(reloaded), false));
+    assertEquals(Collections.singleton(source("A")), savePendingChanges(reloaded));
+
+    // the saved journal is consumed
+    myState.clearCahedState();
+    myState = new ServerState();
+    final ProjectDescriptor third = createDescriptor();
+    myState.registerProject(myProjectPath, third, true);
+    assertTrue(third.fsState.markInitialScanPerformed(getModule(third), false));
+  }
+
+  public void testEventsAddedToSavedJournal() throws Exception {
+    final ProjectDescriptor pd = createDescriptor();
+    myState.registerProject(myProjectPath, pd, true);
+    pd.fsState.markInitialScanPerformed(getModule(pd), false);
+    shutdown();
+
+    myState.notifyFilesChanged(myProjectPath, Arrays.asList(source("B")), Collections.<String>emptyList());
+    final ProjectDescriptor reloaded = createDescriptor();
+    myState.registerProject(myProjectPath, reloaded, true);
+    assertFalse(reloaded.fsState.markInitialScanPerformed(getModule(reloaded), false));
+    assertEquals(Collections.singleton(source("B")), savePendingChanges(reloaded));
+  }
+
+  public void testEventAfterSavingDiscardsJournal() throws Exception {
+    final ProjectDescriptor pd = createDescriptor();
+    myState.registerProject(myProjectPath, pd, true);
+    pd.fsState.markInitialScanPerformed(getModule(pd), false);
+    myState.clearCahedState();
+    myState.saveJournals();
+    myState.notifyFilesChanged(myProjectPath, Arrays.asList(source("B")), Collections.<String>emptyList());
+
+    myState = new ServerState();
+    final ProjectDescriptor reloaded = createDescriptor();
+    myState.registerProject(myProjectPath, reloaded, true);
+    assertTrue(reloaded.fsState.markInitialScanPerformed(getModule(reloaded), false));
+  }
+
+  public void testClosedProjectForgotten() throws Exception {
+    final ProjectDescriptor pd = createDescriptor();
+    myState.registerProject(myProjectPath, pd, true);
+    pd.fsState.markInitialScanPerformed(getModule(pd), false);
+    myState.forgetProjects(Collections.singletonList(myProjectPath));
+    assertNull(myState.getProjectDescriptor(myProjectPath));
+    myState.notifyFilesChanged(myProjectPath, Arrays.asList(source("B")), Collections.<String>emptyList());
+    shutdown();
+
+    final ProjectDescriptor reloaded = createDescriptor();
+    myState.registerProject(myProjectPath, reloaded, true);
+    assertTrue(reloaded.fsState.markInitialScanPerformed(getModule(reloaded), false));
+    assertTrue(savePendingChanges(reloaded).isEmpty());
+  }
+
+  private void shutdown() {
+    myState.clearCahedState();
+    myState.saveJournals();
+    myState = new ServerState();
+  }
+
+  private ProjectDescriptor createDescriptor() throws Exception {
+    final Project project = new Project();
+    final Module module = project.createModule("m", new MethodClosure(new Object(), "hashCode"));
+    module.getSourceRoots().add(FileUtil.toCanonicalPath(new File(myRoot, "src").getPath()));
+    return new ProjectDescriptor(PROJECT_NAME, project, new FSState(false), new ProjectTimestamps(PROJECT_NAME),
+                                 new BuildDataManager(PROJECT_NAME, true));
+  }
+
+  private static Module getModule(ProjectDescriptor pd) {
+    return pd.project.getModules().get("m");
+  }
+
+  private String source(String className) {
+    return FileUtil.toCanonicalPath(new File(myRoot, "src/" + className + ".java").getPath());
+  }
+
+  private static Set<String> savePendingChanges(ProjectDescriptor pd) {
+    final FSJournal journal = new FSJournal();
+    pd.fsState.saveTo(journal, pd.rootsIndex);
+    return new HashSet<String>(journal.getChangedPaths());
+  }
+}
@@ -24,7 +24,7 @@ class DependencyContext {
   private final Map<TypeRepr.AbstractType, TypeRepr.AbstractType> myTypeMap = new HashMap<TypeRepr.AbstractType, TypeRepr.AbstractType>();
   private final Map<UsageRepr.Usage, UsageRepr.Usage> myUsageMap = new HashMap<UsageRepr.Usage, UsageRepr.Usage>();
 
-   UsageRepr.Usage getUsage(final UsageRepr.Usage u) {
+   synchronized UsageRepr.Usage getUsage(final UsageRepr.Usage u) {
      final UsageRepr.Usage r = myUsageMap.get(u);
 
      if (r == null) {
@@ -35,7 +35,7 @@ class DependencyContext {
      return r;
    }
 
-  TypeRepr.AbstractType getType(final TypeRepr.AbstractType t) {
+  synchronized TypeRepr.AbstractType getType(final TypeRepr.AbstractType t) {
     final TypeRepr.AbstractType r = myTypeMap.get(t);
 
     if (r != null) {
@@ -47,7 +47,7 @@ class DependencyContext {
     return t;
   }
 
-  void clearMemoryCaches() {
+  synchronized void clearMemoryCaches() {
     myTypeMap.clear();
     myUsageMap.clear();
   }
@@ -7,8 +7,7 @@ import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.RetentionPolicy;
 import java.util.*;
@@ -29,6 +28,9 @@ public class Mappings {
   private final static String SOURCE_TO_ANNOTATIONS = "sourceToAnnotations.tab";
   private final static String SOURCE_TO_USAGES = "sourceToUsages.tab";
   private final static String CLASS_TO_SOURCE = "classToSource.tab";
+  private final static String VERSION_FILE = "version";
+  // must be incremented whenever the format of the tables changes
+  private final static int VERSION = 1;
 
   private final boolean myIsDelta;
   private final boolean myDeltaIsTransient;
@@ -64,6 +66,8 @@ public class Mappings {
 
   private final File myRootDir;
   private DependencyContext myContext;
+  // guards the tables of the base mappings and all its deltas
+  private final Object myLock;
   private org.jetbrains.ether.dependencyView.Logger<DependencyContext.S> myDebugS;
 
   private static void debug(final String s) {
@@ -127,6 +131,7 @@ public class Mappings {
     myDeltaIsTransient = base.myDeltaIsTransient;
     myRootDir = new File(FileUtil.toSystemIndependentName(base.myRootDir.getAbsolutePath()) + File.separatorChar + "delta");
     myContext = base.myContext;
+    myLock = base.myLock;
     myDebugS = base.myDebugS;
     myRootDir.mkdirs();
     createImplementation();
@@ -139,9 +144,48 @@ public class Mappings {
     myChangedFiles = null;
     myDeltaIsTransient = transientDelta;
     myRootDir = rootDir;
+    myLock = this;
+    checkVersion(rootDir);
     createImplementation();
   }
 
+  /**
+   * Tables of another format can't be read, the caller is expected to drop the data and rebuild the project.
+   */
+  private static void checkVersion(final File rootDir) throws IOException {
+    final File versionFile = new File(rootDir, VERSION_FILE);
+    if (new File(rootDir, CLASS_TO_SUBCLASSES).exists()) {
+      int version = -1;
+      if (versionFile.exists()) {
+        final DataInputStream in = new DataInputStream(new FileInputStream(versionFile));
+        try {
+          version = in.readInt();
+        }
+        finally {
+          in.close();
+        }
+      }
+      if (version != VERSION) {
+        throw new IOException("Dependency data format version " + version + " differs from the current version " + VERSION);
+      }
+    }
+    else {
+      writeVersion(rootDir);
+    }
+  }
+
+  private static void writeVersion(final File rootDir) throws IOException {
+    final File versionFile = new File(rootDir, VERSION_FILE);
+    FileUtil.createParentDirs(versionFile);
+    final DataOutputStream out = new DataOutputStream(new FileOutputStream(versionFile));
+    try {
+      out.writeInt(VERSION);
+    }
+    finally {
+      out.close();
+    }
+  }
+
   private void createImplementation() throws IOException {
     if (!myIsDelta) {
       myContext = new DependencyContext(myRootDir);
@@ -230,6 +274,9 @@ public class Mappings {
     if (myRootDir != null) {
       close();
       FileUtil.delete(myRootDir);
+      if (!myIsDelta) {
+        writeVersion(myRootDir);
+      }
       createImplementation();
     }
   }
@@ -1712,6 +1759,10 @@ public class Mappings {
         return result;
       }
 
+      /**
+       * May be called from several threads: the class file is parsed concurrently and only the tables are updated under the lock,
+       * which is the base mappings object.
+       */
       public void associate(final String classFileName, final Callbacks.SourceFileNameLookup sourceFileName, final ClassReader cr) {
         final DependencyContext.S classFileNameS = myContext.get(classFileName);
         final Pair<ClassRepr, Pair<UsageRepr.Cluster, Set<UsageRepr.Usage>>> result =
@@ -1723,6 +1774,15 @@ public class Mappings {
         final String srcFileName = sourceFileName.get(repr == null ? null : myContext.getValue(repr.getSourceFileName()));
         final DependencyContext.S sourceFileNameS = myContext.get(srcFileName);
 
+        synchronized (myLock) {
+          integrateAnalysisResult(repr, localUsages, localAnnotationUsages, sourceFileNameS);
+        }
+      }
+
+      private void integrateAnalysisResult(final ClassRepr repr,
+                                           final UsageRepr.Cluster localUsages,
+                                           final Set<UsageRepr.Usage> localAnnotationUsages,
+                                           final DependencyContext.S sourceFileNameS) {
         if (repr != null) {
           final DependencyContext.S className = repr.name;
 
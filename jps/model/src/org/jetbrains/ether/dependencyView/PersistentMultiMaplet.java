@@ -33,7 +33,11 @@ import java.util.Map;
  * To change this template use File | Settings | File Templates.
  */
 class PersistentMultiMaplet<K, V> implements MultiMaplet<K, V> {
-  private final PersistentHashMap<K, Collection<V>> myMap;
+  // every stored value is preceded by one of these tags, so that removal can append instead of rewriting the collection
+  private static final byte ADDED = 1;
+  private static final byte REMOVED = 0;
+
+  private final PersistentHashMap<K, StoredCollection<V>> myMap;
   private final DataExternalizer<V> myValueExternalizer;
 
   public PersistentMultiMaplet(final File file,
@@ -41,25 +45,45 @@ class PersistentMultiMaplet<K, V> implements MultiMaplet<K, V> {
                                final DataExternalizer<V> valueExternalizer,
                                final TransientMultiMaplet.CollectionConstructor<V> collectionFactory) throws IOException {
     myValueExternalizer = valueExternalizer;
-    myMap = new PersistentHashMap<K, Collection<V>>(file, keyExternalizer,
-                                                    new CollectionDataExternalizer<V>(valueExternalizer, collectionFactory));
+    myMap = new PersistentHashMap<K, StoredCollection<V>>(file, keyExternalizer,
+                                                          new CollectionDataExternalizer<V>(valueExternalizer, collectionFactory));
   }
 
 
   @Override
   public boolean containsKey(final K key) {
     try {
-      return myMap.containsMapping(key);
+      // all values of the mapping may be removed by the appended records; unlike get(), the storage is left as is
+      final StoredCollection<V> stored = myMap.get(key);
+      return stored != null && (stored.myRemovedRecords == 0 || !stored.myValues.isEmpty());
     }
     catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Also compacts the stored collection if it has more removal records than values.
+   */
   @Override
   public Collection<V> get(final K key) {
     try {
-      return myMap.get(key);
+      final StoredCollection<V> stored = myMap.get(key);
+      if (stored == null) {
+        return null;
+      }
+      final Collection<V> collection = stored.myValues;
+      if (stored.myRemovedRecords > 0) {
+        if (collection.isEmpty()) {
+          myMap.remove(key);
+          return null;
+        }
+        if (stored.myRemovedRecords > collection.size()) {
+          // more garbage than data: store the collection compacted
+          myMap.put(key, new StoredCollection<V>(collection, 0));
+        }
+      }
+      return collection;
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -68,10 +92,15 @@ class PersistentMultiMaplet<K, V> implements MultiMaplet<K, V> {
 
   @Override
   public void put(final K key, final Collection<V> value) {
+    appendRecords(key, value, ADDED);
+  }
+
+  private void appendRecords(final K key, final Collection<V> values, final byte tag) {
     try {
       myMap.appendData(key, new PersistentHashMap.ValueDataAppender() {
         public void append(DataOutput out) throws IOException {
-          for (V v : value) {
+          for (V v : values) {
+            out.writeByte(tag);
             myValueExternalizer.save(out, v);
           }
         }
@@ -90,17 +119,8 @@ class PersistentMultiMaplet<K, V> implements MultiMaplet<K, V> {
   @Override
   public void removeAll(K key, Collection<V> values) {
     try {
-      final Collection<V> collection = myMap.get(key);
-
-      if (collection != null) {
-        if (collection.removeAll(values)) {
-          if (collection.isEmpty()) {
-            myMap.remove(key);
-          }
-          else {
-            myMap.put(key, collection);
-          }
-        }
+      if (!values.isEmpty() && myMap.containsMapping(key)) {
+        appendRecords(key, values, REMOVED);
       }
     }
     catch (IOException e) {
@@ -110,23 +130,7 @@ class PersistentMultiMaplet<K, V> implements MultiMaplet<K, V> {
 
   @Override
   public void removeFrom(final K key, final V value) {
-    try {
-      final Collection<V> collection = myMap.get(key);
-
-      if (collection != null) {
-        if (collection.remove(value)) {
-          if (collection.isEmpty()) {
-            myMap.remove(key);
-          }
-          else {
-            myMap.put(key, collection);
-          }
-        }
-      }
-    }
-    catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    removeAll(key, Collections.singleton(value));
   }
 
   @Override
@@ -184,7 +188,10 @@ class PersistentMultiMaplet<K, V> implements MultiMaplet<K, V> {
 
     try {
       for (final K key : myMap.getAllKeysWithExistingMapping()) {
-        final Collection<V> value = myMap.get(key);
+        final Collection<V> value = get(key);
+        if (value == null) {
+          continue;
+        }
 
         final Map.Entry<K, Collection<V>> entry = new Map.Entry<K, Collection<V>>() {
           @Override
@@ -213,7 +220,21 @@ class PersistentMultiMaplet<K, V> implements MultiMaplet<K, V> {
     }
   }
 
-  private static class CollectionDataExternalizer<V> implements DataExternalizer<Collection<V>> {
+  private static class StoredCollection<V> {
+    private final Collection<V> myValues;
+    // number of removal records applied when the collection was read, they are garbage in the storage
+    private final int myRemovedRecords;
+
+    private StoredCollection(Collection<V> values, int removedRecords) {
+      myValues = values;
+      myRemovedRecords = removedRecords;
+    }
+  }
+
+  /**
+   * Applies the appended records in order. Removal records only work for set collections, which all the maplets use.
+   */
+  private static class CollectionDataExternalizer<V> implements DataExternalizer<StoredCollection<V>> {
     private final DataExternalizer<V> myElementExternalizer;
     private final TransientMultiMaplet.CollectionConstructor<V> myCollectionFactory;
 
@@ -224,20 +245,30 @@ class PersistentMultiMaplet<K, V> implements MultiMaplet<K, V> {
     }
 
     @Override
-    public void save(final DataOutput out, final Collection<V> value) throws IOException {
-      for (V x : value) {
+    public void save(final DataOutput out, final StoredCollection<V> value) throws IOException {
+      for (V x : value.myValues) {
+        out.writeByte(ADDED);
         myElementExternalizer.save(out, x);
       }
     }
 
     @Override
-    public Collection<V> read(final DataInput in) throws IOException {
+    public StoredCollection<V> read(final DataInput in) throws IOException {
       final Collection<V> result = myCollectionFactory.create();
       final DataInputStream stream = (DataInputStream)in;
+      int removedRecords = 0;
       while (stream.available() > 0) {
-        result.add(myElementExternalizer.read(in));
+        final byte tag = in.readByte();
+        final V value = myElementExternalizer.read(in);
+        if (tag == REMOVED) {
+          result.remove(value);
+          removedRecords++;
+        }
+        else {
+          result.add(value);
+        }
       }
-      return result;
+      return new StoredCollection<V>(result, removedRecords);
     }
   }
 }
@@ -56,6 +56,7 @@ import com.intellij.psi.*;
 import com.intellij.psi.impl.source.tree.injected.InjectedLanguageUtil;
 import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Function;
+import com.intellij.util.PairConsumer;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.ConcurrentHashMap;
 import com.intellij.util.containers.MultiMap;
@@ -87,6 +88,7 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
   private final SeverityRegistrar mySeverityRegistrar;
   private final InspectionProfileWrapper myProfileWrapper;
   private boolean myFailFastOnAcquireReadAction;
+  private PairConsumer<LocalInspectionTool, Long> myTimeConsumer;
 
   public LocalInspectionsPass(@NotNull PsiFile file,
                               @Nullable Document document,
@@ -143,6 +145,16 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
   }
 
   public void doInspectInBatch(@NotNull InspectionManagerEx iManager, @NotNull List<InspectionProfileEntry> toolWrappers) {
+    doInspectInBatch(iManager, toolWrappers, null);
+  }
+
+  /**
+   * @param timeConsumer receives time in nanoseconds spent by every tool on the file, may be invoked concurrently
+   */
+  public void doInspectInBatch(@NotNull InspectionManagerEx iManager,
+                               @NotNull List<InspectionProfileEntry> toolWrappers,
+                               @Nullable PairConsumer<LocalInspectionTool, Long> timeConsumer) {
+    myTimeConsumer = timeConsumer;
     Map<LocalInspectionTool, LocalInspectionToolWrapper> tool2Wrapper = new THashMap<LocalInspectionTool, LocalInspectionToolWrapper>(toolWrappers.size());
     for (InspectionProfileEntry toolWrapper : toolWrappers) {
       tool2Wrapper.put(((LocalInspectionToolWrapper)toolWrapper).getTool(), (LocalInspectionToolWrapper)toolWrapper);
@@ -324,7 +336,9 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
           }
         };
         Set<String> languages = (Set<String>)pair.getValue();
+        long start = System.nanoTime();
         PsiElementVisitor visitor = createVisitorAndAcceptElements(tool, holder, isOnTheFly, session, elements, languages);
+        consumeTime(tool, start);
 
         synchronized (init) {
           init.add(new InspectionContext(tool, holder, visitor, languages));
@@ -376,9 +390,11 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
           
           indicator.checkCanceled();
           ApplicationManager.getApplication().assertReadAccessAllowed();
+          long start = System.nanoTime();
           acceptElements(elements, context.visitor, context.languageIds);
           advanceProgress(1);
           context.tool.inspectionFinished(session, context.holder);
+          consumeTime(context.tool, start);
 
           if (context.holder.hasResults()) {
             appendDescriptors(myFile, context.holder.getResults(), context.tool);
@@ -393,6 +409,13 @@ public class LocalInspectionsPass extends ProgressableTextEditorHighlightingPass
     inspectInjectedPsi(elements, isOnTheFly, indicator, iManager, false, checkDumbAwareness, wrappers);
   }
 
+  private void consumeTime(@NotNull LocalInspectionTool tool, long start) {
+    PairConsumer<LocalInspectionTool, Long> timeConsumer = myTimeConsumer;
+    if (timeConsumer != null) {
+      timeConsumer.consume(tool, System.nanoTime() - start);
+    }
+  }
+
   private static void acceptElements(@NotNull List<PsiElement> elements,
                                      @NotNull PsiElementVisitor elementVisitor,
                                      @Nullable Set<String> languages) {
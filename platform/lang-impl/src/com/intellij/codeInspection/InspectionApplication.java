@@ -20,6 +20,7 @@ import com.intellij.analysis.AnalysisScope;
 import com.intellij.codeInspection.ex.GlobalInspectionContextImpl;
 import com.intellij.codeInspection.ex.InspectionManagerEx;
 import com.intellij.codeInspection.ex.InspectionProfileImpl;
+import com.intellij.codeInspection.ex.InspectionResultsCache;
 import com.intellij.codeInspection.ex.XSLTReportConverter;
 import com.intellij.conversion.ConversionListener;
 import com.intellij.conversion.ConversionService;
@@ -48,6 +49,7 @@ import com.intellij.util.StringBuilderSpinAllocator;
 import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
 import org.jdom.JDOMException;
 import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
@@ -71,6 +73,7 @@ public class InspectionApplication {
   public String myProfilePath = null;
   public boolean myRunWithEditorSettings = false;
   public boolean myRunGlobalToolsOnly = false;
+  public String myResultsCachePath = null;
   private Project myProject;
   private int myVerboseLevel = 0;
   public String myOutputFormat = null;
@@ -219,7 +222,10 @@ public class InspectionApplication {
             if (myErrorCodeRequired) System.exit(1);
             return;
           }
-          inspectionContext.launchInspectionsOffline(scope, resultsDataPath, myRunGlobalToolsOnly, im, inspectionsResults);
+          final InspectionResultsCache resultsCache = launchInspectionsOffline(inspectionContext, scope, resultsDataPath, im, inspectionsResults);
+          if (resultsCache != null) {
+            logCacheStatistics(resultsCache);
+          }
           logMessageLn(1, "\n" +
                           InspectionsBundle.message("inspection.capitalized.done") +
                           "\n");
@@ -430,6 +436,47 @@ public class InspectionApplication {
     System.err.println(message);
   }
 
+  /**
+   * Runs the inspections offline, reusing the results stored in the cache at {@link #myResultsCachePath} if it is set.
+   *
+   * @return the cache used by the run, already closed, or null if the results weren't cached
+   */
+  @Nullable
+  InspectionResultsCache launchInspectionsOffline(@NotNull GlobalInspectionContextImpl inspectionContext,
+                                                  @NotNull AnalysisScope scope,
+                                                  @Nullable String resultsDataPath,
+                                                  @NotNull InspectionManagerEx im,
+                                                  @NotNull List<File> inspectionsResults) {
+    InspectionResultsCache resultsCache = null;
+    if (myResultsCachePath != null) {
+      try {
+        resultsCache = new InspectionResultsCache(inspectionContext.getProject(), new File(myResultsCachePath));
+      }
+      catch (IOException e) {
+        LOG.info(e);
+        logError("Cannot open results cache at " + myResultsCachePath);
+      }
+    }
+    inspectionContext.setResultsCache(resultsCache);
+    try {
+      inspectionContext.launchInspectionsOffline(scope, resultsDataPath, myRunGlobalToolsOnly, im, inspectionsResults);
+    }
+    finally {
+      inspectionContext.setResultsCache(null);
+      if (resultsCache != null) {
+        resultsCache.close();
+      }
+    }
+    return resultsCache;
+  }
+
+  private void logCacheStatistics(InspectionResultsCache resultsCache) {
+    logMessageLn(1, "\nFiles with reused results: " + resultsCache.getHits() + ", inspected: " + resultsCache.getMisses());
+    for (Map.Entry<String, Long> entry : resultsCache.getToolTimes().entrySet()) {
+      logMessageLn(2, entry.getKey() + ": " + entry.getValue() + " ms");
+    }
+  }
+
   private void logMessageLn(int minVerboseLevel, String message) {
     if (myVerboseLevel >= minVerboseLevel) {
       System.out.println(message);
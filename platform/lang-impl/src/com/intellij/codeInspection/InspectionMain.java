@@ -73,6 +73,9 @@ public class InspectionMain implements ApplicationStarter {
         } else if ("-d".equals(arg)) {
           myApplication.mySourceDirectory = args[++i];
         }
+        else if ("-cache".equals(arg)) {
+          myApplication.myResultsCachePath = args[++i];
+        }
         else if ("-v0".equals(arg)) {
           myApplication.setVerboseLevel(0);
         }
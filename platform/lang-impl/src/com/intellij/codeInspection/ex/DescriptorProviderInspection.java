@@ -59,11 +59,15 @@ public abstract class DescriptorProviderInspection extends InspectionTool implem
   private HashMap<RefEntity, CommonProblemDescriptor[]> myOldProblemElements = null;
   protected static final Logger LOG = Logger.getInstance("#com.intellij.codeInspection.ex.DescriptorProviderInspection");
 
+  // offline output collected for results cache, see InspectionResultsCache
+  private static final ThreadLocal<Map<String, StringBuilder>> ourRecordedOutput = new ThreadLocal<Map<String, StringBuilder>>();
+
   public void addProblemElement(RefEntity refElement, CommonProblemDescriptor... descriptions){
     addProblemElement(refElement, true, descriptions);
   }
 
-  protected void addProblemElement(RefEntity refElement, boolean filterSuppressed, CommonProblemDescriptor... descriptions) {
+  // files are inspected concurrently
+  protected synchronized void addProblemElement(RefEntity refElement, boolean filterSuppressed, CommonProblemDescriptor... descriptions) {
     if (refElement == null) return;
     if (descriptions == null || descriptions.length == 0) return;
     if (filterSuppressed) {
@@ -97,9 +101,42 @@ public abstract class DescriptorProviderInspection extends InspectionTool implem
     exportResults(descriptions, refElement, parentNode);
     final List list = parentNode.getChildren();
 
+    final PathMacroManager pathMacroManager = PathMacroManager.getInstance(getContext().getProject());
+    final CharArrayWriter writer = new CharArrayWriter();
+    try {
+      for (Object o : list) {
+        final Element element = (Element)o;
+        pathMacroManager.collapsePaths(element);
+        JDOMUtil.writeElement(element, writer, "\n");
+      }
+    }
+    catch (IOException e) {
+      LOG.error(e);
+      return;
+    }
+    final String problems = writer.toString();
+
+    final Map<String, StringBuilder> recordedOutput = ourRecordedOutput.get();
+    if (recordedOutput != null) {
+      StringBuilder builder = recordedOutput.get(getShortName());
+      if (builder == null) {
+        builder = new StringBuilder();
+        recordedOutput.put(getShortName(), builder);
+      }
+      else {
+        builder.append("\n");
+      }
+      builder.append(problems);
+    }
+    appendOutput(problems);
+  }
+
+  /**
+   * Appends problems exported by {@link #exportResults} to the offline output of the tool.
+   */
+  public synchronized void appendOutput(@NotNull String problems) {
     @NonNls final String ext = ".xml";
     final String fileName = ourOutputPath + File.separator + getShortName() + ext;
-    final PathMacroManager pathMacroManager = PathMacroManager.getInstance(getContext().getProject());
     PrintWriter printWriter = null;
     try {
       new File(ourOutputPath).mkdirs();
@@ -109,11 +146,7 @@ public abstract class DescriptorProviderInspection extends InspectionTool implem
         writer.append("<").append(InspectionsBundle.message("inspection.problems")).append(" is_local_tool=\"")
           .append(Boolean.toString(this instanceof LocalInspectionToolWrapper)).append("\">\n");
       }
-      for (Object o : list) {
-        final Element element = (Element)o;
-        pathMacroManager.collapsePaths(element);
-        JDOMUtil.writeElement(element, writer, "\n");
-      }
+      writer.append(problems);
       printWriter = new PrintWriter(new BufferedWriter(new FileWriter(file, true)));
       printWriter.append("\n");
       printWriter.append(writer.toString());
@@ -128,6 +161,38 @@ public abstract class DescriptorProviderInspection extends InspectionTool implem
     }
   }
 
+  /**
+   * Starts collecting the offline output written by local tools in the current thread. Collecting may be nested, so the collector
+   * which was active before is returned and has to be passed to {@link #finishRecordingOutput}.
+   */
+  @Nullable
+  public static Map<String, StringBuilder> startRecordingOutput() {
+    final Map<String, StringBuilder> previous = ourRecordedOutput.get();
+    ourRecordedOutput.set(new HashMap<String, StringBuilder>());
+    return previous;
+  }
+
+  /**
+   * @return tool short name -> problems written by the tool since the matching {@link #startRecordingOutput} call
+   */
+  @NotNull
+  public static Map<String, String> finishRecordingOutput(@Nullable Map<String, StringBuilder> previous) {
+    final Map<String, StringBuilder> recorded = ourRecordedOutput.get();
+    if (previous != null) {
+      ourRecordedOutput.set(previous);
+    }
+    else {
+      ourRecordedOutput.remove();
+    }
+    final Map<String, String> result = new HashMap<String, String>();
+    if (recorded != null) {
+      for (Map.Entry<String, StringBuilder> entry : recorded.entrySet()) {
+        result.put(entry.getKey(), entry.getValue().toString());
+      }
+    }
+    return result;
+  }
+
   public Collection<CommonProblemDescriptor> getProblemDescriptors() {
     return getProblemToElements().keySet();
   }
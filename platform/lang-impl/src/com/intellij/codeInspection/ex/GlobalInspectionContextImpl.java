@@ -56,6 +56,7 @@ import com.intellij.psi.search.LocalSearchScope;
 import com.intellij.psi.search.scope.packageSet.NamedScope;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.ui.content.*;
+import com.intellij.util.PairConsumer;
 import com.intellij.util.Processor;
 import com.intellij.util.TripleFunction;
 import com.intellij.util.containers.HashMap;
@@ -97,6 +98,7 @@ public class GlobalInspectionContextImpl extends UserDataHolderBase implements G
   public final JobDescriptor[] LOCAL_ANALYSIS_ARRAY = {LOCAL_ANALYSIS};
 
   private InspectionProfile myExternalProfile = null;
+  private InspectionResultsCache myResultsCache = null;
 
   private final Map<Key, GlobalInspectionContextExtension> myExtensions = new HashMap<Key, GlobalInspectionContextExtension>();
   private boolean RUN_GLOBAL_TOOLS_ONLY = false;
@@ -533,59 +535,33 @@ public class GlobalInspectionContextImpl extends UserDataHolderBase implements G
       tool.inspectionStarted(manager, this, toolWrapper);
     }
 
+    // only virtual files are collected, so psi of a file is held just while a worker inspects it
+    final List<VirtualFile> files = new ArrayList<VirtualFile>();
     scope.accept(new PsiElementVisitor() {
       @Override
       public void visitFile(final PsiFile file) {
         final VirtualFile virtualFile = file.getVirtualFile();
-        if (virtualFile != null) {
-          incrementJobDoneAmount(LOCAL_ANALYSIS, ProjectUtil.calcRelativeToProjectPath(virtualFile, myProject));
-          if (SingleRootFileViewProvider.isTooLarge(virtualFile)) return;
-          if (localScopeFiles != null && !localScopeFiles.add(virtualFile)) return;
-        }
+        if (virtualFile == null) return;
+        if (localScopeFiles != null && !localScopeFiles.add(virtualFile)) return;
+        files.add(virtualFile);
+      }
+    });
 
-        final FileViewProvider viewProvider = psiManager.findViewProvider(virtualFile);
-        final com.intellij.openapi.editor.Document document = viewProvider == null ? null : viewProvider.getDocument();
-        if (document == null || virtualFile.getFileType().isBinary()) return; //do not inspect binary files
-        final LocalInspectionsPass pass = new LocalInspectionsPass(file, document, 0,
-                                                                   file.getTextLength(), LocalInspectionsPass.EMPTY_PRIORITY_RANGE, true);
-        try {
-          final List<InspectionProfileEntry> lTools = new ArrayList<InspectionProfileEntry>();
-          for (Tools tool : localTools) {
-            final InspectionTool enabledTool = (InspectionTool)tool.getEnabledTool(file);
-            if (enabledTool != null) {
-              lTools.add(enabledTool);
+    JobUtil.invokeConcurrentlyUnderProgress(files, myProgressIndicator, false, new Processor<VirtualFile>() {
+      @Override
+      public boolean process(final VirtualFile virtualFile) {
+        incrementJobDoneAmount(LOCAL_ANALYSIS, ProjectUtil.calcRelativeToProjectPath(virtualFile, myProject));
+        if (SingleRootFileViewProvider.isTooLarge(virtualFile)) return true;
+        ApplicationManager.getApplication().runReadAction(new Runnable() {
+          @Override
+          public void run() {
+            final PsiFile file = virtualFile.isValid() ? psiManager.findFile(virtualFile) : null;
+            if (file != null) {
+              inspectFile(file, manager, localTools, globalSimpleTools);
             }
           }
-          pass.doInspectInBatch((InspectionManagerEx)manager, lTools);
-
-          JobUtil.invokeConcurrentlyUnderProgress(globalSimpleTools, myProgressIndicator, false, new Processor<Tools>() {
-              @Override
-              public boolean process(Tools tools) {
-                GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
-                GlobalSimpleInspectionTool tool = (GlobalSimpleInspectionTool)toolWrapper.getTool();
-                ProblemsHolder problemsHolder = new ProblemsHolder(manager, file, false);
-                tool.checkFile(file, manager, problemsHolder, GlobalInspectionContextImpl.this, toolWrapper);
-                LocalInspectionToolWrapper.addProblemDescriptors(problemsHolder.getResults(), false, GlobalInspectionContextImpl.this, null,
-                                                                 CONVERT, toolWrapper);
-                return true;
-              }
-            });
-        }
-        catch (ProcessCanceledException e) {
-          throw e;
-        }
-        catch (IndexNotReadyException e) {
-          throw e;
-        }
-        catch (Exception e) {
-          LOG.error("In file: " + file, e);
-        }
-        catch (AssertionError e) {
-          LOG.error("In file: " + file, e);
-        }
-        finally {
-          InjectedLanguageManager.getInstance(myProject).dropFileCaches(file);
-        }
+        });
+        return true;
       }
     });
     for (Tools tools : globalSimpleTools) {
@@ -595,6 +571,94 @@ public class GlobalInspectionContextImpl extends UserDataHolderBase implements G
     }
   }
 
+  private void inspectFile(@NotNull final PsiFile file,
+                           @NotNull final InspectionManager manager,
+                           @NotNull List<Tools> localTools,
+                           @NotNull List<Tools> globalSimpleTools) {
+    final FileViewProvider viewProvider = file.getViewProvider();
+    final VirtualFile virtualFile = viewProvider.getVirtualFile();
+    final com.intellij.openapi.editor.Document document = viewProvider.getDocument();
+    if (document == null || virtualFile.getFileType().isBinary()) return; //do not inspect binary files
+    final LocalInspectionsPass pass = new LocalInspectionsPass(file, document, 0,
+                                                               file.getTextLength(), LocalInspectionsPass.EMPTY_PRIORITY_RANGE, true);
+    try {
+      final List<InspectionProfileEntry> lTools = new ArrayList<InspectionProfileEntry>();
+      for (Tools tool : localTools) {
+        final InspectionTool enabledTool = (InspectionTool)tool.getEnabledTool(file);
+        if (enabledTool != null) {
+          lTools.add(enabledTool);
+        }
+      }
+      inspectLocally(pass, virtualFile, (InspectionManagerEx)manager, lTools);
+
+      JobUtil.invokeConcurrentlyUnderProgress(globalSimpleTools, myProgressIndicator, false, new Processor<Tools>() {
+          @Override
+          public boolean process(Tools tools) {
+            GlobalInspectionToolWrapper toolWrapper = (GlobalInspectionToolWrapper)tools.getTool();
+            GlobalSimpleInspectionTool tool = (GlobalSimpleInspectionTool)toolWrapper.getTool();
+            ProblemsHolder problemsHolder = new ProblemsHolder(manager, file, false);
+            tool.checkFile(file, manager, problemsHolder, GlobalInspectionContextImpl.this, toolWrapper);
+            LocalInspectionToolWrapper.addProblemDescriptors(problemsHolder.getResults(), false, GlobalInspectionContextImpl.this, null,
+                                                             CONVERT, toolWrapper);
+            return true;
+          }
+        });
+    }
+    catch (ProcessCanceledException e) {
+      throw e;
+    }
+    catch (IndexNotReadyException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      LOG.error("In file: " + file, e);
+    }
+    catch (AssertionError e) {
+      LOG.error("In file: " + file, e);
+    }
+    finally {
+      InjectedLanguageManager.getInstance(myProject).dropFileCaches(file);
+    }
+  }
+
+  private void inspectLocally(@NotNull LocalInspectionsPass pass,
+                              @NotNull VirtualFile file,
+                              @NotNull InspectionManagerEx manager,
+                              @NotNull List<InspectionProfileEntry> lTools) {
+    final InspectionResultsCache cache = myResultsCache;
+    final String key = cache == null || InspectionTool.ourOutputPath == null ? null : cache.getKey(file, lTools);
+    if (key == null) {
+      pass.doInspectInBatch(manager, lTools);
+      return;
+    }
+
+    final Map<String, String> cached = cache.getResults(file, key);
+    if (cached != null) {
+      for (InspectionProfileEntry tool : lTools) {
+        final String problems = cached.get(tool.getShortName());
+        if (problems != null) {
+          ((DescriptorProviderInspection)tool).appendOutput(problems);
+        }
+      }
+      return;
+    }
+
+    final Map<String, StringBuilder> previous = DescriptorProviderInspection.startRecordingOutput();
+    final Map<String, String> output;
+    try {
+      pass.doInspectInBatch(manager, lTools, new PairConsumer<LocalInspectionTool, Long>() {
+        @Override
+        public void consume(LocalInspectionTool tool, Long time) {
+          cache.addToolTime(tool.getShortName(), time);
+        }
+      });
+    }
+    finally {
+      output = DescriptorProviderInspection.finishRecordingOutput(previous);
+    }
+    cache.putResults(file, key, output);
+  }
+
   private static final TripleFunction<LocalInspectionTool,PsiElement,GlobalInspectionContext,RefElement> CONVERT =
     new TripleFunction<LocalInspectionTool, PsiElement, GlobalInspectionContext, RefElement>() {
       @Override
@@ -699,7 +763,7 @@ public class GlobalInspectionContextImpl extends UserDataHolderBase implements G
   }
 
   @Override
-  public void incrementJobDoneAmount(JobDescriptor job, String message) {
+  public synchronized void incrementJobDoneAmount(JobDescriptor job, String message) {
     if (myProgressIndicator == null) return;
 
     ProgressManager.checkCanceled();
@@ -727,4 +791,11 @@ public class GlobalInspectionContextImpl extends UserDataHolderBase implements G
   public void setExternalProfile(InspectionProfile profile) {
     myExternalProfile = profile;
   }
+
+  /**
+   * Lets offline runs reuse the results of local inspections for the files which were not changed since the cache was filled.
+   */
+  public void setResultsCache(@Nullable InspectionResultsCache cache) {
+    myResultsCache = cache;
+  }
 }
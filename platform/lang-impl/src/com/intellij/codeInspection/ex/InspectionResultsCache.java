@@ -0,0 +1,431 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection.ex;
+
+import com.intellij.codeInspection.InspectionProfileEntry;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.WriteExternalException;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.psi.stubs.SerializationManager;
+import com.intellij.psi.stubs.StubTree;
+import com.intellij.psi.stubs.StubTreeLoader;
+import com.intellij.util.PathUtil;
+import com.intellij.util.containers.ConcurrentHashMap;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.PersistentHashMap;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline output of local inspections stored per file, so that batch runs can reuse it for files which were not changed.
+ * Results of a file are reused while the content of the file, the settings of the tools enabled for it and the dependency stamp
+ * of its module are the same. The dependency stamp covers the structure of the files in the module and in all the modules it
+ * depends on, plus the libraries they use. The structure of a file is its stub tree, so editing code blocks of other files
+ * doesn't invalidate the results, while changing declarations does. Files without stubs are covered by their whole content.
+ */
+public class InspectionResultsCache {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.codeInspection.ex.InspectionResultsCache");
+
+  private final Project myProject;
+  private final PersistentHashMap<String, CachedResults> myStorage;
+
+  private final ConcurrentMap<VirtualFile, String> myContentDigests = new ConcurrentHashMap<VirtualFile, String>();
+  // computed once by the first worker asking for them, the others wait for the result instead of computing it again
+  private final ConcurrentMap<Module, FutureTask<String>> myModuleDigests = new ConcurrentHashMap<Module, FutureTask<String>>();
+  private final ConcurrentMap<Module, FutureTask<String>> myDependencyStamps = new ConcurrentHashMap<Module, FutureTask<String>>();
+  private final ConcurrentMap<String, FutureTask<String>> myRootStamps = new ConcurrentHashMap<String, FutureTask<String>>();
+  private final ConcurrentMap<String, String> mySettingsDigests = new ConcurrentHashMap<String, String>();
+
+  private final AtomicInteger myHits = new AtomicInteger();
+  private final AtomicInteger myMisses = new AtomicInteger();
+  private final ConcurrentMap<String, AtomicLong> myToolTimes = new ConcurrentHashMap<String, AtomicLong>();
+
+  public InspectionResultsCache(@NotNull Project project, @NotNull File cacheDir) throws IOException {
+    myProject = project;
+    final File file = new File(cacheDir, "results");
+    PersistentHashMap<String, CachedResults> storage;
+    try {
+      storage = createStorage(file);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      PersistentHashMap.deleteFilesStartingWith(file);
+      storage = createStorage(file);
+    }
+    myStorage = storage;
+  }
+
+  private static PersistentHashMap<String, CachedResults> createStorage(@NotNull File file) throws IOException {
+    return new PersistentHashMap<String, CachedResults>(file, new EnumeratorStringDescriptor(), new CachedResultsExternalizer());
+  }
+
+  /**
+   * @return key identifying the results of the tools on the file as it is now, or null if the results can't be cached
+   */
+  @Nullable
+  public String getKey(@NotNull VirtualFile file, @NotNull List<InspectionProfileEntry> tools) {
+    final Module module = ModuleUtil.findModuleForFile(file, myProject);
+    if (module == null) return null;
+
+    final List<String> toolDigests = new ArrayList<String>(tools.size());
+    for (InspectionProfileEntry tool : tools) {
+      toolDigests.add(tool.getShortName() + ":" + getSettingsDigest(tool));
+    }
+    Collections.sort(toolDigests);
+
+    final MessageDigest digest = createDigest();
+    update(digest, getContentDigest(file));
+    update(digest, getDependencyStamp(module));
+    for (String toolDigest : toolDigests) {
+      update(digest, toolDigest);
+    }
+    return toHexString(digest.digest());
+  }
+
+  /**
+   * @return tool short name -> offline output of the tool on the file, or null if the file has no results for the key
+   */
+  @Nullable
+  public Map<String, String> getResults(@NotNull VirtualFile file, @NotNull String key) {
+    CachedResults results = null;
+    try {
+      results = myStorage.get(getPath(file));
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    if (results == null || !results.myKey.equals(key)) {
+      myMisses.incrementAndGet();
+      return null;
+    }
+    myHits.incrementAndGet();
+    return results.myOutput;
+  }
+
+  public void putResults(@NotNull VirtualFile file, @NotNull String key, @NotNull Map<String, String> output) {
+    try {
+      myStorage.put(getPath(file), new CachedResults(key, output));
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+  }
+
+  public void addToolTime(@NotNull String shortName, long nanos) {
+    AtomicLong time = myToolTimes.get(shortName);
+    if (time == null) {
+      final AtomicLong newTime = new AtomicLong();
+      time = myToolTimes.putIfAbsent(shortName, newTime);
+      if (time == null) {
+        time = newTime;
+      }
+    }
+    time.addAndGet(nanos);
+  }
+
+  public int getHits() {
+    return myHits.get();
+  }
+
+  public int getMisses() {
+    return myMisses.get();
+  }
+
+  /**
+   * @return tool short name -> time in milliseconds spent by the tool on the files which had no cached results
+   */
+  @NotNull
+  public Map<String, Long> getToolTimes() {
+    final Map<String, Long> result = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> entry : myToolTimes.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().get() / 1000000);
+    }
+    return result;
+  }
+
+  public void close() {
+    try {
+      myStorage.close();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+  }
+
+  @NotNull
+  private String getPath(@NotNull VirtualFile file) {
+    // relative paths let results survive moving the project to another location
+    final VirtualFile baseDir = myProject.getBaseDir();
+    final String path = baseDir != null ? VfsUtilCore.getRelativePath(file, baseDir, '/') : null;
+    return path != null ? path : file.getPath();
+  }
+
+  @NotNull
+  private String getSettingsDigest(@NotNull InspectionProfileEntry tool) {
+    String result = mySettingsDigests.get(tool.getShortName());
+    if (result == null) {
+      final Element element = new Element("tool");
+      try {
+        tool.writeSettings(element);
+      }
+      catch (WriteExternalException e) {
+        LOG.info(e);
+      }
+      final MessageDigest digest = createDigest();
+      update(digest, JDOMUtil.writeElement(element, "\n"));
+      result = toHexString(digest.digest());
+      mySettingsDigests.put(tool.getShortName(), result);
+    }
+    return result;
+  }
+
+  @NotNull
+  private String getContentDigest(@NotNull VirtualFile file) {
+    String result = myContentDigests.get(file);
+    if (result == null) {
+      final MessageDigest digest = createDigest();
+      try {
+        digest.update(file.contentsToByteArray());
+      }
+      catch (IOException e) {
+        LOG.info(e);
+        update(digest, String.valueOf(file.getTimeStamp()));
+      }
+      result = toHexString(digest.digest());
+      myContentDigests.put(file, result);
+    }
+    return result;
+  }
+
+  @NotNull
+  private String getDependencyStamp(@NotNull final Module module) {
+    return computeOnce(myDependencyStamps, module, new Callable<String>() {
+      @Override
+      public String call() {
+        final Set<Module> modules = new HashSet<Module>();
+        ModuleUtil.getDependencies(module, modules);
+        final List<String> parts = new ArrayList<String>();
+        for (Module dependency : modules) {
+          parts.add(dependency.getName() + ":" + getModuleDigest(dependency));
+        }
+        for (VirtualFile root : OrderEnumerator.orderEntries(module).recursively().withoutModuleSourceEntries().getClassesRoots()) {
+          parts.add(root.getUrl() + ":" + getRootStamp(root));
+        }
+        Collections.sort(parts);
+
+        final MessageDigest digest = createDigest();
+        for (String part : parts) {
+          update(digest, part);
+        }
+        return toHexString(digest.digest());
+      }
+    });
+  }
+
+  @NotNull
+  private String getModuleDigest(@NotNull final Module module) {
+    return computeOnce(myModuleDigests, module, new Callable<String>() {
+      @Override
+      public String call() {
+        final FileTypeManager fileTypeManager = FileTypeManager.getInstance();
+        final Map<String, String> files = new TreeMap<String, String>();
+        ModuleRootManager.getInstance(module).getFileIndex().iterateContent(new ContentIterator() {
+          @Override
+          public boolean processFile(VirtualFile fileOrDir) {
+            if (!fileOrDir.isDirectory() && !fileTypeManager.getFileTypeByFile(fileOrDir).isBinary()) {
+              files.put(getPath(fileOrDir), getStructureDigest(fileOrDir));
+            }
+            return true;
+          }
+        });
+        final MessageDigest digest = createDigest();
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+          update(digest, entry.getKey());
+          update(digest, entry.getValue());
+        }
+        return toHexString(digest.digest());
+      }
+    });
+  }
+
+  /**
+   * A jar is covered by its own timestamp and length. The timestamp of a directory doesn't change when the files in it are
+   * recompiled, so class directories are covered by the timestamps and lengths of all the files in them.
+   */
+  @NotNull
+  private String getRootStamp(@NotNull final VirtualFile root) {
+    return computeOnce(myRootStamps, root.getUrl(), new Callable<String>() {
+      @Override
+      public String call() {
+        final VirtualFile localFile = PathUtil.getLocalFile(root);
+        if (!localFile.isDirectory()) {
+          return localFile.getTimeStamp() + ":" + localFile.getLength();
+        }
+
+        final MessageDigest digest = createDigest();
+        VfsUtilCore.visitChildrenRecursively(localFile, new VirtualFileVisitor() {
+          @Override
+          public boolean visitFile(VirtualFile file) {
+            if (!file.isDirectory()) {
+              update(digest, VfsUtilCore.getRelativePath(file, localFile, '/'));
+              update(digest, file.getTimeStamp() + ":" + file.getLength());
+            }
+            return true;
+          }
+        });
+        return toHexString(digest.digest());
+      }
+    });
+  }
+
+  @NotNull
+  private static <K> String computeOnce(@NotNull ConcurrentMap<K, FutureTask<String>> results,
+                                        @NotNull K key,
+                                        @NotNull Callable<String> computation) {
+    FutureTask<String> task = results.get(key);
+    if (task == null) {
+      final FutureTask<String> newTask = new FutureTask<String>(computation);
+      task = results.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        newTask.run();
+      }
+    }
+    try {
+      return task.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException();
+    }
+    catch (ExecutionException e) {
+      // e.g. the computation was canceled, let the next caller try again
+      results.remove(key, task);
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      if (cause instanceof Error) throw (Error)cause;
+      throw new RuntimeException(cause);
+    }
+  }
+
+  @NotNull
+  private String getStructureDigest(@NotNull VirtualFile file) {
+    final StubTreeLoader loader = StubTreeLoader.getInstance();
+    if (loader.canHaveStub(file)) {
+      final StubTree tree = loader.readOrBuild(myProject, file);
+      if (tree != null) {
+        final BufferExposingByteArrayOutputStream out = new BufferExposingByteArrayOutputStream();
+        SerializationManager.getInstance().serialize(tree.getRoot(), out);
+        final MessageDigest digest = createDigest();
+        digest.update(out.getInternalBuffer(), 0, out.size());
+        return toHexString(digest.digest());
+      }
+    }
+    return getContentDigest(file);
+  }
+
+  @NotNull
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void update(@NotNull MessageDigest digest, @NotNull String s) {
+    try {
+      digest.update(s.getBytes("UTF-8"));
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    digest.update((byte)0);
+  }
+
+  @NotNull
+  private static String toHexString(@NotNull byte[] bytes) {
+    final StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  private static class CachedResults {
+    private final String myKey;
+    private final Map<String, String> myOutput;
+
+    private CachedResults(@NotNull String key, @NotNull Map<String, String> output) {
+      myKey = key;
+      myOutput = output;
+    }
+  }
+
+  private static class CachedResultsExternalizer implements DataExternalizer<CachedResults> {
+    @Override
+    public void save(DataOutput out, CachedResults value) throws IOException {
+      out.writeUTF(value.myKey);
+      out.writeInt(value.myOutput.size());
+      for (Map.Entry<String, String> entry : value.myOutput.entrySet()) {
+        out.writeUTF(entry.getKey());
+        IOUtil.writeString(entry.getValue(), out);
+      }
+    }
+
+    @Override
+    public CachedResults read(DataInput in) throws IOException {
+      final String key = in.readUTF();
+      final int size = in.readInt();
+      final Map<String, String> output = new HashMap<String, String>(size);
+      for (int i = 0; i < size; i++) {
+        final String shortName = in.readUTF();
+        output.put(shortName, IOUtil.readString(in));
+      }
+      return new CachedResults(key, output);
+    }
+  }
+}
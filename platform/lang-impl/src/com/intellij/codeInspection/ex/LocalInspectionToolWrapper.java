@@ -115,7 +115,7 @@ public final class LocalInspectionToolWrapper extends InspectionToolWrapper<Loca
   };
 
   @Override
-  protected void addProblemElement(RefEntity refElement, boolean filterSuppressed, CommonProblemDescriptor... descriptions) {
+  protected synchronized void addProblemElement(RefEntity refElement, boolean filterSuppressed, CommonProblemDescriptor... descriptions) {
     super.addProblemElement(refElement, filterSuppressed, descriptions);
     final InspectionResultsView view = getContext().getView();
     if (view != null && refElement instanceof RefElement) {
@@ -29,6 +29,8 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Iconable;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -45,6 +47,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public abstract class RefElementImpl extends RefEntityImpl implements RefElement {
   private static final ArrayList<RefElement> EMPTY_REFERNCES_LIST = new ArrayList<RefElement>(0);
@@ -62,6 +66,11 @@ public abstract class RefElementImpl extends RefEntityImpl implements RefElement
   private String[] mySuppressions = null;
 
   private boolean myIsDeleted ;
+  private volatile boolean myInitialized;
+  // the thread that initializes the reference, null when the initialization is over
+  private volatile Thread myInitializingThread;
+  // released when the initialization is over, whether it succeeded or not
+  private final CountDownLatch myInitializationLatch = new CountDownLatch(1);
   private final Module myModule;
   protected static final int IS_REACHABLE_MASK = 0x40;
 
@@ -237,6 +246,40 @@ public abstract class RefElementImpl extends RefEntityImpl implements RefElement
 
   protected abstract void initialize();
 
+  boolean isInitialized() {
+    return myInitialized;
+  }
+
+  @Nullable
+  Thread getInitializingThread() {
+    return myInitializingThread;
+  }
+
+  void setInitializingThread(@Nullable final Thread thread) {
+    myInitializingThread = thread;
+  }
+
+  void setInitialized(final boolean initialized) {
+    myInitialized = initialized;
+    myInitializingThread = null;
+    myInitializationLatch.countDown();
+  }
+
+  /**
+   * @return <code>true</code> if the reference has been initialized, <code>false</code> if its initialization failed
+   */
+  boolean waitForInitialization() {
+    try {
+      while (!myInitializationLatch.await(10, TimeUnit.MILLISECONDS)) {
+        ProgressManager.checkCanceled();
+      }
+    }
+    catch (InterruptedException e) {
+      throw new ProcessCanceledException();
+    }
+    return myInitialized;
+  }
+
   public void addSuppression(final String text) {
     mySuppressions = text.split("[, ]");    
   }
@@ -70,7 +70,8 @@ public abstract class RefEntityImpl implements RefEntity {
     myOwner = owner;
   }
 
-  public void add(RefEntity child) {
+  // children are added while references are created and built, concurrently for different files
+  public synchronized void add(RefEntity child) {
     if (myChildren == null) {
       myChildren = new ArrayList<RefEntity>();
     }
@@ -79,7 +80,7 @@ public abstract class RefEntityImpl implements RefEntity {
     ((RefEntityImpl)child).setOwner(this);
   }
 
-  protected void removeChild(RefEntity child) {
+  protected synchronized void removeChild(RefEntity child) {
     if (myChildren != null) {
       myChildren.remove(child);
       ((RefEntityImpl)child).setOwner(null);
@@ -47,13 +47,14 @@ import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.light.LightElement;
-import com.intellij.util.concurrency.JBReentrantReadWriteLock;
-import com.intellij.util.concurrency.LockFactory;
+import com.intellij.util.containers.ConcurrentHashMap;
 import gnu.trove.THashMap;
+import gnu.trove.THashSet;
 import org.jdom.Element;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 public class RefManagerImpl extends RefManager {
   private static final Logger LOG = Logger.getInstance("#com.intellij.codeInspection.reference.RefManager");
@@ -63,7 +64,7 @@ public class RefManagerImpl extends RefManager {
   private final Project myProject;
   private AnalysisScope myScope;
   private RefProject myRefProject;
-  private THashMap<PsiAnchor, RefElement> myRefTable;
+  private ConcurrentMap<PsiAnchor, RefElement> myRefTable;
 
   private THashMap<Module, RefModule> myModules;
   private final ProjectIterator myProjectIterator;
@@ -78,7 +79,11 @@ public class RefManagerImpl extends RefManager {
   private final Map<Key, RefManagerExtension> myExtensions = new HashMap<Key, RefManagerExtension>();
   private final HashMap<Language, RefManagerExtension> myLanguageExtensions = new HashMap<Language, RefManagerExtension>();
 
-  private final JBReentrantReadWriteLock myLock = LockFactory.createReadWriteLock();
+  // A reference is stored before it's initialized because the initialization may ask for the reference itself. Other threads
+  // wait until a stored reference is initialized. Two initializations may refer to each other's element, so a thread doesn't
+  // wait for a reference whose initialization (transitively) waits for the thread: the reference is then part of a recursion,
+  // and it's handed out uninitialized just as it is to its own initializing thread.
+  private final ConcurrentMap<Thread, RefElementImpl> myAwaitedReferences = new ConcurrentHashMap<Thread, RefElementImpl>();
 
   public RefManagerImpl(Project project, AnalysisScope scope, GlobalInspectionContextImpl context) {
     myDeclarationsFound = false;
@@ -87,7 +92,7 @@ public class RefManagerImpl extends RefManager {
     myContext = context;
     myPsiManager = PsiManager.getInstance(project);
     myRefProject = new RefProjectImpl(this);
-    myRefTable = new THashMap<PsiAnchor, RefElement>();
+    myRefTable = new ConcurrentHashMap<PsiAnchor, RefElement>();
     myProjectIterator = new ProjectIterator();
     for (InspectionExtensionsFactory factory : Extensions.getExtensions(InspectionExtensionsFactory.EP_NAME)) {
       final RefManagerExtension extension = factory.createRefManagerExtension(this);
@@ -99,23 +104,17 @@ public class RefManagerImpl extends RefManager {
   }
 
   public void iterate(RefVisitor visitor) {
-    myLock.readLock().lock();
-    try {
-      final THashMap<PsiAnchor, RefElement> refTable = getRefTable();
-      for (RefElement refElement : refTable.values()) {
-        refElement.accept(visitor);
-      }
-      if (myModules != null) {
-        for (RefModule refModule : myModules.values()) {
-          refModule.accept(visitor);
-        }
-      }
-      for (RefManagerExtension extension : myExtensions.values()) {
-        extension.iterate(visitor);
+    final Map<PsiAnchor, RefElement> refTable = getRefTable();
+    for (RefElement refElement : refTable.values()) {
+      refElement.accept(visitor);
+    }
+    if (myModules != null) {
+      for (RefModule refModule : myModules.values()) {
+        refModule.accept(visitor);
       }
     }
-    finally {
-      myLock.readLock().unlock();
+    for (RefManagerExtension extension : myExtensions.values()) {
+      extension.iterate(visitor);
     }
   }
 
@@ -299,7 +298,7 @@ public class RefManagerImpl extends RefManager {
     return myRefProject;
   }
 
-  public THashMap<PsiAnchor, RefElement> getRefTable() {
+  public Map<PsiAnchor, RefElement> getRefTable() {
     return myRefTable;
   }
 
@@ -309,34 +308,22 @@ public class RefManagerImpl extends RefManager {
   }
 
   public void removeReference(RefElement refElem) {
-    myLock.writeLock().lock();
-    try {
-      final THashMap<PsiAnchor, RefElement> refTable = getRefTable();
-      final PsiElement element = refElem.getElement();
-      final RefManagerExtension extension = element != null ? getExtension(element.getLanguage()) : null;
-      if (extension != null) {
-        extension.removeReference(refElem);
-      }
+    final Map<PsiAnchor, RefElement> refTable = getRefTable();
+    final PsiElement element = refElem.getElement();
+    final RefManagerExtension extension = element != null ? getExtension(element.getLanguage()) : null;
+    if (extension != null) {
+      extension.removeReference(refElem);
+    }
 
-      if (element != null && refTable.remove(ApplicationManager.getApplication().runReadAction(
-          new Computable<PsiAnchor>() {
-            public PsiAnchor compute() {
-              return PsiAnchor.create(element);
-            }
-          }
-      )) != null) return;
+    if (element != null && refTable.remove(createAnchor(element)) != null) return;
 
-      //PsiElement may have been invalidated and new one returned by getElement() is different so we need to do this stuff.
-      for (PsiAnchor psiElement : refTable.keySet()) {
-        if (refTable.get(psiElement) == refElem) {
-          refTable.remove(psiElement);
-          return;
-        }
+    //PsiElement may have been invalidated and new one returned by getElement() is different so we need to do this stuff.
+    for (PsiAnchor psiElement : refTable.keySet()) {
+      if (refTable.get(psiElement) == refElem) {
+        refTable.remove(psiElement);
+        return;
       }
     }
-    finally {
-      myLock.writeLock().unlock();
-    }
   }
 
   public void initializeAnnotators() {
@@ -399,7 +386,7 @@ public class RefManagerImpl extends RefManager {
       return null;
     }
 
-    final RefElementImpl refElement = ApplicationManager.getApplication().runReadAction(new Computable<RefElementImpl>() {
+    return createReference(elem, new Computable<RefElementImpl>() {
       @Nullable
       public RefElementImpl compute() {
         final RefManagerExtension extension = getExtension(elem.getLanguage());
@@ -418,17 +405,84 @@ public class RefManagerImpl extends RefManager {
         }
       }
     });
-    if (refElement == null) return null;
+  }
 
-    putToRefTable(elem, refElement);
+  /**
+   * Creates, stores and initializes a reference to the element unless it has been stored already, e.g. by another thread.
+   * A reference whose initialization fails is removed from the table, so that it's created again when asked for next time.
+   *
+   * @param factory  creates the reference inside a read action, may return <code>null</code>
+   */
+  @Nullable
+  protected RefElement createReference(final PsiElement element, final Computable<RefElementImpl> factory) {
+    final PsiAnchor anchor = createAnchor(element);
+    while (true) {
+      final RefElement stored = getFromRefTable(anchor);
+      if (stored != null) return stored;
+
+      final RefElementImpl refElement = ApplicationManager.getApplication().runReadAction(factory);
+      if (refElement == null) return null;
+
+      refElement.setInitializingThread(Thread.currentThread());
+      final RefElement concurrent = myRefTable.putIfAbsent(anchor, refElement);
+      if (concurrent != null) {
+        if (awaitInitialization(concurrent)) return concurrent;
+        continue;
+      }
 
-    ApplicationManager.getApplication().runReadAction(new Runnable() {
-      public void run() {
-        refElement.initialize();
+      boolean initialized = false;
+      try {
+        ApplicationManager.getApplication().runReadAction(new Runnable() {
+          public void run() {
+            refElement.initialize();
+          }
+        });
+        initialized = true;
       }
-    });
+      finally {
+        if (!initialized) {
+          myRefTable.remove(anchor, refElement);
+        }
+        refElement.setInitialized(initialized);
+      }
+      return refElement;
+    }
+  }
+
+  /**
+   * @return <code>false</code> if the reference is being initialized by another thread and the initialization fails
+   */
+  private boolean awaitInitialization(final RefElement ref) {
+    if (!(ref instanceof RefElementImpl)) return true;
+    final RefElementImpl refElement = (RefElementImpl)ref;
+    if (refElement.isInitialized()) return true;
 
-    return refElement;
+    final Thread current = Thread.currentThread();
+    // the thread is registered before the check, so of two threads waiting for each other at least one sees the cycle
+    myAwaitedReferences.put(current, refElement);
+    try {
+      if (isInitializationWaitingFor(refElement, current)) return true;
+      return refElement.waitForInitialization();
+    }
+    finally {
+      myAwaitedReferences.remove(current);
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the reference is being initialized by the thread, or by a thread that waits for the
+   * initialization of a reference the thread is responsible for
+   */
+  private boolean isInitializationWaitingFor(final RefElementImpl refElement, final Thread thread) {
+    final Set<Thread> visited = new THashSet<Thread>();
+    Thread initializing = refElement.getInitializingThread();
+    while (initializing != null && visited.add(initializing)) {
+      if (initializing == thread) return true;
+      final RefElementImpl awaited = myAwaitedReferences.get(initializing);
+      if (awaited == null) return false;
+      initializing = awaited.getInitializingThread();
+    }
+    return false;
   }
 
   private RefManagerExtension getExtension(final Language language) {
@@ -461,38 +515,26 @@ public class RefManagerImpl extends RefManager {
   }
 
   protected RefElement getFromRefTable(final PsiElement element) {
-    myLock.readLock().lock();
-    try {
-      return getRefTable().get(ApplicationManager.getApplication().runReadAction(
-          new Computable<PsiAnchor>() {
-            public PsiAnchor compute() {
-              return PsiAnchor.create(element);
-            }
-          }
-      ));
-    }
-    finally {
-      myLock.readLock().unlock();
-    }
+    return getFromRefTable(createAnchor(element));
   }
 
-  protected void putToRefTable(final PsiElement element, final RefElement ref) {
-    myLock.writeLock().lock();
-    try {
-      getRefTable().put(ApplicationManager.getApplication().runReadAction(
-          new Computable<PsiAnchor>() {
-            public PsiAnchor compute() {
-              return PsiAnchor.create(element);
-            }
+  @Nullable
+  private RefElement getFromRefTable(final PsiAnchor anchor) {
+    final RefElement ref = myRefTable.get(anchor);
+    return ref != null && awaitInitialization(ref) ? ref : null;
+  }
+
+  private static PsiAnchor createAnchor(final PsiElement element) {
+    return ApplicationManager.getApplication().runReadAction(
+        new Computable<PsiAnchor>() {
+          public PsiAnchor compute() {
+            return PsiAnchor.create(element);
           }
-      ), ref);
-    }
-    finally {
-      myLock.writeLock().unlock();
-    }
+        }
+    );
   }
 
-  public RefModule getRefModule(Module module) {
+  public synchronized RefModule getRefModule(Module module) {
     if (module == null) {
       return null;
     }
@@ -23,7 +23,7 @@ public class RefModuleImpl extends RefEntityImpl implements RefModule {
     ((RefProjectImpl)manager.getRefProject()).add(this);
   }
 
-  public void add(RefEntity child) {
+  public synchronized void add(RefEntity child) {
     if (myChildren == null) {
        myChildren = new ArrayList<RefEntity>();
     }
@@ -34,7 +34,7 @@ public class RefModuleImpl extends RefEntityImpl implements RefModule {
     }
   }
 
-  protected void removeChild(RefEntity child) {
+  protected synchronized void removeChild(RefEntity child) {
     if (myChildren != null) {
       myChildren.remove(child);
     }
@@ -122,7 +122,7 @@ public class IdIndex extends FileBasedIndexExtension<IdIndexEntry, Integer> {
     return myInputFilter;
   }
   
-  private static boolean isIndexable(FileType fileType) {
+  static boolean isIndexable(FileType fileType) {
     return fileType instanceof LanguageFileType ||
            fileType instanceof AbstractFileType ||
            IdTableBuilding.isIdIndexerRegistered(fileType) ||
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.cache.impl.id;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.InlineKeyDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.intellij.util.text.CharArrayUtil;
+import gnu.trove.THashMap;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Offsets of the words of a file, keyed by the case sensitive word hash like {@link IdIndex}, so that a word search
+ * can go straight to the occurrences instead of scanning the whole text of every candidate file.
+ * The offsets are candidates which have to be checked against the text since different words may have equal hashes.
+ */
+public class IdPositionIndex extends FileBasedIndexExtension<IdIndexEntry, int[]> {
+  private static volatile boolean ourEnabled = "true".equals(System.getProperty("idea.internal.positional.idindex.enabled"));
+
+  @NonNls public static final ID<IdIndexEntry, int[]> NAME = ID.create("IdPositionIndex");
+
+  // words longer than this are not reported by IdTableBuilding.scanWords()
+  private static final int MAX_WORD_LENGTH = 100;
+
+  // the filter is asked each time a file is indexed, so a file indexed while the index is disabled gets no offsets
+  private static final FileBasedIndex.InputFilter INPUT_FILTER = new FileBasedIndex.InputFilter() {
+    @Override
+    public boolean acceptInput(final VirtualFile file) {
+      if (!ourEnabled) return false;
+      final FileType fileType = file.getFileType();
+      return IdIndex.isIndexable(fileType) && !ProjectUtil.isProjectOrWorkspaceFile(file, fileType);
+    }
+  };
+
+  private final DataExternalizer<int[]> myValueExternalizer = new DataExternalizer<int[]>() {
+    @Override
+    public void save(final DataOutput out, final int[] value) throws IOException {
+      // offsets are ascending, so the deltas are small and fit in one or two bytes mostly
+      DataInputOutputUtil.writeINT(out, value.length);
+      int prev = 0;
+      for (int offset : value) {
+        DataInputOutputUtil.writeINT(out, offset - prev);
+        prev = offset;
+      }
+    }
+
+    @Override
+    public int[] read(final DataInput in) throws IOException {
+      final int[] result = new int[DataInputOutputUtil.readINT(in)];
+      int prev = 0;
+      for (int i = 0; i < result.length; i++) {
+        prev += DataInputOutputUtil.readINT(in);
+        result[i] = prev;
+      }
+      return result;
+    }
+  };
+
+  private final KeyDescriptor<IdIndexEntry> myKeyDescriptor = new InlineKeyDescriptor<IdIndexEntry>() {
+    @Override
+    public IdIndexEntry fromInt(int n) {
+      return new IdIndexEntry(n);
+    }
+
+    @Override
+    public int toInt(IdIndexEntry idIndexEntry) {
+      return idIndexEntry.getWordHashCode();
+    }
+  };
+
+  private final DataIndexer<IdIndexEntry, int[], FileContent> myIndexer = new DataIndexer<IdIndexEntry, int[], FileContent>() {
+    @Override
+    @NotNull
+    public Map<IdIndexEntry, int[]> map(final FileContent inputData) {
+      final CharSequence text = inputData.getContentAsText();
+      final char[] charArray = CharArrayUtil.fromSequenceWithoutCopying(text);
+      final Map<Integer, TIntArrayList> offsets = new THashMap<Integer, TIntArrayList>();
+      IdTableBuilding.scanWords(new IdTableBuilding.ScanWordProcessor() {
+        @Override
+        public void run(CharSequence chars, @Nullable char[] charsArray, int start, int end) {
+          addOccurrence(offsets, chars, start, end);
+          // LowLevelSearchUtil.searchWord() finds "word" in "\nword", so does the index
+          if (start > 0 && chars.charAt(start - 1) == '\\' && end - start > 1) {
+            addOccurrence(offsets, chars, start + 1, end);
+          }
+        }
+      }, text, charArray, 0, text.length(), false);
+
+      final Map<IdIndexEntry, int[]> result = new HashMap<IdIndexEntry, int[]>(offsets.size());
+      for (Map.Entry<Integer, TIntArrayList> entry : offsets.entrySet()) {
+        result.put(new IdIndexEntry(entry.getKey().intValue()), entry.getValue().toNativeArray());
+      }
+      return result;
+    }
+  };
+
+  private static void addOccurrence(Map<Integer, TIntArrayList> offsets, CharSequence chars, int start, int end) {
+    final Integer hash = Integer.valueOf(StringUtil.stringHashCode(chars, start, end));
+    TIntArrayList list = offsets.get(hash);
+    if (list == null) {
+      list = new TIntArrayList(1);
+      offsets.put(hash, list);
+    }
+    list.add(start);
+  }
+
+  /**
+   * Only the files indexed after the index has been enabled get offsets, e.g. the ones created by the test afterwards.
+   */
+  @TestOnly
+  public static void setEnabled(boolean enabled) {
+    ourEnabled = enabled;
+  }
+
+  /**
+   * @return true if the offsets of the word can be taken from the index, i.e. the word is one of the words the index is built of
+   */
+  public static boolean canProvideOffsets(@NotNull String word) {
+    if (!ourEnabled || word.length() == 0 || word.length() > MAX_WORD_LENGTH) return false;
+    for (int i = 0; i < word.length(); i++) {
+      final char c = word.charAt(i);
+      if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_')) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return ourEnabled ? 2 : 1;
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public ID<IdIndexEntry, int[]> getName() {
+    return NAME;
+  }
+
+  @Override
+  public DataIndexer<IdIndexEntry, int[], FileContent> getIndexer() {
+    return myIndexer;
+  }
+
+  @Override
+  public DataExternalizer<int[]> getValueExternalizer() {
+    return myValueExternalizer;
+  }
+
+  @Override
+  public KeyDescriptor<IdIndexEntry> getKeyDescriptor() {
+    return myKeyDescriptor;
+  }
+
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return INPUT_FILTER;
+  }
+}
@@ -29,11 +29,14 @@ import com.intellij.psi.impl.source.tree.TreeElement;
 import com.intellij.psi.impl.source.tree.injected.InjectedLanguageUtil;
 import com.intellij.psi.search.TextOccurenceProcessor;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.PairProcessor;
+import com.intellij.util.text.MultiStringSearcher;
 import com.intellij.util.text.StringSearcher;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.Map;
 
 public class LowLevelSearchUtil {
   private static final Logger LOG = Logger.getInstance("#com.intellij.psi.impl.search.LowLevelSearchUtil");
@@ -169,6 +172,97 @@ public class LowLevelSearchUtil {
     return true;
   }
 
+  /**
+   * Same as {@link #processElementsContainingWordInElement} but checks only the given candidate offsets of the word in the file
+   * instead of scanning the whole text of the scope.
+   */
+  //@RequiresReadAction
+  public static boolean processElementsContainingWordAtOffsets(@NotNull TextOccurenceProcessor processor,
+                                                               @NotNull PsiElement scope,
+                                                               @NotNull StringSearcher searcher,
+                                                               @NotNull int[] offsets,
+                                                               final boolean processInjectedPsi,
+                                                               ProgressIndicator progress) {
+    if (progress != null) progress.checkCanceled();
+
+    final CharSequence buffer = scope.getContainingFile().getViewProvider().getContents();
+    final TextRange range = scope.getTextRange();
+    if (range == null) {
+      throw new AssertionError("Element " + scope + " of class " + scope.getClass() + " has null range");
+    }
+
+    final int scopeStart = range.getStartOffset();
+    final int endOffset = Math.min(range.getEndOffset(), buffer.length());
+    final int patternLength = searcher.getPatternLength();
+    for (int offset : offsets) {
+      if (offset < scopeStart || offset + patternLength > endOffset) continue;
+      // the offsets are candidates only
+      if (!isWordAt(buffer, offset, scopeStart, endOffset, searcher, progress)) continue;
+      if (!processTreeUp(processor, scope, searcher, offset - scopeStart, processInjectedPsi, progress)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Same as {@link #processElementsContainingWordInElement} for several words at once: the text of the scope is scanned once
+   * for the patterns of all the searchers of the multi searcher.
+   *
+   * @param processors occurrence processor for every searcher of the multi searcher
+   */
+  //@RequiresReadAction
+  public static boolean processElementsContainingWordsInElement(@NotNull final Map<StringSearcher, TextOccurenceProcessor> processors,
+                                                                @NotNull final PsiElement scope,
+                                                                @NotNull MultiStringSearcher searcher,
+                                                                final boolean processInjectedPsi,
+                                                                final ProgressIndicator progress) {
+    if (progress != null) progress.checkCanceled();
+
+    final CharSequence buffer = scope.getContainingFile().getViewProvider().getContents();
+    final TextRange range = scope.getTextRange();
+    if (range == null) {
+      throw new AssertionError("Element " + scope + " of class " + scope.getClass() + " has null range");
+    }
+
+    final int scopeStart = range.getStartOffset();
+    final int endOffset = Math.min(range.getEndOffset(), buffer.length());
+    return searcher.processOccurrences(buffer, scopeStart, endOffset, new PairProcessor<StringSearcher, Integer>() {
+      @Override
+      public boolean process(StringSearcher wordSearcher, Integer offset) {
+        final TextOccurenceProcessor processor = processors.get(wordSearcher);
+        if (processor == null || !isWordAt(buffer, offset.intValue(), scopeStart, endOffset, wordSearcher, progress)) return true;
+        return processTreeUp(processor, scope, wordSearcher, offset.intValue() - scopeStart, processInjectedPsi, progress);
+      }
+    });
+  }
+
+  /**
+   * @return true if {@link #searchWord} would report an occurrence of the searcher's pattern at the offset while scanning the range,
+   * the offset itself being checked, so that overlapping occurrences of the pattern are not lost
+   */
+  private static boolean isWordAt(@NotNull CharSequence buffer, int offset, int startOffset, int endOffset,
+                                  @NotNull StringSearcher searcher, @Nullable ProgressIndicator progress) {
+    if (progress != null) progress.checkCanceled();
+    final int patternEnd = offset + searcher.getPatternLength();
+    if (offset < startOffset || patternEnd > endOffset || searcher.scan(buffer, offset, patternEnd) != offset) return false;
+    if (!searcher.isJavaIdentifier()) return true;
+
+    if (offset > startOffset) {
+      char c = buffer.charAt(offset - 1);
+      if (Character.isJavaIdentifierPart(c) && c != '$') {
+        if (offset < 2 || buffer.charAt(offset - 2) != '\\') { //escape sequence
+          return false;
+        }
+      }
+    }
+    if (patternEnd < endOffset) {
+      char c = buffer.charAt(patternEnd);
+      if (Character.isJavaIdentifierPart(c) && c != '$') {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public static int searchWord(@NotNull CharSequence text, int startOffset, int endOffset, @NotNull StringSearcher searcher, @Nullable ProgressIndicator progress) {
     LOG.assertTrue(endOffset <= text.length());
     for (int index = startOffset; index < endOffset; index++) {
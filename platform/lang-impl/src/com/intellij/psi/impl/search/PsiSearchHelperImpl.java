@@ -24,6 +24,8 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.application.ReadActionProcessor;
 import com.intellij.openapi.application.Result;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
@@ -37,6 +39,7 @@ import com.intellij.psi.impl.cache.CacheManager;
 import com.intellij.psi.impl.cache.impl.IndexCacheManagerImpl;
 import com.intellij.psi.impl.cache.impl.id.IdIndex;
 import com.intellij.psi.impl.cache.impl.id.IdIndexEntry;
+import com.intellij.psi.impl.cache.impl.id.IdPositionIndex;
 import com.intellij.psi.search.*;
 import com.intellij.psi.search.searches.IndexPatternSearch;
 import com.intellij.psi.util.PsiUtilBase;
@@ -47,7 +50,10 @@ import com.intellij.util.containers.CollectionFactory;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
 import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.text.MultiStringSearcher;
 import com.intellij.util.text.StringSearcher;
+import gnu.trove.THashMap;
+import gnu.trove.TIntArrayList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -261,7 +267,7 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
       return processPsiFileRoots(fileSet, new Processor<PsiElement>() {
         @Override
         public boolean process(PsiElement psiRoot) {
-          return LowLevelSearchUtil.processElementsContainingWordInElement(processor, psiRoot, searcher, true, progress);
+          return processElementsContainingWord(processor, psiRoot, searcher, progress);
         }
       }, progress);
     }
@@ -272,6 +278,51 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
     }
   }
 
+  private static boolean processElementsContainingWord(@NotNull TextOccurenceProcessor processor,
+                                                       @NotNull PsiElement psiRoot,
+                                                       @NotNull StringSearcher searcher,
+                                                       ProgressIndicator progress) {
+    final int[] offsets = getIndexedOffsets(psiRoot, searcher);
+    if (offsets != null) {
+      return LowLevelSearchUtil.processElementsContainingWordAtOffsets(processor, psiRoot, searcher, offsets, true, progress);
+    }
+    return LowLevelSearchUtil.processElementsContainingWordInElement(processor, psiRoot, searcher, true, progress);
+  }
+
+  /**
+   * The offsets save scanning the text only: the PSI of the whole file is loaded by {@link #processPsiFileRoots} anyway.
+   *
+   * @return candidate offsets of the searched word in the file of the root, or null if the whole text has to be scanned
+   */
+  @Nullable
+  private static int[] getIndexedOffsets(@NotNull PsiElement psiRoot, @NotNull StringSearcher searcher) {
+    if (!searcher.isCaseSensitive() || !searcher.isJavaIdentifier() || !IdPositionIndex.canProvideOffsets(searcher.getPattern())) {
+      return null;
+    }
+    final PsiFile file = psiRoot.getContainingFile();
+    final VirtualFile vFile = file.getVirtualFile();
+    if (vFile == null) return null;
+
+    // offsets are indexed for the saved content, which may differ from the text of the PSI
+    final FileDocumentManager fileDocumentManager = FileDocumentManager.getInstance();
+    final Document document = fileDocumentManager.getCachedDocument(vFile);
+    if (document != null &&
+        (fileDocumentManager.isDocumentUnsaved(document) || PsiDocumentManager.getInstance(file.getProject()).isUncommited(document))) {
+      return null;
+    }
+
+    final TIntArrayList result = new TIntArrayList();
+    FileBasedIndex.getInstance().processValues(IdPositionIndex.NAME, new IdIndexEntry(searcher.getPattern(), true), vFile,
+                                               new FileBasedIndex.ValueProcessor<int[]>() {
+                                                 @Override
+                                                 public boolean process(VirtualFile virtualFile, int[] value) {
+                                                   result.add(value);
+                                                   return true;
+                                                 }
+                                               }, GlobalSearchScope.fileScope(file.getProject(), vFile));
+    return result.toNativeArray();
+  }
+
   private boolean processPsiFileRoots(@NotNull List<VirtualFile> files,
                                       @NotNull final Processor<PsiElement> psiRootProcessor,
                                       final ProgressIndicator progress) {
@@ -629,18 +680,27 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
         progress.setText(PsiBundle.message("psi.search.for.word.progress", result.toString()));
       }
 
+      // all the words requested for a file are found in one pass over its text
+      final MultiStringSearcher multiSearcher = new MultiStringSearcher(searchers.values());
       return processPsiFileRoots(new ArrayList<VirtualFile>(candidateFiles.keySet()), new Processor<PsiElement>() {
                                    @Override
                                    public boolean process(PsiElement psiRoot) {
                                      final VirtualFile vfile = psiRoot.getContainingFile().getVirtualFile();
-                                     for (final RequestWithProcessor singleRequest : candidateFiles.get(vfile)) {
-                                       StringSearcher searcher = searchers.get(singleRequest);
+                                     final Collection<RequestWithProcessor> requests = candidateFiles.get(vfile);
+                                     if (requests.size() == 1) {
+                                       final RequestWithProcessor singleRequest = requests.iterator().next();
                                        TextOccurenceProcessor adapted = adaptProcessor(singleRequest.request, singleRequest.refProcessor);
-                                       if (!LowLevelSearchUtil.processElementsContainingWordInElement(adapted, psiRoot, searcher, true, progress)) {
-                                         return false;
-                                       }
+                                       return processElementsContainingWord(adapted, psiRoot, searchers.get(singleRequest), progress);
+                                     }
+
+                                     final Map<StringSearcher, TextOccurenceProcessor> processors =
+                                       new THashMap<StringSearcher, TextOccurenceProcessor>(requests.size());
+                                     for (final RequestWithProcessor singleRequest : requests) {
+                                       processors.put(searchers.get(singleRequest),
+                                                      adaptProcessor(singleRequest.request, singleRequest.refProcessor));
                                      }
-                                     return true;
+                                     return LowLevelSearchUtil.processElementsContainingWordsInElement(processors, psiRoot, multiSearcher, true,
+                                                                                                      progress);
                                    }
                                  }, progress);
     }
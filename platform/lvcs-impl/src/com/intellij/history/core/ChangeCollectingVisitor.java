@@ -47,6 +47,12 @@ public class ChangeCollectingVisitor extends ChangeVisitor {
     return myPath;
   }
 
+  @Override
+  public boolean isInterestedIn(ChangeSet c) {
+    // labels and changes of the path, its parents and children are checked below, nothing else can change the state
+    return c.mayAffectPath(myPath);
+  }
+
   @Override
   public void begin(ChangeSet c) throws StopVisitingException {
     myCurrentChangeSet = c;
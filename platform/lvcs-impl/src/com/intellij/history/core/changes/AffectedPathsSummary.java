@@ -0,0 +1,116 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.history.core.changes;
+
+import com.intellij.history.core.Paths;
+import com.intellij.openapi.util.text.StringUtil;
+import gnu.trove.TIntHashSet;
+import gnu.trove.TIntIterator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Hashes of the paths touched by a change set, stored in front of its changes so that collecting history for a path
+ * can skip unrelated change sets without reading them. Hash collisions only make a change set look relevant.
+ */
+class AffectedPathsSummary {
+  // paths of structural changes
+  private final TIntHashSet myPaths;
+  // the same paths and all their parents
+  private final TIntHashSet myPathsWithParents;
+  private final boolean myHasLabels;
+
+  private AffectedPathsSummary(TIntHashSet paths, TIntHashSet pathsWithParents, boolean hasLabels) {
+    myPaths = paths;
+    myPathsWithParents = pathsWithParents;
+    myHasLabels = hasLabels;
+  }
+
+  public static AffectedPathsSummary collect(List<Change> changes) {
+    TIntHashSet paths = new TIntHashSet();
+    TIntHashSet pathsWithParents = new TIntHashSet();
+    boolean hasLabels = false;
+    for (Change each : changes) {
+      if (each instanceof PutLabelChange) {
+        hasLabels = true;
+      }
+      else if (each instanceof StructuralChange) {
+        for (String path : ((StructuralChange)each).getAffectedPaths()) {
+          paths.add(hash(path));
+          String parent = path;
+          while (parent.length() > 0 && pathsWithParents.add(hash(parent))) {
+            String next = Paths.getParentOf(parent);
+            if (next.equals(parent)) break;
+            parent = next;
+          }
+        }
+      }
+    }
+    return new AffectedPathsSummary(paths, pathsWithParents, hasLabels);
+  }
+
+  public static AffectedPathsSummary read(DataInput in) throws IOException {
+    boolean hasLabels = in.readBoolean();
+    return new AffectedPathsSummary(readSet(in), readSet(in), hasLabels);
+  }
+
+  public void write(DataOutput out) throws IOException {
+    out.writeBoolean(myHasLabels);
+    writeSet(out, myPaths);
+    writeSet(out, myPathsWithParents);
+  }
+
+  /**
+   * @return false if no change from the set can affect the path, its children or its parents
+   */
+  public boolean mayAffect(String path) {
+    if (myHasLabels) return true;
+    if (myPathsWithParents.contains(hash(path))) return true;
+
+    String parent = path;
+    while (parent.length() > 0) {
+      String next = Paths.getParentOf(parent);
+      if (next.equals(parent)) break;
+      parent = next;
+      if (myPaths.contains(hash(parent))) return true;
+    }
+    return false;
+  }
+
+  private static int hash(String path) {
+    // case-insensitive hashing is correct for both case-sensitive and insensitive file systems
+    return StringUtil.stringHashCodeInsensitive(path);
+  }
+
+  private static TIntHashSet readSet(DataInput in) throws IOException {
+    int size = in.readInt();
+    TIntHashSet result = new TIntHashSet(size);
+    for (int i = 0; i < size; i++) {
+      result.add(in.readInt());
+    }
+    return result;
+  }
+
+  private static void writeSet(DataOutput out, TIntHashSet set) throws IOException {
+    out.writeInt(set.size());
+    for (TIntIterator it = set.iterator(); it.hasNext(); ) {
+      out.writeInt(it.next());
+    }
+  }
+}
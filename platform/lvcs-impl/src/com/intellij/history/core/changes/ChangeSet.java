@@ -18,13 +18,13 @@ package com.intellij.history.core.changes;
 
 import com.intellij.history.core.Content;
 import com.intellij.history.core.StreamUtil;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
 import com.intellij.util.SmartList;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.UnsyncByteArrayInputStream;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.DataInput;
-import java.io.DataOutput;
-import java.io.IOException;
+import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,7 +32,11 @@ public class ChangeSet {
   private final long myId;
   @Nullable private String myName;
   private final long myTimestamp;
-  private final List<Change> myChanges;
+  private List<Change> myChanges;
+
+  // for change sets read from a storage: changes are deserialized on first access
+  @Nullable private AffectedPathsSummary myAffectedPaths;
+  @Nullable private byte[] mySerializedChanges;
 
   public ChangeSet(long id, long timestamp) {
     myId = id;
@@ -45,11 +49,9 @@ public class ChangeSet {
     myName = StreamUtil.readStringOrNull(in);
     myTimestamp = in.readLong();
 
-    int count = in.readInt();
-    myChanges = new ArrayList<Change>(count);
-    while (count-- > 0) {
-      myChanges.add(StreamUtil.readChange(in));
-    }
+    myAffectedPaths = AffectedPathsSummary.read(in);
+    mySerializedChanges = new byte[in.readInt()];
+    in.readFully(mySerializedChanges);
   }
 
   public void write(DataOutput out) throws IOException {
@@ -57,10 +59,48 @@ public class ChangeSet {
     StreamUtil.writeStringOrNull(out, myName);
     out.writeLong(myTimestamp);
 
-    out.writeInt(myChanges.size());
-    for (Change c : myChanges) {
-      StreamUtil.writeChange(out, c);
+    List<Change> changes = getChanges();
+    AffectedPathsSummary.collect(changes).write(out);
+
+    BufferExposingByteArrayOutputStream bytes = new BufferExposingByteArrayOutputStream();
+    DataOutputStream changesOut = new DataOutputStream(bytes);
+    changesOut.writeInt(changes.size());
+    for (Change c : changes) {
+      StreamUtil.writeChange(changesOut, c);
+    }
+    changesOut.close();
+
+    out.writeInt(bytes.size());
+    out.write(bytes.getInternalBuffer(), 0, bytes.size());
+  }
+
+  private synchronized List<Change> getLoadedChanges() {
+    if (mySerializedChanges != null) {
+      DataInputStream in = new DataInputStream(new UnsyncByteArrayInputStream(mySerializedChanges));
+      try {
+        int count = in.readInt();
+        List<Change> changes = new ArrayList<Change>(count);
+        while (count-- > 0) {
+          changes.add(StreamUtil.readChange(in));
+        }
+        myChanges = changes;
+      }
+      catch (IOException e) {
+        throw new RuntimeException("Cannot read changes of change set " + myId, e);
+      }
+      mySerializedChanges = null;
     }
+    return myChanges;
+  }
+
+  /**
+   * Cheap check that doesn't require deserializing the changes of a stored change set.
+   *
+   * @return false if none of the changes can affect the path, its parents or children
+   */
+  public boolean mayAffectPath(String path) {
+    AffectedPathsSummary summary = myAffectedPaths;
+    return summary == null || summary.mayAffect(path);
   }
 
   public void setName(@Nullable String name) {
@@ -78,7 +118,7 @@ public class ChangeSet {
 
   @Nullable
   public String getLabel() {
-    for (Change each : myChanges) {
+    for (Change each : getLoadedChanges()) {
       if (each instanceof PutLabelChange) {
        return ((PutLabelChange)each).getName();
       }
@@ -87,7 +127,7 @@ public class ChangeSet {
   }
 
   public int getLabelColor() {
-    for (Change each : myChanges) {
+    for (Change each : getLoadedChanges()) {
       if (each instanceof PutSystemLabelChange) {
        return ((PutSystemLabelChange)each).getColor();
       }
@@ -96,26 +136,26 @@ public class ChangeSet {
   }
 
   public void addChange(Change c) {
-    myChanges.add(c);
+    getLoadedChanges().add(c);
   }
 
   public List<Change> getChanges() {
-    return myChanges;
+    return getLoadedChanges();
   }
 
   public boolean isEmpty() {
-    return myChanges.isEmpty();
+    return getLoadedChanges().isEmpty();
   }
 
   public boolean affectsPath(String paths) {
-    for (Change c : myChanges) {
+    for (Change c : getLoadedChanges()) {
       if (c.affectsPath(paths)) return true;
     }
     return false;
   }
 
   public boolean isCreationalFor(String path) {
-    for (Change c : myChanges) {
+    for (Change c : getLoadedChanges()) {
       if (c.isCreationalFor(path)) return true;
     }
     return false;
@@ -123,31 +163,32 @@ public class ChangeSet {
 
   public List<Content> getContentsToPurge() {
     List<Content> result = new ArrayList<Content>();
-    for (Change c : myChanges) {
+    for (Change c : getLoadedChanges()) {
       result.addAll(c.getContentsToPurge());
     }
     return result;
   }
 
   public boolean isContentChangeOnly() {
-    return myChanges.size() == 1 && getFirstChange() instanceof ContentChange;
+    return getLoadedChanges().size() == 1 && getFirstChange() instanceof ContentChange;
   }
 
   public boolean isLabelOnly() {
-    return myChanges.size() == 1 && getFirstChange() instanceof PutLabelChange;
+    return getLoadedChanges().size() == 1 && getFirstChange() instanceof PutLabelChange;
   }
 
   public Change getFirstChange() {
-    return myChanges.get(0);
+    return getLoadedChanges().get(0);
   }
 
   public Change getLastChange() {
-    return myChanges.get(myChanges.size() - 1);
+    List<Change> changes = getLoadedChanges();
+    return changes.get(changes.size() - 1);
   }
 
   public List<String> getAffectedPaths() {
     List<String> result = new SmartList<String>();
-    for (Change each : myChanges) {
+    for (Change each : getLoadedChanges()) {
       if (each instanceof StructuralChange) {
         result.add(((StructuralChange)each).getPath());
       }
@@ -156,15 +197,16 @@ public class ChangeSet {
   }
 
   public void accept(ChangeVisitor v) throws ChangeVisitor.StopVisitingException {
+    if (!v.isInterestedIn(this)) return;
     v.begin(this);
-    for (Change c : ContainerUtil.iterateBackward(myChanges)) {
+    for (Change c : ContainerUtil.iterateBackward(getLoadedChanges())) {
       c.accept(v);
     }
     v.end(this);
   }
 
   public String toString() {
-    return myChanges.toString();
+    return getLoadedChanges().toString();
   }
 
   public long getId() {
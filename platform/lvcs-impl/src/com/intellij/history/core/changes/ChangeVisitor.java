@@ -20,6 +20,13 @@ public abstract class ChangeVisitor {
   public void finished() {
   }
 
+  /**
+   * Allows the visitor to skip change sets it doesn't care about before their changes are loaded.
+   */
+  public boolean isInterestedIn(ChangeSet c) {
+    return true;
+  }
+
   public void begin(ChangeSet c) throws StopVisitingException {
   }
 
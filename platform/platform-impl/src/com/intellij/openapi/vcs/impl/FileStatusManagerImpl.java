@@ -20,6 +20,7 @@ import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.components.ProjectComponent;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.colors.ColorKey;
@@ -30,26 +31,46 @@ import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.DumbAwareRunnable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.StartupManager;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.NotNullLazyValue;
 import com.intellij.openapi.vcs.FileStatus;
 import com.intellij.openapi.vcs.FileStatusListener;
 import com.intellij.openapi.vcs.FileStatusManager;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.HashMap;
+import com.intellij.util.containers.StripedLockIntObjectConcurrentHashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
 import java.awt.*;
-import java.util.Collections;
+import java.util.*;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author mike
  */
 public class FileStatusManagerImpl extends FileStatusManager implements ProjectComponent {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vcs.impl.FileStatusManagerImpl");
+
+  // statuses of files with ids, read by renderers without locking
+  private final StripedLockIntObjectConcurrentHashMap<CachedStatus> myCachedStatusesById = new StripedLockIntObjectConcurrentHashMap<CachedStatus>();
+  // statuses of other files, e.g. light virtual files
   private final Map<VirtualFile, FileStatus> myCachedStatuses = Collections.synchronizedMap(new HashMap<VirtualFile, FileStatus>());
+  // the maximum number of statuses recalculated in background on a bulk change, the rest are dropped
+  private static final int MAX_REFRESHED_STATUSES = 1000;
+  // incremented on every bulk change, a background recalculation is applied only if no newer one has started
+  private final AtomicInteger myBulkRefreshGeneration = new AtomicInteger();
+  // tests expect statuses to be dropped synchronously, unless they check the background refresh itself
+  private boolean myBulkRefreshInTests = false;
+
+  private final AtomicLong myEdtCalculationTime = new AtomicLong();
+  private final AtomicInteger myEdtCalculationCount = new AtomicInteger();
 
   private final Project myProject;
   private final List<FileStatusListener> myListeners = ContainerUtil.createEmptyCOWList();
@@ -78,6 +99,19 @@ public class FileStatusManagerImpl extends FileStatusManager implements ProjectC
     }
   }
 
+  private static class CachedStatus {
+    private final VirtualFile myFile;
+    private final FileStatus myStatus;
+    // whether the status was asked for since the last bulk refresh, only such statuses are refreshed in background
+    private volatile boolean myUsed;
+
+    private CachedStatus(VirtualFile file, FileStatus status, boolean used) {
+      myFile = file;
+      myStatus = status;
+      myUsed = used;
+    }
+  }
+
   public FileStatusManagerImpl(Project project, StartupManager startupManager) {
     myProject = project;
 
@@ -112,6 +146,9 @@ public class FileStatusManagerImpl extends FileStatusManager implements ProjectC
   }
 
   public void projectClosed() {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(myEdtCalculationCount.get() + " file statuses calculated in EDT, " + getEdtCalculationTime() / 1000000 + " ms total");
+    }
   }
 
   public void projectOpened() {
@@ -127,7 +164,8 @@ public class FileStatusManagerImpl extends FileStatusManager implements ProjectC
   }
 
   public void disposeComponent() {
-    myCachedStatuses.clear();
+    myBulkRefreshGeneration.incrementAndGet();
+    clearCachedStatuses();
   }
 
   @NotNull
@@ -165,11 +203,97 @@ public class FileStatusManagerImpl extends FileStatusManager implements ProjectC
 
     myCachedStatuses.clear();
 
+    if (ApplicationManager.getApplication().isUnitTestMode() && !myBulkRefreshInTests || myCachedStatusesById.isEmpty()) {
+      myBulkRefreshGeneration.incrementAndGet();
+      myCachedStatusesById.clear();
+      notifyStatusesChanged();
+    }
+    else {
+      scheduleBulkRefresh();
+    }
+  }
+
+  private void notifyStatusesChanged() {
     for (FileStatusListener listener : myListeners) {
       listener.fileStatusesChanged();
     }
   }
 
+  /**
+   * Recalculates the cached statuses which were asked for since the previous bulk change in background, instead of dropping
+   * them and letting every visible tree node and tab ask for its status in EDT. The other statuses belong to files which are
+   * not shown anymore; they are dropped and calculated again when asked for, so the cost of a refresh follows the number of
+   * files being shown rather than the number of files shown during the session.
+   * <p/>
+   * Until the new statuses are ready, {@link #getStatus(VirtualFile)} reports the previous ones, so renderers may show stale
+   * statuses for a moment; listeners are notified once the new statuses are in place and repaint the nodes. The new statuses
+   * are applied in any modality state, so that trees shown in modal dialogs, e.g. the commit one, don't keep the stale ones.
+   */
+  private void scheduleBulkRefresh() {
+    final int generation = myBulkRefreshGeneration.incrementAndGet();
+    final List<CachedStatus> snapshot = new ArrayList<CachedStatus>();
+    final List<CachedStatus> dropped = new ArrayList<CachedStatus>();
+    for (Enumeration<CachedStatus> e = myCachedStatusesById.elements(); e.hasMoreElements(); ) {
+      final CachedStatus cached = e.nextElement();
+      if (cached.myUsed && snapshot.size() < MAX_REFRESHED_STATUSES) {
+        cached.myUsed = false;
+        snapshot.add(cached);
+      }
+      else {
+        dropped.add(cached);
+      }
+    }
+    for (CachedStatus cached : dropped) {
+      myCachedStatusesById.remove(((VirtualFileWithId)cached.myFile).getId());
+    }
+
+    final Application application = ApplicationManager.getApplication();
+    application.executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        final FileStatus[] statuses = new FileStatus[snapshot.size()];
+        for (int i = 0; i < statuses.length; i++) {
+          if (isBulkRefreshObsolete(generation)) return;
+          final VirtualFile file = snapshot.get(i).myFile;
+          statuses[i] = application.runReadAction(new Computable<FileStatus>() {
+            @Override
+            public FileStatus compute() {
+              return file.isValid() ? calcStatus(file) : null;
+            }
+          });
+        }
+
+        application.invokeLater(new DumbAwareRunnable() {
+          public void run() {
+            if (isBulkRefreshObsolete(generation)) return;
+            for (int i = 0; i < statuses.length; i++) {
+              CachedStatus old = snapshot.get(i);
+              int id = ((VirtualFileWithId)old.myFile).getId();
+              // statuses updated individually meanwhile are newer than the calculated ones
+              if (myCachedStatusesById.get(id) != old) continue;
+              if (statuses[i] == null) {
+                myCachedStatusesById.remove(id);
+              }
+              else {
+                myCachedStatusesById.put(id, new CachedStatus(old.myFile, statuses[i], old.myUsed));
+              }
+            }
+            notifyStatusesChanged();
+          }
+        }, ModalityState.any());
+      }
+    });
+  }
+
+  @TestOnly
+  public void setBulkRefreshInTests(boolean enabled) {
+    myBulkRefreshInTests = enabled;
+  }
+
+  private boolean isBulkRefreshObsolete(int generation) {
+    return generation != myBulkRefreshGeneration.get() || myProject.isDisposed();
+  }
+
   public void fileStatusChanged(final VirtualFile file) {
     final Application application = ApplicationManager.getApplication();
     if (!application.isDispatchThread() && !application.isUnitTestMode()) {
@@ -182,17 +306,17 @@ public class FileStatusManagerImpl extends FileStatusManager implements ProjectC
     }
 
     if ((file == null) || (! file.isValid())) return;
-    FileStatus cachedStatus = getCachedStatus(file);
+    FileStatus cachedStatus = getCachedStatus(file, false);
     if (cachedStatus == FileStatusNull.INSTANCE) {
       return;
     }
     if (cachedStatus == null) {
-      myCachedStatuses.put(file, FileStatusNull.INSTANCE);
+      putCachedStatus(file, FileStatusNull.INSTANCE);
       return;
     }
-    FileStatus newStatus = calcStatus(file);
+    FileStatus newStatus = calcStatusInEdt(file);
     if (cachedStatus == newStatus) return;
-    myCachedStatuses.put(file, newStatus);
+    putCachedStatus(file, newStatus);
 
     for (FileStatusListener listener : myListeners) {
       listener.fileStatusChanged(file);
@@ -200,19 +324,71 @@ public class FileStatusManagerImpl extends FileStatusManager implements ProjectC
   }
 
   public FileStatus getStatus(final VirtualFile file) {
-    FileStatus status = getCachedStatus(file);
+    FileStatus status = getCachedStatus(file, true);
     if (status == null || status == FileStatusNull.INSTANCE) {
-      status = calcStatus(file);
-      myCachedStatuses.put(file, status);
+      status = calcStatusInEdt(file);
+      putCachedStatus(file, status);
     }
 
     return status;
   }
 
+  private FileStatus calcStatusInEdt(@NotNull VirtualFile file) {
+    if (!ApplicationManager.getApplication().isDispatchThread()) {
+      return calcStatus(file);
+    }
+    long start = System.nanoTime();
+    try {
+      return calcStatus(file);
+    }
+    finally {
+      myEdtCalculationTime.addAndGet(System.nanoTime() - start);
+      myEdtCalculationCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * @return total time in nanoseconds spent calculating file statuses in the event dispatch thread
+   */
+  public long getEdtCalculationTime() {
+    return myEdtCalculationTime.get();
+  }
+
+  @Nullable
   public FileStatus getCachedStatus(final VirtualFile file) {
+    return getCachedStatus(file, false);
+  }
+
+  /**
+   * @param markUsed whether the status is asked for by UI, so that it's kept up to date by the next bulk refresh
+   */
+  @Nullable
+  private FileStatus getCachedStatus(final VirtualFile file, boolean markUsed) {
+    if (file instanceof VirtualFileWithId) {
+      CachedStatus cached = myCachedStatusesById.get(((VirtualFileWithId)file).getId());
+      if (cached == null) return null;
+      if (markUsed) {
+        cached.myUsed = true;
+      }
+      return cached.myStatus;
+    }
     return myCachedStatuses.get(file);
   }
 
+  private void putCachedStatus(@NotNull VirtualFile file, @NotNull FileStatus status) {
+    if (file instanceof VirtualFileWithId) {
+      myCachedStatusesById.put(((VirtualFileWithId)file).getId(), new CachedStatus(file, status, true));
+    }
+    else {
+      myCachedStatuses.put(file, status);
+    }
+  }
+
+  private void clearCachedStatuses() {
+    myCachedStatusesById.clear();
+    myCachedStatuses.clear();
+  }
+
   public void removeFileStatusListener(FileStatusListener listener) {
     myListeners.remove(listener);
   }
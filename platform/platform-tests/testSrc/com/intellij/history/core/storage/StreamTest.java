@@ -281,4 +281,35 @@ public class StreamTest extends LocalHistoryTestCase {
 
     assertNull(read.getName());
   }
+
+  @Test
+  public void testChangeSetAffectedPaths() throws IOException {
+    ChangeSet cs = cs(123, "name",
+                      new CreateFileChange(nextId(), "dir/sub/file"),
+                      new MoveChange(nextId(), "to/moved", "from"));
+
+    cs.write(os);
+    ChangeSet read = new ChangeSet(is);
+
+    assertTrue(read.mayAffectPath("dir/sub/file"));
+    assertTrue(read.mayAffectPath("dir"));
+    assertTrue(read.mayAffectPath("dir/sub/file/child"));
+    assertTrue(read.mayAffectPath("to/moved/child"));
+    assertTrue(read.mayAffectPath("from/moved"));
+
+    assertFalse(read.mayAffectPath("dir/other"));
+    assertFalse(read.mayAffectPath("unrelated"));
+
+    assertEquals(2, read.getChanges().size());
+  }
+
+  @Test
+  public void testChangeSetWithLabelAffectsEverything() throws IOException {
+    ChangeSet cs = cs(123, "name", new PutLabelChange(nextId(), "label", "project"));
+
+    cs.write(os);
+    ChangeSet read = new ChangeSet(is);
+
+    assertTrue(read.mayAffectPath("unrelated"));
+  }
 }
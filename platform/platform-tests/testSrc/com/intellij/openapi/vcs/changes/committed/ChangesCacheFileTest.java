@@ -0,0 +1,175 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.changes.committed;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.*;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.history.VcsRevisionNumber;
+import com.intellij.openapi.vcs.versionBrowser.ChangeBrowserSettings;
+import com.intellij.openapi.vcs.versionBrowser.ChangesBrowserSettingsEditor;
+import com.intellij.openapi.vcs.versionBrowser.CommittedChangeList;
+import com.intellij.openapi.vcs.versionBrowser.CommittedChangeListImpl;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestCase;
+import com.intellij.util.AsynchConsumer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class ChangesCacheFileTest extends PlatformTestCase {
+  // every list takes 256 bytes, so lists end exactly where the 16K read buffer is refilled
+  private static final String COMMENT = StringUtil.repeatSymbol('c', 256 - 8 - 8 - 2);
+  private static final int COUNT = 200;
+
+  private ChangesCacheFile myCacheFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    final File dir = createTempDirectory();
+    final VirtualFile root = getVirtualFile(dir);
+    final MockAbstractVcs vcs = new MockAbstractVcs(myProject);
+    vcs.setCommittedChangesProvider(new MockCachingProvider());
+    myCacheFile = new ChangesCacheFile(myProject, new File(dir, "changes"), vcs, root, new DefaultRepositoryLocation("mock"));
+  }
+
+  public void testReadAllChangesAcrossBufferBoundaries() throws Exception {
+    final List<CommittedChangeList> lists = new ArrayList<CommittedChangeList>();
+    for (int i = 0; i < COUNT; i++) {
+      lists.add(createList(i));
+    }
+    myCacheFile.writeChanges(lists);
+
+    final List<CommittedChangeList> read = myCacheFile.readChanges(new ChangeBrowserSettings(), 0);
+    assertEquals(COUNT, read.size());
+    for (int i = 0; i < COUNT; i++) {
+      assertEquals(i, read.get(i).getNumber());
+      assertEquals(COMMENT, read.get(i).getComment());
+    }
+  }
+
+  public void testReadLastChanges() throws Exception {
+    final List<CommittedChangeList> lists = new ArrayList<CommittedChangeList>();
+    for (int i = 0; i < COUNT; i++) {
+      lists.add(createList(i));
+    }
+    myCacheFile.writeChanges(lists);
+
+    final List<CommittedChangeList> read = myCacheFile.readChanges(new ChangeBrowserSettings(), 10);
+    assertEquals(10, read.size());
+    assertEquals(COUNT - 10, read.get(0).getNumber());
+    assertEquals(COUNT - 1, read.get(9).getNumber());
+  }
+
+  private static CommittedChangeList createList(final long number) {
+    return new CommittedChangeListImpl(String.valueOf(number), COMMENT, "author", number, new Date(1000000L + number * 1000),
+                                       Collections.<Change>emptyList());
+  }
+
+  private static class MockCachingProvider implements CachingCommittedChangesProvider<CommittedChangeList, ChangeBrowserSettings> {
+    public int getFormatVersion() {
+      return 1;
+    }
+
+    public void writeChangeList(final DataOutput stream, final CommittedChangeList list) throws IOException {
+      stream.writeLong(list.getNumber());
+      stream.writeLong(list.getCommitDate().getTime());
+      stream.writeUTF(list.getComment());
+    }
+
+    public CommittedChangeList readChangeList(final RepositoryLocation location, final DataInput stream) throws IOException {
+      final long number = stream.readLong();
+      final Date date = new Date(stream.readLong());
+      final String comment = stream.readUTF();
+      return new CommittedChangeListImpl(String.valueOf(number), comment, "author", number, date, Collections.<Change>emptyList());
+    }
+
+    public boolean isMaxCountSupported() {
+      return true;
+    }
+
+    public Collection<FilePath> getIncomingFiles(final RepositoryLocation location) {
+      return null;
+    }
+
+    public boolean refreshCacheByNumber() {
+      return true;
+    }
+
+    public String getChangelistTitle() {
+      return null;
+    }
+
+    public boolean isChangeLocallyAvailable(FilePath filePath, VcsRevisionNumber localRevision, VcsRevisionNumber changeRevision,
+                                            CommittedChangeList changeList) {
+      return false;
+    }
+
+    public boolean refreshIncomingWithCommitted() {
+      return false;
+    }
+
+    public ChangeBrowserSettings createDefaultSettings() {
+      return new ChangeBrowserSettings();
+    }
+
+    public ChangesBrowserSettingsEditor<ChangeBrowserSettings> createFilterUI(final boolean showDateFilter) {
+      return null;
+    }
+
+    public RepositoryLocation getLocationFor(final FilePath root) {
+      return null;
+    }
+
+    public RepositoryLocation getLocationFor(final FilePath root, final String repositoryPath) {
+      return null;
+    }
+
+    public VcsCommittedListsZipper getZipper() {
+      return null;
+    }
+
+    public List<CommittedChangeList> getCommittedChanges(ChangeBrowserSettings settings, RepositoryLocation location, final int maxCount) {
+      return Collections.emptyList();
+    }
+
+    public void loadCommittedChanges(ChangeBrowserSettings settings, RepositoryLocation location, int maxCount,
+                                     AsynchConsumer<CommittedChangeList> consumer) {
+      consumer.finished();
+    }
+
+    public ChangeListColumn[] getColumns() {
+      return new ChangeListColumn[0];
+    }
+
+    public VcsCommittedViewAuxiliary createActions(final DecoratorManager manager, final RepositoryLocation location) {
+      return null;
+    }
+
+    public int getUnlimitedCountValue() {
+      return 0;
+    }
+
+    public Pair<CommittedChangeList, FilePath> getOneList(final VirtualFile file, final VcsRevisionNumber number) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.impl;
+
+import com.intellij.openapi.application.impl.LaterInvocator;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FileStatus;
+import com.intellij.openapi.vcs.FileStatusListener;
+import com.intellij.openapi.vcs.FileStatusManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestCase;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FileStatusManagerTest extends PlatformTestCase {
+  private final Map<VirtualFile, FileStatus> myStatuses = Collections.synchronizedMap(new HashMap<VirtualFile, FileStatus>());
+  private final AtomicInteger myNotifications = new AtomicInteger();
+  private FileStatusManagerImpl myManager;
+  private VirtualFile myFile;
+  private VirtualFile myOtherFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myManager = (FileStatusManagerImpl)FileStatusManager.getInstance(myProject);
+    myManager.setFileStatusProvider(new FileStatusProvider() {
+      @Override
+      public FileStatus getFileStatus(VirtualFile virtualFile) {
+        final FileStatus status = myStatuses.get(virtualFile);
+        return status != null ? status : FileStatus.NOT_CHANGED;
+      }
+
+      @Override
+      public void refreshFileStatusFromDocument(VirtualFile file, Document doc) {
+      }
+    });
+    myManager.addFileStatusListener(new FileStatusListener() {
+      @Override
+      public void fileStatusesChanged() {
+        myNotifications.incrementAndGet();
+      }
+
+      @Override
+      public void fileStatusChanged(@NotNull VirtualFile virtualFile) {
+      }
+    }, getTestRootDisposable());
+    myManager.setBulkRefreshInTests(true);
+
+    final File dir = createTempDirectory();
+    myFile = getVirtualFile(createTempFile(dir, "a.txt"));
+    myOtherFile = getVirtualFile(createTempFile(dir, "b.txt"));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myManager.setBulkRefreshInTests(false);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testPreviousStatusReportedUntilRefreshed() throws Exception {
+    assertEquals(FileStatus.NOT_CHANGED, myManager.getStatus(myFile));
+    myStatuses.put(myFile, FileStatus.MODIFIED);
+
+    final int notifications = myNotifications.get();
+    myManager.fileStatusesChanged();
+    assertEquals(notifications, myNotifications.get());
+    assertEquals(FileStatus.NOT_CHANGED, myManager.getCachedStatus(myFile));
+
+    waitForRefresh(notifications);
+    assertEquals(FileStatus.MODIFIED, myManager.getCachedStatus(myFile));
+  }
+
+  public void testOnlyStatusesAskedForAreRefreshed() throws Exception {
+    myManager.getStatus(myFile);
+    myManager.getStatus(myOtherFile);
+    int notifications = myNotifications.get();
+    myManager.fileStatusesChanged();
+    waitForRefresh(notifications);
+
+    // a cached status peeked at without asking for it is not kept up to date
+    myManager.getStatus(myFile);
+    myManager.getCachedStatus(myOtherFile);
+    notifications = myNotifications.get();
+    myManager.fileStatusesChanged();
+    assertNull(myManager.getCachedStatus(myOtherFile));
+    waitForRefresh(notifications);
+    assertEquals(FileStatus.NOT_CHANGED, myManager.getCachedStatus(myFile));
+    assertNull(myManager.getCachedStatus(myOtherFile));
+  }
+
+  public void testRefreshedWhileModalDialogIsShown() throws Exception {
+    myManager.getStatus(myFile);
+    myStatuses.put(myFile, FileStatus.ADDED);
+
+    final Object dialog = new Object();
+    LaterInvocator.enterModal(dialog);
+    try {
+      final int notifications = myNotifications.get();
+      myManager.fileStatusesChanged();
+      waitForRefresh(notifications);
+      assertEquals(FileStatus.ADDED, myManager.getCachedStatus(myFile));
+    }
+    finally {
+      LaterInvocator.leaveModal(dialog);
+    }
+  }
+
+  private static File createTempFile(File dir, String name) throws IOException {
+    final File file = new File(dir, name);
+    FileUtil.writeToFile(file, name);
+    return file;
+  }
+
+  private void waitForRefresh(int notifications) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (myNotifications.get() == notifications) {
+      assertTrue("file statuses were not refreshed", System.currentTimeMillis() < deadline);
+      UIUtil.dispatchAllInvocationEvents();
+      Thread.sleep(10);
+    }
+  }
+}
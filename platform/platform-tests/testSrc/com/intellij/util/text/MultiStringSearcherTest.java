@@ -0,0 +1,136 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.text;
+
+import com.intellij.testFramework.UsefulTestCase;
+import com.intellij.util.PairProcessor;
+
+import java.util.*;
+
+public class MultiStringSearcherTest extends UsefulTestCase {
+  public void testFindsOverlappingOccurrences() {
+    StringSearcher he = new StringSearcher("he", true, true);
+    StringSearcher she = new StringSearcher("she", true, true);
+    StringSearcher hers = new StringSearcher("hers", true, true);
+    StringSearcher his = new StringSearcher("his", true, true);
+
+    List<String> occurrences = findOccurrences("ushers his", he, she, hers, his);
+    assertEquals(Arrays.asList("she:1", "he:2", "hers:2", "his:7"), occurrences);
+  }
+
+  public void testCaseSensitivity() {
+    StringSearcher sensitive = new StringSearcher("Foo", true, true);
+    StringSearcher insensitive = new StringSearcher("bar", false, true);
+
+    assertEquals(Arrays.asList("Foo:0", "bar:8", "bar:12"), findOccurrences("Foo foo BAR Bar", sensitive, insensitive));
+  }
+
+  public void testSameAsStringSearcher() {
+    Random random = new Random(42);
+    List<StringSearcher> searchers = new ArrayList<StringSearcher>();
+    for (int i = 0; i < 20; i++) {
+      searchers.add(new StringSearcher(randomWord(random, 1 + random.nextInt(4)), random.nextBoolean(), true));
+    }
+    String text = randomWord(random, 10000);
+
+    List<String> expected = new ArrayList<String>();
+    for (StringSearcher searcher : searchers) {
+      for (int index = searcher.scan(text); index >= 0; index = searcher.scan(text, index + 1, text.length())) {
+        expected.add(searcher.getPattern() + ":" + index);
+      }
+    }
+    List<String> occurrences = findOccurrences(text, searchers.toArray(new StringSearcher[searchers.size()]));
+
+    Collections.sort(expected);
+    Collections.sort(occurrences);
+    assertEquals(expected, occurrences);
+  }
+
+  public void testManyWordsPerformance() {
+    final Random random = new Random(42);
+    final List<StringSearcher> searchers = new ArrayList<StringSearcher>();
+    for (int i = 0; i < 50; i++) {
+      searchers.add(new StringSearcher("method" + i, true, true));
+    }
+    final StringBuilder builder = new StringBuilder();
+    while (builder.length() < 1000000) {
+      builder.append(randomWord(random, 1 + random.nextInt(10))).append(' ');
+      if (random.nextInt(100) == 0) builder.append("method").append(random.nextInt(100)).append("();\n");
+    }
+    final String text = builder.toString();
+    final MultiStringSearcher multiSearcher = new MultiStringSearcher(searchers);
+
+    final int[] perSearcherCount = {0};
+    final int[] multiCount = {0};
+    // what a file with several requested words used to cost: one scan of the text per searcher
+    long perSearcher = bestTime(new Runnable() {
+      @Override
+      public void run() {
+        perSearcherCount[0] = 0;
+        for (StringSearcher searcher : searchers) {
+          for (int index = searcher.scan(text); index >= 0; index = searcher.scan(text, index + 1, text.length())) {
+            perSearcherCount[0]++;
+          }
+        }
+      }
+    });
+    long multi = bestTime(new Runnable() {
+      @Override
+      public void run() {
+        multiCount[0] = 0;
+        multiSearcher.processOccurrences(text, 0, text.length(), new PairProcessor<StringSearcher, Integer>() {
+          @Override
+          public boolean process(StringSearcher searcher, Integer offset) {
+            multiCount[0]++;
+            return true;
+          }
+        });
+      }
+    });
+    assertEquals(perSearcherCount[0], multiCount[0]);
+    assertTrue("one pass for all the words took " + multi + "ms, one pass per word took " + perSearcher + "ms", multi < perSearcher);
+  }
+
+  private static long bestTime(Runnable runnable) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < 10; i++) {
+      long start = System.currentTimeMillis();
+      runnable.run();
+      best = Math.min(best, System.currentTimeMillis() - start);
+    }
+    return best;
+  }
+
+  private static List<String> findOccurrences(String text, StringSearcher... searchers) {
+    final List<String> result = new ArrayList<String>();
+    new MultiStringSearcher(Arrays.asList(searchers)).processOccurrences(text, 0, text.length(), new PairProcessor<StringSearcher, Integer>() {
+      @Override
+      public boolean process(StringSearcher searcher, Integer offset) {
+        result.add(searcher.getPattern() + ":" + offset);
+        return true;
+      }
+    });
+    return result;
+  }
+
+  private static String randomWord(Random random, int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      builder.append((char)((random.nextBoolean() ? 'a' : 'A') + random.nextInt(3)));
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.io.storage;
+
+import com.intellij.openapi.util.io.ByteSequence;
+
+import java.io.IOException;
+
+/**
+ * Greedy single-pass LZ77 compressor producing LZ4 block sequences, prefixed with the 4-byte uncompressed length.
+ */
+class LZ4BlockCompressor {
+  private static final int MIN_MATCH = 4;
+  private static final int LAST_LITERALS = 5;
+  private static final int MF_LIMIT = 12;
+  private static final int MAX_DISTANCE = 0xFFFF;
+  private static final int HASH_LOG = 12;
+  private static final int RUN_MASK = 0x0F;
+  private static final int HEADER_SIZE = 4;
+
+  private LZ4BlockCompressor() {
+  }
+
+  static ByteSequence compress(byte[] src, int off, int len) {
+    byte[] dst = new byte[HEADER_SIZE + len + len / 255 + 16];
+    writeIntBE(dst, 0, len);
+    int op = HEADER_SIZE;
+
+    int end = off + len;
+    int anchor = off;
+    if (len >= MF_LIMIT + 1) {
+      int[] table = new int[1 << HASH_LOG]; // positions relative to off, plus one; zero means empty
+      int matchLimit = end - LAST_LITERALS;
+      int ip = off;
+      while (ip < end - MF_LIMIT) {
+        int sequence = readInt(src, ip);
+        int h = hash(sequence);
+        int ref = off + table[h] - 1;
+        table[h] = ip - off + 1;
+        if (ref < off || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+          ip++;
+          continue;
+        }
+
+        int matchLen = MIN_MATCH;
+        while (ip + matchLen < matchLimit && src[ref + matchLen] == src[ip + matchLen]) matchLen++;
+
+        op = writeSequence(dst, op, src, anchor, ip - anchor, ip - ref, matchLen - MIN_MATCH);
+        ip += matchLen;
+        anchor = ip;
+      }
+    }
+
+    int literals = end - anchor;
+    int tokenPos = op++;
+    dst[tokenPos] = (byte)(Math.min(literals, RUN_MASK) << 4);
+    op = writeLength(dst, op, literals);
+    System.arraycopy(src, anchor, dst, op, literals);
+    op += literals;
+
+    return new ByteSequence(dst, 0, op);
+  }
+
+  static byte[] decompress(byte[] src) throws IOException {
+    if (src.length < HEADER_SIZE + 1) throw new IOException("Corrupted LZ4 block: too short");
+    int length = readIntBE(src, 0);
+    if (length < 0) throw new IOException("Corrupted LZ4 block: negative length");
+    byte[] dst = new byte[length];
+
+    int ip = HEADER_SIZE;
+    int op = 0;
+    int end = src.length;
+    while (true) {
+      if (ip >= end) throw new IOException("Corrupted LZ4 block: truncated sequence");
+      int token = src[ip++] & 0xFF;
+
+      int literals = token >>> 4;
+      if (literals == RUN_MASK) {
+        int b;
+        do {
+          if (ip >= end) throw new IOException("Corrupted LZ4 block: truncated literal length");
+          b = src[ip++] & 0xFF;
+          literals += b;
+        }
+        while (b == 0xFF);
+      }
+      if (ip + literals > end || op + literals > length) throw new IOException("Corrupted LZ4 block: literals out of bounds");
+      System.arraycopy(src, ip, dst, op, literals);
+      ip += literals;
+      op += literals;
+
+      if (ip == end) break;
+
+      if (ip + 2 > end) throw new IOException("Corrupted LZ4 block: truncated offset");
+      int offset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+      ip += 2;
+      int ref = op - offset;
+      if (offset == 0 || ref < 0) throw new IOException("Corrupted LZ4 block: bad match offset " + offset);
+
+      int matchLen = token & RUN_MASK;
+      if (matchLen == RUN_MASK) {
+        int b;
+        do {
+          if (ip >= end) throw new IOException("Corrupted LZ4 block: truncated match length");
+          b = src[ip++] & 0xFF;
+          matchLen += b;
+        }
+        while (b == 0xFF);
+      }
+      matchLen += MIN_MATCH;
+      if (op + matchLen > length) throw new IOException("Corrupted LZ4 block: match out of bounds");
+
+      // matches may overlap the bytes they produce, so copy byte by byte
+      for (int i = 0; i < matchLen; i++) {
+        dst[op++] = dst[ref++];
+      }
+    }
+
+    if (op != length) throw new IOException("Corrupted LZ4 block: expected " + length + " bytes but got " + op);
+    return dst;
+  }
+
+  private static int writeSequence(byte[] dst, int op, byte[] src, int literalsStart, int literals, int offset, int matchLenExtra) {
+    int tokenPos = op++;
+    dst[tokenPos] = (byte)((Math.min(literals, RUN_MASK) << 4) | Math.min(matchLenExtra, RUN_MASK));
+    op = writeLength(dst, op, literals);
+    System.arraycopy(src, literalsStart, dst, op, literals);
+    op += literals;
+    dst[op++] = (byte)offset;
+    dst[op++] = (byte)(offset >>> 8);
+    return writeLength(dst, op, matchLenExtra);
+  }
+
+  private static int writeLength(byte[] dst, int op, int length) {
+    if (length < RUN_MASK) return op;
+    length -= RUN_MASK;
+    while (length >= 0xFF) {
+      dst[op++] = (byte)0xFF;
+      length -= 0xFF;
+    }
+    dst[op++] = (byte)length;
+    return op;
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  private static int readInt(byte[] bytes, int pos) {
+    return (bytes[pos] & 0xFF) | ((bytes[pos + 1] & 0xFF) << 8) | ((bytes[pos + 2] & 0xFF) << 16) | ((bytes[pos + 3] & 0xFF) << 24);
+  }
+
+  private static int readIntBE(byte[] bytes, int pos) {
+    return ((bytes[pos] & 0xFF) << 24) | ((bytes[pos + 1] & 0xFF) << 16) | ((bytes[pos + 2] & 0xFF) << 8) | (bytes[pos + 3] & 0xFF);
+  }
+
+  private static void writeIntBE(byte[] bytes, int pos, int value) {
+    bytes[pos] = (byte)(value >>> 24);
+    bytes[pos + 1] = (byte)(value >>> 16);
+    bytes[pos + 2] = (byte)(value >>> 8);
+    bytes[pos + 3] = (byte)value;
+  }
+}
@@ -19,34 +19,49 @@
  */
 package com.intellij.util.io.storage;
 
-import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
 import com.intellij.openapi.util.io.ByteSequence;
-import com.intellij.openapi.util.io.StreamUtil;
 import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.containers.ConcurrentHashMap;
 import com.intellij.util.io.PagePool;
-import com.intellij.util.io.UnsyncByteArrayInputStream;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.*;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RefCountingStorage extends AbstractStorage {
+  private static final int COMPRESSION_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+  // upper bound for uncompressed bytes waiting in the write queue, writers block once it is reached
+  private static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+
   private final Map<Integer, Future<?>> myPendingWriteRequests = new ConcurrentHashMap<Integer, Future<?>>();
-  private final ThreadPoolExecutor myPendingWriteRequestsExecutor = new ThreadPoolExecutor(1, 1, Long.MAX_VALUE, TimeUnit.DAYS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+  private final ThreadPoolExecutor myPendingWriteRequestsExecutor = new ThreadPoolExecutor(COMPRESSION_THREADS, COMPRESSION_THREADS, Long.MAX_VALUE, TimeUnit.DAYS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+    private final AtomicInteger myCount = new AtomicInteger();
+
     @Override
     public Thread newThread(Runnable runnable) {
-      return new Thread(runnable, "RefCountingStorage write content helper");
+      return new Thread(runnable, "RefCountingStorage write content helper " + myCount.incrementAndGet());
     }
   });
+  private final Semaphore myPendingBytes = new Semaphore(MAX_PENDING_BYTES);
+
+  private final AtomicLong myUncompressedBytes = new AtomicLong();
+  private final AtomicLong myCompressedBytes = new AtomicLong();
+  private final AtomicInteger myMaxQueueDepth = new AtomicInteger();
 
   private final boolean myDoNotZipCaches = Boolean.valueOf(System.getProperty("idea.doNotZipCaches")).booleanValue();
+  private final StorageCodec myCodec;
 
   public RefCountingStorage(String path) throws IOException {
+    this(path, StorageCodec.DEFLATE);
+  }
+
+  public RefCountingStorage(String path, @NotNull StorageCodec codec) throws IOException {
     super(path);
+    myCodec = codec;
   }
 
   @Override
@@ -55,28 +70,26 @@ public class RefCountingStorage extends AbstractStorage {
     if (myDoNotZipCaches) return super.readBytes(record);
     waitForPendingWriteForRecord(record);
 
+    byte[] result;
     synchronized (myLock) {
-
-      byte[] result = super.readBytes(record);
-      InflaterInputStream in = new InflaterInputStream(new UnsyncByteArrayInputStream(result));
-      try {
-        return StreamUtil.loadFromStream(in);
-      }
-      finally {
-        in.close();
-      }
+      result = super.readBytes(record);
     }
+    return myCodec.decompress(result);
   }
 
   private void waitForPendingWriteForRecord(int record) {
     Future<?> future = myPendingWriteRequests.get(record);
     if (future != null) {
-      try {
-        future.get();
-      }
-      catch (Exception e) {
-        throw new RuntimeException(e);
-      }
+      waitFor(future);
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    }
+    catch (Exception e) {
+      throw new RuntimeException(e);
     }
   }
 
@@ -95,32 +108,63 @@ public class RefCountingStorage extends AbstractStorage {
 
     waitForPendingWriteForRecord(record);
 
+    final int permits = Math.min(bytes.getLength(), MAX_PENDING_BYTES);
+    myPendingBytes.acquireUninterruptibly(permits);
+
     synchronized (myLock) {
-      Future<Object> future = myPendingWriteRequestsExecutor.submit(new Callable<Object>() {
+      // another thread may have queued a write for the same record meanwhile, compression runs in parallel so keep the order explicitly
+      final Future<?> previous = myPendingWriteRequests.get(record);
+      final FutureTask<Object> future = new FutureTask<Object>(new Callable<Object>() {
         @Override
         public Object call() throws IOException {
-          BufferExposingByteArrayOutputStream s = new BufferExposingByteArrayOutputStream();
-          DeflaterOutputStream out = new DeflaterOutputStream(s);
           try {
-            out.write(bytes.getBytes(), bytes.getOffset(), bytes.getLength());
+            ByteSequence compressed = myCodec.compress(bytes);
+            myUncompressedBytes.addAndGet(bytes.getLength());
+            myCompressedBytes.addAndGet(compressed.getLength());
+
+            if (previous != null) waitFor(previous);
+            synchronized (myLock) {
+              doWrite(record, fixedSize, compressed);
+            }
+            return null;
           }
           finally {
-            out.close();
-          }
-
-          synchronized (myLock) {
-            doWrite(record, fixedSize, s);
-            myPendingWriteRequests.remove(record);
+            myPendingBytes.release(permits);
           }
-          return null;
         }
-      });
+      }) {
+        @Override
+        protected void done() {
+          myPendingWriteRequests.remove(record, this);
+        }
+      };
       myPendingWriteRequests.put(record, future);
+      myPendingWriteRequestsExecutor.execute(future);
+
+      int depth = myPendingWriteRequestsExecutor.getQueue().size();
+      int max;
+      while (depth > (max = myMaxQueueDepth.get()) && !myMaxQueueDepth.compareAndSet(max, depth));
     }
   }
 
-  private void doWrite(int record, boolean fixedSize, BufferExposingByteArrayOutputStream s) throws IOException {
-    super.writeBytes(record, new ByteSequence(s.getInternalBuffer(), 0, s.size()), fixedSize);
+  private void doWrite(int record, boolean fixedSize, ByteSequence compressed) throws IOException {
+    super.writeBytes(record, compressed, fixedSize);
+  }
+
+  /**
+   * @return ratio of compressed to uncompressed size for all contents written by this storage instance, 1 if nothing was written yet
+   */
+  public double getCompressionRatio() {
+    long uncompressed = myUncompressedBytes.get();
+    return uncompressed == 0 ? 1 : (double)myCompressedBytes.get() / uncompressed;
+  }
+
+  public int getPendingWriteCount() {
+    return myPendingWriteRequests.size();
+  }
+
+  public int getMaxQueueDepth() {
+    return myMaxQueueDepth.get();
   }
 
   @Override
@@ -179,6 +223,11 @@ public class RefCountingStorage extends AbstractStorage {
   @Override
   public void dispose() {
     flushPendingWrites();
+    myPendingWriteRequestsExecutor.shutdown();
+    if (LOG.isDebugEnabled() && myUncompressedBytes.get() > 0) {
+      LOG.debug("Content storage (" + myCodec + "): " + myUncompressedBytes.get() + " bytes written as " + myCompressedBytes.get() +
+                ", max write queue depth " + myMaxQueueDepth.get());
+    }
     super.dispose();
   }
 
@@ -190,11 +239,7 @@ public class RefCountingStorage extends AbstractStorage {
 
   private void flushPendingWrites() {
     for(Map.Entry<Integer, Future<?>> entry:myPendingWriteRequests.entrySet()) {
-      try {
-        entry.getValue().get();
-      } catch (Exception e) {
-        throw new RuntimeException(e);
-      }
+      waitFor(entry.getValue());
     }
   }
 }
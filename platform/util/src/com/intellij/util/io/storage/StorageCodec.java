@@ -0,0 +1,95 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.io.storage;
+
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.io.ByteSequence;
+import com.intellij.openapi.util.io.StreamUtil;
+import com.intellij.util.io.UnsyncByteArrayInputStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression scheme used by {@link RefCountingStorage} for record contents.
+ * The codec is a property of the storage files: records written with one codec can't be read with another.
+ */
+public abstract class StorageCodec {
+  public static final StorageCodec DEFLATE = new StorageCodec("deflate") {
+    @NotNull
+    @Override
+    public ByteSequence compress(@NotNull ByteSequence bytes) throws IOException {
+      BufferExposingByteArrayOutputStream s = new BufferExposingByteArrayOutputStream();
+      DeflaterOutputStream out = new DeflaterOutputStream(s);
+      try {
+        out.write(bytes.getBytes(), bytes.getOffset(), bytes.getLength());
+      }
+      finally {
+        out.close();
+      }
+      return new ByteSequence(s.getInternalBuffer(), 0, s.size());
+    }
+
+    @NotNull
+    @Override
+    public byte[] decompress(@NotNull byte[] bytes) throws IOException {
+      InflaterInputStream in = new InflaterInputStream(new UnsyncByteArrayInputStream(bytes));
+      try {
+        return StreamUtil.loadFromStream(in);
+      }
+      finally {
+        in.close();
+      }
+    }
+  };
+
+  /**
+   * Byte-oriented LZ77 block codec (LZ4 block layout). Compresses worse than {@link #DEFLATE} but is several times faster
+   * in both directions.
+   */
+  public static final StorageCodec LZ4 = new StorageCodec("lz4") {
+    @NotNull
+    @Override
+    public ByteSequence compress(@NotNull ByteSequence bytes) throws IOException {
+      return LZ4BlockCompressor.compress(bytes.getBytes(), bytes.getOffset(), bytes.getLength());
+    }
+
+    @NotNull
+    @Override
+    public byte[] decompress(@NotNull byte[] bytes) throws IOException {
+      return LZ4BlockCompressor.decompress(bytes);
+    }
+  };
+
+  private final String myName;
+
+  protected StorageCodec(@NotNull String name) {
+    myName = name;
+  }
+
+  @NotNull
+  public abstract ByteSequence compress(@NotNull ByteSequence bytes) throws IOException;
+
+  @NotNull
+  public abstract byte[] decompress(@NotNull byte[] bytes) throws IOException;
+
+  @Override
+  public String toString() {
+    return myName;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.text;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.PairProcessor;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds occurrences of the patterns of several forward {@link StringSearcher}s in one pass over the text (Aho-Corasick automaton),
+ * so the cost of the scan does not grow with the number of patterns.
+ * Occurrences are matched the way the searchers match them; word boundaries are up to the caller.
+ * Immutable, may be used by several threads at once.
+ */
+public class MultiStringSearcher {
+  private final StringSearcher[] mySearchers;
+  private final List<Node> myNodes = new ArrayList<Node>();
+
+  public MultiStringSearcher(@NotNull Collection<StringSearcher> searchers) {
+    mySearchers = searchers.toArray(new StringSearcher[searchers.size()]);
+    myNodes.add(new Node());
+    for (int i = 0; i < mySearchers.length; i++) {
+      assert mySearchers[i].isForwardDirection() : mySearchers[i].getPattern();
+      addPattern(mySearchers[i].getPattern(), i);
+    }
+    buildFailureLinks();
+  }
+
+  // the trie is built of lower cased patterns, case sensitive ones are checked when an occurrence is found
+  private void addPattern(@NotNull String pattern, int index) {
+    int node = 0;
+    for (int i = 0; i < pattern.length(); i++) {
+      final char c = StringUtil.toLowerCase(pattern.charAt(i));
+      int next = myNodes.get(node).getChild(c);
+      if (next < 0) {
+        next = myNodes.size();
+        myNodes.add(new Node());
+        myNodes.get(node).addChild(c, next);
+      }
+      node = next;
+    }
+    myNodes.get(node).myOutputs.add(index);
+  }
+
+  private void buildFailureLinks() {
+    final TIntArrayList queue = new TIntArrayList();
+    final Node root = myNodes.get(0);
+    for (int i = 0; i < root.myChildCount; i++) {
+      queue.add(root.myTargets[i]);
+    }
+    for (int head = 0; head < queue.size(); head++) {
+      final Node node = myNodes.get(queue.get(head));
+      for (int i = 0; i < node.myChildCount; i++) {
+        final int childIndex = node.myTargets[i];
+        final Node child = myNodes.get(childIndex);
+        child.myFailure = findTransition(node.myFailure, node.myChars[i]);
+        // nodes are processed in breadth-first order, so the outputs of the failure node are complete already
+        child.myOutputs.add(myNodes.get(child.myFailure).myOutputs.toNativeArray());
+        queue.add(childIndex);
+      }
+    }
+  }
+
+  private int findTransition(int node, char c) {
+    while (true) {
+      final int next = myNodes.get(node).getChild(c);
+      if (next >= 0) return next;
+      if (node == 0) return 0;
+      node = myNodes.get(node).myFailure;
+    }
+  }
+
+  /**
+   * @param processor receives the searcher and the start offset of every occurrence of its pattern, in the order of their ends
+   * @return false if the processor returned false
+   */
+  public boolean processOccurrences(@NotNull CharSequence text, int start, int end,
+                                    @NotNull PairProcessor<StringSearcher, Integer> processor) {
+    int node = 0;
+    for (int i = start; i < end; i++) {
+      node = findTransition(node, StringUtil.toLowerCase(text.charAt(i)));
+      final TIntArrayList outputs = myNodes.get(node).myOutputs;
+      for (int j = 0; j < outputs.size(); j++) {
+        final StringSearcher searcher = mySearchers[outputs.get(j)];
+        final int offset = i - searcher.getPattern().length() + 1;
+        if (offset < start) continue;
+        if (searcher.isCaseSensitive() && !StringUtil.startsWith(text, offset, searcher.getPattern())) continue;
+        if (!processor.process(searcher, offset)) return false;
+      }
+    }
+    return true;
+  }
+
+  private static class Node {
+    private char[] myChars = new char[1];
+    private int[] myTargets = new int[1];
+    private int myChildCount;
+    private int myFailure;
+    private final TIntArrayList myOutputs = new TIntArrayList(0);
+
+    private int getChild(char c) {
+      for (int i = 0; i < myChildCount; i++) {
+        if (myChars[i] == c) return myTargets[i];
+      }
+      return -1;
+    }
+
+    private void addChild(char c, int target) {
+      if (myChildCount == myChars.length) {
+        final char[] chars = new char[myChildCount * 2];
+        System.arraycopy(myChars, 0, chars, 0, myChildCount);
+        myChars = chars;
+        final int[] targets = new int[myChildCount * 2];
+        System.arraycopy(myTargets, 0, targets, 0, myChildCount);
+        myTargets = targets;
+      }
+      myChars[myChildCount] = c;
+      myTargets[myChildCount] = target;
+      myChildCount++;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.io.storage;
+
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.ByteSequence;
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class RefCountingStorageTest extends TestCase {
+  private RefCountingStorage myStorage;
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (myStorage != null) Disposer.dispose(myStorage);
+    AbstractStorage.deleteFiles(getFileName());
+    super.tearDown();
+  }
+
+  private String getFileName() {
+    return FileUtil.getTempDirectory() + File.separatorChar + getName();
+  }
+
+  public void testDeflate() throws Exception {
+    doTestRewrites(StorageCodec.DEFLATE);
+  }
+
+  public void testLZ4() throws Exception {
+    doTestRewrites(StorageCodec.LZ4);
+  }
+
+  public void testLZ4RoundTrip() throws Exception {
+    Random random = new Random(42);
+    assertRoundTrip(new byte[0]);
+    assertRoundTrip("a".getBytes());
+    assertRoundTrip("abcabcabcabcabcabcabcabcabcabcabcabcabcabcabcabcabcabcabc".getBytes());
+    for (int i = 0; i < 100; i++) {
+      byte[] bytes = new byte[random.nextInt(100000)];
+      // small alphabet gives both short and long matches
+      int alphabet = 1 + random.nextInt(255);
+      for (int j = 0; j < bytes.length; j++) {
+        bytes[j] = (byte)random.nextInt(alphabet);
+      }
+      assertRoundTrip(bytes);
+    }
+  }
+
+  public void testLZ4Corrupted() throws Exception {
+    byte[] compressed = toArray(StorageCodec.LZ4.compress(new ByteSequence("Hello Hello Hello Hello Hello".getBytes())));
+    compressed[0] = 1;
+    try {
+      StorageCodec.LZ4.decompress(compressed);
+      fail();
+    }
+    catch (IOException ignored) {
+    }
+  }
+
+  private void doTestRewrites(StorageCodec codec) throws IOException {
+    myStorage = new RefCountingStorage(getFileName(), codec);
+    int count = 1000;
+    int[] records = new int[count];
+    for (int i = 0; i < count; i++) {
+      records[i] = myStorage.acquireNewRecord();
+    }
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < count; i++) {
+        myStorage.writeBytes(records[i], new ByteSequence(content(i, round).getBytes()), false);
+      }
+      for (int i = 0; i < count; i++) {
+        assertEquals(content(i, round), new String(myStorage.readBytes(records[i])));
+      }
+    }
+    myStorage.force();
+    assertEquals(0, myStorage.getPendingWriteCount());
+    assertTrue(myStorage.getCompressionRatio() < 1);
+  }
+
+  private static String content(int i, int round) {
+    StringBuilder builder = new StringBuilder();
+    for (int j = 0; j < 10 + i % 50; j++) {
+      builder.append("record ").append(i).append(" round ").append(round).append('\n');
+    }
+    return builder.toString();
+  }
+
+  private static void assertRoundTrip(byte[] bytes) throws IOException {
+    byte[] compressed = toArray(StorageCodec.LZ4.compress(new ByteSequence(bytes)));
+    assertTrue(Arrays.equals(bytes, StorageCodec.LZ4.decompress(compressed)));
+  }
+
+  private static byte[] toArray(ByteSequence sequence) {
+    byte[] result = new byte[sequence.getLength()];
+    System.arraycopy(sequence.getBytes(), sequence.getOffset(), result, 0, sequence.getLength());
+    return result;
+  }
+}
@@ -34,6 +34,7 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.channels.Channels;
 import java.util.*;
 
 /**
@@ -64,6 +65,9 @@ public class ChangesCacheFile {
   @NonNls private static final String INDEX_EXTENSION = ".index";
   private static final int INDEX_ENTRY_SIZE = 3*8+2;
   private static final int HEADER_SIZE = 46;
+  // number of index entries read at once when walking the index
+  private static final int INDEX_CHUNK_SIZE = 256;
+  private static final int READ_BUFFER_SIZE = 16 * 1024;
 
   public ChangesCacheFile(Project project, File path, AbstractVcs vcs, VirtualFile root, RepositoryLocation location) {
     final Calendar date = Calendar.getInstance();
@@ -225,12 +229,12 @@ public class ChangesCacheFile {
     if (count == 0) {
       return NO_ENTRIES;
     }
-    // offset from start
-    myIndexStream.seek(INDEX_ENTRY_SIZE * offsetFromStart);
-    IndexEntry[] result = new IndexEntry[count];
-    for(int i = (count - 1); i >= 0; --i) {
-      result [i] = new IndexEntry();
-      readIndexEntry(result [i]);
+    IndexEntry[] result = readIndexEntries(offsetFromStart, count);
+    // newest first
+    for (int i = 0, j = count - 1; i < j; i++, j--) {
+      IndexEntry e = result [i];
+      result [i] = result [j];
+      result [j] = e;
     }
     return result;
   }
@@ -246,20 +250,34 @@ public class ChangesCacheFile {
     if (count == 0) {
       return NO_ENTRIES;
     }
-    myIndexStream.seek(myIndexStream.length() - INDEX_ENTRY_SIZE * (count + offset));
+    return readIndexEntries(totalCount - count - offset, count);
+  }
+
+  /**
+   * Reads {@code count} consecutive index entries starting with the entry number {@code first} with a single read.
+   */
+  private IndexEntry[] readIndexEntries(final long first, final int count) throws IOException {
+    byte[] bytes = new byte[count * INDEX_ENTRY_SIZE];
+    myIndexStream.seek(first * INDEX_ENTRY_SIZE);
+    myIndexStream.readFully(bytes);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
     IndexEntry[] result = new IndexEntry[count];
-    for(int i=0; i<count; i++) {
+    for (int i = 0; i < count; i++) {
       result [i] = new IndexEntry();
-      readIndexEntry(result [i]);
+      readIndexEntry(result [i], in);
     }
     return result;
   }
 
   private void readIndexEntry(final IndexEntry result) throws IOException {
-    result.number = myIndexStream.readLong();
-    result.date = myIndexStream.readLong();
-    result.offset = myIndexStream.readLong();
-    result.completelyDownloaded = (myIndexStream.readShort() != 0);
+    readIndexEntry(result, myIndexStream);
+  }
+
+  private static void readIndexEntry(final IndexEntry result, final DataInput in) throws IOException {
+    result.number = in.readLong();
+    result.date = in.readLong();
+    result.offset = in.readLong();
+    result.completelyDownloaded = (in.readShort() != 0);
   }
 
   public Date getLastCachedDate() throws IOException {
@@ -386,9 +404,13 @@ public class ChangesCacheFile {
     openStreams();
     try {
       if (maxCount == 0) {
+        // available() can't tell the end of the file: the channel stream doesn't override it, so it is 0 after each refill
+        final long length = myStream.length();
         myStream.seek(HEADER_SIZE);  // skip header
-        while(myStream.getFilePointer() < myStream.length()) {
-          CommittedChangeList changeList = myChangesProvider.readChangeList(myLocation, myStream);
+        final CountingInputStream counter = new CountingInputStream(createBufferedStream());
+        final DataInputStream in = new DataInputStream(counter);
+        while(HEADER_SIZE + counter.getCount() < length) {
+          CommittedChangeList changeList = myChangesProvider.readChangeList(myLocation, in);
           if (filter.accepts(changeList)) {
             result.add(changeList);
           }
@@ -397,23 +419,19 @@ public class ChangesCacheFile {
       else if (!settings.isAnyFilterSpecified()) {
         IndexEntry[] entries = readLastIndexEntries(0, maxCount);
         for(IndexEntry entry: entries) {
-          myStream.seek(entry.offset);
-          result.add(myChangesProvider.readChangeList(myLocation, myStream));
+          result.add(loadChangeListAt(entry.offset));
         }
       }
       else {
-        int offset = 0;
-        while(result.size() < maxCount) {
-          IndexEntry[] entries = readLastIndexEntries(offset, 1);
-          if (entries.length == 0) {
-            break;
-          }
-          CommittedChangeList changeList = loadChangeListAt(entries [0].offset);
+        final BackIndexReader reader = new BackIndexReader();
+        IndexEntry entry;
+        while(result.size() < maxCount && (entry = reader.next()) != null) {
+          CommittedChangeList changeList = loadChangeListAt(entry.offset);
           if (filter.accepts(changeList)) {
-            result.add(0, changeList);
+            result.add(changeList);
           }
-          offset++;
         }
+        Collections.reverse(result);
       }
       return result;
     }
@@ -446,16 +464,18 @@ public class ChangesCacheFile {
 
   public List<CommittedChangeList> loadIncomingChanges() throws IOException {
     List<CommittedChangeList> result = new ArrayList<CommittedChangeList>();
-    int offset = 0;
+    loadHeader();
+    if (myIncomingCount == 0) {
+      debug("No incoming changelists in cache of " + myLocation);
+      return result;
+    }
     openStreams();
     try {
-      while(true) {
-        IndexEntry[] entries = readLastIndexEntries(offset, 1);
-        if (entries.length == 0) {
-          break;
-        }
-        if (!entries [0].completelyDownloaded) {
-          IncomingChangeListData data = readIncomingChangeListData(offset, entries [0]);
+      final BackIndexReader reader = new BackIndexReader();
+      IndexEntry entry;
+      while((entry = reader.next()) != null) {
+        if (!entry.completelyDownloaded) {
+          IncomingChangeListData data = readIncomingChangeListData(reader.getIndexOffset(), entry);
           if (data.accountedChanges.size() == 0) {
             result.add(data.changeList);
           }
@@ -470,7 +490,6 @@ public class ChangesCacheFile {
           }
           if (result.size() == myIncomingCount) break;
         }
-        offset++;
       }
       debug("Loaded " + result.size() + " incoming changelists");
     }
@@ -481,8 +500,52 @@ public class ChangesCacheFile {
   }
 
   private CommittedChangeList loadChangeListAt(final long clOffset) throws IOException {
-    myStream.seek(clOffset);
-    return myChangesProvider.readChangeList(myLocation, myStream);
+    return myChangesProvider.readChangeList(myLocation, createBufferedInput(clOffset));
+  }
+
+  /**
+   * Reading change lists directly from the RandomAccessFile costs a system call per field, so they are parsed from
+   * a buffered stream instead. The stream shares the file pointer with {@link #myStream} and must not be closed.
+   */
+  private DataInputStream createBufferedInput(final long offset) throws IOException {
+    myStream.seek(offset);
+    return new DataInputStream(createBufferedStream());
+  }
+
+  private InputStream createBufferedStream() {
+    return new BufferedInputStream(Channels.newInputStream(myStream.getChannel()), READ_BUFFER_SIZE);
+  }
+
+  /**
+   * Walks the index from the newest entry to the oldest one, reading it by chunks of {@link #INDEX_CHUNK_SIZE} entries.
+   */
+  private class BackIndexReader {
+    // number of the entry returned last, counting from the start of the index
+    private long myPosition;
+    private IndexEntry[] myChunk = NO_ENTRIES;
+    private int myChunkPosition;
+
+    private BackIndexReader() throws IOException {
+      myPosition = myIndexPath.exists() ? myIndexStream.length() / INDEX_ENTRY_SIZE : 0;
+    }
+
+    @Nullable
+    public IndexEntry next() throws IOException {
+      if (myChunkPosition == 0) {
+        if (myPosition == 0) {
+          return null;
+        }
+        int count = (int) Math.min(INDEX_CHUNK_SIZE, myPosition);
+        myChunk = readIndexEntries(myPosition - count, count);
+        myChunkPosition = count;
+      }
+      myPosition--;
+      return myChunk [--myChunkPosition];
+    }
+
+    public long getIndexOffset() {
+      return myPosition * INDEX_ENTRY_SIZE;
+    }
   }
 
   public boolean processUpdatedFiles(UpdatedFiles updatedFiles, Collection<CommittedChangeList> receivedChanges) throws IOException {
@@ -587,16 +650,15 @@ public class ChangesCacheFile {
   }
 
   private List<IncomingChangeListData> loadIncomingChangeListData() throws IOException {
-    final long length = myIndexStream.length();
-    long totalCount = length / INDEX_ENTRY_SIZE;
     List<IncomingChangeListData> incomingData = new ArrayList<IncomingChangeListData>();
-    for(int i=0; i<totalCount; i++) {
-      final long indexOffset = length - (i + 1) * INDEX_ENTRY_SIZE;
-      myIndexStream.seek(indexOffset);
-      IndexEntry e = new IndexEntry();
-      readIndexEntry(e);
+    if (myIncomingCount == 0) {
+      return incomingData;
+    }
+    final BackIndexReader reader = new BackIndexReader();
+    IndexEntry e;
+    while((e = reader.next()) != null) {
       if (!e.completelyDownloaded) {
-        incomingData.add(readIncomingChangeListData(indexOffset, e));
+        incomingData.add(readIncomingChangeListData(reader.getIndexOffset(), e));
         if (incomingData.size() == myIncomingCount) {
           break;
         }
@@ -1018,6 +1080,43 @@ public class ChangesCacheFile {
 
   private static final IndexEntry[] NO_ENTRIES = new IndexEntry[0];
 
+  private static class CountingInputStream extends FilterInputStream {
+    private long myCount;
+
+    private CountingInputStream(final InputStream in) {
+      super(in);
+    }
+
+    public long getCount() {
+      return myCount;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int b = super.read();
+      if (b >= 0) {
+        myCount++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      final int read = super.read(b, off, len);
+      if (read > 0) {
+        myCount += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+      final long skipped = super.skip(n);
+      myCount += skipped;
+      return skipped;
+    }
+  }
+
   private static class VersionMismatchException extends RuntimeException {
   }
 
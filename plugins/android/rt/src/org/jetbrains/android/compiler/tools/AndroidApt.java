@@ -19,6 +19,7 @@ import com.android.sdklib.IAndroidTarget;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.Consumer;
 import com.intellij.util.containers.HashMap;
 import org.jetbrains.android.util.AndroidCommonUtils;
 import org.jetbrains.android.util.AndroidCompilerMessageKind;
@@ -210,7 +211,8 @@ public final class AndroidApt {
 
   public static Map<AndroidCompilerMessageKind, List<String>> crunch(@NotNull IAndroidTarget target,
                                                                      @NotNull List<String> resPaths,
-                                                                     @NotNull String outputPath) throws IOException {
+                                                                     @NotNull String outputPath,
+                                                                     @Nullable Consumer<Process> processConsumer) throws IOException {
     final ArrayList<String> args = new ArrayList<String>();
 
     //noinspection deprecation
@@ -227,7 +229,7 @@ public final class AndroidApt {
     args.add(outputPath);
 
     LOG.info(AndroidCommonUtils.command2string(args));
-    return AndroidExecutionUtil.doExecute(ArrayUtil.toStringArray(args));
+    return AndroidExecutionUtil.doExecute(processConsumer, ArrayUtil.toStringArray(args));
   }
 
   public static Map<AndroidCompilerMessageKind, List<String>> packageResources(@NotNull IAndroidTarget target,
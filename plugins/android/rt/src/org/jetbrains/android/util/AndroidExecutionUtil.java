@@ -15,7 +15,9 @@
  */
 package org.jetbrains.android.util;
 
+import com.intellij.util.Consumer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -35,8 +37,21 @@ public final class AndroidExecutionUtil {
 
   @NotNull
   public static Map<AndroidCompilerMessageKind, List<String>> doExecute(String... argv) throws IOException {
+    return doExecute(null, argv);
+  }
+
+  /**
+   * @param processConsumer receives the process once it is started, e.g. to destroy it if the execution is cancelled
+   */
+  @NotNull
+  public static Map<AndroidCompilerMessageKind, List<String>> doExecute(@Nullable Consumer<Process> processConsumer, String... argv)
+    throws IOException {
     ProcessBuilder builder = new ProcessBuilder(argv);
-    ProcessResult result = readProcessOutput(builder.start());
+    Process process = builder.start();
+    if (processConsumer != null) {
+      processConsumer.consume(process);
+    }
+    ProcessResult result = readProcessOutput(process);
     Map<AndroidCompilerMessageKind, List<String>> messages = result.getMessages();
     int code = result.getExitCode();
     List<String> errMessages = messages.get(AndroidCompilerMessageKind.ERROR);
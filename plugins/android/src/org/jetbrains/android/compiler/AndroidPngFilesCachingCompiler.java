@@ -6,24 +6,29 @@ import com.intellij.openapi.compiler.*;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Consumer;
 import com.intellij.util.containers.HashMap;
 import com.intellij.util.containers.hash.HashSet;
 import org.jetbrains.android.compiler.tools.AndroidApt;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.sdk.AndroidPlatform;
 import org.jetbrains.android.util.AndroidBundle;
+import org.jetbrains.android.util.AndroidCompilerMessageKind;
 import org.jetbrains.android.util.AndroidUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.DataInput;
-import java.io.DataOutput;
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
 
 /**
  * @author Eugene.Kudelevsky
@@ -31,6 +36,10 @@ import java.util.*;
 public class AndroidPngFilesCachingCompiler implements SourceGeneratingCompiler {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.android.compiler.AndroidPngFilesCachingCompiler");
 
+  // saved states start with the marker and the version, the states saved in other formats are treated as missing
+  private static final String STATE_FORMAT_MARKER = "png-files-state";
+  private static final int STATE_FORMAT_VERSION = 2;
+
   @NotNull
   @Override
   public GenerationItem[] getGenerationItems(final CompileContext context) {
@@ -79,9 +88,10 @@ public class AndroidPngFilesCachingCompiler implements SourceGeneratingCompiler
       return new GenerationItem[0];
     }
 
-    context.getProgressIndicator().setText("Processing PNG files...");
+    final ProgressIndicator indicator = context.getProgressIndicator();
+    indicator.setText("Processing PNG files...");
 
-    final List<GenerationItem> processedItems = new ArrayList<GenerationItem>();
+    final Map<MyItem, String> item2CacheDir = new LinkedHashMap<MyItem, String>();
 
     for (GenerationItem GenerationItem : items) {
       final MyItem item = (MyItem)GenerationItem;
@@ -91,36 +101,113 @@ public class AndroidPngFilesCachingCompiler implements SourceGeneratingCompiler
         continue;
       }
 
-      final String resDirOsPath = FileUtil.toSystemDependentName(item.getResourceDir().getPath());
-
       try {
         final String resCacheDirOsPath = AndroidCompileUtil.findResourcesCacheDirectory(module, true, context);
-        if (resCacheDirOsPath == null) {
-          continue;
-        }
-
-        final Map<CompilerMessageCategory, List<String>> messages = AndroidCompileUtil.toCompilerMessageCategoryKeys(
-          AndroidApt.crunch(item.getTarget(), Collections.singletonList(resDirOsPath), resCacheDirOsPath));
-        AndroidCompileUtil.addMessages(context, messages, null);
-        if (context.getMessages(CompilerMessageCategory.ERROR).length == 0) {
-          processedItems.add(item);
+        if (resCacheDirOsPath != null) {
+          item2CacheDir.put(item, resCacheDirOsPath);
         }
       }
       catch (IOException e) {
-        final String message = e.getMessage();
-        if (message != null) {
+        reportException(context, e);
+      }
+    }
+
+    if (item2CacheDir.isEmpty()) {
+      return new GenerationItem[0];
+    }
+
+    // every item is crunched by a separate aapt process, so the items are processed in parallel
+    final int threadsCount = Math.min(item2CacheDir.size(), Runtime.getRuntime().availableProcessors());
+    final ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+    final RunningProcesses processes = new RunningProcesses();
+    final Map<MyItem, Future<Map<AndroidCompilerMessageKind, List<String>>>> item2Future =
+      new LinkedHashMap<MyItem, Future<Map<AndroidCompilerMessageKind, List<String>>>>();
+    final List<GenerationItem> processedItems = new ArrayList<GenerationItem>();
+
+    try {
+      for (Map.Entry<MyItem, String> entry : item2CacheDir.entrySet()) {
+        final MyItem item = entry.getKey();
+        final String resCacheDirOsPath = entry.getValue();
+        final String resDirOsPath = FileUtil.toSystemDependentName(item.getResourceDir().getPath());
+
+        item2Future.put(item, executor.submit(new Callable<Map<AndroidCompilerMessageKind, List<String>>>() {
+          @Override
+          public Map<AndroidCompilerMessageKind, List<String>> call() throws Exception {
+            // the item must not be reported as processed, as an empty message map would be
+            indicator.checkCanceled();
+            return AndroidApt.crunch(item.getTarget(), Collections.singletonList(resDirOsPath), resCacheDirOsPath, processes);
+          }
+        }));
+      }
+
+      for (Map.Entry<MyItem, Future<Map<AndroidCompilerMessageKind, List<String>>>> entry : item2Future.entrySet()) {
+        final Map<AndroidCompilerMessageKind, List<String>> messages;
+        try {
+          messages = waitFor(entry.getValue(), indicator);
+        }
+        catch (InterruptedException e) {
           LOG.info(e);
-          context.addMessage(CompilerMessageCategory.ERROR, e.getMessage(), null, -1, -1);
+          break;
+        }
+        catch (ExecutionException e) {
+          final Throwable cause = e.getCause();
+          if (cause instanceof ProcessCanceledException) {
+            break;
+          }
+          if (cause instanceof IOException) {
+            reportException(context, (IOException)cause);
+            continue;
+          }
+          LOG.error(cause);
+          continue;
+        }
+        if (messages == null) {
+          // cancelled, the items which are not crunched yet are left for the next make
+          break;
         }
-        else {
-          LOG.error(e);
+        final int errorsCount = context.getMessages(CompilerMessageCategory.ERROR).length;
+        AndroidCompileUtil.addMessages(context, AndroidCompileUtil.toCompilerMessageCategoryKeys(messages), null);
+
+        if (context.getMessages(CompilerMessageCategory.ERROR).length == errorsCount) {
+          processedItems.add(entry.getKey());
         }
       }
     }
+    finally {
+      // all the processes have finished unless the make was cancelled
+      processes.destroyAll();
+      executor.shutdownNow();
+    }
 
     return processedItems.toArray(new GenerationItem[processedItems.size()]);
   }
 
+  @Nullable
+  private static <T> T waitFor(@NotNull Future<T> future, @NotNull ProgressIndicator indicator)
+    throws InterruptedException, ExecutionException {
+    while (true) {
+      if (indicator.isCanceled()) {
+        return null;
+      }
+      try {
+        return future.get(200, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+    }
+  }
+
+  private static void reportException(@NotNull CompileContext context, @NotNull IOException e) {
+    final String message = e.getMessage();
+    if (message != null) {
+      LOG.info(e);
+      context.addMessage(CompilerMessageCategory.ERROR, message, null, -1, -1);
+    }
+    else {
+      LOG.error(e);
+    }
+  }
+
   @Nullable
   @Override
   public VirtualFile getPresentableFile(CompileContext context, Module module, VirtualFile outputRoot, VirtualFile generatedFile) {
@@ -140,13 +227,44 @@ public class AndroidPngFilesCachingCompiler implements SourceGeneratingCompiler
 
   @Override
   public ValidityState createValidityState(DataInput in) throws IOException {
-    return new MyValidityState(in);
+    return MyValidityState.read(in);
+  }
+
+  /**
+   * Aapt processes started for the items. Interrupting the threads which wait for them doesn't stop the processes, so they are
+   * destroyed explicitly when the make is cancelled.
+   */
+  static class RunningProcesses implements Consumer<Process> {
+    private final List<Process> myProcesses = new ArrayList<Process>();
+    private boolean myDestroyed;
+
+    @Override
+    public synchronized void consume(Process process) {
+      if (myDestroyed) {
+        process.destroy();
+      }
+      else {
+        myProcesses.add(process);
+      }
+    }
+
+    /**
+     * Destroys the started processes and the ones which will be started later.
+     */
+    public synchronized void destroyAll() {
+      myDestroyed = true;
+      for (Process process : myProcesses) {
+        process.destroy();
+      }
+      myProcesses.clear();
+    }
   }
 
   private static class MyItem implements GenerationItem {
     private final Module myModule;
     private final IAndroidTarget myTarget;
     private final VirtualFile myResourceDir;
+    private MyValidityState myValidityState;
 
     private MyItem(@NotNull Module module,
                    @NotNull IAndroidTarget target,
@@ -184,42 +302,70 @@ public class AndroidPngFilesCachingCompiler implements SourceGeneratingCompiler
 
     @Override
     public ValidityState getValidityState() {
-      return new MyValidityState(myTarget, myResourceDir);
+      // the same state is compared with the saved one and then saved itself, so the content hashes are computed once
+      if (myValidityState == null) {
+        myValidityState = new MyValidityState(myTarget, myResourceDir);
+      }
+      return myValidityState;
     }
   }
 
-  private static class MyValidityState implements ValidityState {
+  /**
+   * Depends on the content of png files rather than on their timestamps, so fresh checkouts and touched files with unchanged
+   * content don't cause crunching. Contents are only hashed for the files which timestamps differ from the saved ones.
+   */
+  static class MyValidityState implements ValidityState {
     private final String myTargetHashString;
-    private final Map<String, Long> myTimestamps = new HashMap<String, Long>();
+    // path relative to the resource dir -> state of the file
+    private final Map<String, PngFileState> myFileStates = new HashMap<String, PngFileState>();
 
     private MyValidityState(@NotNull IAndroidTarget target, @NotNull VirtualFile resourceDir) {
-      myTargetHashString = target.hashString();
-      collectPngFiles(resourceDir, new HashSet<VirtualFile>());
+      this(target.hashString(), resourceDir);
+    }
+
+    MyValidityState(@NotNull String targetHashString, @NotNull VirtualFile resourceDir) {
+      myTargetHashString = targetHashString;
+      collectPngFiles(resourceDir, resourceDir, new HashSet<VirtualFile>());
+    }
+
+    /**
+     * @return the saved state, or null if it was saved in another format
+     */
+    @Nullable
+    static MyValidityState read(@NotNull DataInput in) throws IOException {
+      // the states saved before the format got a version start with the target hash string
+      if (!STATE_FORMAT_MARKER.equals(in.readUTF()) || in.readInt() != STATE_FORMAT_VERSION) {
+        return null;
+      }
+      return new MyValidityState(in);
     }
 
-    public MyValidityState(@NotNull DataInput in) throws IOException {
+    private MyValidityState(@NotNull DataInput in) throws IOException {
       myTargetHashString = in.readUTF();
 
       final int pairsCount = in.readInt();
       for (int i = 0; i < pairsCount; i++) {
         final String path = in.readUTF();
         final long timestamp = in.readLong();
-        myTimestamps.put(path, timestamp);
+        final long length = in.readLong();
+        final long crc = in.readLong();
+        myFileStates.put(path, new PngFileState(timestamp, length, crc));
       }
     }
 
-    private void collectPngFiles(@NotNull VirtualFile file, @NotNull Set<VirtualFile> visited) {
+    private void collectPngFiles(@NotNull VirtualFile resourceDir, @NotNull VirtualFile file, @NotNull Set<VirtualFile> visited) {
       if (!visited.add(file)) {
         return;
       }
 
       if (file.isDirectory()) {
         for (VirtualFile child : file.getChildren()) {
-          collectPngFiles(child, visited);
+          collectPngFiles(resourceDir, child, visited);
         }
       }
       else if (AndroidUtils.PNG_EXTENSION.equals(file.getExtension())) {
-        myTimestamps.put(file.getPath(), file.getTimeStamp());
+        final String path = VfsUtilCore.getRelativePath(file, resourceDir, '/');
+        myFileStates.put(path != null ? path : file.getPath(), new PngFileState(file));
       }
     }
 
@@ -235,18 +381,108 @@ public class AndroidPngFilesCachingCompiler implements SourceGeneratingCompiler
         return false;
       }
 
-      return myTimestamps.equals(other.myTimestamps);
+      if (!myFileStates.keySet().equals(other.myFileStates.keySet())) {
+        return false;
+      }
+
+      boolean result = true;
+      for (Map.Entry<String, PngFileState> entry : myFileStates.entrySet()) {
+        // keep going after a mismatch to take over the known hashes of the files with unchanged timestamps,
+        // they are needed when the state is saved
+        result &= entry.getValue().hasSameContent(other.myFileStates.get(entry.getKey()), result);
+      }
+      return result;
     }
 
     @Override
     public void save(DataOutput out) throws IOException {
+      out.writeUTF(STATE_FORMAT_MARKER);
+      out.writeInt(STATE_FORMAT_VERSION);
       out.writeUTF(myTargetHashString);
 
-      out.writeInt(myTimestamps.size());
-      for (Map.Entry<String, Long> e : myTimestamps.entrySet()) {
+      out.writeInt(myFileStates.size());
+      for (Map.Entry<String, PngFileState> e : myFileStates.entrySet()) {
+        final PngFileState state = e.getValue();
         out.writeUTF(e.getKey());
-        out.writeLong(e.getValue());
+        out.writeLong(state.myTimestamp);
+        out.writeLong(state.myLength);
+        out.writeLong(state.getContentHash());
+      }
+    }
+  }
+
+  private static class PngFileState {
+    private static final long UNKNOWN_HASH = -1;
+
+    private final long myTimestamp;
+    private final long myLength;
+    // null for the saved states
+    @Nullable private final VirtualFile myFile;
+    // CRC32 of the content, computed lazily for the current states
+    private long myContentHash = UNKNOWN_HASH;
+
+    private PngFileState(@NotNull VirtualFile file) {
+      myTimestamp = file.getTimeStamp();
+      myLength = file.getLength();
+      myFile = file;
+    }
+
+    private PngFileState(long timestamp, long length, long contentHash) {
+      myTimestamp = timestamp;
+      myLength = length;
+      myFile = null;
+      myContentHash = contentHash;
+    }
+
+    private boolean hasSameContent(@NotNull PngFileState other, boolean computeHashes) {
+      if (myLength != other.myLength) {
+        return false;
+      }
+
+      if (myTimestamp == other.myTimestamp) {
+        if (myContentHash == UNKNOWN_HASH) {
+          myContentHash = other.myContentHash;
+        }
+        else if (other.myContentHash == UNKNOWN_HASH) {
+          other.myContentHash = myContentHash;
+        }
+        return true;
+      }
+      if (!computeHashes) {
+        return false;
+      }
+      // the files which couldn't be read are never considered unchanged
+      final long contentHash = getContentHash();
+      return contentHash != UNKNOWN_HASH && contentHash == other.getContentHash();
+    }
+
+    private long getContentHash() {
+      if (myContentHash == UNKNOWN_HASH && myFile != null) {
+        myContentHash = computeContentHash(myFile);
+      }
+      return myContentHash;
+    }
+
+    private static long computeContentHash(@NotNull VirtualFile file) {
+      final CRC32 crc = new CRC32();
+      try {
+        final InputStream in = new FileInputStream(new File(file.getPath()));
+        try {
+          final byte[] buffer = new byte[8192];
+          int count;
+          while ((count = in.read(buffer)) > 0) {
+            crc.update(buffer, 0, count);
+          }
+        }
+        finally {
+          in.close();
+        }
+      }
+      catch (IOException e) {
+        LOG.info(e);
+        return UNKNOWN_HASH;
       }
+      return crc.getValue();
     }
   }
 }
@@ -22,9 +22,12 @@ import com.intellij.openapi.fileTypes.StdFileTypes;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.*;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.xml.XmlAttributeValue;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
@@ -56,10 +59,21 @@ public abstract class ResourceManager {
 
   protected final Module myModule;
   protected final AndroidFacet myFacet;
+  private final ResourceNamesCache myNamesCache;
 
   protected ResourceManager(@NotNull AndroidFacet facet) {
     myFacet = facet;
     myModule = facet.getModule();
+    myNamesCache = new ResourceNamesCache(new ModificationTracker() {
+      @Override
+      public long getModificationCount() {
+        // xml files have no code blocks, so any change of a resource file is counted;
+        // vfs count covers resource files added or removed outside of the editor
+        final Project project = myModule.getProject();
+        return PsiModificationTracker.SERVICE.getInstance(project).getOutOfCodeBlockModificationCount() +
+               VirtualFileManager.getInstance().getModificationCount();
+      }
+    });
   }
 
   public Module getModule() {
@@ -70,6 +84,14 @@ public abstract class ResourceManager {
     return myFacet;
   }
 
+  /**
+   * @return cache for the resource names collected by this manager; managers of the same resources may share it
+   */
+  @NotNull
+  protected ResourceNamesCache getNamesCache() {
+    return myNamesCache;
+  }
+
   @NotNull
   public abstract VirtualFile[] getAllResourceDirs();
 
@@ -205,7 +227,17 @@ public abstract class ResourceManager {
   }
 
   @NotNull
-  public Set<String> getFileResourcesNames(@NotNull String resourceType) {
+  public Collection<String> getFileResourcesNames(@NotNull final String resourceType) {
+    return getNamesCache().getNames("file:" + resourceType, new Computable<Collection<String>>() {
+      @Override
+      public Collection<String> compute() {
+        return doGetFileResourcesNames(resourceType);
+      }
+    });
+  }
+
+  @NotNull
+  private Set<String> doGetFileResourcesNames(@NotNull String resourceType) {
     Set<String> result = new HashSet<String>();
     List<VirtualFile> dirs = getResourceSubdirs(resourceType);
     for (VirtualFile dir : dirs) {
@@ -225,7 +257,16 @@ public abstract class ResourceManager {
       LOG.error("Unknown resource type " + resourceType);
       return Collections.emptyList();
     }
+    return getNamesCache().getNames("value:" + resourceType, new Computable<Collection<String>>() {
+      @Override
+      public Collection<String> compute() {
+        return doGetValueResourceNames(resourceType);
+      }
+    });
+  }
 
+  @NotNull
+  private Set<String> doGetValueResourceNames(@NotNull String resourceType) {
     final FileBasedIndex index = FileBasedIndex.getInstance();
     final ResourceEntry typeMarkerEntry = AndroidValueResourcesIndex.createTypeMarkerEntry(resourceType);
     final GlobalSearchScope scope = GlobalSearchScope.allScope(myModule.getProject());
@@ -300,6 +341,16 @@ public abstract class ResourceManager {
 
   @NotNull
   public Collection<String> getIds() {
+    return getNamesCache().getNames("id", new Computable<Collection<String>>() {
+      @Override
+      public Collection<String> compute() {
+        return doGetIds();
+      }
+    });
+  }
+
+  @NotNull
+  private Set<String> doGetIds() {
     final Project project = myModule.getProject();
     final GlobalSearchScope scope = GlobalSearchScope.allScope(myModule.getProject());
 
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.resourceManagers;
+
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.ModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resource names collected by {@link ResourceManager} from the resource indices, grouped by a key such as the resource type.
+ * All the names are dropped at once when the modification count of the tracker changes.
+ */
+public class ResourceNamesCache {
+  private final ModificationTracker myTracker;
+  private final Map<String, Collection<String>> myNames = new HashMap<String, Collection<String>>();
+  private long myModificationCount = -1;
+
+  public ResourceNamesCache(@NotNull ModificationTracker tracker) {
+    myTracker = tracker;
+  }
+
+  @NotNull
+  public Collection<String> getNames(@NotNull String key, @NotNull Computable<Collection<String>> computable) {
+    final long modificationCount = myTracker.getModificationCount();
+
+    synchronized (this) {
+      if (myModificationCount != modificationCount) {
+        myNames.clear();
+        myModificationCount = modificationCount;
+      }
+      final Collection<String> names = myNames.get(key);
+
+      if (names != null) {
+        return names;
+      }
+    }
+    final Collection<String> names = Collections.unmodifiableCollection(computable.compute());
+
+    synchronized (this) {
+      // do not store names computed against outdated indices
+      if (myModificationCount == modificationCount) {
+        myNames.put(key, names);
+      }
+    }
+    return names;
+  }
+}
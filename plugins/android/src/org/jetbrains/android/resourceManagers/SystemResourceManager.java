@@ -49,6 +49,13 @@ public class SystemResourceManager extends ResourceManager {
     return LocalFileSystem.getInstance().findFileByPath(resPath);
   }
 
+  @NotNull
+  @Override
+  protected ResourceNamesCache getNamesCache() {
+    final AndroidTargetData targetData = myPlatform.getSdk().getTargetData(myPlatform.getTarget());
+    return targetData != null ? targetData.getFrameworkResourceNames(myModule.getProject()) : super.getNamesCache();
+  }
+
   @Nullable
   public static SystemResourceManager getInstance(@NotNull ConvertContext context) {
     AndroidFacet facet = AndroidFacet.getInstance(context);
@@ -10,14 +10,17 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.XmlRecursiveElementVisitor;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.containers.ConcurrentWeakHashMap;
 import com.intellij.util.containers.HashSet;
 import org.jetbrains.android.dom.attrs.AttributeDefinitions;
 import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.resourceManagers.ResourceNamesCache;
 import org.jetbrains.android.resourceManagers.SystemResourceManager;
 import org.jetbrains.android.uipreview.RenderServiceFactory;
 import org.jetbrains.android.uipreview.RenderingException;
@@ -26,6 +29,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Eugene.Kudelevsky
@@ -40,6 +44,12 @@ public class AndroidTargetData {
   private volatile RenderServiceFactory myRenderServiceFactory;
   private volatile Set<String> myThemes;
 
+  // names of the framework resources shared by all the modules of a project using the platform. They are collected from indices
+  // which cover the platform files only in the projects using it, so every project has its own names. The names are dropped on
+  // any vfs change, which includes updating the platform in the sdk.
+  private final ConcurrentMap<Project, ResourceNamesCache> myFrameworkResourceNames =
+    new ConcurrentWeakHashMap<Project, ResourceNamesCache>();
+
   public AndroidTargetData(@NotNull AndroidSdk sdk, @NotNull IAndroidTarget target) {
     mySdk = sdk;
     myTarget = target;
@@ -75,6 +85,20 @@ public class AndroidTargetData {
     return myRenderServiceFactory;
   }
 
+  @NotNull
+  public ResourceNamesCache getFrameworkResourceNames(@NotNull Project project) {
+    ResourceNamesCache cache = myFrameworkResourceNames.get(project);
+    if (cache == null) {
+      // the cache must not reference the project, otherwise the project is never collected
+      final ResourceNamesCache newCache = new ResourceNamesCache(VirtualFileManager.getInstance());
+      cache = myFrameworkResourceNames.putIfAbsent(project, newCache);
+      if (cache == null) {
+        cache = newCache;
+      }
+    }
+    return cache;
+  }
+
   public boolean areThemesCached() {
     return myThemes != null;
   }
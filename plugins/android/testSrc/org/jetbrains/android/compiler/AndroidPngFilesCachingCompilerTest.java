@@ -0,0 +1,166 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.compiler;
+
+import com.intellij.openapi.compiler.ValidityState;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestCase;
+
+import java.io.*;
+
+public class AndroidPngFilesCachingCompilerTest extends PlatformTestCase {
+  private static final String TARGET = "android-15";
+  private static final String ICON_PATH = "drawable/icon.png";
+
+  private File myResDir;
+  private File myIcon;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myResDir = createTempDirectory();
+    myIcon = new File(myResDir, ICON_PATH);
+    FileUtil.writeToFile(myIcon, new byte[]{1, 2, 3, 4});
+  }
+
+  public void testSavedStateIsUpToDate() throws Exception {
+    final ValidityState saved = saveAndRead(createState(TARGET));
+    assertNotNull(saved);
+    assertTrue(createState(TARGET).equalsTo(saved));
+  }
+
+  public void testTouchedFileWithSameContentIsUpToDate() throws Exception {
+    final ValidityState saved = saveAndRead(createState(TARGET));
+    modifyIcon(new byte[]{1, 2, 3, 4});
+    assertTrue(createState(TARGET).equalsTo(saved));
+  }
+
+  public void testChangedContentIsDetected() throws Exception {
+    final ValidityState saved = saveAndRead(createState(TARGET));
+    modifyIcon(new byte[]{4, 3, 2, 1});
+    assertFalse(createState(TARGET).equalsTo(saved));
+  }
+
+  public void testChangedTargetIsDetected() throws Exception {
+    final ValidityState saved = saveAndRead(createState(TARGET));
+    assertFalse(createState("android-16").equalsTo(saved));
+  }
+
+  public void testStateOfUnversionedFormatIsIgnored() throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF(TARGET);
+    out.writeInt(1);
+    out.writeUTF(ICON_PATH);
+    out.writeLong(myIcon.lastModified());
+    out.close();
+    assertNull(read(bytes.toByteArray()));
+  }
+
+  public void testStateOfOtherVersionIsIgnored() throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF("png-files-state");
+    out.writeInt(1);
+    out.writeUTF(TARGET);
+    out.writeInt(0);
+    out.close();
+    assertNull(read(bytes.toByteArray()));
+  }
+
+  public void testUnreadableFileIsNotUpToDate() throws Exception {
+    final ValidityState current = createState(TARGET);
+    final long timestamp = myIcon.lastModified();
+    // the file is still in the state, but its content can't be hashed anymore
+    assertTrue(myIcon.delete());
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF("png-files-state");
+    out.writeInt(2);
+    out.writeUTF(TARGET);
+    out.writeInt(1);
+    out.writeUTF(ICON_PATH);
+    out.writeLong(timestamp + 2000);
+    out.writeLong(4);
+    // the hash of a file which couldn't be read when the state was saved
+    out.writeLong(-1);
+    out.close();
+    final ValidityState saved = read(bytes.toByteArray());
+    assertNotNull(saved);
+    assertFalse(current.equalsTo(saved));
+  }
+
+  public void testProcessesDestroyed() throws Exception {
+    if (SystemInfo.isWindows) return;
+
+    final AndroidPngFilesCachingCompiler.RunningProcesses processes = new AndroidPngFilesCachingCompiler.RunningProcesses();
+    final Process running = new ProcessBuilder("sleep", "60").start();
+    processes.consume(running);
+    processes.destroyAll();
+    assertTerminated(running);
+
+    // a process started by an item which was being processed when the make was cancelled
+    final Process late = new ProcessBuilder("sleep", "60").start();
+    processes.consume(late);
+    assertTerminated(late);
+  }
+
+  private AndroidPngFilesCachingCompiler.MyValidityState createState(String target) {
+    final VirtualFile resDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(myResDir);
+    assertNotNull(resDir);
+    return new AndroidPngFilesCachingCompiler.MyValidityState(target, resDir);
+  }
+
+  private void modifyIcon(byte[] content) throws IOException {
+    final long timestamp = myIcon.lastModified();
+    FileUtil.writeToFile(myIcon, content);
+    assertTrue(myIcon.setLastModified(timestamp + 2000));
+    final VirtualFile icon = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(myIcon);
+    assertNotNull(icon);
+    icon.refresh(false, false);
+    assertEquals(timestamp + 2000, icon.getTimeStamp());
+  }
+
+  private static ValidityState saveAndRead(ValidityState state) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    state.save(out);
+    out.close();
+    return read(bytes.toByteArray());
+  }
+
+  private static ValidityState read(byte[] bytes) throws IOException {
+    return new AndroidPngFilesCachingCompiler().createValidityState(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+  private static void assertTerminated(Process process) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (true) {
+      try {
+        process.exitValue();
+        return;
+      }
+      catch (IllegalThreadStateException e) {
+        assertTrue("process is still running", System.currentTimeMillis() < deadline);
+        Thread.sleep(10);
+      }
+    }
+  }
+}
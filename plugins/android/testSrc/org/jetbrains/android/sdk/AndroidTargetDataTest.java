@@ -0,0 +1,67 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.sdk;
+
+import com.intellij.openapi.util.Computable;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.android.resourceManagers.ResourceNamesCache;
+import org.jetbrains.android.resourceManagers.SystemResourceManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AndroidTargetDataTest extends AndroidTestCase {
+  public void testFrameworkResourceNames() throws Exception {
+    final SystemResourceManager manager = myFacet.getSystemResourceManager();
+    assertNotNull(manager);
+    assertTrue(manager.getValueResourceNames("string").contains("ok"));
+  }
+
+  public void testFrameworkResourceNamesSharedWithinProject() throws Exception {
+    final AndroidTargetData targetData = getTargetData();
+    assertSame(targetData.getFrameworkResourceNames(getProject()), targetData.getFrameworkResourceNames(getProject()));
+  }
+
+  public void testFrameworkResourceNamesDroppedOnVfsChange() throws Exception {
+    final ResourceNamesCache cache = getTargetData().getFrameworkResourceNames(getProject());
+    final AtomicInteger computations = new AtomicInteger();
+    final Computable<Collection<String>> computable = new Computable<Collection<String>>() {
+      @Override
+      public Collection<String> compute() {
+        computations.incrementAndGet();
+        return Collections.singletonList("name");
+      }
+    };
+
+    cache.getNames("test", computable);
+    cache.getNames("test", computable);
+    assertEquals(1, computations.get());
+
+    // e.g. the platform is updated by the sdk manager
+    myFixture.addFileToProject("res/values/added.xml", "<resources/>");
+    cache.getNames("test", computable);
+    assertEquals(2, computations.get());
+  }
+
+  private AndroidTargetData getTargetData() {
+    final AndroidPlatform platform = myFacet.getConfiguration().getAndroidPlatform();
+    assertNotNull(platform);
+    final AndroidTargetData targetData = platform.getSdk().getTargetData(platform.getTarget());
+    assertNotNull(targetData);
+    return targetData;
+  }
+}
@@ -35,6 +35,7 @@ public interface IdeaPlugin extends DomElement {
 
   @NotNull
   @NameValue
+  @Stubbed
   GenericDomValue<String> getId();
 
   @NotNull
@@ -47,6 +48,7 @@ public interface IdeaPlugin extends DomElement {
   GenericAttributeValue<Boolean> getUseIdeaClassloader();
 
   @NotNull
+  @Stubbed
   GenericDomValue<String> getName();
 
 
@@ -94,6 +96,7 @@ public interface IdeaPlugin extends DomElement {
 
   @NotNull
   @SubTagList("module")
+  @Stubbed
   List<PluginModule> getModules();
 
   @NotNull
@@ -18,6 +18,7 @@ package org.jetbrains.idea.devkit.dom;
 import com.intellij.util.xml.DomElement;
 import com.intellij.util.xml.GenericAttributeValue;
 import com.intellij.util.xml.NameValue;
+import com.intellij.util.xml.Stubbed;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -27,6 +28,7 @@ public interface PluginModule extends DomElement {
 
   @NotNull
   @NameValue
+  @Stubbed
   GenericAttributeValue<String> getValue();
 
 }
@@ -17,14 +17,20 @@ package org.jetbrains.idea.devkit.dom.impl;
 
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.util.Function;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.xml.ConvertContext;
 import com.intellij.util.xml.DomFileElement;
+import com.intellij.util.xml.DomManager;
 import com.intellij.util.xml.DomService;
 import com.intellij.util.xml.ResolvingConverter;
+import com.intellij.util.xml.stubs.ElementStub;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -52,9 +58,23 @@ public class IdeaPluginConverter extends ResolvingConverter<IdeaPlugin> {
   @Override
   public Set<String> getAdditionalVariants(@NotNull final ConvertContext context) {
     final THashSet<String> result = new THashSet<String>();
-    for (IdeaPlugin ideaPlugin : getVariants(context)) {
-      for (PluginModule module : ideaPlugin.getModules()) {
-        ContainerUtil.addIfNotNull(module.getValue().getValue(), result);
+    final Project project = context.getFile().getProject();
+    if (DumbService.isDumb(project)) return result;
+
+    final DomService service = DomService.getInstance();
+    for (VirtualFile file : service.getDomFileCandidates(IdeaPlugin.class, project, GlobalSearchScope.allScope(project))) {
+      final ElementStub stub = service.getRootStub(file, IdeaPlugin.class, project);
+      if (stub != null) {
+        for (ElementStub module : stub.getChildren("module")) {
+          ContainerUtil.addIfNotNull(module.getAttributeValue("value"), result);
+        }
+        continue;
+      }
+      final IdeaPlugin ideaPlugin = getIdeaPlugin(file, project);
+      if (ideaPlugin != null) {
+        for (PluginModule module : ideaPlugin.getModules()) {
+          ContainerUtil.addIfNotNull(module.getValue().getValue(), result);
+        }
       }
     }
     return result;
@@ -79,18 +99,53 @@ public class IdeaPluginConverter extends ResolvingConverter<IdeaPlugin> {
   }
 
   public IdeaPlugin fromString(@Nullable @NonNls final String s, final ConvertContext context) {
-    for (IdeaPlugin ideaPlugin : getVariants(context)) {
-      final String otherId = ideaPlugin.getPluginId();
-      if (otherId == null) continue;
-      if (otherId.equals(s)) return ideaPlugin;
-      for (PluginModule module : ideaPlugin.getModules()) {
-        final String moduleName = module.getValue().getValue();
-        if (moduleName != null && moduleName.equals(s)) return ideaPlugin;
-      }
+    if (s == null) return null;
+    final Project project = context.getFile().getProject();
+    if (DumbService.isDumb(project)) return null;
+
+    // plugin ids and module names are stubbed, so only the plugin.xml which is looked for has to be parsed
+    final DomService service = DomService.getInstance();
+    for (VirtualFile file : service.getDomFileCandidates(IdeaPlugin.class, project, GlobalSearchScope.allScope(project))) {
+      final ElementStub stub = service.getRootStub(file, IdeaPlugin.class, project);
+      if (stub != null && !isPluginOrModule(stub, s)) continue;
+
+      final IdeaPlugin ideaPlugin = getIdeaPlugin(file, project);
+      if (ideaPlugin != null && (stub != null || isPluginOrModule(ideaPlugin, s))) return ideaPlugin;
     }
     return null;
   }
 
+  private static boolean isPluginOrModule(@NotNull ElementStub stub, @NotNull String s) {
+    ElementStub idStub = stub.getChild("id");
+    if (idStub == null) {
+      idStub = stub.getChild("name");
+    }
+    if (idStub == null) return false;
+    if (s.equals(StringUtil.notNullize(idStub.getValue()))) return true;
+    for (ElementStub module : stub.getChildren("module")) {
+      if (s.equals(module.getAttributeValue("value"))) return true;
+    }
+    return false;
+  }
+
+  private static boolean isPluginOrModule(@NotNull IdeaPlugin ideaPlugin, @NotNull String s) {
+    final String otherId = ideaPlugin.getPluginId();
+    if (otherId == null) return false;
+    if (otherId.equals(s)) return true;
+    for (PluginModule module : ideaPlugin.getModules()) {
+      if (s.equals(module.getValue().getValue())) return true;
+    }
+    return false;
+  }
+
+  @Nullable
+  private static IdeaPlugin getIdeaPlugin(@NotNull VirtualFile file, @NotNull Project project) {
+    final PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+    if (!(psiFile instanceof XmlFile)) return null;
+    final DomFileElement<IdeaPlugin> fileElement = DomManager.getDomManager(project).getFileElement((XmlFile)psiFile, IdeaPlugin.class);
+    return fileElement != null ? fileElement.getRootElement() : null;
+  }
+
   public String toString(@Nullable final IdeaPlugin ideaPlugin, final ConvertContext context) {
     return ideaPlugin != null ? ideaPlugin.getPluginId() : null;
   }
@@ -85,6 +85,19 @@ public class PluginXmlFunctionalTest extends JavaCodeInsightFixtureTestCase {
     myFixture.checkHighlighting(false, false, false);
   }
 
+  public void testDependsOnPluginWithoutId() throws Throwable {
+    addPluginXml("named", "<idea-plugin>\n" +
+                          "    <name>Named Plugin</name>\n" +
+                          "    <module value=\"com.intellij.modules.named\"/>\n" +
+                          "</idea-plugin>");
+    addPluginXml("custom", "<idea-plugin>\n" +
+                           "    <description>com.intellij.custom</description>\n" +
+                           "</idea-plugin>");
+
+    configureByFile();
+    myFixture.checkHighlighting(false, false, false);
+  }
+
   private void configureByFile() {
     myFixture.configureFromExistingVirtualFile(myFixture.copyFileToProject(getTestName(false) + ".xml", "META-INF/plugin.xml"));
   }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.idea.devkit.dom;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import com.intellij.util.indexing.FileContentImpl;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.xml.DomFileDescription;
+import com.intellij.util.xml.DomService;
+import com.intellij.util.xml.DomStubIndex;
+import com.intellij.util.xml.impl.DomApplicationComponent;
+import com.intellij.util.xml.stubs.ElementStub;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class IdeaPluginStubsTest extends LightCodeInsightFixtureTestCase {
+  private static final String REJECTED_ROOT_TAG = "rejected-idea-plugin";
+  private static final String PLUGIN_XML = "<idea-plugin>\n" +
+                                           "  <id> com.intellij.custom </id>\n" +
+                                           "  <name>Custom</name>\n" +
+                                           "  <description>not stubbed</description>\n" +
+                                           "  <module value=\"com.intellij.modules.a\"/>\n" +
+                                           "  <extensions defaultExtensionNs=\"com.intellij\">\n" +
+                                           "    <module value=\"not.a.module\"/>\n" +
+                                           "  </extensions>\n" +
+                                           "  <module value=\"com.intellij.modules.b\" unknown=\"x\"/>\n" +
+                                           "</idea-plugin>";
+
+  public void testStubbedValuesIndexed() throws Exception {
+    final PsiFile file = myFixture.addFileToProject("META-INF/plugin.xml", PLUGIN_XML);
+    final ElementStub stub = DomService.getInstance().getRootStub(file.getVirtualFile(), IdeaPlugin.class, getProject());
+    assertNotNull(stub);
+    assertEquals("idea-plugin", stub.getName());
+    assertEquals(Arrays.asList("id", "name", "module", "module"), getChildNames(stub));
+    assertEquals("com.intellij.custom", stub.getChild("id").getValue());
+    assertEquals("Custom", stub.getChild("name").getValue());
+
+    final ElementStub module = stub.getChildren("module").get(1);
+    assertEquals("com.intellij.modules.b", module.getAttributeValue("value"));
+    assertEquals(1, module.getAttributes().size());
+    assertNull(module.getValue());
+  }
+
+  public void testNoStubForOtherXml() throws Exception {
+    final PsiFile file = myFixture.addFileToProject("META-INF/other.xml", "<idea-plugin-like><id>x</id></idea-plugin-like>");
+    assertNull(DomService.getInstance().getRootStub(file.getVirtualFile(), IdeaPlugin.class, getProject()));
+  }
+
+  public void testNoStubForRejectedFile() throws Exception {
+    // the root tag matches, so the file gets a stub, but the description doesn't accept it
+    DomApplicationComponent.getInstance().registerFileDescription(new DomFileDescription<IdeaPlugin>(IdeaPlugin.class, REJECTED_ROOT_TAG) {
+      @Override
+      public boolean isMyFile(@NotNull XmlFile file, @Nullable Module module) {
+        return false;
+      }
+    });
+    final PsiFile file = myFixture.addFileToProject("META-INF/rejected.xml", "<" + REJECTED_ROOT_TAG + "><id>x</id></" + REJECTED_ROOT_TAG + ">");
+    assertNull(DomService.getInstance().getRootStub(file.getVirtualFile(), IdeaPlugin.class, getProject()));
+  }
+
+  public void testStubSurvivesSerialization() throws Exception {
+    final DomStubIndex index = new DomStubIndex();
+    final Map<String, ElementStub> map = index.getIndexer().map(new FileContentImpl(new LightVirtualFile("plugin.xml", PLUGIN_XML),
+                                                                                     PLUGIN_XML.getBytes("UTF-8")));
+    final ElementStub stub = map.get(IdeaPlugin.class.getName());
+    assertNotNull(stub);
+
+    final DataExternalizer<ElementStub> externalizer = index.getValueExternalizer();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    externalizer.save(out, stub);
+    out.close();
+    final ElementStub read = externalizer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(stub, read);
+    assertEquals("com.intellij.modules.a", read.getChildren("module").get(0).getAttributeValue("value"));
+  }
+
+  private static List<String> getChildNames(ElementStub stub) {
+    final List<String> result = new ArrayList<String>();
+    for (ElementStub child : stub.getChildren()) {
+      result.add(child.getName());
+    }
+    return result;
+  }
+}
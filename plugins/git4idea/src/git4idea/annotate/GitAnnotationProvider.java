@@ -20,6 +20,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.FilePathImpl;
@@ -29,22 +30,26 @@ import com.intellij.openapi.vcs.history.VcsAbstractHistorySession;
 import com.intellij.openapi.vcs.history.VcsFileRevision;
 import com.intellij.openapi.vcs.history.VcsRevisionNumber;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.vcsUtil.VcsFileUtil;
 import com.intellij.vcsUtil.VcsUtil;
 import git4idea.GitFileRevision;
 import git4idea.GitRevisionNumber;
 import git4idea.GitUtil;
+import git4idea.annotate.GitBlameCache.BlameData;
+import git4idea.annotate.GitBlameCache.BlameDataBuilder;
 import git4idea.commands.GitCommand;
 import git4idea.commands.GitSimpleHandler;
-import git4idea.util.StringScanner;
 import git4idea.history.GitHistoryUtils;
 import git4idea.i18n.GitBundle;
+import git4idea.util.GitFileUtils;
+import git4idea.util.StringScanner;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Git annotation provider implementation.
@@ -65,6 +70,35 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
    */
   @NonNls private static final String COMMITTER_TIME_KEY = "committer-time";
   private static final Logger LOG = Logger.getInstance(GitAnnotationProvider.class);
+  @NonNls private static final String HUNK_PREFIX = "@@ ";
+  private static final Pattern HUNK_PATTERN = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@");
+  /**
+   * The number of changed hunks above which the whole file is blamed again instead of patching the cached blame
+   */
+  private static final int MAX_INCREMENTAL_HUNKS = 20;
+  private final GitBlameCache myBlameCache;
+
+  /**
+   * The way the blame of a file was obtained
+   */
+  enum BlameUpdate {
+    FULL, CACHED, INCREMENTAL
+  }
+
+  /**
+   * Blame of a file version together with its lines
+   */
+  static class Blame {
+    final BlameData myData;
+    final List<String> myLines;
+    final BlameUpdate myUpdate;
+
+    Blame(BlameData data, List<String> lines, BlameUpdate update) {
+      myData = data;
+      myLines = lines;
+      myUpdate = update;
+    }
+  }
 
   /**
    * A constructor
@@ -73,6 +107,7 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
    */
   public GitAnnotationProvider(@NotNull Project project) {
     myProject = project;
+    myBlameCache = new GitBlameCache(project);
   }
 
   /**
@@ -145,26 +180,238 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
                                      final VcsFileRevision revision,
                                      final List<VcsFileRevision> revisions,
                                      final VirtualFile file) throws VcsException {
-    GitSimpleHandler h = new GitSimpleHandler(myProject, GitUtil.getGitRoot(repositoryFilePath), GitCommand.ANNOTATE);
+    Blame blame = getBlame(repositoryFilePath, revision == null ? null : revision.getRevisionNumber().asString(), file);
+    BlameData data = blame.myData;
+    List<String> lines = blame.myLines;
+
+    GitFileAnnotation annotation = new GitFileAnnotation(myProject, file, revision == null, revision == null ? null : revision.getRevisionNumber());
+    Map<String, GitRevisionNumber> revisionNumbers = new HashMap<String, GitRevisionNumber>();
+    for (int i = 0; i < data.getLineCount(); i++) {
+      int index = data.myLineCommits[i];
+      if (index < 0) {
+        annotation.appendLineInfo(null, null, null, lines.get(i), i + 1);
+        continue;
+      }
+      String hash = data.myHashes[index];
+      GitRevisionNumber revisionNumber = revisionNumbers.get(hash);
+      if (revisionNumber == null) {
+        revisionNumber = new GitRevisionNumber(hash, new Date(data.myTimes[index]));
+        revisionNumbers.put(hash, revisionNumber);
+      }
+      annotation.appendLineInfo(revisionNumber.getTimestamp(), revisionNumber, data.myAuthors[index], lines.get(i), i + 1);
+    }
+    annotation.addLogEntries(revisions);
+    return annotation;
+  }
+
+  /**
+   * Takes the blame from the cache, patches the cached one or blames the whole file.
+   * <p/>
+   * The blame of HEAD is cached per file and is patched as HEAD moves on. The blame of another revision is cached
+   * per file and commit for a while, so annotating old revisions doesn't replace the blame of HEAD.
+   *
+   * @param revision the revision to blame or null for HEAD
+   */
+  @NotNull
+  Blame getBlame(@NotNull FilePath repositoryFilePath, @Nullable String revision, @NotNull VirtualFile file) throws VcsException {
+    VirtualFile root = GitUtil.getGitRoot(repositoryFilePath);
+    String revisionString = revision == null ? "HEAD" : revision;
+
+    BlameData data = null;
+    List<String> lines = null;
+    BlameUpdate update = BlameUpdate.FULL;
+    // a single rev-parse tells whether the cached blame may be used, the rest of the commands run only when it may
+    Pair<String, String> commitAndBlob = resolveCommitAndBlob(root, revisionString, VcsFileUtil.relativePath(root, repositoryFilePath));
+    String cacheKey = commitAndBlob == null ? null : repositoryFilePath.getPath();
+    BlameData cached = cacheKey == null ? null
+                                        : revision == null ? myBlameCache.get(cacheKey)
+                                                           : myBlameCache.getForRevision(cacheKey, commitAndBlob.first);
+    if (cached != null) {
+      if (cached.myCommit.equals(commitAndBlob.first)) {
+        data = cached;
+        update = BlameUpdate.CACHED;
+      }
+      else if (revision == null && isAncestor(root, cached.myCommit, commitAndBlob.first)) {
+        // the commits of the cached blame are still in the history of the annotated one, i.e. it wasn't rebased or amended
+        if (cached.myBlob.equals(commitAndBlob.second)) {
+          data = cached.withCommit(commitAndBlob.first);
+          update = BlameUpdate.CACHED;
+        }
+        else {
+          lines = loadLines(root, commitAndBlob.first, repositoryFilePath, file);
+          data = updateBlame(cached, commitAndBlob.first, commitAndBlob.second, lines.size(), root, repositoryFilePath, file);
+          update = BlameUpdate.INCREMENTAL;
+        }
+      }
+      if (data != null && lines == null) {
+        lines = loadLines(root, commitAndBlob.first, repositoryFilePath, file);
+      }
+      if (data != null && data.getLineCount() != lines.size()) {
+        LOG.info("Cached blame for " + cacheKey + " has " + data.getLineCount() + " lines, file has " + lines.size());
+        data = null;
+      }
+    }
+
+    if (data == null) {
+      update = BlameUpdate.FULL;
+      List<BlameLine> blame = blame(root, revisionString, repositoryFilePath, file, null);
+      BlameDataBuilder builder = new BlameDataBuilder(blame.size());
+      lines = new ArrayList<String>(blame.size());
+      for (int i = 0; i < blame.size(); i++) {
+        BlameLine line = blame.get(i);
+        builder.setLine(i, line.myHash, line.myAuthor, line.myDate == null ? 0 : line.myDate.getTime());
+        lines.add(line.myText);
+      }
+      data = builder.build(commitAndBlob == null ? null : commitAndBlob.first, commitAndBlob == null ? null : commitAndBlob.second);
+    }
+    if (cacheKey != null && data != cached) {
+      if (revision == null) {
+        myBlameCache.put(cacheKey, data);
+      }
+      else {
+        myBlameCache.putForRevision(cacheKey, data);
+      }
+    }
+    return new Blame(data, lines, update);
+  }
+
+  /**
+   * Re-blames only the hunks changed since the cached blame and takes the rest of the lines from the cache.
+   * Lines which are the same in both blobs are attributed to the commit from the cached blame, which matches what
+   * a full blame reports unless a line was removed and re-added between the two commits.
+   *
+   * @return the blame for the new blob or null if there are too many changes for the incremental update to pay off
+   */
+  @Nullable
+  private BlameData updateBlame(BlameData cached,
+                                String commit,
+                                String blob,
+                                int lineCount,
+                                VirtualFile root,
+                                FilePath repositoryFilePath,
+                                VirtualFile file) throws VcsException {
+    GitSimpleHandler h = new GitSimpleHandler(myProject, root, GitCommand.DIFF);
+    h.setNoSSH(true);
+    h.setSilent(true);
+    h.addParameters("-U0", "--no-color", "--no-ext-diff", cached.myBlob, blob);
+    String output = h.run();
+
+    // hunks as {old start, old count, new start, new count}
+    List<int[]> hunks = new ArrayList<int[]>();
+    int changedLines = 0;
+    for (StringScanner s = new StringScanner(output); s.hasMoreData();) {
+      String line = s.line();
+      if (!line.startsWith(HUNK_PREFIX)) continue;
+      Matcher matcher = HUNK_PATTERN.matcher(line);
+      if (!matcher.find()) {
+        LOG.info("Unexpected hunk header: " + line);
+        return null;
+      }
+      int[] hunk = new int[]{Integer.parseInt(matcher.group(1)), parseCount(matcher.group(2)),
+        Integer.parseInt(matcher.group(3)), parseCount(matcher.group(4))};
+      hunks.add(hunk);
+      changedLines += hunk[3];
+    }
+    if (hunks.isEmpty() || hunks.size() > MAX_INCREMENTAL_HUNKS || changedLines > lineCount / 2) {
+      return null;
+    }
+
+    BlameDataBuilder builder = new BlameDataBuilder(lineCount);
+    int oldLine = 1;
+    int newLine = 1;
+    for (int[] hunk : hunks) {
+      // zero count means the hunk is placed after the given line
+      int oldStart = hunk[1] == 0 ? hunk[0] + 1 : hunk[0];
+      int newStart = hunk[3] == 0 ? hunk[2] + 1 : hunk[2];
+      for (; newLine < newStart; newLine++, oldLine++) {
+        builder.copyLine(newLine - 1, cached, oldLine - 1);
+      }
+      if (hunk[3] > 0) {
+        List<BlameLine> blame = blame(root, commit, repositoryFilePath, file, hunk[2] + ",+" + hunk[3]);
+        if (blame.size() != hunk[3]) return null;
+        for (BlameLine line : blame) {
+          builder.setLine(line.myLineNumber - 1, line.myHash, line.myAuthor, line.myDate == null ? 0 : line.myDate.getTime());
+        }
+      }
+      newLine = newStart + hunk[3];
+      oldLine = oldStart + hunk[1];
+    }
+    for (; newLine <= lineCount; newLine++, oldLine++) {
+      if (oldLine > cached.getLineCount()) return null;
+      builder.copyLine(newLine - 1, cached, oldLine - 1);
+    }
+    return builder.build(commit, blob);
+  }
+
+  private static int parseCount(@Nullable String count) {
+    return count == null ? 1 : Integer.parseInt(count);
+  }
+
+  /**
+   * @return the commit hash for the revision and the blob hash of the file in it, or null if the file is not in the revision
+   */
+  @Nullable
+  private Pair<String, String> resolveCommitAndBlob(VirtualFile root, String revision, String relativePath) {
+    GitSimpleHandler h = new GitSimpleHandler(myProject, root, GitCommand.REV_PARSE);
+    h.setNoSSH(true);
+    h.setSilent(true);
+    h.addParameters(revision + "^{commit}", revision + ":" + relativePath);
+    try {
+      String[] hashes = h.run().trim().split("\\s+");
+      return hashes.length == 2 ? Pair.create(hashes[0], hashes[1]) : null;
+    }
+    catch (VcsException e) {
+      LOG.debug(e);
+      return null;
+    }
+  }
+
+  private boolean isAncestor(VirtualFile root, String ancestor, String commit) {
+    GitSimpleHandler h = new GitSimpleHandler(myProject, root, GitCommand.MERGE_BASE);
+    h.setNoSSH(true);
+    h.setSilent(true);
+    h.addParameters(ancestor, commit);
+    try {
+      return ancestor.equals(h.run().trim());
+    }
+    catch (VcsException e) {
+      // e.g. the cached commit was garbage collected
+      LOG.debug(e);
+      return false;
+    }
+  }
+
+  private List<String> loadLines(VirtualFile root, String commit, FilePath repositoryFilePath, VirtualFile file) throws VcsException {
+    byte[] content = GitFileUtils.getFileContent(myProject, root, commit, VcsFileUtil.relativePath(root, repositoryFilePath));
+    List<String> lines = new ArrayList<String>();
+    for (StringScanner s = new StringScanner(new String(content, file.getCharset())); s.hasMoreData();) {
+      lines.add(s.line(true));
+    }
+    return lines;
+  }
+
+  /**
+   * Runs blame for the file or for the given range of its lines.
+   */
+  private List<BlameLine> blame(VirtualFile root, String revision, FilePath repositoryFilePath, VirtualFile file, @Nullable String range)
+    throws VcsException {
+    GitSimpleHandler h = new GitSimpleHandler(myProject, root, GitCommand.ANNOTATE);
     h.setNoSSH(true);
     h.setStdoutSuppressed(true);
     h.setCharset(file.getCharset());
     h.addParameters("-p", "-l", "-t");
-    if (revision == null) {
-      h.addParameters("HEAD");
-    }
-    else {
-      h.addParameters(revision.getRevisionNumber().asString());
+    if (range != null) {
+      h.addParameters("-L", range);
     }
+    h.addParameters(revision);
     h.endOptions();
     h.addRelativePaths(repositoryFilePath);
     String output = h.run();
-    GitFileAnnotation annotation = new GitFileAnnotation(myProject, file, revision == null, revision == null ? null : revision.getRevisionNumber());
     class CommitInfo {
       Date date;
       String author;
-      GitRevisionNumber revision;
     }
+    List<BlameLine> result = new ArrayList<BlameLine>();
     HashMap<String, CommitInfo> commits = new HashMap<String, CommitInfo>();
     for (StringScanner s = new StringScanner(output); s.hasMoreData();) {
       // parse header line
@@ -192,7 +439,6 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
           }
           if (commitHash != null && COMMITTER_TIME_KEY.equals(key)) {
             commit.date = GitUtil.parseTimestampWithNFEReport(value, h, output);
-            commit.revision = new GitRevisionNumber(commitHash, commit.date);
           }
         }
         commits.put(commitHash, commit);
@@ -205,10 +451,25 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
       }
       s.skipChars(1);
       String line = s.line(true);
-      annotation.appendLineInfo(commit.date, commit.revision, commit.author, line, lineNum);
+      result.add(new BlameLine(lineNum, commitHash, commit.author, commit.date, line));
+    }
+    return result;
+  }
+
+  private static class BlameLine {
+    final int myLineNumber;
+    final String myHash;
+    final String myAuthor;
+    final Date myDate;
+    final String myText;
+
+    BlameLine(int lineNumber, String hash, String author, Date date, String text) {
+      myLineNumber = lineNumber;
+      myHash = hash;
+      myAuthor = author;
+      myDate = date;
+      myText = text;
     }
-    annotation.addLogEntries(revisions);
-    return annotation;
   }
 
   @Override
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.annotate;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.containers.SLRUMap;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-project storage of blame results. An entry remembers the blob and the commit the blame was computed for,
+ * so it can be reused as is while the blob is the same and patched when it changes.
+ * <p/>
+ * The blame of HEAD is stored on disk, one entry per file. Blames of other revisions are kept in memory only
+ * and the least recently used of them are dropped: each annotated revision would add an entry otherwise.
+ */
+class GitBlameCache implements Disposable {
+  private static final Logger LOG = Logger.getInstance(GitBlameCache.class);
+  private static final int REVISIONS_CACHE_SIZE = 20;
+
+  private final File myFile;
+  private final SLRUMap<String, BlameData> myRevisionBlames = new SLRUMap<String, BlameData>(REVISIONS_CACHE_SIZE, REVISIONS_CACHE_SIZE);
+  private PersistentHashMap<String, BlameData> myStorage;
+  private boolean myOpened;
+  private boolean myDisposed;
+
+  GitBlameCache(@NotNull Project project) {
+    myFile = new File(PathManager.getSystemPath() + File.separator + "vcs" + File.separator + "git_blame" + File.separator +
+                      project.getName() + "." + project.getLocationHash() + File.separator + "blame");
+    Disposer.register(project, this);
+  }
+
+  /**
+   * Opens the storage on the first access, so that projects which never annotate files don't pay for it.
+   */
+  @Nullable
+  private PersistentHashMap<String, BlameData> getStorage() {
+    if (!myOpened && !myDisposed) {
+      myOpened = true;
+      try {
+        myStorage = createStorage();
+      }
+      catch (IOException e) {
+        LOG.info(e);
+        PersistentHashMap.deleteFilesStartingWith(myFile);
+        try {
+          myStorage = createStorage();
+        }
+        catch (IOException e1) {
+          LOG.info(e1);
+        }
+      }
+    }
+    return myStorage;
+  }
+
+  private PersistentHashMap<String, BlameData> createStorage() throws IOException {
+    return new PersistentHashMap<String, BlameData>(myFile, new EnumeratorStringDescriptor(), new BlameDataExternalizer());
+  }
+
+  /**
+   * @return the blame of the file in HEAD
+   */
+  @Nullable
+  synchronized BlameData get(@NotNull String key) {
+    PersistentHashMap<String, BlameData> storage = getStorage();
+    if (storage == null) return null;
+    try {
+      return storage.get(key);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      return null;
+    }
+  }
+
+  synchronized void put(@NotNull String key, @NotNull BlameData data) {
+    PersistentHashMap<String, BlameData> storage = getStorage();
+    if (storage == null) return;
+    try {
+      storage.put(key, data);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+  }
+
+  @Nullable
+  synchronized BlameData getForRevision(@NotNull String key, @NotNull String commit) {
+    return myRevisionBlames.get(key + "@" + commit);
+  }
+
+  synchronized void putForRevision(@NotNull String key, @NotNull BlameData data) {
+    myRevisionBlames.put(key + "@" + data.myCommit, data);
+  }
+
+  @Override
+  public synchronized void dispose() {
+    myDisposed = true;
+    myRevisionBlames.clear();
+    if (myStorage == null) return;
+    try {
+      myStorage.close();
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    myStorage = null;
+  }
+
+  /**
+   * Blame of one file version: the commits that introduced each of its lines.
+   */
+  static class BlameData {
+    final String myCommit;
+    final String myBlob;
+    final String[] myHashes;
+    final String[] myAuthors;
+    final long[] myTimes;
+    // index in the commit arrays for every line, -1 for lines which are not committed
+    final int[] myLineCommits;
+
+    BlameData(String commit, String blob, String[] hashes, String[] authors, long[] times, int[] lineCommits) {
+      myCommit = commit;
+      myBlob = blob;
+      myHashes = hashes;
+      myAuthors = authors;
+      myTimes = times;
+      myLineCommits = lineCommits;
+    }
+
+    int getLineCount() {
+      return myLineCommits.length;
+    }
+
+    /**
+     * @return the same blame for the same blob in another commit
+     */
+    BlameData withCommit(String commit) {
+      return new BlameData(commit, myBlob, myHashes, myAuthors, myTimes, myLineCommits);
+    }
+  }
+
+  /**
+   * Collects {@link BlameData} line by line, possibly mixing lines of several blames.
+   */
+  static class BlameDataBuilder {
+    private final Map<String, Integer> myIndex = new HashMap<String, Integer>();
+    private final List<String> myHashes = new ArrayList<String>();
+    private final List<String> myAuthors = new ArrayList<String>();
+    private final List<Long> myTimes = new ArrayList<Long>();
+    private final int[] myLineCommits;
+
+    BlameDataBuilder(int lineCount) {
+      myLineCommits = new int[lineCount];
+    }
+
+    /**
+     * @param line zero-based line number
+     * @param hash the commit or null if the line is not committed
+     */
+    void setLine(int line, @Nullable String hash, @Nullable String author, long time) {
+      if (hash == null) {
+        myLineCommits[line] = -1;
+        return;
+      }
+      Integer index = myIndex.get(hash);
+      if (index == null) {
+        index = myHashes.size();
+        myIndex.put(hash, index);
+        myHashes.add(hash);
+        myAuthors.add(author);
+        myTimes.add(time);
+      }
+      myLineCommits[line] = index;
+    }
+
+    void copyLine(int line, @NotNull BlameData from, int fromLine) {
+      int index = from.myLineCommits[fromLine];
+      if (index < 0) {
+        setLine(line, null, null, 0);
+      }
+      else {
+        setLine(line, from.myHashes[index], from.myAuthors[index], from.myTimes[index]);
+      }
+    }
+
+    BlameData build(String commit, String blob) {
+      long[] times = new long[myTimes.size()];
+      for (int i = 0; i < times.length; i++) {
+        times[i] = myTimes.get(i);
+      }
+      return new BlameData(commit, blob, myHashes.toArray(new String[myHashes.size()]), myAuthors.toArray(new String[myAuthors.size()]),
+                           times, myLineCommits);
+    }
+  }
+
+  private static class BlameDataExternalizer implements DataExternalizer<BlameData> {
+    @Override
+    public void save(DataOutput out, BlameData value) throws IOException {
+      out.writeUTF(value.myCommit);
+      out.writeUTF(value.myBlob);
+      DataInputOutputUtil.writeINT(out, value.myHashes.length);
+      for (int i = 0; i < value.myHashes.length; i++) {
+        out.writeUTF(value.myHashes[i]);
+        out.writeUTF(value.myAuthors[i] == null ? "" : value.myAuthors[i]);
+        out.writeLong(value.myTimes[i]);
+      }
+      DataInputOutputUtil.writeINT(out, value.myLineCommits.length);
+      for (int index : value.myLineCommits) {
+        DataInputOutputUtil.writeINT(out, index + 1);
+      }
+    }
+
+    @Override
+    public BlameData read(DataInput in) throws IOException {
+      String commit = in.readUTF();
+      String blob = in.readUTF();
+      int commits = DataInputOutputUtil.readINT(in);
+      String[] hashes = new String[commits];
+      String[] authors = new String[commits];
+      long[] times = new long[commits];
+      for (int i = 0; i < commits; i++) {
+        hashes[i] = in.readUTF();
+        authors[i] = in.readUTF();
+        times[i] = in.readLong();
+      }
+      int[] lineCommits = new int[DataInputOutputUtil.readINT(in)];
+      for (int i = 0; i < lineCommits.length; i++) {
+        lineCommits[i] = DataInputOutputUtil.readINT(in) - 1;
+      }
+      return new BlameData(commit, blob, hashes, authors, times, lineCommits);
+    }
+  }
+}
@@ -48,6 +48,7 @@ public class GitCommand {
   public static final GitCommand REMOTE = meta("remote");
   public static final GitCommand RESET = write("reset");
   public static final GitCommand REV_LIST = meta("rev-list");
+  public static final GitCommand REV_PARSE = meta("rev-parse");
   public static final GitCommand RM = write("rm");
   public static final GitCommand SHOW = write("show");
   public static final GitCommand STASH = write("stash");
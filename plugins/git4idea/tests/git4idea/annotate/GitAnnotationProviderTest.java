@@ -0,0 +1,157 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.annotate;
+
+import com.intellij.openapi.vcs.annotate.FileAnnotation;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.vcsUtil.VcsUtil;
+import git4idea.annotate.GitAnnotationProvider.BlameUpdate;
+import git4idea.tests.GitTest;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests reusing and updating of the cached blame by {@link GitAnnotationProvider}.
+ */
+public class GitAnnotationProviderTest extends GitTest {
+  private static final int LINE_COUNT = 10;
+
+  private GitAnnotationProvider myProvider;
+  private VirtualFile myFile;
+  private String myFirstCommit;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myProvider = myVcs.getAnnotationProvider();
+    myFile = myRepo.createVFile("a.txt", content(-1));
+    myFirstCommit = myRepo.addCommit();
+  }
+
+  @Test
+  public void testSameCommitUsesCache() throws Exception {
+    assertRevisions(blame(BlameUpdate.FULL), myFirstCommit, -1, null);
+    assertRevisions(blame(BlameUpdate.CACHED), myFirstCommit, -1, null);
+  }
+
+  @Test
+  public void testUnrelatedCommitUsesCache() throws Exception {
+    blame(BlameUpdate.FULL);
+    myRepo.createAddCommit();
+    assertRevisions(blame(BlameUpdate.CACHED), myFirstCommit, -1, null);
+  }
+
+  @Test
+  public void testChangedLinesAreBlamedAgain() throws Exception {
+    blame(BlameUpdate.FULL);
+    editFileInCommand(myProject, myFile, content(4));
+    String second = myRepo.addCommit();
+    assertRevisions(blame(BlameUpdate.INCREMENTAL), myFirstCommit, 4, second);
+  }
+
+  @Test
+  public void testAmendedCommitInvalidatesCache() throws Exception {
+    blame(BlameUpdate.FULL);
+    myRepo.run("commit", "--amend", "-m", "amended");
+    String amended = myRepo.lastCommit();
+    assertRevisions(blame(BlameUpdate.FULL), amended, -1, null);
+  }
+
+  @Test
+  public void testRebasedCommitInvalidatesCache() throws Exception {
+    editFileInCommand(myProject, myFile, content(4));
+    myRepo.addCommit();
+    blame(BlameUpdate.FULL);
+    // same content on top of a rewritten history
+    myRepo.run("reset", "--hard", myFirstCommit);
+    myRepo.createAddCommit();
+    myRepo.refresh();
+    editFileInCommand(myProject, myFile, content(4));
+    String rewritten = myRepo.addCommit();
+    assertRevisions(blame(BlameUpdate.FULL), myFirstCommit, 4, rewritten);
+  }
+
+  @Test
+  public void testOldRevisionDoesNotReplaceBlameOfHead() throws Exception {
+    editFileInCommand(myProject, myFile, content(4));
+    String second = myRepo.addCommit();
+    blame(BlameUpdate.FULL);
+
+    assertRevisions(blame(myFirstCommit, BlameUpdate.FULL), myFirstCommit, -1, null);
+    assertRevisions(blame(BlameUpdate.CACHED), myFirstCommit, 4, second);
+    assertRevisions(blame(myFirstCommit, BlameUpdate.CACHED), myFirstCommit, -1, null);
+  }
+
+  @Test
+  public void testAnnotationUsesCachedBlame() throws Exception {
+    blame(BlameUpdate.FULL);
+    editFileInCommand(myProject, myFile, content(4));
+    String second = myRepo.addCommit();
+    FileAnnotation annotation = myProvider.annotate(myFile);
+    List<String> commits = new ArrayList<String>();
+    for (int i = 0; i < LINE_COUNT; i++) {
+      commits.add(annotation.getLineRevisionNumber(i).asString());
+    }
+    assertRevisions(commits, myFirstCommit, 4, second);
+    blame(BlameUpdate.CACHED);
+  }
+
+  private GitAnnotationProvider.Blame blame(BlameUpdate expectedUpdate) throws Exception {
+    return blame(null, expectedUpdate);
+  }
+
+  private GitAnnotationProvider.Blame blame(@Nullable String revision, BlameUpdate expectedUpdate) throws Exception {
+    GitAnnotationProvider.Blame blame = myProvider.getBlame(VcsUtil.getFilePath(myFile.getPath()), revision, myFile);
+    assertEquals(blame.myUpdate, expectedUpdate);
+    return blame;
+  }
+
+  private static void assertRevisions(GitAnnotationProvider.Blame blame, String commit, int changedLine, String changedLineCommit) {
+    List<String> commits = new ArrayList<String>();
+    for (int index : blame.myData.myLineCommits) {
+      commits.add(index < 0 ? null : blame.myData.myHashes[index]);
+    }
+    assertRevisions(commits, commit, changedLine, changedLineCommit);
+  }
+
+  /**
+   * Checks that all the lines are attributed to the given commit except the changed line attributed to another one.
+   */
+  private static void assertRevisions(List<String> lineCommits, String commit, int changedLine, String changedLineCommit) {
+    assertEquals(lineCommits.size(), LINE_COUNT);
+    for (int i = 0; i < LINE_COUNT; i++) {
+      assertEquals(lineCommits.get(i), i == changedLine ? changedLineCommit : commit, "line " + i);
+    }
+  }
+
+  /**
+   * @return file content with the given line changed, or the original content for -1
+   */
+  private static String content(int changedLine) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < LINE_COUNT; i++) {
+      builder.append(i == changedLine ? "changed line " : "line ").append(i).append('\n');
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,147 @@
+package org.jetbrains.plugins.gradle.sync;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.SystemProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.gradle.model.GradleContentRoot;
+import org.jetbrains.plugins.gradle.model.GradleModule;
+import org.jetbrains.plugins.gradle.model.GradleProject;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers modification stamps of the files which define gradle project structure, i.e.
+ * <ul>
+ *   <li>gradle scripts and properties located at the project directory and its 'gradle' subdirectory, e.g. 'settings.gradle'
+ *       or scripts applied from 'gradle/*.gradle';</li>
+ *   <li>all files under the 'buildSrc' directory;</li>
+ *   <li>gradle scripts and properties located at the module content roots;</li>
+ *   <li>gradle scripts and properties located at the gradle user home and its 'init.d' directory;</li>
+ * </ul>
+ * Only those directories are listed, so checking the stamps doesn't depend on the size of the project. A new subproject is noticed
+ * by the change of the settings script which includes it.
+ * <p/>
+ * The stamps are expected to be {@link #calculate(String) calculated} before the project is resolved, so that the changes made
+ * during the resolution are not missed.
+ * <p/>
+ * Immutable.
+ */
+public class GradleBuildFilesStamps {
+
+  private static final String GRADLE_SCRIPT_EXTENSION = ".gradle";
+  private static final String GRADLE_PROPERTIES_FILE  = "gradle.properties";
+  private static final String GRADLE_SCRIPTS_DIR      = "gradle";
+  private static final String BUILD_SRC_DIR           = "buildSrc";
+  private static final String BUILD_DIR               = "build";
+  private static final String INIT_SCRIPTS_DIR        = "init.d";
+
+  private final Set<String>       myRecursiveDirs;
+  private final Set<String>       myDirs;
+  private final Map<String, Long> myStamps;
+
+  private GradleBuildFilesStamps(@NotNull Set<String> recursiveDirs, @NotNull Set<String> dirs, @NotNull Map<String, Long> stamps) {
+    myRecursiveDirs = recursiveDirs;
+    myDirs = dirs;
+    myStamps = stamps;
+  }
+
+  /**
+   * @param projectPath  path to the gradle project file which build files should be checked
+   * @return             stamps of the build files at the project directory and at the gradle user home as they are at the moment
+   */
+  @NotNull
+  public static GradleBuildFilesStamps calculate(@NotNull String projectPath) {
+    Set<String> recursiveDirs = new HashSet<String>();
+    Set<String> dirs = new HashSet<String>();
+    File projectDir = new File(projectPath).getParentFile();
+    if (projectDir != null) {
+      dirs.add(projectDir.getPath());
+      dirs.add(new File(projectDir, GRADLE_SCRIPTS_DIR).getPath());
+      recursiveDirs.add(new File(projectDir, BUILD_SRC_DIR).getPath());
+    }
+    File gradleUserHome = new File(SystemProperties.getUserHome(), ".gradle");
+    dirs.add(gradleUserHome.getPath());
+    dirs.add(new File(gradleUserHome, INIT_SCRIPTS_DIR).getPath());
+    return new GradleBuildFilesStamps(recursiveDirs, dirs, collectStamps(recursiveDirs, dirs));
+  }
+
+  /**
+   * @param project  gradle project resolved after the current stamps were calculated
+   * @return         stamps which additionally check the build files at the content roots of the given project's modules
+   */
+  @NotNull
+  public GradleBuildFilesStamps withContentRoots(@NotNull GradleProject project) {
+    Set<String> dirs = new HashSet<String>(myDirs);
+    for (GradleModule module : project.getModules()) {
+      for (GradleContentRoot root : module.getContentRoots()) {
+        if (!isUnderRecursiveDirs(root.getRootPath())) {
+          dirs.add(new File(root.getRootPath()).getPath());
+        }
+      }
+    }
+    if (dirs.size() == myDirs.size()) {
+      return this;
+    }
+    Set<String> added = new HashSet<String>(dirs);
+    added.removeAll(myDirs);
+    Map<String, Long> stamps = new HashMap<String, Long>(myStamps);
+    stamps.putAll(collectStamps(new HashSet<String>(), added));
+    return new GradleBuildFilesStamps(myRecursiveDirs, dirs, stamps);
+  }
+
+  /**
+   * @return    <code>true</code> if no build file was changed, added or removed since the current stamps were calculated;
+   *            <code>false</code> otherwise
+   */
+  public boolean isUpToDate() {
+    return myStamps.equals(collectStamps(myRecursiveDirs, myDirs));
+  }
+
+  private boolean isUnderRecursiveDirs(@NotNull String path) {
+    for (String dir : myRecursiveDirs) {
+      if (FileUtil.isAncestor(new File(dir), new File(path), false)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @NotNull
+  private static Map<String, Long> collectStamps(@NotNull Set<String> recursiveDirs, @NotNull Set<String> dirs) {
+    Map<String, Long> result = new HashMap<String, Long>();
+    for (String dir : recursiveDirs) {
+      collectStamps(new File(dir), true, result);
+    }
+    for (String dir : dirs) {
+      collectStamps(new File(dir), false, result);
+    }
+    return result;
+  }
+
+  /**
+   * @param allFiles  flag which identifies if all files under the given directory and its subdirectories should be checked,
+   *                  otherwise only the gradle scripts and properties located right at the directory are
+   */
+  private static void collectStamps(@NotNull File dir, boolean allFiles, @NotNull Map<String, Long> result) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String name = file.getName();
+      if (file.isDirectory()) {
+        // Skip vcs/ide metadata, gradle caches and build output.
+        if (allFiles && !name.startsWith(".") && !name.equals(BUILD_DIR)) {
+          collectStamps(file, true, result);
+        }
+      }
+      else if (allFiles || name.endsWith(GRADLE_SCRIPT_EXTENSION) || name.equals(GRADLE_PROPERTIES_FILE)) {
+        result.put(file.getPath(), file.lastModified() * 31 + file.length());
+      }
+    }
+  }
+}
@@ -62,6 +62,12 @@ public class GradleProjectStructureChangesDetector extends AbstractProjectCompon
         myAlarm.addRequest(this, (int)-diff);
         return;
       }
+      // The gradle project is resolved again only if its build files are changed, intellij project structure changes
+      // just need to be compared with the last known gradle project state.
+      GradleProjectStructureChangesModel model = myProject.getComponent(GradleProjectStructureChangesModel.class);
+      if (model != null && model.updateIfBuildFilesUnchanged()) {
+        return;
+      }
       GradleUtil.refreshProject(myProject);
     }
   }
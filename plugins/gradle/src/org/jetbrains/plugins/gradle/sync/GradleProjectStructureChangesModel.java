@@ -28,6 +28,7 @@ public class GradleProjectStructureChangesModel extends AbstractProjectComponent
     = new AtomicReference<Set<GradleProjectStructureChange>>(new HashSet<GradleProjectStructureChange>());
   
   private final AtomicReference<GradleProject> myGradleProject = new AtomicReference<GradleProject>();
+  private final AtomicReference<GradleBuildFilesStamps> myBuildFilesStamps = new AtomicReference<GradleBuildFilesStamps>();
   
   private final GradleStructureChangesCalculator<GradleProject, Project> myChangesCalculator;
 
@@ -57,6 +58,38 @@ public class GradleProjectStructureChangesModel extends AbstractProjectComponent
    * @param gradleProject  gradle project to sync with
    */
   public void update(@NotNull GradleProject gradleProject) {
+    myBuildFilesStamps.set(null);
+    doUpdate(gradleProject);
+  }
+
+  /**
+   * Remembers the state of the build files the {@link #getGradleProject() last known gradle project} was resolved from.
+   * 
+   * @param stamps  build files state of the last known gradle project; <code>null</code> if the project should not be reused
+   * @see #updateIfBuildFilesUnchanged()
+   */
+  public void setBuildFilesStamps(@Nullable GradleBuildFilesStamps stamps) {
+    myBuildFilesStamps.set(stamps);
+  }
+
+  /**
+   * Recalculates the changes against the {@link #getGradleProject() last known gradle project} if its build files are not changed
+   * since it was resolved, i.e. when only the intellij project structure might have changed.
+   * 
+   * @return    <code>true</code> if the changes are recalculated;
+   *            <code>false</code> if the gradle project should be resolved again
+   */
+  public boolean updateIfBuildFilesUnchanged() {
+    GradleBuildFilesStamps stamps = myBuildFilesStamps.get();
+    GradleProject gradleProject = myGradleProject.get();
+    if (stamps == null || gradleProject == null || !stamps.isUpToDate()) {
+      return false;
+    }
+    doUpdate(gradleProject);
+    return true;
+  }
+
+  private void doUpdate(@NotNull GradleProject gradleProject) {
     myGradleProject.set(gradleProject);
     Set<GradleProjectStructureChange> knownChanges = new HashSet<GradleProjectStructureChange>(myChanges.get());
     Set<GradleProjectStructureChange> currentChanges = new HashSet<GradleProjectStructureChange>();
@@ -7,6 +7,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.gradle.model.GradleProject;
 import org.jetbrains.plugins.gradle.remote.GradleApiFacadeManager;
 import org.jetbrains.plugins.gradle.remote.GradleProjectResolver;
+import org.jetbrains.plugins.gradle.sync.GradleBuildFilesStamps;
 import org.jetbrains.plugins.gradle.sync.GradleProjectStructureChangesModel;
 
 import java.util.concurrent.atomic.AtomicReference;
@@ -36,6 +37,11 @@ public class GradleResolveProjectTask extends AbstractGradleTask {
     final GradleApiFacadeManager manager = ServiceManager.getService(GradleApiFacadeManager.class);
     GradleProjectResolver resolver = manager.getFacade().getResolver();
     setState(GradleTaskState.IN_PROGRESS);
+    // The stamps are taken before the resolution in order not to miss build files changes made while it is in progress.
+    GradleBuildFilesStamps stamps = null;
+    if (myResolveLibraries && myIntellijProject != null) {
+      stamps = GradleBuildFilesStamps.calculate(myProjectPath);
+    }
     final GradleProject project = resolver.resolveProjectInfo(getId(), myProjectPath, myResolveLibraries);
     myGradleProject.set(project);
     setState(GradleTaskState.FINISHED);
@@ -48,6 +54,8 @@ public class GradleResolveProjectTask extends AbstractGradleTask {
       // Model update is necessary for the correct tool window project structure diff showing but we don't have
       // gradle tool window on this stage.
       model.update(project);
+      // The project resolved without libraries can't be used for the libraries diff.
+      model.setBuildFilesStamps(stamps == null ? null : stamps.withContentRoots(project));
     }
   }
 
@@ -0,0 +1,104 @@
+package org.jetbrains.plugins.gradle.sync;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.plugins.gradle.model.GradleContentRoot;
+import org.jetbrains.plugins.gradle.model.GradleModule;
+import org.jetbrains.plugins.gradle.model.GradleProject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GradleBuildFilesStampsTest {
+
+  private File myProjectDir;
+  private File myBuildFile;
+
+  @Before
+  public void setUp() throws IOException {
+    myProjectDir = FileUtil.createTempDirectory("gradle", "stamps");
+    myBuildFile = createFile("build.gradle");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myProjectDir);
+  }
+
+  @Test
+  public void scriptAppliedFromSubdirectory() throws IOException {
+    File script = createFile("gradle/x.gradle");
+    GradleBuildFilesStamps stamps = GradleBuildFilesStamps.calculate(myBuildFile.getPath());
+    assertTrue(stamps.isUpToDate());
+
+    touch(script);
+    assertFalse(stamps.isUpToDate());
+  }
+
+  @Test
+  public void buildSrcSources() throws IOException {
+    File source = createFile("buildSrc/src/main/groovy/Plugin.groovy");
+    GradleBuildFilesStamps stamps = GradleBuildFilesStamps.calculate(myBuildFile.getPath());
+
+    touch(source);
+    assertFalse(stamps.isUpToDate());
+  }
+
+  @Test
+  public void newSubprojectIncludedBySettings() throws IOException {
+    GradleBuildFilesStamps stamps = GradleBuildFilesStamps.calculate(myBuildFile.getPath());
+
+    createFile("sub/build.gradle");
+    createFile("settings.gradle");
+    assertFalse(stamps.isUpToDate());
+  }
+
+  @Test
+  public void scriptAtModuleContentRoot() throws IOException {
+    File script = createFile("sub/build.gradle");
+    GradleModule module = new GradleModule("sub", new File(myProjectDir, "sub").getPath());
+    module.addContentRoot(new GradleContentRoot(new File(myProjectDir, "sub").getPath()));
+    GradleProject project = new GradleProject(myProjectDir.getPath(), new File(myProjectDir, "out").getPath());
+    project.addModule(module);
+    GradleBuildFilesStamps stamps = GradleBuildFilesStamps.calculate(myBuildFile.getPath()).withContentRoots(project);
+    assertTrue(stamps.isUpToDate());
+
+    touch(script);
+    assertFalse(stamps.isUpToDate());
+  }
+
+  @Test
+  public void directoriesOutsideModuleRootsAreNotScanned() throws IOException {
+    File script = createFile("src/test/resources/x.gradle");
+    GradleBuildFilesStamps stamps = GradleBuildFilesStamps.calculate(myBuildFile.getPath());
+
+    touch(script);
+    assertTrue(stamps.isUpToDate());
+  }
+
+  @Test
+  public void buildOutputAndNonScriptFilesAreIgnored() throws IOException {
+    File output = createFile("build/tmp/x.gradle");
+    File source = createFile("src/main/java/Foo.java");
+    GradleBuildFilesStamps stamps = GradleBuildFilesStamps.calculate(myBuildFile.getPath());
+
+    touch(output);
+    touch(source);
+    assertTrue(stamps.isUpToDate());
+  }
+
+  private File createFile(String relativePath) throws IOException {
+    File file = new File(myProjectDir, relativePath);
+    FileUtil.writeToFile(file, "");
+    return file;
+  }
+
+  private static void touch(File file) throws IOException {
+    FileUtil.writeToFile(file, "// changed");
+  }
+}
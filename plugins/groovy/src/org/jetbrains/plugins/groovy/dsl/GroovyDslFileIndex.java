@@ -74,6 +74,7 @@ public class GroovyDslFileIndex extends ScalarIndexExtension<String> {
   private static final Key<Pair<GroovyDslExecutor, Long>> CACHED_EXECUTOR = Key.create("CachedGdslExecutor");
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.plugins.groovy.dsl.GroovyDslFileIndex");
   private static final FileAttribute ENABLED = new FileAttribute("ENABLED", 0);
+  private static final long SLOW_COMPILATION_MS = 1000;
 
   @NonNls public static final ID<String, Void> NAME = ID.create("GroovyDslFileIndex");
   @NonNls private static final String OUR_KEY = "ourKey";
@@ -277,7 +278,7 @@ public class GroovyDslFileIndex extends ScalarIndexExtension<String> {
                 if (fileName.endsWith(".gdsl")) {
                   try {
                     final String text = new String(FileUtil.loadFileText(child));
-                    executors.add(Pair.create(child, new GroovyDslExecutor(text, fileName)));
+                    executors.add(Pair.create(child, compileScript(text, fileName)));
                   }
                   catch (IOException e) {
                     LOG.error(e);
@@ -362,7 +363,8 @@ public class GroovyDslFileIndex extends ScalarIndexExtension<String> {
           LOG.error(e);
         }
 
-        return Result.create(result, PsiModificationTracker.MODIFICATION_COUNT, ProjectRootManager.getInstance(project));
+        // changes of gdsl files and of their activation reset the cache explicitly, see clearScriptCache()
+        return Result.create(result, PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT, ProjectRootManager.getInstance(project));
       }
     }, false);
   }
@@ -435,7 +437,7 @@ public class GroovyDslFileIndex extends ScalarIndexExtension<String> {
     }
 
     try {
-      return new GroovyDslExecutor(text, vfile.getName());
+      return compileScript(text, vfile.getName());
     }
     catch (final Throwable e) {
       if (project.isDisposed()) {
@@ -461,6 +463,20 @@ public class GroovyDslFileIndex extends ScalarIndexExtension<String> {
       return null;
     }
   }
+
+  private static GroovyDslExecutor compileScript(String text, String fileName) {
+    final long start = System.currentTimeMillis();
+    final GroovyDslExecutor executor = new GroovyDslExecutor(text, fileName);
+    final long time = System.currentTimeMillis() - start;
+    if (time >= SLOW_COMPILATION_MS) {
+      LOG.info("Compiling " + fileName + " took " + time + " ms");
+    }
+    else if (LOG.isDebugEnabled()) {
+      LOG.debug("Compiling " + fileName + " took " + time + " ms");
+    }
+    return executor;
+  }
+
   static void invokeDslErrorPopup(Throwable e, final Project project, @NotNull VirtualFile vfile) {
     if (!isActivated(vfile)) {
       return;
@@ -28,6 +28,8 @@ import org.jetbrains.plugins.groovy.dsl.toplevel.ContextFilter;
 import org.jetbrains.plugins.groovy.lang.psi.GroovyPsiElement;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author peter
@@ -35,11 +37,15 @@ import java.util.List;
 public class GroovyDslScript {
   public static final Key<GroovyClassDescriptor> INITIAL_CONTEXT = Key.create("gdsl.initialContext");
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.plugins.groovy.dsl.GroovyDslScript");
+  private static final long SLOW_EVALUATION_MS = 100;
   private final Project project;
   @Nullable private final VirtualFile file;
   private final GroovyDslExecutor executor;
   private final String myPath;
   private final CachedValue<FactorTree> myMaps;
+  private final AtomicLong myEvaluationTime = new AtomicLong();
+  private final AtomicInteger myEvaluationCount = new AtomicInteger();
+  private volatile long myMaxEvaluationTime;
 
   public GroovyDslScript(final Project project, @Nullable VirtualFile file, @NotNull GroovyDslExecutor executor, String path) {
     this.project = project;
@@ -79,6 +85,29 @@ public class GroovyDslScript {
   }
 
   private CustomMembersHolder addGdslMembers(GroovyClassDescriptor descriptor, String qname, final PsiType psiType) {
+    final long start = System.nanoTime();
+    try {
+      return doAddGdslMembers(descriptor, qname, psiType);
+    }
+    finally {
+      recordEvaluation(qname, System.nanoTime() - start);
+    }
+  }
+
+  private void recordEvaluation(String qname, long nanos) {
+    final long ms = nanos / 1000000;
+    final long total = myEvaluationTime.addAndGet(nanos) / 1000000;
+    final int count = myEvaluationCount.incrementAndGet();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(this + ": " + ms + " ms for " + qname);
+    }
+    if (ms >= SLOW_EVALUATION_MS && ms > myMaxEvaluationTime) {
+      myMaxEvaluationTime = ms;
+      LOG.info(this + " took " + ms + " ms to compute members of " + qname + "; " + total + " ms in " + count + " evaluations so far");
+    }
+  }
+
+  private CustomMembersHolder doAddGdslMembers(GroovyClassDescriptor descriptor, String qname, final PsiType psiType) {
     final ProcessingContext ctx = new ProcessingContext();
     ctx.put(ClassContextFilter.getClassKey(qname), psiType);
     ctx.put(INITIAL_CONTEXT, descriptor);
@@ -97,6 +97,12 @@ public class ControlFlowBuilder extends GroovyRecursiveElementVisitor {
 
   private int myInstructionNumber;
 
+  /**
+   * whether the flow built depends on declarations which may be located outside of the scope, e.g. on the constants of an enum
+   * or on the types of caught exceptions
+   */
+  private boolean myDependsOnOuterDeclarations;
+
   public ControlFlowBuilder(Project project) {
     myConstantEvaluator = JavaPsiFacade.getInstance(project).getConstantEvaluationHelper();
   }
@@ -143,6 +149,7 @@ public class ControlFlowBuilder extends GroovyRecursiveElementVisitor {
     myFinallyCount = 0;
     myPending = new ArrayList<Pair<InstructionImpl, GroovyPsiElement>>();
     myInstructionNumber = 0;
+    myDependsOnOuterDeclarations = false;
 
     myLastInScope = null;
 
@@ -168,6 +175,14 @@ public class ControlFlowBuilder extends GroovyRecursiveElementVisitor {
     return assertValidPsi(myInstructions.toArray(new Instruction[myInstructions.size()]));
   }
 
+  /**
+   * @return true if the flow built last depends not only on the scope but on the declarations resolved from it as well,
+   *         so it has to be rebuilt when any of them is changed
+   */
+  public boolean dependsOnOuterDeclarations() {
+    return myDependsOnOuterDeclarations;
+  }
+
   public static Instruction[] assertValidPsi(Instruction[] instructions) {
     /*for (Instruction instruction : instructions) {
       PsiElement element = instruction.getElement();
@@ -340,6 +355,7 @@ public class ControlFlowBuilder extends GroovyRecursiveElementVisitor {
       final GrCatchClause clause = info.myClause;
       final GrParameter parameter = clause.getParameter();
       if (parameter != null) {
+        myDependsOnOuterDeclarations = true;
         final PsiType type = parameter.getType();
         if (type.isAssignableFrom(thrownType)) return info;
       }
@@ -656,6 +672,9 @@ public class ControlFlowBuilder extends GroovyRecursiveElementVisitor {
   }
 
   private boolean alwaysTrue(GroovyPsiElement condition) {
+    if (PsiTreeUtil.findChildOfType(condition, GrReferenceExpression.class, false) != null) {
+      myDependsOnOuterDeclarations = true;
+    }
     return Boolean.TRUE.equals(myConstantEvaluator.computeConstantExpression(condition));
   }
 
@@ -676,7 +695,7 @@ public class ControlFlowBuilder extends GroovyRecursiveElementVisitor {
     finishNode(instruction);
   }
 
-  private static boolean containsAllCases(GrSwitchStatement statement) {
+  private boolean containsAllCases(GrSwitchStatement statement) {
     final GrCaseSection[] sections = statement.getCaseSections();
     for (GrCaseSection section : sections) {
       if (section.getCaseLabel().isDefault()) return true;
@@ -685,6 +704,7 @@ public class ControlFlowBuilder extends GroovyRecursiveElementVisitor {
     final GrExpression condition = statement.getCondition();
     if (!(condition instanceof GrReferenceExpression)) return false;
 
+    myDependsOnOuterDeclarations = true;
     PsiType type = TypesUtil.unboxPrimitiveTypeWrapper(condition.getNominalType());
     if (type == null) return false;
 
@@ -63,30 +63,50 @@ public class DFAEngine<E> {
       info.add(myDfa.initial());
     }
 
-    boolean[] visited = new boolean[myFlow.length];
-
     final boolean forward = myDfa.isForward();
-    int[] order = ControlFlowBuilderUtil.postorder(myFlow); //todo for backward?
+    // instruction number -> its position in reverse postorder
+    final int[] postorder = ControlFlowBuilderUtil.postorder(myFlow); //todo for backward?
+    final int[] order = new int[myFlow.length];
+    for (int i = 0; i < myFlow.length; i++) {
+      order[postorder[i]] = i;
+    }
+
+    // pending instructions are processed in reverse postorder (postorder for backward analysis), so an instruction is
+    // usually processed after all the instructions it depends on, and it is queued at most once at a time
+    final boolean[] visited = new boolean[myFlow.length];
+    final boolean[] queued = new boolean[myFlow.length];
+    final Queue<Instruction> workList = new PriorityQueue<Instruction>(Math.max(myFlow.length, 1), new Comparator<Instruction>() {
+      @Override
+      public int compare(Instruction o1, Instruction o2) {
+        final int diff = postorder[o1.num()] - postorder[o2.num()];
+        return forward ? diff : -diff;
+      }
+    });
+
     for (int i = forward ? 0 : myFlow.length - 1; forward ? i < myFlow.length : i >= 0;) {
       Instruction instr = myFlow[order[i]];
 
       if (!visited[instr.num()]) {
-        Queue<Instruction> workList = new LinkedList<Instruction>();
-
         workList.add(instr);
         visited[instr.num()] = true;
+        queued[instr.num()] = true;
 
         while (!workList.isEmpty()) {
           final Instruction curr = workList.remove();
           final int num = curr.num();
+          queued[num] = false;
           final E oldE = info.get(num);
           E newE = join(curr, info, env);
           myDfa.fun(newE, curr);
           if (!mySemilattice.eq(newE, oldE)) {
             info.set(num, newE);
             for (Instruction next : getNext(curr, env)) {
-              workList.add(next);
-              visited[next.num()] = true;
+              final int nextNum = next.num();
+              visited[nextNum] = true;
+              if (!queued[nextNum]) {
+                queued[nextNum] = true;
+                workList.add(next);
+              }
             }
           }
         }
@@ -17,12 +17,14 @@ package org.jetbrains.plugins.groovy.lang.psi.impl;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.NullableComputable;
-import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.RecursionManager;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiType;
-import com.intellij.psi.util.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.reference.SoftReference;
 import gnu.trove.TIntHashSet;
 import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.NotNull;
@@ -54,6 +56,7 @@ import java.util.List;
 public class TypeInferenceHelper {
 
   private static final Logger LOG = Logger.getInstance(TypeInferenceHelper.class);
+  private static final Key<SoftReference<DefUseMaps>> DEF_USE_MAPS = Key.create("DEF_USE_MAPS");
 
   @Nullable
   public static PsiType getInferredType(@NotNull final GrReferenceExpression refExpr) {
@@ -128,10 +131,10 @@ public class TypeInferenceHelper {
 
   @Nullable
   private static PsiType getInferredType(String varName, Instruction instruction, Instruction[] flow, GrControlFlowOwner scope) {
-    final Pair<ReachingDefinitionsDfaInstance, List<TIntObjectHashMap<TIntHashSet>>> pair = getDefUseMaps(scope);
+    final DefUseMaps maps = getDefUseMaps(scope, flow);
 
-    final int varIndex = pair.first.getVarIndex(varName);
-    final TIntObjectHashMap<TIntHashSet> allDefs = pair.second.get(instruction.num());
+    final int varIndex = maps.myDfaInstance.getVarIndex(varName);
+    final TIntObjectHashMap<TIntHashSet> allDefs = maps.myDefs.get(instruction.num());
     final TIntHashSet varDefs = allDefs.get(varIndex);
     if (varDefs == null) return null;
 
@@ -146,38 +149,56 @@ public class TypeInferenceHelper {
     return result;
   }
 
-  private static Pair<ReachingDefinitionsDfaInstance, List<TIntObjectHashMap<TIntHashSet>>> getDefUseMaps(final GrControlFlowOwner scope) {
-    return CachedValuesManager.getManager(scope.getProject()).getCachedValue(scope, new CachedValueProvider<Pair<ReachingDefinitionsDfaInstance, List<TIntObjectHashMap<TIntHashSet>>>>() {
+  /**
+   * Reaching definitions are computed from the control flow of the scope and the elements of its instructions only, so they are
+   * computed once for each flow the scope builds: the flow itself is rebuilt whenever anything it depends on is changed.
+   */
+  private static DefUseMaps getDefUseMaps(GrControlFlowOwner scope, Instruction[] flow) {
+    final SoftReference<DefUseMaps> ref = scope.getUserData(DEF_USE_MAPS);
+    final DefUseMaps cached = ref == null ? null : ref.get();
+    if (cached != null && cached.myFlow == flow) {
+      return cached;
+    }
+
+    final ReachingDefinitionsDfaInstance dfaInstance = new ReachingDefinitionsDfaInstance(flow) {
       @Override
-      public Result<Pair<ReachingDefinitionsDfaInstance, List<TIntObjectHashMap<TIntHashSet>>>> compute() {
-        final Instruction[] flow = scope.getControlFlow();
-        final ReachingDefinitionsDfaInstance dfaInstance = new ReachingDefinitionsDfaInstance(flow) {
-          @Override
-          public void fun(TIntObjectHashMap<TIntHashSet> m, Instruction instruction) {
-            if (instruction instanceof AssertionInstruction) { //todo assertions are not defs, they just add to type intersection and don't overwrite it completely
-              final AssertionInstruction assertionInstruction = (AssertionInstruction)instruction;
-              final PsiElement element = assertionInstruction.getElement();
-              if (element instanceof GrInstanceOfExpression && !assertionInstruction.isNegate()) {
-                final GrExpression operand = ((GrInstanceOfExpression)element).getOperand();
-                final GrTypeElement typeElement = ((GrInstanceOfExpression)element).getTypeElement();
-                if (typeElement != null) {
-                  final int varIndex = getVarIndex(operand.getText());
-                  if (varIndex >= 0) {
-                    registerDef(m, instruction, varIndex);
-                  }
-                }
+      public void fun(TIntObjectHashMap<TIntHashSet> m, Instruction instruction) {
+        if (instruction instanceof AssertionInstruction) { //todo assertions are not defs, they just add to type intersection and don't overwrite it completely
+          final AssertionInstruction assertionInstruction = (AssertionInstruction)instruction;
+          final PsiElement element = assertionInstruction.getElement();
+          if (element instanceof GrInstanceOfExpression && !assertionInstruction.isNegate()) {
+            final GrExpression operand = ((GrInstanceOfExpression)element).getOperand();
+            final GrTypeElement typeElement = ((GrInstanceOfExpression)element).getTypeElement();
+            if (typeElement != null) {
+              final int varIndex = getVarIndex(operand.getText());
+              if (varIndex >= 0) {
+                registerDef(m, instruction, varIndex);
               }
-            } else {
-              super.fun(m, instruction);
             }
           }
-        };
-        final ReachingDefinitionsSemilattice lattice = new ReachingDefinitionsSemilattice();
-        final DFAEngine<TIntObjectHashMap<TIntHashSet>> engine = new DFAEngine<TIntObjectHashMap<TIntHashSet>>(flow, dfaInstance, lattice);
-        final List<TIntObjectHashMap<TIntHashSet>> dfaResult = engine.performDFA();
-        return Result.create(Pair.create(dfaInstance, dfaResult), PsiModificationTracker.MODIFICATION_COUNT);
+        } else {
+          super.fun(m, instruction);
+        }
       }
-    });
+    };
+    final ReachingDefinitionsSemilattice lattice = new ReachingDefinitionsSemilattice();
+    final DFAEngine<TIntObjectHashMap<TIntHashSet>> engine = new DFAEngine<TIntObjectHashMap<TIntHashSet>>(flow, dfaInstance, lattice);
+    final List<TIntObjectHashMap<TIntHashSet>> dfaResult = engine.performDFA();
+    final DefUseMaps maps = new DefUseMaps(flow, dfaInstance, dfaResult);
+    scope.putUserData(DEF_USE_MAPS, new SoftReference<DefUseMaps>(maps));
+    return maps;
+  }
+
+  private static class DefUseMaps {
+    private final Instruction[] myFlow;
+    private final ReachingDefinitionsDfaInstance myDfaInstance;
+    private final List<TIntObjectHashMap<TIntHashSet>> myDefs;
+
+    private DefUseMaps(Instruction[] flow, ReachingDefinitionsDfaInstance dfaInstance, List<TIntObjectHashMap<TIntHashSet>> defs) {
+      myFlow = flow;
+      myDfaInstance = dfaInstance;
+      myDefs = defs;
+    }
   }
 
   @Nullable
@@ -18,8 +18,10 @@ package org.jetbrains.plugins.groovy.lang.psi.impl.statements.blocks;
 
 import com.intellij.lang.ASTNode;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.ResolveState;
+import com.intellij.psi.impl.source.tree.CompositeElement;
 import com.intellij.psi.impl.source.tree.Factory;
 import com.intellij.psi.impl.source.tree.LazyParseablePsiElement;
 import com.intellij.psi.impl.source.tree.LeafElement;
@@ -28,6 +30,7 @@ import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.util.CachedValue;
 import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.util.IncorrectOperationException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -104,7 +107,12 @@ public abstract class GrBlockImpl extends LazyParseablePsiElement implements GrC
       controlFlow = CachedValuesManager.getManager(getProject()).createCachedValue(new CachedValueProvider<Instruction[]>() {
         @Override
         public Result<Instruction[]> compute() {
-          return Result.create(new ControlFlowBuilder(getProject()).buildControlFlow(GrBlockImpl.this), getContainingFile());
+          final ControlFlowBuilder builder = new ControlFlowBuilder(getProject());
+          final Instruction[] flow = builder.buildControlFlow(GrBlockImpl.this);
+          if (builder.dependsOnOuterDeclarations()) {
+            return Result.create(flow, getOwnerModificationTracker(), PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT);
+          }
+          return Result.create(flow, getOwnerModificationTracker());
         }
       }, false);
       controlFlow = putUserDataIfAbsent(CONTROL_FLOW, controlFlow);
@@ -113,6 +121,21 @@ public abstract class GrBlockImpl extends LazyParseablePsiElement implements GrC
     return ControlFlowBuilder.assertValidPsi(controlFlow.getValue());
   }
 
+  /**
+   * The flow of a block depends on the block itself and on its parent (e.g. parameters of a method), so unless it depends on
+   * declarations resolved from the block as well (e.g. enum constants or caught exception types), it is rebuilt only when
+   * they are changed rather than on any change in the file.
+   */
+  private ModificationTracker getOwnerModificationTracker() {
+    return new ModificationTracker() {
+      @Override
+      public long getModificationCount() {
+        final CompositeElement parent = getTreeParent();
+        return parent != null ? parent.getModificationCount() : GrBlockImpl.this.getModificationCount();
+      }
+    };
+  }
+
   public void removeVariable(GrVariable variable) {
     PsiImplUtil.removeVariable(variable);
   }
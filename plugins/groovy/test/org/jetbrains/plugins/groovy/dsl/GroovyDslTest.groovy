@@ -17,10 +17,12 @@ package org.jetbrains.plugins.groovy.dsl;
 
 
 import com.intellij.codeInsight.documentation.DocumentationManager
+import com.intellij.openapi.command.WriteCommandAction
 import com.intellij.openapi.module.Module
 import com.intellij.openapi.roots.ContentEntry
 import com.intellij.openapi.roots.ModifiableRootModel
 import com.intellij.psi.PsiClass
+import com.intellij.psi.PsiDocumentManager
 import com.intellij.psi.PsiFile
 import com.intellij.testFramework.LightProjectDescriptor
 import com.intellij.testFramework.PsiTestUtil
@@ -236,4 +238,45 @@ public class MyCategory {
     assert generateDoc().contains('Some doc2')
     assert generateDoc().contains('foo')
   }
+
+  public void testMembersResolveAfterChangeInCodeBlock() {
+    addGdsl "contribute(currentType(String.name)) { property name:'fooProp', type:int }"
+    myFixture.configureByText 'a.groovy', '''def foo() {
+  "".fooP<caret>rop
+}'''
+    assertNotNull resolveAtCaret()
+
+    insertInCodeBlock 'def foo() {', ' int i = 0; '
+    assertNotNull resolveAtCaret()
+  }
+
+  public void testContributorReadingCodeBlockSeesItsChanges() {
+    addGdsl '''contribute(currentType('Foo')) {
+  if (psiClass.methods.any { it.text.contains('enableBar') }) property name:'barProp', type:int
+}'''
+    myFixture.configureByText 'a.groovy', '''class Foo {
+  def foo() {}
+}
+new Foo().barP<caret>rop'''
+    assertNull resolveAtCaret()
+
+    // the contributor looks into a method body, so its members must not be kept across changes inside code blocks
+    insertInCodeBlock 'def foo() {', ' enableBar() '
+    assertNotNull resolveAtCaret()
+  }
+
+  private def resolveAtCaret() {
+    myFixture.file.findReferenceAt(myFixture.editor.caretModel.offset).resolve()
+  }
+
+  private def insertInCodeBlock(String blockStart, String text) {
+    int offset = myFixture.editor.document.text.indexOf(blockStart) + blockStart.length()
+    new WriteCommandAction.Simple(project) {
+      @Override
+      protected void run() {
+        myFixture.editor.document.insertString(offset, text)
+      }
+    }.execute()
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+  }
 }
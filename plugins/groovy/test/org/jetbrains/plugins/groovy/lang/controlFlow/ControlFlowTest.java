@@ -1,13 +1,23 @@
 package org.jetbrains.plugins.groovy.lang.controlFlow;
 
+import com.intellij.openapi.application.Result;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.SelectionModel;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
 import org.jetbrains.plugins.groovy.GroovyFileType;
 import org.jetbrains.plugins.groovy.codeInspection.utils.ControlFlowUtils;
 import org.jetbrains.plugins.groovy.lang.psi.GrControlFlowOwner;
 import org.jetbrains.plugins.groovy.lang.psi.GroovyFile;
+import org.jetbrains.plugins.groovy.lang.psi.GroovyPsiElementFactory;
+import org.jetbrains.plugins.groovy.lang.psi.api.statements.blocks.GrOpenBlock;
+import org.jetbrains.plugins.groovy.lang.psi.api.statements.typedef.GrTypeDefinition;
+import org.jetbrains.plugins.groovy.lang.psi.api.statements.typedef.members.GrMethod;
 import org.jetbrains.plugins.groovy.lang.psi.controlFlow.Instruction;
 import org.jetbrains.plugins.groovy.lang.psi.controlFlow.impl.ControlFlowBuilder;
 import org.jetbrains.plugins.groovy.util.TestUtils;
@@ -55,6 +65,64 @@ public class ControlFlowTest extends LightCodeInsightFixtureTestCase {
   public void testReturnMapFromClosure() {doTest();}
   public void testSwitchInTryWithThrows() {doTest();}
 
+  public void testFlowIsRebuiltForChangedMethodOnly() {
+    final GrTypeDefinition clazz = configureClass("class A {\n" +
+                                                  "  def foo() { int a = 1 }\n" +
+                                                  "  def bar() { int b = 1 }\n" +
+                                                  "}");
+    final GrOpenBlock foo = getMethodBlock(clazz, "foo");
+    final GrOpenBlock bar = getMethodBlock(clazz, "bar");
+    final Instruction[] fooFlow = foo.getControlFlow();
+    final Instruction[] barFlow = bar.getControlFlow();
+
+    new WriteCommandAction(getProject()) {
+      @Override
+      protected void run(Result result) throws Throwable {
+        foo.addStatementBefore(GroovyPsiElementFactory.getInstance(getProject()).createStatementFromText("a = 2"), null);
+      }
+    }.execute();
+
+    assertNotSame(fooFlow, foo.getControlFlow());
+    assertSame(barFlow, bar.getControlFlow());
+  }
+
+  public void testFlowIsRebuiltOnChangeOfResolvedDeclarations() {
+    final PsiClass enumClass = myFixture.addClass("public enum E { A, B }");
+    final GrTypeDefinition clazz = configureClass("class A {\n" +
+                                                  "  def foo(E e) { switch (e) { case E.A: return 1; case E.B: return 2 } }\n" +
+                                                  "  def bar() { int b = 1 }\n" +
+                                                  "}");
+    final GrOpenBlock foo = getMethodBlock(clazz, "foo");
+    final GrOpenBlock bar = getMethodBlock(clazz, "bar");
+    final Instruction[] fooFlow = foo.getControlFlow();
+    final Instruction[] barFlow = bar.getControlFlow();
+
+    new WriteCommandAction(getProject()) {
+      @Override
+      protected void run(Result result) throws Throwable {
+        final PsiFile file = enumClass.getContainingFile();
+        final Document document = PsiDocumentManager.getInstance(getProject()).getDocument(file);
+        assertNotNull(document);
+        document.insertString(document.getText().indexOf(" }"), ", C");
+        PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+      }
+    }.execute();
+
+    assertNotSame(fooFlow, foo.getControlFlow());
+    assertSame(barFlow, bar.getControlFlow());
+  }
+
+  private GrTypeDefinition configureClass(String text) {
+    myFixture.configureByText(GroovyFileType.GROOVY_FILE_TYPE, text);
+    return ((GroovyFile)myFixture.getFile()).getTypeDefinitions()[0];
+  }
+
+  private static GrOpenBlock getMethodBlock(GrTypeDefinition clazz, String name) {
+    final GrOpenBlock block = ((GrMethod)clazz.findMethodsByName(name, false)[0]).getBlock();
+    assertNotNull(block);
+    return block;
+  }
+
   public void doTest() {
     final List<String> input = TestUtils.readInput(getTestDataPath() + getTestName(true) + ".test");
 
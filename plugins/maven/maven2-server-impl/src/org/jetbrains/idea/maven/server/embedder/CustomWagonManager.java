@@ -31,6 +31,16 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class CustomWagonManager extends DefaultWagonManager {
+  // Embedders of one server resolve projects concurrently and share the local repository. Maven 2 downloads a file through
+  // a temporary file next to it, so the same file must not be downloaded by several embedders at once.
+  private static final Object[] ourDownloadLocks = new Object[16];
+
+  static {
+    for (int i = 0; i < ourDownloadLocks.length; i++) {
+      ourDownloadLocks[i] = new Object();
+    }
+  }
+
   private UnresolvedArtifactsCollector myUnresolvedCollector;
 
   private final ThreadLocal<Boolean> myInBatchResolve = new ThreadLocal<Boolean>();
@@ -59,7 +69,9 @@ public class CustomWagonManager extends DefaultWagonManager {
     try {
       if (!takeFromCache(artifact)) {
         try {
-          super.getArtifact(artifact, remoteRepositories);
+          synchronized (getDownloadLock(getKey(artifact))) {
+            super.getArtifact(artifact, remoteRepositories);
+          }
         }
         catch (WagonException ignore) {
         }
@@ -75,13 +87,17 @@ public class CustomWagonManager extends DefaultWagonManager {
   @Override
   public void getArtifact(Artifact artifact, ArtifactRepository repository) throws TransferFailedException, ResourceDoesNotExistException {
     if (myInBatchResolve.get() == Boolean.TRUE) {
-      super.getArtifact(artifact, repository);
+      synchronized (getDownloadLock(getKey(artifact))) {
+        super.getArtifact(artifact, repository);
+      }
       return;
     }
 
     if (!takeFromCache(artifact)) {
       try {
-        super.getArtifact(artifact, repository);
+        synchronized (getDownloadLock(getKey(artifact))) {
+          super.getArtifact(artifact, repository);
+        }
       }
       catch (WagonException ignore) {
       }
@@ -94,7 +110,9 @@ public class CustomWagonManager extends DefaultWagonManager {
   public void getArtifactMetadata(ArtifactMetadata metadata, ArtifactRepository repository, File destination, String checksumPolicy)
     throws TransferFailedException, ResourceDoesNotExistException {
     // todo use cache here
-    super.getArtifactMetadata(metadata, repository, destination, checksumPolicy);
+    synchronized (getDownloadLock(destination.getPath())) {
+      super.getArtifactMetadata(metadata, repository, destination, checksumPolicy);
+    }
   }
 
   @Override
@@ -104,7 +122,9 @@ public class CustomWagonManager extends DefaultWagonManager {
                                                           String checksumPolicy) throws TransferFailedException,
                                                                                         ResourceDoesNotExistException {
     // todo use cache here
-    super.getArtifactMetadataFromDeploymentRepository(metadata, repository, destination, checksumPolicy);
+    synchronized (getDownloadLock(destination.getPath())) {
+      super.getArtifactMetadataFromDeploymentRepository(metadata, repository, destination, checksumPolicy);
+    }
   }
 
   private boolean takeFromCache(Artifact artifact) {
@@ -149,6 +169,10 @@ public class CustomWagonManager extends DefaultWagonManager {
     }
   }
 
+  private static Object getDownloadLock(String key) {
+    return ourDownloadLocks[(key.hashCode() & Integer.MAX_VALUE) % ourDownloadLocks.length];
+  }
+
   private String getKey(Artifact artifact) {
     return artifact.getGroupId()
            + ":" + artifact.getArtifactId()
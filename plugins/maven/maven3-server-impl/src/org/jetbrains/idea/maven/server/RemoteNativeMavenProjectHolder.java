@@ -5,6 +5,7 @@ import org.apache.maven.project.MavenProject;
 import org.jetbrains.annotations.NotNull;
 
 public class RemoteNativeMavenProjectHolder implements NativeMavenProjectHolder {
+  // projects are resolved by several embedders concurrently
   private static final WeakValueHashMap<Integer, RemoteNativeMavenProjectHolder> myMap =
     new WeakValueHashMap<Integer, RemoteNativeMavenProjectHolder>();
 
@@ -12,7 +13,9 @@ public class RemoteNativeMavenProjectHolder implements NativeMavenProjectHolder
 
   public RemoteNativeMavenProjectHolder(@NotNull MavenProject mavenProject) {
     myMavenProject = mavenProject;
-    myMap.put(getId(), this);
+    synchronized (myMap) {
+      myMap.put(getId(), this);
+    }
   }
 
   public int getId() {
@@ -21,7 +24,10 @@ public class RemoteNativeMavenProjectHolder implements NativeMavenProjectHolder
 
   @NotNull
   public static MavenProject findProjectById(int id) {
-    RemoteNativeMavenProjectHolder result = myMap.get(id);
+    RemoteNativeMavenProjectHolder result;
+    synchronized (myMap) {
+      result = myMap.get(id);
+    }
     if (result == null) {
       throw new RuntimeException("NativeMavenProjectHolder not found for id: " + id);
     }
@@ -35,6 +35,7 @@ import org.jetbrains.idea.maven.utils.MavenProgressIndicator;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MavenIndex {
   private static final String CURRENT_VERSION = "4";
@@ -477,6 +478,7 @@ public class MavenIndex {
 
         myData.groups.enumerate(groupId);
         myData.hasGroupCache.put(groupId, true);
+        myData.groupIdsCache = null;
 
         String groupWithArtifact = groupId + ":" + artifactId;
 
@@ -503,19 +505,28 @@ public class MavenIndex {
     cache.put(key, values);
   }
 
-  public synchronized Set<String> getGroupIds() {
-    return doIndexTask(new IndexTask<Set<String>>() {
-      public Set<String> doTask() throws Exception {
-        final Set<String> result = new THashSet<String>();
-        myData.groups.traverseAllRecords(new PersistentEnumerator.RecordsProcessor() {
-          public boolean process(int record) throws IOException {
-            result.add(myData.groups.valueOf(record));
-            return true;
-          }
-        });
-        return result;
-      }
-    }, Collections.<String>emptySet());
+  public Set<String> getGroupIds() {
+    IndexData data = myData;
+    Set<String> cached = data == null ? null : data.groupIdsCache;
+    if (cached != null) return cached;
+
+    synchronized (this) {
+      return doIndexTask(new IndexTask<Set<String>>() {
+        public Set<String> doTask() throws Exception {
+          if (myData.groupIdsCache != null) return myData.groupIdsCache;
+
+          final Set<String> result = new THashSet<String>();
+          myData.groups.traverseAllRecords(new PersistentEnumerator.RecordsProcessor() {
+            public boolean process(int record) throws IOException {
+              result.add(myData.groups.valueOf(record));
+              return true;
+            }
+          });
+          myData.groupIdsCache = Collections.unmodifiableSet(result);
+          return myData.groupIdsCache;
+        }
+      }, Collections.<String>emptySet());
+    }
   }
 
   public synchronized Set<String> getArtifactIds(final String groupId) {
@@ -536,20 +547,36 @@ public class MavenIndex {
     }, Collections.<String>emptySet());
   }
 
-  public synchronized boolean hasGroupId(String groupId) {
-    return hasValue(myData.groups, myData.hasGroupCache, groupId);
+  public boolean hasGroupId(String groupId) {
+    IndexData data = myData;
+    Boolean cached = data == null ? null : data.hasGroupCache.get(groupId);
+    if (cached != null) return cached;
+
+    synchronized (this) {
+      return hasValue(myData.groups, myData.hasGroupCache, groupId);
+    }
   }
 
-  public synchronized boolean hasArtifactId(String groupId, String artifactId) {
-    return hasValue(myData.groupsWithArtifacts,
-                    myData.hasArtifactCache,
-                    groupId + ":" + artifactId);
+  public boolean hasArtifactId(String groupId, String artifactId) {
+    String groupWithArtifact = groupId + ":" + artifactId;
+    IndexData data = myData;
+    Boolean cached = data == null ? null : data.hasArtifactCache.get(groupWithArtifact);
+    if (cached != null) return cached;
+
+    synchronized (this) {
+      return hasValue(myData.groupsWithArtifacts, myData.hasArtifactCache, groupWithArtifact);
+    }
   }
 
-  public synchronized boolean hasVersion(String groupId, String artifactId, String version) {
-    return hasValue(myData.groupsWithArtifactsWithVersions,
-                    myData.hasVersionCache,
-                    groupId + ":" + artifactId + ":" + version);
+  public boolean hasVersion(String groupId, String artifactId, String version) {
+    String groupWithArtifactWithVersion = groupId + ":" + artifactId + ":" + version;
+    IndexData data = myData;
+    Boolean cached = data == null ? null : data.hasVersionCache.get(groupWithArtifactWithVersion);
+    if (cached != null) return cached;
+
+    synchronized (this) {
+      return hasValue(myData.groupsWithArtifactsWithVersions, myData.hasVersionCache, groupWithArtifactWithVersion);
+    }
   }
 
   private boolean hasValue(final PersistentStringEnumerator set, Map<String, Boolean> cache, final String value) {
@@ -558,12 +585,7 @@ public class MavenIndex {
 
     boolean result = doIndexTask(new IndexTask<Boolean>() {
       public Boolean doTask() throws Exception {
-        return !set.traverseAllRecords(new PersistentEnumerator.RecordsProcessor() {
-          public boolean process(int record) throws IOException {
-            if (value.equals(set.valueOf(record))) return false;
-            return true;
-          }
-        });
+        return set.tryEnumerate(value) != 0;
       }
     }, false).booleanValue();
 
@@ -621,9 +643,11 @@ public class MavenIndex {
     final PersistentHashMap<String, Set<String>> groupToArtifactMap;
     final PersistentHashMap<String, Set<String>> groupWithArtifactToVersionMap;
 
-    final Map<String, Boolean> hasGroupCache = new THashMap<String, Boolean>();
-    final Map<String, Boolean> hasArtifactCache = new THashMap<String, Boolean>();
-    final Map<String, Boolean> hasVersionCache = new THashMap<String, Boolean>();
+    // caches are read without locking the index, see hasGroupId() and getGroupIds()
+    final Map<String, Boolean> hasGroupCache = new ConcurrentHashMap<String, Boolean>();
+    final Map<String, Boolean> hasArtifactCache = new ConcurrentHashMap<String, Boolean>();
+    final Map<String, Boolean> hasVersionCache = new ConcurrentHashMap<String, Boolean>();
+    volatile Set<String> groupIdsCache;
 
     private final int indexId;
 
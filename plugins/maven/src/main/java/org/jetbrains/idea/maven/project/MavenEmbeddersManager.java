@@ -17,6 +17,7 @@ package org.jetbrains.idea.maven.project;
 
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
 import com.intellij.util.Function;
 import com.intellij.util.containers.SoftValueHashMap;
 import gnu.trove.THashSet;
@@ -40,7 +41,8 @@ public class MavenEmbeddersManager {
 
   private final Project myProject;
 
-  private final Map<Key, MavenEmbedderWrapper> myPool = new SoftValueHashMap<Key, MavenEmbedderWrapper>();
+  // Key of the kind, or Pair of the kind and the index for additional embedders of the kind
+  private final Map<Object, MavenEmbedderWrapper> myPool = new SoftValueHashMap<Object, MavenEmbedderWrapper>();
   private final Set<MavenEmbedderWrapper> myEmbeddersInUse = new THashSet<MavenEmbedderWrapper>();
   private final Set<MavenEmbedderWrapper> myEmbeddersToClear = new THashSet<MavenEmbedderWrapper>();
 
@@ -81,6 +83,26 @@ public class MavenEmbeddersManager {
     return result;
   }
 
+  /**
+   * Unlike {@link #getEmbedder(Key)} returns a pooled embedder even if the embedder of the kind is in use,
+   * so several embedders of the same kind can be used concurrently.
+   */
+  @NotNull
+  public synchronized MavenEmbedderWrapper getFreeEmbedder(Key kind) {
+    boolean alwaysOnline = kind == FOR_DOWNLOAD;
+    for (int i = 0; ; i++) {
+      Object key = i == 0 ? kind : Pair.create(kind, i);
+      MavenEmbedderWrapper result = myPool.get(key);
+      if (result == null) {
+        result = MavenServerManager.getInstance().createEmbedder(myProject, alwaysOnline);
+        myPool.put(key, result);
+      }
+      if (myEmbeddersInUse.add(result)) {
+        return result;
+      }
+    }
+  }
+
   public synchronized void release(@NotNull MavenEmbedderWrapper embedder) {
     if (!myEmbeddersInUse.contains(embedder)) {
       embedder.release();
@@ -122,7 +144,7 @@ public class MavenEmbeddersManager {
   }
 
   private void forEachPooled(boolean includeInUse, Function<MavenEmbedderWrapper, ?> func) {
-    for (Key each : myPool.keySet()) {
+    for (Object each : myPool.keySet()) {
       MavenEmbedderWrapper embedder = myPool.get(each);
       if (embedder == null) continue; // collected
       if (!includeInUse && myEmbeddersInUse.contains(embedder)) continue;
@@ -675,19 +675,16 @@ public class MavenProjectsManager extends MavenSimpleProjectComponent
           myProjectsToResolve.clear();
         }
 
-        Iterator<MavenProject> it = toResolve.iterator();
-        while (it.hasNext()) {
-          MavenProject each = it.next();
-          Runnable onCompletion = it.hasNext() ? null : new Runnable() {
-            @Override
-            public void run() {
-              if (hasScheduledProjects()) scheduleImport();
-            }
-          };
+        if (toResolve.isEmpty()) return;
 
-          myResolvingProcessor.scheduleTask(
-            new MavenProjectsProcessorResolvingTask(each, myProjectsTree, getGeneralSettings(), onCompletion));
-        }
+        Runnable onCompletion = new Runnable() {
+          @Override
+          public void run() {
+            if (hasScheduledProjects()) scheduleImport();
+          }
+        };
+        myResolvingProcessor.scheduleTask(
+          new MavenProjectsProcessorResolvingTask(toResolve, myProjectsTree, getGeneralSettings(), onCompletion));
       }
     });
   }
@@ -50,6 +50,14 @@ public class MavenProjectsProcessor {
         startProcessing(task);
         return;
       }
+      if (task instanceof MavenProjectsProcessorResolvingTask) {
+        for (MavenProjectsProcessorTask each : myQueue) {
+          if (each instanceof MavenProjectsProcessorResolvingTask
+              && ((MavenProjectsProcessorResolvingTask)each).merge((MavenProjectsProcessorResolvingTask)task)) {
+            return;
+          }
+        }
+      }
       if (myQueue.contains(task)) return;
       myQueue.add(task);
     }
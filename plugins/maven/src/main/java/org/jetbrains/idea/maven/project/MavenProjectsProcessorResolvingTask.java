@@ -21,22 +21,42 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.idea.maven.utils.MavenProcessCanceledException;
 import org.jetbrains.idea.maven.utils.MavenProgressIndicator;
 
-public class MavenProjectsProcessorResolvingTask extends MavenProjectsProcessorBasicTask {
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class MavenProjectsProcessorResolvingTask implements MavenProjectsProcessorTask {
+  @NotNull private final Set<MavenProject> myMavenProjects;
+  @NotNull private final MavenProjectsTree myTree;
   @NotNull private final MavenGeneralSettings myGeneralSettings;
-  @Nullable private final Runnable myOnCompletion;
+  @Nullable private Runnable myOnCompletion;
 
-  public MavenProjectsProcessorResolvingTask(@NotNull MavenProject project,
+  public MavenProjectsProcessorResolvingTask(@NotNull Collection<MavenProject> projects,
                                              @NotNull MavenProjectsTree tree,
                                              @NotNull MavenGeneralSettings generalSettings,
                                              @Nullable Runnable onCompletion) {
-    super(project, tree);
+    myMavenProjects = new LinkedHashSet<MavenProject>(projects);
+    myTree = tree;
     myGeneralSettings = generalSettings;
     myOnCompletion = onCompletion;
   }
 
   public void perform(Project project, MavenEmbeddersManager embeddersManager, MavenConsole console, MavenProgressIndicator indicator)
     throws MavenProcessCanceledException {
-    myTree.resolve(project, myMavenProject, myGeneralSettings, embeddersManager, console, indicator);
+    myTree.resolve(project, myMavenProjects, myGeneralSettings, embeddersManager, console, indicator);
     if (myOnCompletion != null) myOnCompletion.run();
   }
+
+  /**
+   * Adds projects of the task scheduled later to this not yet started one, so that every project is resolved once
+   * however many times it is scheduled.
+   *
+   * @return false if the tasks resolve projects of different trees or with different settings and cannot be merged
+   */
+  public boolean merge(@NotNull MavenProjectsProcessorResolvingTask task) {
+    if (task.myTree != myTree || task.myGeneralSettings != myGeneralSettings) return false;
+    myMavenProjects.addAll(task.myMavenProjects);
+    if (myOnCompletion == null) myOnCompletion = task.myOnCompletion;
+    return true;
+  }
 }
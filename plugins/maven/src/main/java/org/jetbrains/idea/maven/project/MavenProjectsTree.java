@@ -22,6 +22,7 @@ import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.Function;
@@ -31,24 +32,39 @@ import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.Stack;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
+import org.jdom.Attribute;
+import org.jdom.Element;
+import org.jdom.Text;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.idea.maven.model.*;
 import org.jetbrains.idea.maven.server.MavenEmbedderWrapper;
+import org.jetbrains.idea.maven.server.MavenServerConsole;
 import org.jetbrains.idea.maven.server.NativeMavenProjectHolder;
 import org.jetbrains.idea.maven.utils.*;
 
 import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
 
 public class MavenProjectsTree {
-  private static final String STORAGE_VERSION = MavenProjectsTree.class.getSimpleName() + ".5";
+  private static final String STORAGE_VERSION = MavenProjectsTree.class.getSimpleName() + ".7";
+
+  // resolving mostly waits for downloads, so use more than one thread even on a single processor
+  private static final int MAX_RESOLVING_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
 
   private final Object myStateLock = new Object();
+  private final Object myResolvedEventsLock = new Object();
+  private volatile boolean myResolveConcurrentlyInTests;
   private final ReentrantReadWriteLock myStructureLock = new ReentrantReadWriteLock();
   private final Lock myStructureReadLock = myStructureLock.readLock();
   private final Lock myStructureWriteLock = myStructureLock.writeLock();
@@ -205,6 +221,11 @@ public class MavenProjectsTree {
     setExplicitProfiles(profiles);
   }
 
+  @TestOnly
+  public void setResolveConcurrentlyInTests(boolean value) {
+    myResolveConcurrentlyInTests = value;
+  }
+
   @TestOnly
   public void resetManagedFilesAndProfiles(List<VirtualFile> files, Collection<String> profiles) {
     resetManagedFilesPathsAndProfiles(MavenUtil.collectPaths(files), profiles);
@@ -519,8 +540,21 @@ public class MavenProjectsTree {
                                        ? new THashSet<MavenProject>()
                                        : findInheritors(mavenProject);
 
+    MavenProjectTimestamp prevTimestamp = myTimestamps.get(mavenProject);
     MavenProjectTimestamp timestamp = calculateTimestamp(mavenProject, explicitProfiles, generalSettings);
-    boolean isChanged = force || !timestamp.equals(myTimestamps.get(mavenProject));
+    boolean isChanged = force || !timestamp.equals(prevTimestamp);
+
+    // the digest is only calculated when the pom itself was saved or touched; a project read for any other reason
+    // gets no digest, and its first pom change is then read and digested to compare the following ones against
+    byte[] pomDigest = null;
+    if (isChanged && !force && prevTimestamp != null && timestamp.differsOnlyInPomTimestamp(prevTimestamp)) {
+      // the file was saved or touched but e.g. only comments or formatting were changed, so the model is the same
+      pomDigest = calculatePomDigest(mavenProject.getFile());
+      if (pomDigest != null && Arrays.equals(pomDigest, prevTimestamp.myPomDigest)) {
+        myTimestamps.put(mavenProject, timestamp.withPomDigest(pomDigest));
+        isChanged = false;
+      }
+    }
 
     MavenProjectChanges changes = force ? MavenProjectChanges.ALL : MavenProjectChanges.NONE;
     if (isChanged) {
@@ -549,7 +583,7 @@ public class MavenProjectsTree {
         // ensure timestamp reflects actual parent's timestamp
         timestamp = calculateTimestamp(mavenProject, explicitProfiles, generalSettings);
       }
-      myTimestamps.put(mavenProject, timestamp);
+      myTimestamps.put(mavenProject, timestamp.withPomDigest(pomDigest));
     }
 
     boolean reconnected = isNew;
@@ -670,6 +704,82 @@ public class MavenProjectsTree {
     }
   }
 
+  /**
+   * @return MD5 of the pom's elements, attributes and texts, insensitive to comments and formatting, or null if the pom cannot be parsed
+   */
+  @Nullable
+  private static byte[] calculatePomDigest(VirtualFile file) {
+    final boolean[] hasErrors = {false};
+    Element root = MavenJDOMUtil.read(file, new MavenJDOMUtil.ErrorHandler() {
+      public void onReadError(IOException e) {
+        hasErrors[0] = true;
+      }
+
+      public void onSyntaxError() {
+        hasErrors[0] = true;
+      }
+    });
+    if (root == null || hasErrors[0]) return null;
+
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    }
+    catch (NoSuchAlgorithmException e) {
+      MavenLog.LOG.warn(e);
+      return null;
+    }
+    updateDigest(digest, root);
+    return digest.digest();
+  }
+
+  private static void updateDigest(MessageDigest digest, Element element) {
+    updateDigest(digest, "<" + element.getNamespaceURI() + ":" + element.getName());
+
+    List<Attribute> attributes = new ArrayList<Attribute>();
+    for (Object each : element.getAttributes()) {
+      attributes.add((Attribute)each);
+    }
+    Collections.sort(attributes, new Comparator<Attribute>() {
+      public int compare(Attribute a1, Attribute a2) {
+        int result = a1.getNamespaceURI().compareTo(a2.getNamespaceURI());
+        return result != 0 ? result : a1.getName().compareTo(a2.getName());
+      }
+    });
+    for (Attribute each : attributes) {
+      updateDigest(digest, "@" + each.getNamespaceURI() + ":" + each.getName());
+      updateDigest(digest, "=" + each.getValue());
+    }
+
+    for (Object each : element.getContent()) {
+      if (each instanceof Element) {
+        updateDigest(digest, (Element)each);
+      }
+      else if (each instanceof Text) {
+        String text = ((Text)each).getText();
+        if (!StringUtil.isEmptyOrSpaces(text)) {
+          updateDigest(digest, "#" + text);
+        }
+      }
+    }
+    updateDigest(digest, ">");
+  }
+
+  private static void updateDigest(MessageDigest digest, String value) {
+    try {
+      byte[] bytes = value.getBytes("UTF-8");
+      // the length keeps adjacent values from running into each other
+      digest.update((byte)(bytes.length >>> 24));
+      digest.update((byte)(bytes.length >>> 16));
+      digest.update((byte)(bytes.length >>> 8));
+      digest.update((byte)bytes.length);
+      digest.update(bytes);
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private static long getFileTimestamp(VirtualFile file) {
     if (file == null || !file.isValid()) return -1;
     return file.getTimeStamp();
@@ -992,23 +1102,102 @@ public class MavenProjectsTree {
     return result;
   }
 
+  /**
+   * Resolves the projects concurrently, each one with its own embedder. Projects do not need to be resolved in any particular
+   * order since the projects of the tree are taken from the workspace map of read projects.
+   * All the embedders live in one Maven server, which guards its shared state (downloads into the local repository
+   * and the registry of native projects) for concurrent use.
+   */
+  public void resolve(@NotNull final Project project,
+                      @NotNull Collection<MavenProject> mavenProjects,
+                      @NotNull final MavenGeneralSettings generalSettings,
+                      @NotNull final MavenEmbeddersManager embeddersManager,
+                      @NotNull final MavenConsole console,
+                      @NotNull final MavenProgressIndicator process) throws MavenProcessCanceledException {
+    int threads = Math.min(mavenProjects.size(), MAX_RESOLVING_THREADS);
+    if (threads <= 1 || ApplicationManager.getApplication().isUnitTestMode() && !myResolveConcurrentlyInTests) {
+      for (MavenProject each : mavenProjects) {
+        resolve(project, each, generalSettings, embeddersManager, console, process);
+      }
+      return;
+    }
+
+    final Queue<MavenProject> queue = new ConcurrentLinkedQueue<MavenProject>(mavenProjects);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int i = 0; i < threads; i++) {
+      futures.add(ApplicationManager.getApplication().executeOnPooledThread(new Callable<Void>() {
+        public Void call() throws Exception {
+          boolean completed = false;
+          try {
+            MavenProject each;
+            while ((each = queue.poll()) != null) {
+              resolve(project, each, generalSettings, embeddersManager, console, process);
+            }
+            completed = true;
+          }
+          finally {
+            // the resolve fails as a whole, so the other threads need not take the remaining projects
+            if (!completed) queue.clear();
+          }
+          return null;
+        }
+      }));
+    }
+
+    MavenProcessCanceledException canceled = null;
+    Throwable failure = null;
+    for (Future<?> each : futures) {
+      try {
+        each.get();
+      }
+      catch (InterruptedException e) {
+        queue.clear();
+        for (Future<?> eachFuture : futures) {
+          eachFuture.cancel(true);
+        }
+        Thread.currentThread().interrupt();
+        throw new MavenProcessCanceledException();
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof MavenProcessCanceledException) {
+          canceled = (MavenProcessCanceledException)e.getCause();
+        }
+        else if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (canceled != null) throw canceled;
+    if (failure instanceof RuntimeException) throw (RuntimeException)failure;
+    if (failure instanceof Error) throw (Error)failure;
+    if (failure != null) throw new RuntimeException(failure);
+  }
+
   public void resolve(@NotNull Project project,
                       @NotNull MavenProject mavenProject,
                       @NotNull MavenGeneralSettings generalSettings,
                       @NotNull MavenEmbeddersManager embeddersManager,
                       @NotNull MavenConsole console,
                       @NotNull MavenProgressIndicator process) throws MavenProcessCanceledException {
-    MavenEmbedderWrapper embedder = embeddersManager.getEmbedder(MavenEmbeddersManager.FOR_DEPENDENCIES_RESOLVE);
+    MavenEmbedderWrapper embedder = embeddersManager.getFreeEmbedder(MavenEmbeddersManager.FOR_DEPENDENCIES_RESOLVE);
     embedder.customizeForResolve(getWorkspaceMap(), console, process);
 
     try {
       process.checkCanceled();
       process.setText(ProjectBundle.message("maven.resolving.pom", mavenProject.getDisplayName()));
       process.setText2("");
+      long start = System.currentTimeMillis();
       Pair<MavenProjectChanges, NativeMavenProjectHolder> resolveResult =
         mavenProject.resolve(project, generalSettings, embedder, new MavenProjectReader(), myProjectLocator);
-
-      fireProjectResolved(Pair.create(mavenProject, resolveResult.first), resolveResult.second);
+      console.printMessage(MavenServerConsole.LEVEL_INFO,
+                           ProjectBundle.message("maven.resolved.pom", mavenProject.getDisplayName(),
+                                                 String.valueOf(System.currentTimeMillis() - start)),
+                           null);
+
+      // listeners are not supposed to be called concurrently
+      synchronized (myResolvedEventsLock) {
+        fireProjectResolved(Pair.create(mavenProject, resolveResult.first), resolveResult.second);
+      }
     }
     finally {
       embeddersManager.release(embedder);
@@ -1260,6 +1449,8 @@ public class MavenProjectsTree {
     private final long myUserSettingsTimestamp;
     private final long myGlobalSettingsTimestamp;
     private final long myExplicitProfilesHashCode;
+    // digest of the pom content the project was read from, not compared in equals(); null if unknown
+    @Nullable private final byte[] myPomDigest;
 
     private MavenProjectTimestamp(long pomTimestamp,
                                   long parentLastReadStamp,
@@ -1267,21 +1458,61 @@ public class MavenProjectsTree {
                                   long userSettingsTimestamp,
                                   long globalSettingsTimestamp,
                                   long explicitProfilesHashCode) {
+      this(pomTimestamp, parentLastReadStamp, profilesTimestamp, userSettingsTimestamp, globalSettingsTimestamp,
+           explicitProfilesHashCode, null);
+    }
+
+    private MavenProjectTimestamp(long pomTimestamp,
+                                  long parentLastReadStamp,
+                                  long profilesTimestamp,
+                                  long userSettingsTimestamp,
+                                  long globalSettingsTimestamp,
+                                  long explicitProfilesHashCode,
+                                  @Nullable byte[] pomDigest) {
       myPomTimestamp = pomTimestamp;
       myParentLastReadStamp = parentLastReadStamp;
       myProfilesTimestamp = profilesTimestamp;
       myUserSettingsTimestamp = userSettingsTimestamp;
       myGlobalSettingsTimestamp = globalSettingsTimestamp;
       myExplicitProfilesHashCode = explicitProfilesHashCode;
+      myPomDigest = pomDigest;
+    }
+
+    public MavenProjectTimestamp withPomDigest(@Nullable byte[] pomDigest) {
+      return new MavenProjectTimestamp(myPomTimestamp, myParentLastReadStamp, myProfilesTimestamp, myUserSettingsTimestamp,
+                                       myGlobalSettingsTimestamp, myExplicitProfilesHashCode, pomDigest);
+    }
+
+    public boolean differsOnlyInPomTimestamp(MavenProjectTimestamp other) {
+      return myPomTimestamp != other.myPomTimestamp && equals(other.withPomTimestamp(myPomTimestamp));
+    }
+
+    private MavenProjectTimestamp withPomTimestamp(long pomTimestamp) {
+      return new MavenProjectTimestamp(pomTimestamp, myParentLastReadStamp, myProfilesTimestamp, myUserSettingsTimestamp,
+                                       myGlobalSettingsTimestamp, myExplicitProfilesHashCode, myPomDigest);
     }
 
     public static MavenProjectTimestamp read(DataInputStream in) throws IOException {
-      return new MavenProjectTimestamp(in.readLong(),
-                                       in.readLong(),
-                                       in.readLong(),
-                                       in.readLong(),
-                                       in.readLong(),
-                                       in.readLong());
+      long pomTimestamp = in.readLong();
+      long parentLastReadStamp = in.readLong();
+      long profilesTimestamp = in.readLong();
+      long userSettingsTimestamp = in.readLong();
+      long globalSettingsTimestamp = in.readLong();
+      long explicitProfilesHashCode = in.readLong();
+
+      byte[] pomDigest = null;
+      int digestLength = in.readInt();
+      if (digestLength > 0) {
+        pomDigest = new byte[digestLength];
+        in.readFully(pomDigest);
+      }
+      return new MavenProjectTimestamp(pomTimestamp,
+                                       parentLastReadStamp,
+                                       profilesTimestamp,
+                                       userSettingsTimestamp,
+                                       globalSettingsTimestamp,
+                                       explicitProfilesHashCode,
+                                       pomDigest);
     }
 
     public void write(DataOutputStream out) throws IOException {
@@ -1291,6 +1522,13 @@ public class MavenProjectsTree {
       out.writeLong(myUserSettingsTimestamp);
       out.writeLong(myGlobalSettingsTimestamp);
       out.writeLong(myExplicitProfilesHashCode);
+      if (myPomDigest == null) {
+        out.writeInt(0);
+      }
+      else {
+        out.writeInt(myPomDigest.length);
+        out.write(myPomDigest);
+      }
     }
 
     @Override
@@ -69,6 +69,22 @@ public class MavenEmbeddersManagerTest extends MavenTestCase {
     assertNotSame(one2, one22);
   }
 
+  public void testCachingFreeEmbedders() throws Exception {
+    MavenEmbedderWrapper one1 = myManager.getFreeEmbedder(MavenEmbeddersManager.FOR_DEPENDENCIES_RESOLVE);
+    MavenEmbedderWrapper one2 = myManager.getFreeEmbedder(MavenEmbeddersManager.FOR_DEPENDENCIES_RESOLVE);
+
+    assertNotSame(one1, one2);
+
+    myManager.release(one1);
+    myManager.release(one2);
+
+    MavenEmbedderWrapper one11 = myManager.getFreeEmbedder(MavenEmbeddersManager.FOR_DEPENDENCIES_RESOLVE);
+    MavenEmbedderWrapper one22 = myManager.getFreeEmbedder(MavenEmbeddersManager.FOR_DEPENDENCIES_RESOLVE);
+
+    assertSame(one1, one11);
+    assertSame(one2, one22);
+  }
+
   public void testResettingAllCachedAndInUse() throws Exception {
     MavenEmbedderWrapper one1 = myManager.getEmbedder(MavenEmbeddersManager.FOR_DEPENDENCIES_RESOLVE);
     MavenEmbedderWrapper one2 = myManager.getEmbedder(MavenEmbeddersManager.FOR_FOLDERS_RESOLVE);
@@ -25,10 +25,7 @@ import org.jetbrains.idea.maven.server.NativeMavenProjectHolder;
 import org.jetbrains.idea.maven.utils.MavenUtil;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 public class MavenProjectsTreeReadingTest extends MavenProjectsTreeTestCase {
   public void testTwoRootProjects() throws Exception {
@@ -1809,6 +1806,135 @@ public class MavenProjectsTreeReadingTest extends MavenProjectsTreeTestCase {
     assertEquals("updated: project deleted: <none> ", l.log);
   }
 
+  public void testDoNotUpdateProjectAndInheritorsWhenOnlyPomFormattingChanges() throws Exception {
+    createProjectPom("<groupId>test</groupId>" +
+                     "<artifactId>project</artifactId>" +
+                     "<version>1</version>" +
+                     "<packaging>pom</packaging>" +
+
+                     "<modules>" +
+                     "  <module>m</module>" +
+                     "</modules>");
+
+    createModulePom("m",
+                    "<groupId>test</groupId>" +
+                    "<artifactId>m</artifactId>" +
+                    "<version>1</version>" +
+
+                    "<parent>" +
+                    "  <groupId>test</groupId>" +
+                    "  <artifactId>project</artifactId>" +
+                    "  <version>1</version>" +
+                    "</parent>");
+
+    updateAll(myProjectPom);
+
+    MyLoggingListener l = new MyLoggingListener();
+    myTree.addListener(l);
+
+    // the pom digest is only calculated on the first save after a read, there is nothing to compare it with yet
+    createProjectPom("<groupId>test</groupId>" +
+                     "<artifactId>project</artifactId>" +
+                     "<version>1</version>" +
+                     "<packaging>pom</packaging>" +
+
+                     "<modules>" +
+                     "    <module>m</module>" +
+                     "</modules>");
+
+    updateAll(myProjectPom);
+    assertEquals("updated: project m deleted: <none> ", l.log);
+    l.log = "";
+
+    createProjectPom("<groupId>test</groupId>" +
+                     "<!-- comment -->" +
+                     "<artifactId>project</artifactId>" +
+                     "<version>1</version>" +
+                     "<packaging>pom</packaging>" +
+
+                     "<modules>" +
+                     "    <module>m</module>" +
+                     "</modules>");
+
+    updateAll(myProjectPom);
+    assertEquals("", l.log);
+
+    createProjectPom("<groupId>test</groupId>" +
+                     "<artifactId>project</artifactId>" +
+                     "<version>1</version>" +
+                     "<packaging>pom</packaging>" +
+
+                     "<modules>" +
+                     "  <module>m</module>" +
+                     "</modules>");
+
+    updateAll(myProjectPom);
+    assertEquals("", l.log);
+
+    createProjectPom("<groupId>test</groupId>" +
+                     "<artifactId>project</artifactId>" +
+                     "<version>1</version>" +
+                     "<packaging>pom</packaging>" +
+
+                     "<modules>" +
+                     "  <module>m</module>" +
+                     "</modules>" +
+
+                     "<properties>" +
+                     "  <prop>value</prop>" +
+                     "</properties>");
+
+    updateAll(myProjectPom);
+    assertEquals("updated: project m deleted: <none> ", l.log);
+  }
+
+  public void testUpdateProjectWhenOnlyPomAttributeChanges() throws Exception {
+    createProjectPom("<groupId>test</groupId>" +
+                     "<artifactId>project</artifactId>" +
+                     "<version>1</version>" +
+
+                     "<build>" +
+                     "  <plugins>" +
+                     "    <plugin>" +
+                     "      <artifactId>maven-compiler-plugin</artifactId>" +
+                     "      <configuration>" +
+                     "        <compilerArguments combine.children=\"merge\">" +
+                     "          <verbose/>" +
+                     "        </compilerArguments>" +
+                     "      </configuration>" +
+                     "    </plugin>" +
+                     "  </plugins>" +
+                     "</build>");
+
+    updateAll(myProjectPom);
+    // records the pom digest the attribute change is compared with
+    myProjectPom.setBinaryContent(myProjectPom.contentsToByteArray(), myProjectPom.getModificationStamp() + 4000, myProjectPom.getTimeStamp() + 4000);
+    updateAll(myProjectPom);
+
+    MyLoggingListener l = new MyLoggingListener();
+    myTree.addListener(l);
+
+    createProjectPom("<groupId>test</groupId>" +
+                     "<artifactId>project</artifactId>" +
+                     "<version>1</version>" +
+
+                     "<build>" +
+                     "  <plugins>" +
+                     "    <plugin>" +
+                     "      <artifactId>maven-compiler-plugin</artifactId>" +
+                     "      <configuration>" +
+                     "        <compilerArguments combine.children=\"append\">" +
+                     "          <verbose/>" +
+                     "        </compilerArguments>" +
+                     "      </configuration>" +
+                     "    </plugin>" +
+                     "  </plugins>" +
+                     "</build>");
+
+    updateAll(myProjectPom);
+    assertEquals("updated: project deleted: <none> ", l.log);
+  }
+
   public void testSaveLoad() throws Exception {
     createProjectPom("<groupId>test</groupId>" +
                      "<artifactId>project</artifactId>" +
@@ -2182,6 +2308,106 @@ public class MavenProjectsTreeReadingTest extends MavenProjectsTreeTestCase {
     assertPathEquals(pathFromBasedir("my-target/test-classes"), project.getTestOutputDirectory());
   }
 
+  public void testResolvingProjectsConcurrently() throws Exception {
+    VirtualFile[] modules = createModulesToResolve();
+    updateAll(modules);
+
+    final List<String> resolved = Collections.synchronizedList(new ArrayList<String>());
+    final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+    myTree.addListener(new MavenProjectsTree.ListenerAdapter() {
+      @Override
+      public void projectResolved(Pair<MavenProject, MavenProjectChanges> projectWithChanges,
+                                  NativeMavenProjectHolder nativeMavenProject) {
+        resolved.add(projectWithChanges.first.getMavenId().getArtifactId());
+        threads.add(Thread.currentThread());
+      }
+    });
+
+    MavenEmbeddersManager embeddersManager = new MavenEmbeddersManager(myProject);
+    myTree.setResolveConcurrentlyInTests(true);
+    try {
+      myTree.resolve(myProject, myTree.getProjects(), getMavenGeneralSettings(), embeddersManager, NULL_MAVEN_CONSOLE,
+                     EMPTY_MAVEN_PROCESS);
+    }
+    finally {
+      myTree.setResolveConcurrentlyInTests(false);
+      embeddersManager.releaseInTests();
+    }
+
+    // projects are resolved on pooled threads, in any order
+    assertUnorderedElementsAreEqual(resolved, "m1", "m2", "m3");
+    assertFalse(threads.contains(Thread.currentThread()));
+    for (MavenProject each : myTree.getProjects()) {
+      assertFalse(each.getDisplayName(), each.hasReadingProblems());
+    }
+  }
+
+  public void testFailureOfConcurrentResolvingPassedToCaller() throws Exception {
+    VirtualFile[] modules = createModulesToResolve();
+    updateAll(modules);
+
+    final RuntimeException failure = new RuntimeException("m2 failed");
+    myTree.addListener(new MavenProjectsTree.ListenerAdapter() {
+      @Override
+      public void projectResolved(Pair<MavenProject, MavenProjectChanges> projectWithChanges,
+                                  NativeMavenProjectHolder nativeMavenProject) {
+        if ("m2".equals(projectWithChanges.first.getMavenId().getArtifactId())) throw failure;
+      }
+    });
+
+    MavenEmbeddersManager embeddersManager = new MavenEmbeddersManager(myProject);
+    myTree.setResolveConcurrentlyInTests(true);
+    try {
+      myTree.resolve(myProject, myTree.getProjects(), getMavenGeneralSettings(), embeddersManager, NULL_MAVEN_CONSOLE,
+                     EMPTY_MAVEN_PROCESS);
+      fail("resolving failure must be passed to the caller");
+    }
+    catch (RuntimeException e) {
+      assertSame(failure, e);
+    }
+    finally {
+      myTree.setResolveConcurrentlyInTests(false);
+      embeddersManager.releaseInTests();
+    }
+  }
+
+  public void testResolvingProjectScheduledSeveralTimesOnce() throws Exception {
+    VirtualFile[] modules = createModulesToResolve();
+    updateAll(modules);
+
+    MyLoggingListener listener = new MyLoggingListener();
+    myTree.addListener(listener);
+
+    MavenProject m1 = myTree.findProject(modules[0]);
+    MavenProject m2 = myTree.findProject(modules[1]);
+    MavenProject m3 = myTree.findProject(modules[2]);
+
+    MavenEmbeddersManager embeddersManager = new MavenEmbeddersManager(myProject);
+    MavenProjectsProcessor processor = new MavenProjectsProcessor(myProject, "", false, embeddersManager);
+    try {
+      processor.scheduleTask(new MavenProjectsProcessorResolvingTask(Arrays.asList(m1, m2), myTree, getMavenGeneralSettings(), null));
+      processor.scheduleTask(new MavenProjectsProcessorResolvingTask(Arrays.asList(m2, m3), myTree, getMavenGeneralSettings(), null));
+      processor.scheduleTask(new MavenProjectsProcessorResolvingTask(Arrays.asList(m1), myTree, getMavenGeneralSettings(), null));
+      processor.waitForCompletion();
+    }
+    finally {
+      embeddersManager.releaseInTests();
+    }
+
+    assertEquals("resolved: m1 resolved: m2 resolved: m3 ", listener.log);
+  }
+
+  private VirtualFile[] createModulesToResolve() throws Exception {
+    VirtualFile[] result = new VirtualFile[3];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = createModulePom("m" + (i + 1),
+                                  "<groupId>test</groupId>" +
+                                  "<artifactId>m" + (i + 1) + "</artifactId>" +
+                                  "<version>1</version>");
+    }
+    return result;
+  }
+
   private static class MyLoggingListener extends MavenProjectsTree.ListenerAdapter {
     String log = "";
 
@@ -17,95 +17,108 @@ package com.intellij.spellchecker.compress;
 
 import com.intellij.spellchecker.dictionary.Dictionary;
 import com.intellij.spellchecker.dictionary.Loader;
+import com.intellij.spellchecker.engine.Suggestion;
 import com.intellij.spellchecker.engine.Transformation;
 import com.intellij.util.Consumer;
-import gnu.trove.TIntObjectHashMap;
-import gnu.trove.TIntObjectProcedure;
+import gnu.trove.TIntArrayList;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 
+/**
+ * Read-only dictionary stored as a trie packed into arrays. Letters are replaced by their indices in the dictionary's own
+ * alphabet, so that a node takes a byte for its letter, an int for its children and a bit telling whether a word ends there.
+ */
 public final class CompressedDictionary implements Dictionary {
 
   private final Alphabet alphabet;
   private int wordsCount;
-  private byte[][] words;
-  private int[] lengths;
 
-  private final Encoder encoder;
+  // the nodes are in breadth-first order, node 0 is the root; the children of node n are the nodes from firstChildren[n]
+  // up to firstChildren[n + 1] (exclusive), sorted by their letters
+  private byte[] letters;
+  private int[] firstChildren;
+  private BitSet wordEnds;
+
   private final String name;
 
-  private TIntObjectHashMap<SortedSet<byte[]>> rawData = new TIntObjectHashMap<SortedSet<byte[]>>();
+  private List<byte[]> rawData = new ArrayList<byte[]>();
   private static final Comparator<byte[]> COMPARATOR = new Comparator<byte[]>() {
     public int compare(byte[] o1, byte[] o2) {
       return compareArrays(o1, o2);
     }
   };
 
-  CompressedDictionary(@NotNull Alphabet alphabet, @NotNull Encoder encoder, @NotNull String name) {
+  CompressedDictionary(@NotNull Alphabet alphabet, @NotNull String name) {
     this.alphabet = alphabet;
-    this.encoder = encoder;
     this.name = name;
   }
 
   void addToDictionary(byte[] word) {
-    SortedSet<byte[]> set = rawData.get(word.length);
-    if (set == null) {
-      set = createSet();
-      rawData.put(word.length, set);
-    }
-    set.add(word);
-    wordsCount++;
+    rawData.add(word);
   }
 
   void pack() {
-    lengths = new int[rawData.size()];
-    words = new byte[rawData.size()][];
-    rawData.forEachEntry(new TIntObjectProcedure<SortedSet<byte[]>>() {
-      int row = 0;
-      @Override
-      public boolean execute(int l, SortedSet<byte[]> value) {
-        lengths[row] = l;
-        words[row] = new byte[value.size() * l];
-        int k = 0;
-        for (byte[] bytes : value) {
-          for (byte aByte : bytes) {
-            words[row][k++] = aByte;
-          }
+    Collections.sort(rawData, COMPARATOR);
+    final TIntArrayList nodeLetters = new TIntArrayList();
+    final TIntArrayList nodeFirstChildren = new TIntArrayList();
+    final BitSet ends = new BitSet();
+    // depth of a node, first and last (exclusive) of the sorted words starting with the node's prefix, for every node
+    final TIntArrayList nodes = new TIntArrayList();
+    nodeLetters.add(0);
+    nodes.add(0);
+    nodes.add(0);
+    nodes.add(rawData.size());
+    wordsCount = 0;
+    for (int node = 0; node * 3 < nodes.size(); node++) {
+      final int depth = nodes.get(node * 3);
+      int from = nodes.get(node * 3 + 1);
+      final int to = nodes.get(node * 3 + 2);
+      nodeFirstChildren.add(nodeLetters.size());
+      if (from < to && rawData.get(from).length == depth) {
+        ends.set(node);
+        wordsCount++;
+        while (from < to && rawData.get(from).length == depth) {
+          from++;
         }
-        row++;
-        return true;
       }
-    });
-    rawData = null;
-  }
-
-  private static SortedSet<byte[]> createSet() {
-    return new TreeSet<byte[]>(COMPARATOR);
+      while (from < to) {
+        final byte letter = rawData.get(from)[depth];
+        int next = from + 1;
+        while (next < to && rawData.get(next)[depth] == letter) {
+          next++;
+        }
+        nodeLetters.add(letter);
+        nodes.add(depth + 1);
+        nodes.add(from);
+        nodes.add(next);
+        from = next;
+      }
+    }
+    nodeFirstChildren.add(nodeLetters.size());
 
+    letters = new byte[nodeLetters.size()];
+    for (int i = 0; i < letters.length; i++) {
+      letters[i] = (byte)nodeLetters.get(i);
+    }
+    firstChildren = nodeFirstChildren.toNativeArray();
+    wordEnds = ends;
+    rawData = null;
   }
 
   public List<String> getWords(char first, int minLength, int maxLength) {
-    int index = alphabet.getIndex(first, false);
-    List<String> result = new ArrayList<String>();
-    if (index == -1) {
+    final List<String> result = new ArrayList<String>();
+    final int index = alphabet.getIndex(first, false);
+    final int node = index == -1 ? -1 : findChild(0, index);
+    if (node == -1) {
       return result;
     }
-    int i = 0;
-    for (byte[] data : words) {
-      int length = lengths[i];
-      for (int x = 0; x < data.length; x += length) {
-        byte[] toTest = new byte[length];
-        System.arraycopy(data, x, toTest, 0, length);
-        if (toTest[1] != index || toTest[0] > maxLength || toTest[0] < minLength) {
-          continue;
-        }
-        UnitBitSet set = UnitBitSet.create(toTest);
-        result.add(encoder.decode(set));
+    collectWords(node, new StringBuilder().append(first), minLength, maxLength, new Consumer<String>() {
+      public void consume(String s) {
+        result.add(s);
       }
-      i++;
-    }
+    });
     return result;
   }
 
@@ -113,6 +126,31 @@ public final class CompressedDictionary implements Dictionary {
     return getWords(first, 0, Integer.MAX_VALUE);
   }
 
+  /**
+   * Adds the words starting with the first letter of the given word which are among the <code>limit</code> words closest to it
+   * by Levenshtein distance. Subtrees which can't contain words closer than the <code>limit</code>-th closest word found so far
+   * are not visited, so farther words added before that one was found may be added as well.
+   */
+  public void collectSuggestions(@NotNull String word, int limit, @NotNull Collection<Suggestion> result) {
+    if (word.length() == 0 || limit <= 0) {
+      return;
+    }
+    final int[] indices = new int[word.length()];
+    for (int i = 0; i < indices.length; i++) {
+      // -1 for letters out of the alphabet, they never match
+      indices[i] = alphabet.getIndex(word.charAt(i), false);
+    }
+    final int node = indices[0] == -1 ? -1 : findChild(0, indices[0]);
+    if (node == -1) {
+      return;
+    }
+    final int[] row = new int[indices.length + 1];
+    for (int i = 0; i < row.length; i++) {
+      row[i] = i;
+    }
+    new SuggestionsCollector(indices, limit, result).visit(node, row);
+  }
+
   public String getName() {
     return name;
   }
@@ -121,24 +159,14 @@ public final class CompressedDictionary implements Dictionary {
     if (word == null) {
       return false;
     }
-    try {
-      UnitBitSet bs = encoder.encode(word, false);
-      if (bs == Encoder.WORD_OF_ENTIRELY_UNKNOWN_LETTERS) return false;  // TODO: polyglot.dic contains word typppo , wtf ?! also make tests for your changes!!!
-      if (bs == null) return false; // fail faster w/o search
-      byte[] compressed = UnitBitSet.getBytes(bs);
-      int index = -1;
-      for (int i = 0; i < lengths.length; i++) {
-        if (lengths[i] == compressed.length) {
-          index = i;
-          break;
-        }
-      }
-      return index != -1 && contains(compressed, words[index]);
+    int node = 0;
+    for (int i = 0; i < word.length(); i++) {
+      final int index = alphabet.getIndex(word.charAt(i), false);
+      if (index == -1) return false;
+      node = findChild(node, index);
+      if (node == -1) return false;
     }
-    catch (EncodingException ignored) {
-      return false;
-    }
-
+    return wordEnds.get(node);
   }
 
   public boolean isEmpty() {
@@ -146,7 +174,7 @@ public final class CompressedDictionary implements Dictionary {
   }
 
   public void traverse(Consumer<String> action) {
-    throw new UnsupportedOperationException();
+    collectWords(0, new StringBuilder(), 0, Integer.MAX_VALUE, action);
   }
 
   public Set<String> getWords() {
@@ -172,17 +200,17 @@ public final class CompressedDictionary implements Dictionary {
   }
 
   public static CompressedDictionary create(@NotNull Loader loader, @NotNull final Transformation transform) {
-    Alphabet alphabet = new Alphabet();
-    final Encoder encoder = new Encoder(alphabet);
-    final CompressedDictionary dictionary = new CompressedDictionary(alphabet, encoder, loader.getName());
+    final Alphabet alphabet = new Alphabet();
+    final CompressedDictionary dictionary = new CompressedDictionary(alphabet, loader.getName());
     loader.load(new Consumer<String>() {
       public void consume(String s) {
         String transformed = transform.transform(s);
         if (transformed != null) {
-          UnitBitSet bs = encoder.encode(transformed, true);
-          if (bs == null) return;
-          byte[] compressed = UnitBitSet.getBytes(bs);
-          dictionary.addToDictionary(compressed);
+          final byte[] word = new byte[transformed.length()];
+          for (int i = 0; i < word.length; i++) {
+            word[i] = (byte)alphabet.getIndex(transformed.charAt(i), true);
+          }
+          dictionary.addToDictionary(word);
         }
       }
     });
@@ -190,48 +218,108 @@ public final class CompressedDictionary implements Dictionary {
     return dictionary;
   }
 
+  /**
+   * Compares arrays of unsigned bytes lexicographically, a prefix goes before the longer arrays.
+   */
   public static int compareArrays(byte[] array1, byte[] array2) {
+    final int length = Math.min(array1.length, array2.length);
+    for (int i = 0; i < length; i++) {
+      final int diff = (array1[i] & 0xFF) - (array2[i] & 0xFF);
+      if (diff != 0) {
+        return diff < 0 ? -1 : 1;
+      }
+    }
     if (array1.length != array2.length) {
       return array1.length < array2.length ? -1 : 1;
     }
-    //compare elements values
-    for (int i = 0; i < array1.length; i++) {
-      if (array1[i] < array2[i]) {
-        return -1;
-      }
-      else if (array1[i] > array2[i]) {
-        return 1;
-      }
-    }
     return 0;
   }
 
-
-  public static boolean contains(byte[] goal, byte[] data) {
-    return binarySearchNew(goal, 0, data.length / goal.length, data) >= 0;
-  }
-
-  public static int binarySearchNew(byte[] goal, int fromIndex, int toIndex, byte[] data) {
-    int unitLength = goal.length;
-    int low = fromIndex;
-    int high = toIndex - 1;
+  private int findChild(int node, int letter) {
+    int low = firstChildren[node];
+    int high = firstChildren[node + 1] - 1;
     while (low <= high) {
-      int mid = low + high >>> 1;
-      byte[] toTest = new byte[unitLength];
-      System.arraycopy(data, mid * unitLength, toTest, 0, unitLength);
-      int check = compareArrays(toTest, goal);
-      if (check == -1) {
+      final int mid = low + high >>> 1;
+      final int midLetter = letters[mid] & 0xFF;
+      if (midLetter < letter) {
         low = mid + 1;
       }
-      else if (check == 1) {
+      else if (midLetter > letter) {
         high = mid - 1;
       }
       else {
         return mid;
       }
     }
-    return -(low + 1);  // key not found.
+    return -1;
   }
 
+  private void collectWords(int node, StringBuilder prefix, int minLength, int maxLength, Consumer<String> consumer) {
+    if (prefix.length() > maxLength) {
+      return;
+    }
+    if (wordEnds.get(node) && prefix.length() >= minLength) {
+      consumer.consume(prefix.toString());
+    }
+    for (int child = firstChildren[node]; child < firstChildren[node + 1]; child++) {
+      prefix.append(alphabet.getLetter(letters[child] & 0xFF));
+      collectWords(child, prefix, minLength, maxLength, consumer);
+      prefix.setLength(prefix.length() - 1);
+    }
+  }
 
+  private class SuggestionsCollector {
+    private final int[] myWord;
+    private final int myLimit;
+    private final Collection<Suggestion> myResult;
+    private final StringBuilder myPrefix = new StringBuilder();
+    // distances of the closest words found so far, the farthest of them on the top
+    private final PriorityQueue<Integer> myBestDistances = new PriorityQueue<Integer>(11, Collections.<Integer>reverseOrder());
+
+    private SuggestionsCollector(@NotNull int[] word, int limit, @NotNull Collection<Suggestion> result) {
+      myWord = word;
+      myLimit = limit;
+      myResult = result;
+    }
+
+    /**
+     * @param previousRow distances from the prefixes of the word to the prefix of the node's parent
+     */
+    private void visit(int node, @NotNull int[] previousRow) {
+      final int letter = letters[node] & 0xFF;
+      final int[] row = new int[previousRow.length];
+      row[0] = previousRow[0] + 1;
+      int minDistance = row[0];
+      for (int i = 1; i < row.length; i++) {
+        final int replacement = previousRow[i - 1] + (myWord[i - 1] == letter ? 0 : 1);
+        row[i] = Math.min(Math.min(previousRow[i] + 1, row[i - 1] + 1), replacement);
+        minDistance = Math.min(minDistance, row[i]);
+      }
+      // words below the node are at least that far from the word
+      if (minDistance >= getDistanceBound()) {
+        return;
+      }
+
+      myPrefix.append(alphabet.getLetter(letter));
+      final int distance = row[row.length - 1];
+      if (wordEnds.get(node) && distance < getDistanceBound()) {
+        myResult.add(new Suggestion(myPrefix.toString(), distance));
+        myBestDistances.add(distance);
+        if (myBestDistances.size() > myLimit) {
+          myBestDistances.poll();
+        }
+      }
+      for (int child = firstChildren[node]; child < firstChildren[node + 1]; child++) {
+        visit(child, row);
+      }
+      myPrefix.setLength(myPrefix.length() - 1);
+    }
+
+    /**
+     * @return the distance a word must be closer than to get among the closest words found so far
+     */
+    private int getDistanceBound() {
+      return myBestDistances.size() < myLimit ? Integer.MAX_VALUE : myBestDistances.peek();
+    }
+  }
 }
@@ -33,6 +33,7 @@ import com.intellij.spellchecker.dictionary.EditableDictionary;
 import com.intellij.spellchecker.dictionary.EditableDictionaryLoader;
 import com.intellij.spellchecker.dictionary.Loader;
 import com.intellij.util.Consumer;
+import com.intellij.util.containers.SLRUMap;
 import com.intellij.util.ui.UIUtil;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
@@ -41,6 +42,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class BaseSpellChecker implements SpellCheckerEngine {
@@ -52,6 +54,11 @@ public class BaseSpellChecker implements SpellCheckerEngine {
   private final List<Dictionary> bundledDictionaries = new CopyOnWriteArrayList<Dictionary>();
   private final Metrics metrics = new LevenshteinDistance();
 
+  private static final int LOOKUP_CACHE_SIZE = 10000;
+  // transformed word -> whether it is in one of the bundled dictionaries, shared by all the files being checked
+  private final SLRUMap<String, Boolean> myBundledLookups = new SLRUMap<String, Boolean>(LOOKUP_CACHE_SIZE, LOOKUP_CACHE_SIZE);
+  private final AtomicInteger myBundledDictionariesModificationCount = new AtomicInteger();
+
   private AtomicBoolean myLoadingDictionaries = new AtomicBoolean(false); 
   private List<Pair<Loader, Consumer<Dictionary>>> myDictionariesToLoad = new CopyOnWriteArrayList<Pair<Loader, Consumer<Dictionary>>>();
   private Project myProject;
@@ -200,6 +207,14 @@ public class BaseSpellChecker implements SpellCheckerEngine {
 
   private void addCompressedFixedDictionary(@NotNull Dictionary dictionary) {
     bundledDictionaries.add(dictionary);
+    bundledDictionariesChanged();
+  }
+
+  private void bundledDictionariesChanged() {
+    synchronized (myBundledLookups) {
+      myBundledDictionariesModificationCount.incrementAndGet();
+      myBundledLookups.clear();
+    }
   }
 
   public Transformation getTransformation() {
@@ -277,11 +292,29 @@ public class BaseSpellChecker implements SpellCheckerEngine {
     if (transformed == null) {
       return true;
     }
-    return myLoadingDictionaries.get() || isCorrect(transformed, bundledDictionaries) || isCorrect(transformed, dictionaries);
+    return myLoadingDictionaries.get() || isCorrectInBundledDictionaries(transformed) || isCorrect(transformed, dictionaries);
 
 
   }
 
+  private boolean isCorrectInBundledDictionaries(@NotNull String transformed) {
+    final int modificationCount = myBundledDictionariesModificationCount.get();
+    synchronized (myBundledLookups) {
+      final Boolean cached = myBundledLookups.get(transformed);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final boolean result = isCorrect(transformed, bundledDictionaries);
+    synchronized (myBundledLookups) {
+      // do not store results computed against outdated dictionaries
+      if (myBundledDictionariesModificationCount.get() == modificationCount) {
+        myBundledLookups.put(transformed, result);
+      }
+    }
+    return result;
+  }
+
 
   @NotNull
   public List<String> getSuggestions(final @NotNull String word, int threshold, int quality) {
@@ -290,7 +323,15 @@ public class BaseSpellChecker implements SpellCheckerEngine {
       return Collections.emptyList();
     }
     final List<Suggestion> suggestions = new ArrayList<Suggestion>();
-    List<String> rawSuggestions = restore(transformed.charAt(0), 0, Integer.MAX_VALUE, bundledDictionaries);
+    final List<String> rawSuggestions = new ArrayList<String>();
+    for (Dictionary dictionary : bundledDictionaries) {
+      if (dictionary instanceof CompressedDictionary) {
+        ((CompressedDictionary)dictionary).collectSuggestions(transformed, threshold, suggestions);
+      }
+      else {
+        rawSuggestions.addAll(restore(transformed.charAt(0), 0, Integer.MAX_VALUE, dictionary));
+      }
+    }
     rawSuggestions.addAll(restore(word.charAt(0), 0, Integer.MAX_VALUE, dictionaries));
     for (String rawSuggestion : rawSuggestions) {
       final int distance = metrics.calculateMetrics(transformed, rawSuggestion);
@@ -324,6 +365,7 @@ public class BaseSpellChecker implements SpellCheckerEngine {
   public void reset() {
     bundledDictionaries.clear();
     dictionaries.clear();
+    bundledDictionariesChanged();
   }
 
   public boolean isDictionaryLoad(@NotNull String name) {
@@ -334,6 +376,7 @@ public class BaseSpellChecker implements SpellCheckerEngine {
     final Dictionary dictionaryByName = getBundledDictionaryByName(name);
     if (dictionaryByName != null) {
       bundledDictionaries.remove(dictionaryByName);
+      bundledDictionariesChanged();
     }
   }
 
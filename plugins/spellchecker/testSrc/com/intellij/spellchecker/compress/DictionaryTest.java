@@ -20,6 +20,9 @@ import com.intellij.spellchecker.DefaultBundledDictionariesProvider;
 import com.intellij.spellchecker.StreamLoader;
 import com.intellij.spellchecker.dictionary.Dictionary;
 import com.intellij.spellchecker.dictionary.Loader;
+import com.intellij.spellchecker.engine.LevenshteinDistance;
+import com.intellij.spellchecker.engine.Metrics;
+import com.intellij.spellchecker.engine.Suggestion;
 import com.intellij.spellchecker.engine.Transformation;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.util.Consumer;
@@ -29,9 +32,7 @@ import junit.framework.TestCase;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 @SuppressWarnings({"JUnitTestCaseWithNonTrivialConstructors"})
 public class DictionaryTest extends TestCase {
@@ -82,6 +83,34 @@ public class DictionaryTest extends TestCase {
     }).cpuBound().assertTiming();
   }
 
+  public void testSuggestionsAreClosestWords() {
+    final CompressedDictionary dictionary = CompressedDictionary
+      .create(new StreamLoader(DefaultBundledDictionariesProvider.class.getResourceAsStream(ENGLISH_DIC), ENGLISH_DIC), new Transformation());
+    final Metrics metrics = new LevenshteinDistance();
+    for (String word : new String[]{"upgade", "dictionery", "performanse", "xq", "zzzzzzzz"}) {
+      final List<Integer> expected = new ArrayList<Integer>();
+      for (String candidate : dictionary.getWords(word.charAt(0))) {
+        expected.add(metrics.calculateMetrics(word, candidate));
+      }
+      Collections.sort(expected);
+
+      for (int limit : new int[]{1, 5, 20}) {
+        final List<Suggestion> suggestions = new ArrayList<Suggestion>();
+        dictionary.collectSuggestions(word, limit, suggestions);
+        final List<Integer> actual = new ArrayList<Integer>();
+        for (Suggestion suggestion : suggestions) {
+          assertEquals(suggestion.getWord(), metrics.calculateMetrics(word, suggestion.getWord()), suggestion.getMetrics());
+          actual.add(suggestion.getMetrics());
+        }
+        Collections.sort(actual);
+
+        final int count = Math.min(limit, expected.size());
+        assertTrue(word, actual.size() >= count);
+        assertEquals(word, expected.subList(0, count), actual.subList(0, count));
+      }
+    }
+  }
+
   private static Loader createLoader(final Set<String> words) {
     return new Loader() {
       @Override
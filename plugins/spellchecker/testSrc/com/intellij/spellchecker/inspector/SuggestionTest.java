@@ -16,7 +16,11 @@
 package com.intellij.spellchecker.inspector;
 
 import com.intellij.spellchecker.SpellCheckerManager;
+import com.intellij.spellchecker.dictionary.Loader;
+import com.intellij.spellchecker.engine.BaseSpellChecker;
 import com.intellij.testFramework.fixtures.CodeInsightFixtureTestCase;
+import com.intellij.util.Consumer;
+import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
 
@@ -50,4 +54,46 @@ public class SuggestionTest extends CodeInsightFixtureTestCase {
     assertEquals("TestUpgrade",result.get(0));
   }
 
+  public void testSuggestionsAreNotLimitedByQuality() {
+    BaseSpellChecker checker = new BaseSpellChecker(myFixture.getProject());
+    checker.loadDictionary(createLoader("test", "upgrade", "upgrades", "upgraded", "upload", "upper", "sample"));
+    List<String> result = checker.getSuggestions("upgade", 5, 1);
+    assertEquals(5, result.size());
+    assertEquals("upgrade", result.get(0));
+    assertFalse(result.contains("sample"));
+  }
+
+  public void testBundledLookupsFollowDictionaries() {
+    BaseSpellChecker checker = new BaseSpellChecker(myFixture.getProject());
+    checker.loadDictionary(createLoader("first", "upgrade"));
+    assertTrue(checker.isCorrect("upgrade"));
+    assertFalse(checker.isCorrect("upload"));
+
+    checker.loadDictionary(createLoader("second", "upload"));
+    assertTrue(checker.isCorrect("upload"));
+
+    checker.removeDictionary("second");
+    assertFalse(checker.isCorrect("upload"));
+    assertTrue(checker.isCorrect("upgrade"));
+
+    checker.reset();
+    assertFalse(checker.isCorrect("upgrade"));
+  }
+
+  private static Loader createLoader(final String name, final String... words) {
+    return new Loader() {
+      @Override
+      public void load(@NotNull Consumer<String> consumer) {
+        for (String word : words) {
+          consumer.consume(word);
+        }
+      }
+
+      @Override
+      public String getName() {
+        return name;
+      }
+    };
+  }
+
 }
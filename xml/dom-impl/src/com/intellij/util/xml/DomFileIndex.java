@@ -28,17 +28,14 @@ import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * @author peter
  */
 public class DomFileIndex extends ScalarIndexExtension<String>{
   public static final ID<String,Void> NAME = ID.create("DomFileIndex");
-  private static final FileBasedIndex.InputFilter INPUT_FILTER = new FileBasedIndex.InputFilter() {
+  static final FileBasedIndex.InputFilter INPUT_FILTER = new FileBasedIndex.InputFilter() {
     public boolean acceptInput(final VirtualFile file) {
       return file.getFileType() == StdFileTypes.XML;
     }
@@ -49,34 +46,51 @@ public class DomFileIndex extends ScalarIndexExtension<String>{
     myDataIndexer = new DataIndexer<String, Void, FileContent>() {
       @NotNull
       public Map<String, Void> map(final FileContent inputData) {
-        final Set<String> namespaces = new THashSet<String>();
         final XmlFileHeader header = NanoXmlUtil.parseHeader(new UnsyncByteArrayInputStream(inputData.getContent()));
-        ContainerUtil.addIfNotNull(header.getPublicId(), namespaces);
-        ContainerUtil.addIfNotNull(header.getSystemId(), namespaces);
-        ContainerUtil.addIfNotNull(header.getRootTagNamespace(), namespaces);
-        final String tagName = header.getRootTagLocalName();
-        if (StringUtil.isNotEmpty(tagName)) {
-          final THashMap<String, Void> result = new THashMap<String, Void>();
-          final DomApplicationComponent component = DomApplicationComponent.getInstance();
-          for (final DomFileDescription description : component.getFileDescriptions(tagName)) {
-            final String[] strings = description.getAllPossibleRootTagNamespaces();
-            if (strings.length == 0 || ContainerUtil.intersects(Arrays.asList(strings), namespaces)) {
-              result.put(description.getRootElementClass().getName(), null);
-            }
-          }
-          for (final DomFileDescription description : component.getAcceptingOtherRootTagNameDescriptions()) {
-            final String[] strings = description.getAllPossibleRootTagNamespaces();
-            if (strings.length == 0 || ContainerUtil.intersects(Arrays.asList(strings), namespaces)) {
-              result.put(description.getRootElementClass().getName(), null);
-            }
-          }
-          return result;
+        final List<DomFileDescription> descriptions = getMatchingDescriptions(header);
+        if (descriptions.isEmpty()) {
+          return Collections.emptyMap();
         }
-        return Collections.emptyMap();
+        final THashMap<String, Void> result = new THashMap<String, Void>();
+        for (DomFileDescription description : descriptions) {
+          result.put(description.getRootElementClass().getName(), null);
+        }
+        return result;
       }
     };
   }
 
+  /**
+   * @return descriptions of the DOM files which the file with the given header may be, judging by its root tag and namespaces
+   */
+  @NotNull
+  static List<DomFileDescription> getMatchingDescriptions(@NotNull XmlFileHeader header) {
+    final String tagName = header.getRootTagLocalName();
+    if (StringUtil.isEmpty(tagName)) {
+      return Collections.emptyList();
+    }
+
+    final Set<String> namespaces = new THashSet<String>();
+    ContainerUtil.addIfNotNull(header.getPublicId(), namespaces);
+    ContainerUtil.addIfNotNull(header.getSystemId(), namespaces);
+    ContainerUtil.addIfNotNull(header.getRootTagNamespace(), namespaces);
+    final List<DomFileDescription> result = new ArrayList<DomFileDescription>();
+    final DomApplicationComponent component = DomApplicationComponent.getInstance();
+    for (final DomFileDescription description : component.getFileDescriptions(tagName)) {
+      final String[] strings = description.getAllPossibleRootTagNamespaces();
+      if (strings.length == 0 || ContainerUtil.intersects(Arrays.asList(strings), namespaces)) {
+        result.add(description);
+      }
+    }
+    for (final DomFileDescription description : component.getAcceptingOtherRootTagNameDescriptions()) {
+      final String[] strings = description.getAllPossibleRootTagNamespaces();
+      if (strings.length == 0 || ContainerUtil.intersects(Arrays.asList(strings), namespaces)) {
+        result.add(description);
+      }
+    }
+    return result;
+  }
+
   public ID<String, Void> getName() {
     return NAME;
   }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.xml;
+
+import com.intellij.openapi.util.io.StreamUtil;
+import com.intellij.util.io.UnsyncByteArrayInputStream;
+import com.intellij.util.xml.impl.AttributeChildDescriptionImpl;
+import com.intellij.util.xml.impl.DomApplicationComponent;
+import com.intellij.util.xml.impl.StaticGenericInfo;
+import com.intellij.util.xml.reflect.DomChildrenDescription;
+import com.intellij.util.xml.stubs.ElementStub;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * Builds the stub of a DOM file from its text without creating PSI. Only the tags reachable from the root through
+ * {@link Stubbed} children are visited; everything else is skipped by the parser.
+ */
+class DomStubBuilder extends NanoXmlUtil.IXMLBuilderAdapter {
+  private final Map<Type, ElementSchema> mySchemas = new THashMap<Type, ElementSchema>();
+  private final ElementSchema myRootSchema;
+  private final List<Frame> myStack = new ArrayList<Frame>();
+  // number of open tags in a skipped subtree
+  private int mySkippedDepth;
+  private ElementStub myRoot;
+
+  private DomStubBuilder(@NotNull Type rootType) {
+    myRootSchema = getSchema(rootType);
+  }
+
+  /**
+   * @return the stub of the root tag, or null if the DOM model has no stubbed members
+   */
+  @Nullable
+  static ElementStub build(@NotNull byte[] content, @NotNull Type rootType) {
+    final DomStubBuilder builder = new DomStubBuilder(rootType);
+    if (builder.myRootSchema.isEmpty()) {
+      return null;
+    }
+    NanoXmlUtil.parse(new UnsyncByteArrayInputStream(content), builder);
+    // the parser stops at the first error, keep what has been read so far
+    while (!builder.myStack.isEmpty()) {
+      builder.finishElement();
+    }
+    return builder.myRoot;
+  }
+
+  @NotNull
+  private ElementSchema getSchema(@NotNull Type type) {
+    ElementSchema schema = mySchemas.get(type);
+    if (schema == null) {
+      schema = new ElementSchema();
+      mySchemas.put(type, schema);
+      final StaticGenericInfo info = DomApplicationComponent.getInstance().getStaticGenericInfo(type);
+      for (AttributeChildDescriptionImpl description : info.getAttributeChildrenDescriptions()) {
+        if (description.getAnnotation(Stubbed.class) != null) {
+          schema.myAttributes.add(description.getXmlElementName());
+        }
+      }
+      addChildren(schema, info.getFixedChildrenDescriptions());
+      addChildren(schema, info.getCollectionChildrenDescriptions());
+    }
+    return schema;
+  }
+
+  private static void addChildren(@NotNull ElementSchema schema, @NotNull List<? extends DomChildrenDescription> descriptions) {
+    for (DomChildrenDescription description : descriptions) {
+      if (description.getAnnotation(Stubbed.class) != null) {
+        schema.myChildren.put(description.getXmlElementName(), description.getType());
+      }
+    }
+  }
+
+  @Override
+  public void startElement(String name, String nsPrefix, String nsURI, String systemID, int lineNr) throws Exception {
+    if (mySkippedDepth > 0) {
+      mySkippedDepth++;
+      return;
+    }
+    if (myStack.isEmpty()) {
+      if (myRoot == null) {
+        myStack.add(new Frame(name, myRootSchema));
+      }
+      else {
+        mySkippedDepth = 1;
+      }
+      return;
+    }
+    final Type type = myStack.get(myStack.size() - 1).mySchema.myChildren.get(name);
+    if (type == null) {
+      mySkippedDepth = 1;
+      return;
+    }
+    myStack.add(new Frame(name, getSchema(type)));
+  }
+
+  @Override
+  public void addAttribute(String key, String nsPrefix, String nsURI, String value, String type) throws Exception {
+    if (mySkippedDepth > 0 || myStack.isEmpty()) return;
+
+    final Frame frame = myStack.get(myStack.size() - 1);
+    if (frame.mySchema.myAttributes.contains(key)) {
+      frame.myAttributes.put(key, value);
+    }
+  }
+
+  @Override
+  public void addPCData(Reader reader, String systemID, int lineNr) throws Exception {
+    if (mySkippedDepth > 0 || myStack.isEmpty()) return;
+
+    myStack.get(myStack.size() - 1).myText.append(StreamUtil.readTextAndConvertSeparators(reader));
+  }
+
+  @Override
+  public void endElement(String name, String nsPrefix, String nsURI) throws Exception {
+    if (mySkippedDepth > 0) {
+      mySkippedDepth--;
+      return;
+    }
+    if (!myStack.isEmpty()) {
+      finishElement();
+    }
+  }
+
+  private void finishElement() {
+    final Frame frame = myStack.remove(myStack.size() - 1);
+    final String text = frame.myText.toString().trim();
+    final Map<String, String> attributes = frame.myAttributes.isEmpty() ? Collections.<String, String>emptyMap() : frame.myAttributes;
+    final List<ElementStub> children = frame.myChildren.isEmpty() ? Collections.<ElementStub>emptyList() : frame.myChildren;
+    final ElementStub stub = new ElementStub(frame.myName, text.length() == 0 ? null : text, attributes, children);
+    if (myStack.isEmpty()) {
+      myRoot = stub;
+    }
+    else {
+      myStack.get(myStack.size() - 1).myChildren.add(stub);
+    }
+  }
+
+  private static class ElementSchema {
+    // local names of the stubbed attributes
+    private final Set<String> myAttributes = new THashSet<String>();
+    // local name of a stubbed subtag -> its DOM type
+    private final Map<String, Type> myChildren = new THashMap<String, Type>();
+
+    private boolean isEmpty() {
+      return myAttributes.isEmpty() && myChildren.isEmpty();
+    }
+  }
+
+  private static class Frame {
+    private final String myName;
+    private final ElementSchema mySchema;
+    private final Map<String, String> myAttributes = new THashMap<String, String>();
+    private final List<ElementStub> myChildren = new ArrayList<ElementStub>();
+    private final StringBuilder myText = new StringBuilder();
+
+    private Frame(@NotNull String name, @NotNull ElementSchema schema) {
+      myName = name;
+      mySchema = schema;
+    }
+  }
+}
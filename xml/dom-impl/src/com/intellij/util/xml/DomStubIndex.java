@@ -0,0 +1,138 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.xml;
+
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.*;
+import com.intellij.util.xml.impl.DomApplicationComponent;
+import com.intellij.util.xml.stubs.ElementStub;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Root element class name of a DOM file description -> stub of the root tag of the file, holding the {@link Stubbed} values
+ * of the file's DOM model. Only descriptions with stubbed members are indexed.
+ *
+ * @see DomService#getRootStub(com.intellij.openapi.vfs.VirtualFile, Class, com.intellij.openapi.project.Project)
+ */
+public class DomStubIndex extends FileBasedIndexExtension<String, ElementStub> {
+  public static final ID<String, ElementStub> NAME = ID.create("DomStubIndex");
+  private static final int VERSION = 1;
+  private final DataIndexer<String, ElementStub, FileContent> myDataIndexer;
+
+  public DomStubIndex() {
+    myDataIndexer = new DataIndexer<String, ElementStub, FileContent>() {
+      @NotNull
+      public Map<String, ElementStub> map(final FileContent inputData) {
+        final byte[] content = inputData.getContent();
+        final XmlFileHeader header = NanoXmlUtil.parseHeader(new UnsyncByteArrayInputStream(content));
+        final List<DomFileDescription> descriptions = DomFileIndex.getMatchingDescriptions(header);
+        if (descriptions.isEmpty()) {
+          return Collections.emptyMap();
+        }
+        final Map<String, ElementStub> result = new THashMap<String, ElementStub>();
+        for (DomFileDescription description : descriptions) {
+          final Class rootElementClass = description.getRootElementClass();
+          final ElementStub stub = DomStubBuilder.build(content, rootElementClass);
+          if (stub != null) {
+            result.put(rootElementClass.getName(), stub);
+          }
+        }
+        return result;
+      }
+    };
+  }
+
+  public ID<String, ElementStub> getName() {
+    return NAME;
+  }
+
+  public DataIndexer<String, ElementStub, FileContent> getIndexer() {
+    return myDataIndexer;
+  }
+
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return new EnumeratorStringDescriptor();
+  }
+
+  public DataExternalizer<ElementStub> getValueExternalizer() {
+    return new ElementStubExternalizer();
+  }
+
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return DomFileIndex.INPUT_FILTER;
+  }
+
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  public int getVersion() {
+    final DomApplicationComponent component = DomApplicationComponent.getInstance();
+    int result = VERSION;
+    for (DomFileDescription description : component.getAllFileDescriptions()) {
+      result += description.getVersion();
+      result += description.getRootTagName().hashCode(); // so that a plugin enabling/disabling could trigger the reindexing
+    }
+    return result;
+  }
+
+  private static class ElementStubExternalizer implements DataExternalizer<ElementStub> {
+    public void save(DataOutput out, ElementStub value) throws IOException {
+      out.writeUTF(value.getName());
+      IOUtil.writeString(value.getValue(), out);
+      final Map<String, String> attributes = value.getAttributes();
+      DataInputOutputUtil.writeINT(out, attributes.size());
+      for (Map.Entry<String, String> entry : attributes.entrySet()) {
+        out.writeUTF(entry.getKey());
+        IOUtil.writeString(entry.getValue(), out);
+      }
+      final List<ElementStub> children = value.getChildren();
+      DataInputOutputUtil.writeINT(out, children.size());
+      for (ElementStub child : children) {
+        save(out, child);
+      }
+    }
+
+    public ElementStub read(DataInput in) throws IOException {
+      final String name = in.readUTF();
+      final String value = IOUtil.readString(in);
+      final int attributeCount = DataInputOutputUtil.readINT(in);
+      Map<String, String> attributes = Collections.emptyMap();
+      if (attributeCount > 0) {
+        attributes = new THashMap<String, String>(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+          final String key = in.readUTF();
+          attributes.put(key, IOUtil.readString(in));
+        }
+      }
+      final int childCount = DataInputOutputUtil.readINT(in);
+      List<ElementStub> children = Collections.emptyList();
+      if (childCount > 0) {
+        children = new ArrayList<ElementStub>(childCount);
+        for (int i = 0; i < childCount; i++) {
+          children.add(read(in));
+        }
+      }
+      return new ElementStub(name, value, attributes, children);
+    }
+  }
+}
@@ -28,6 +28,7 @@ import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.Function;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.intellij.util.xml.*;
+import com.intellij.util.xml.stubs.ElementStub;
 import com.intellij.util.xml.structure.DomStructureViewBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -85,6 +86,21 @@ public class DomServiceImpl extends DomService {
     return FileBasedIndex.getInstance().getContainingFiles(DomFileIndex.NAME, description.getName(), GlobalSearchScope.allScope(project));
   }
 
+  @Nullable
+  public ElementStub getRootStub(@NotNull VirtualFile file, @NotNull Class<? extends DomElement> rootElementClass, @NotNull Project project) {
+    final List<ElementStub> stubs =
+      FileBasedIndex.getInstance().getValues(DomStubIndex.NAME, rootElementClass.getName(), GlobalSearchScope.fileScope(project, file));
+    if (stubs.isEmpty()) return null;
+
+    // the index matches only the root tag and namespaces, while the file description may reject the file in isMyFile()
+    // or another description may take it; this doesn't read the values, so the file still isn't parsed for them
+    final PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+    if (!(psiFile instanceof XmlFile) || DomManager.getDomManager(project).getFileElement((XmlFile)psiFile, rootElementClass) == null) {
+      return null;
+    }
+    return stubs.get(0);
+  }
+
   public <T extends DomElement> List<DomFileElement<T>> getFileElements(final Class<T> clazz, final Project project, @Nullable final GlobalSearchScope scope) {
     final Collection<VirtualFile> list = scope == null ? getDomFileCandidates(clazz, project) : getDomFileCandidates(clazz, project, scope);
     final ArrayList<DomFileElement<T>> result = new ArrayList<DomFileElement<T>>(list.size());
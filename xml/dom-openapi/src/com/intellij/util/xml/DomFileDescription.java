@@ -119,6 +119,7 @@ public class DomFileDescription<T> {
    * @return some version. Override and change (e.g. <code>super.getVersion()+1</code>) when after some changes some files stopped being
    * described by this description or vice versa, so that the
    * {@link com.intellij.util.xml.DomService#getDomFileCandidates(Class, com.intellij.openapi.project.Project)} index is rebuilt correctly.
+   * Also change it when the set of {@link Stubbed} members of the DOM model changes, so that the stubs are rebuilt.
    */
   public int getVersion() {
     return myRootTagName.hashCode();
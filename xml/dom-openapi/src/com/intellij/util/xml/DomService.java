@@ -25,6 +25,7 @@ import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.util.Function;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.xml.stubs.ElementStub;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -72,6 +73,19 @@ public abstract class DomService {
                                                                                  final Project project,
                                                                                  @Nullable GlobalSearchScope scope);
 
+  /**
+   * @param file             DOM file
+   * @param rootElementClass class of root (file-level) element in DOM model
+   * @param project          current project
+   * @return stub of the root element holding the {@link Stubbed} values of the file, or null if the file doesn't contain
+   *         the given root element, isn't accepted by its {@link DomFileDescription#isMyFile} or its DOM model has no stubbed
+   *         members. The stub is read from an index, so the file isn't parsed for the values; values which aren't stubbed
+   *         should be taken from {@link #getFileElements} as usual.
+   */
+  @Nullable
+  public abstract ElementStub getRootStub(@NotNull VirtualFile file, @NotNull Class<? extends DomElement> rootElementClass,
+                                          @NotNull Project project);
+
   public abstract ModelMerger createModelMerger();
 
   public abstract <T extends DomElement> DomAnchor<T> createAnchor(T domElement);
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.xml;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate a getter of an attribute, a fixed child or a collection of children with @Stubbed, and its values will be kept
+ * in the stub of the DOM file ({@link com.intellij.util.xml.stubs.ElementStub}), so that they can be read with
+ * {@link DomService#getRootStub(com.intellij.openapi.vfs.VirtualFile, Class, com.intellij.openapi.project.Project)} without
+ * parsing the XML. The children are stored with their text and the stubbed members of their own DOM interfaces.
+ * <p/>
+ * Stubs are stored in an index, so {@link DomFileDescription#getVersion()} should be changed whenever the set of stubbed
+ * members of the file's DOM model changes.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Stubbed {
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.xml.stubs;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of an XML tag of a DOM file, holding only what the DOM model of the file marks as
+ * {@link com.intellij.util.xml.Stubbed}: the stubbed attributes and the stubbed subtags of the tag, matched by local names.
+ *
+ * @see com.intellij.util.xml.DomService#getRootStub(com.intellij.openapi.vfs.VirtualFile, Class, com.intellij.openapi.project.Project)
+ */
+public class ElementStub {
+  private final String myName;
+  @Nullable private final String myValue;
+  private final Map<String, String> myAttributes;
+  private final List<ElementStub> myChildren;
+
+  public ElementStub(@NotNull String name,
+                     @Nullable String value,
+                     @NotNull Map<String, String> attributes,
+                     @NotNull List<ElementStub> children) {
+    myName = name;
+    myValue = value;
+    myAttributes = attributes;
+    myChildren = children;
+  }
+
+  /**
+   * @return local name of the tag
+   */
+  @NotNull
+  public String getName() {
+    return myName;
+  }
+
+  /**
+   * @return trimmed text of the tag, or null if the tag has no text
+   */
+  @Nullable
+  public String getValue() {
+    return myValue;
+  }
+
+  /**
+   * @return value of the stubbed attribute with the given local name, or null if the tag has no such attribute
+   */
+  @Nullable
+  public String getAttributeValue(@NotNull String name) {
+    return myAttributes.get(name);
+  }
+
+  @NotNull
+  public Map<String, String> getAttributes() {
+    return Collections.unmodifiableMap(myAttributes);
+  }
+
+  @NotNull
+  public List<ElementStub> getChildren() {
+    return Collections.unmodifiableList(myChildren);
+  }
+
+  @NotNull
+  public List<ElementStub> getChildren(@NotNull String name) {
+    final List<ElementStub> result = new ArrayList<ElementStub>();
+    for (ElementStub child : myChildren) {
+      if (name.equals(child.myName)) {
+        result.add(child);
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  public ElementStub getChild(@NotNull String name) {
+    for (ElementStub child : myChildren) {
+      if (name.equals(child.myName)) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    final ElementStub stub = (ElementStub)o;
+
+    if (!myName.equals(stub.myName)) return false;
+    if (myValue != null ? !myValue.equals(stub.myValue) : stub.myValue != null) return false;
+    if (!myAttributes.equals(stub.myAttributes)) return false;
+    if (!myChildren.equals(stub.myChildren)) return false;
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = myName.hashCode();
+    result = 31 * result + (myValue != null ? myValue.hashCode() : 0);
+    result = 31 * result + myAttributes.hashCode();
+    result = 31 * result + myChildren.hashCode();
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "ElementStub:" + myName;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2000-2012 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.xml.impl.schema;
+
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.xml.util.XmlUtil;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Top-level declarations of a schema grouped by kind and local name, so that lookups don't have to check the namespace
+ * of every schema tag. The table is immutable; it is built once for the root tag of a schema file and is shared by all
+ * the documents using the schema until the schema file is changed.
+ */
+class SchemaDeclarations {
+  private static final Key<CachedValue<SchemaDeclarations>> DECLARATIONS_KEY = Key.create("SCHEMA_DECLARATIONS");
+
+  private final XmlTag[] myTags;
+  // declaration kind (e.g. "element") -> local name of a declaration -> indices of the declarations in myTags
+  private final Map<String, Map<String, TIntArrayList>> myDeclarations = new HashMap<String, Map<String, TIntArrayList>>();
+  // indices of include, import and redefine tags in myTags
+  private final TIntArrayList myReferences = new TIntArrayList();
+
+  private SchemaDeclarations(@NotNull XmlTag rootTag) {
+    myTags = rootTag.getSubTags();
+    for (int i = 0; i < myTags.length; i++) {
+      final XmlTag tag = myTags[i];
+      if (!XmlNSDescriptorImpl.checkSchemaNamespace(tag)) continue;
+
+      final String kind = tag.getLocalName();
+      if (XmlNSDescriptorImpl.INCLUDE_TAG_NAME.equals(kind) ||
+          XmlNSDescriptorImpl.IMPORT_TAG_NAME.equals(kind) ||
+          XmlNSDescriptorImpl.REDEFINE_TAG_NAME.equals(kind)) {
+        myReferences.add(i);
+        continue;
+      }
+
+      final String name = tag.getAttributeValue("name");
+      if (name == null) continue;
+
+      Map<String, TIntArrayList> byName = myDeclarations.get(kind);
+      if (byName == null) {
+        byName = new HashMap<String, TIntArrayList>();
+        myDeclarations.put(kind, byName);
+      }
+      final String localName = XmlUtil.findLocalNameByQualifiedName(name);
+      TIntArrayList indices = byName.get(localName);
+      if (indices == null) {
+        indices = new TIntArrayList(1);
+        byName.put(localName, indices);
+      }
+      indices.add(i);
+    }
+  }
+
+  @NotNull
+  static SchemaDeclarations getDeclarations(@NotNull final XmlTag rootTag) {
+    return CachedValuesManager.getManager(rootTag.getProject()).getCachedValue(rootTag, DECLARATIONS_KEY, new CachedValueProvider<SchemaDeclarations>() {
+      public Result<SchemaDeclarations> compute() {
+        return new Result<SchemaDeclarations>(new SchemaDeclarations(rootTag), rootTag);
+      }
+    }, false);
+  }
+
+  /**
+   * @return the subtags of the root tag which declare something of one of the given kinds with the given local name, and all
+   *         the include, import and redefine subtags, in the document order. Scanning them finds the same declaration as
+   *         scanning all the subtags.
+   */
+  @NotNull
+  XmlTag[] getTags(@NotNull String[] kinds, String localName) {
+    final TIntArrayList indices = new TIntArrayList(myReferences.size() + 1);
+    indices.add(myReferences.toNativeArray());
+    for (String kind : kinds) {
+      final Map<String, TIntArrayList> byName = myDeclarations.get(kind);
+      final TIntArrayList declarations = byName != null ? byName.get(localName) : null;
+      if (declarations != null) {
+        indices.add(declarations.toNativeArray());
+      }
+    }
+    indices.sort();
+
+    final XmlTag[] result = new XmlTag[indices.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = myTags[indices.get(i)];
+    }
+    return result;
+  }
+}
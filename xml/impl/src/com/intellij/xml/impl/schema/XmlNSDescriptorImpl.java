@@ -63,11 +63,12 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptor,Validator<XmlDocumen
   @NonNls static final String ELEMENT_TAG_NAME = "element";
   @NonNls static final String ATTRIBUTE_TAG_NAME = "attribute";
   @NonNls static final String COMPLEX_TYPE_TAG_NAME = "complexType";
+  @NonNls private static final String[] TYPE_TAG_NAMES = {COMPLEX_TYPE_TAG_NAME, "simpleType"};
   @NonNls static final String SEQUENCE_TAG_NAME = "sequence";
   @NonNls static final String SCHEMA_TAG_NAME = "schema";
-  @NonNls private static final String INCLUDE_TAG_NAME = "include";
-  @NonNls private static final String IMPORT_TAG_NAME = "import";
-  @NonNls private static final String REDEFINE_TAG_NAME = "redefine";
+  @NonNls static final String INCLUDE_TAG_NAME = "include";
+  @NonNls static final String IMPORT_TAG_NAME = "import";
+  @NonNls static final String REDEFINE_TAG_NAME = "redefine";
 
   public XmlNSDescriptorImpl(XmlFile file) {
     init(file.getDocument());
@@ -169,7 +170,7 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptor,Validator<XmlDocumen
 
     final XmlTag rootTag = myTag;
     if (rootTag == null) return null;
-    XmlTag[] tags = rootTag.getSubTags();
+    XmlTag[] tags = SchemaDeclarations.getDeclarations(rootTag).getTags(new String[]{ELEMENT_TAG_NAME}, localName);
     visited.add( this );
 
     LOG.assertTrue(rootTag.isValid());
@@ -286,7 +287,7 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptor,Validator<XmlDocumen
     if (visited == null) visited = new HashSet<XmlTag>(1);
     else if(visited.contains(myTag)) return null;
     visited.add(myTag);
-    XmlTag[] tags = myTag.getSubTags();
+    XmlTag[] tags = SchemaDeclarations.getDeclarations(myTag).getTags(new String[]{ATTRIBUTE_TAG_NAME}, localName);
 
     for (XmlTag tag : tags) {
       if (equalsToSchemaName(tag, ATTRIBUTE_TAG_NAME)) {
@@ -463,7 +464,10 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptor,Validator<XmlDocumen
       return value;
     }
 
-    XmlTag[] tags = rootTag.getSubTags();
+    // an anonymous lookup takes the first type declaration of any name
+    XmlTag[] tags = name == null
+                    ? rootTag.getSubTags()
+                    : SchemaDeclarations.getDeclarations(rootTag).getTags(TYPE_TAG_NAMES, XmlUtil.findLocalNameByQualifiedName(name));
 
     if (visited == null) {
       visited = new HashSet<XmlTag>(1);
@@ -778,7 +782,7 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptor,Validator<XmlDocumen
     else if (visited.contains(rootTag)) return null;
     visited.add(rootTag);
 
-    XmlTag[] tags = rootTag.getSubTags();
+    XmlTag[] tags = SchemaDeclarations.getDeclarations(rootTag).getTags(new String[]{specialName}, XmlUtil.findLocalNameByQualifiedName(name));
 
     return findSpecialTagIn(tags, specialName, name, rootTag, descriptor, visited);
   }